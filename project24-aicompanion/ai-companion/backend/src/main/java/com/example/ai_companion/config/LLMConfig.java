@@ -1,11 +1,26 @@
 package com.example.ai_companion.config;
 
+import com.example.ai_companion.service.LlmAdmissionController;
+import com.example.ai_companion.service.LlmGateway;
+import com.example.ai_companion.service.LlmRouter;
+import com.example.ai_companion.service.LlmTask;
 import dev.langchain4j.model.chat.ChatLanguageModel;
+import dev.langchain4j.model.chat.StreamingChatLanguageModel;
 import dev.langchain4j.model.openai.OpenAiChatModel;
+import dev.langchain4j.model.openai.OpenAiStreamingChatModel;
 import dev.langchain4j.model.chat.request.ChatRequestParameters;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.model.openai.OpenAiEmbeddingModel;
 import io.github.cdimascio.dotenv.Dotenv;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
 
 @Configuration
 public class LLMConfig {
@@ -18,14 +33,117 @@ public class LLMConfig {
         this.openAiApiKey = dotenv.get("OPENAI_API_KEY", "demo");
     }
 
+    /**
+     * The {@link LlmTask#GENERAL} route, for code that does not name a task.
+     */
+    @Bean
+    public ChatLanguageModel chatLanguageModel(LlmRouter llmRouter) {
+        return llmRouter.model(LlmTask.GENERAL);
+    }
+
+    /**
+     * Streaming variant of the companion model, used by the WebSocket conversation
+     * channel to push partial replies while the model is still generating. Uses
+     * the same settings as the {@link LlmTask#COMPANION_REPLY} route.
+     */
+    @Bean
+    public StreamingChatLanguageModel streamingChatLanguageModel(Environment environment) {
+        LlmRouter.Settings settings = taskSettings(environment, LlmTask.COMPANION_REPLY);
+        return OpenAiStreamingChatModel.builder()
+                .baseUrl(baseUrl(environment))
+                .apiKey(openAiApiKey)
+                .timeout(settings.timeout())
+                .defaultRequestParameters(requestParameters(settings))
+                .build();
+    }
+
+    /**
+     * One chat model per task, configured under {@code llm.tasks.<task>}
+     * ({@code model}, {@code temperature}, {@code max-tokens}, {@code timeout}).
+     * Tasks that end up with the same settings share a model. Retries are left
+     * to the {@link LlmGateway} in front of each task, configured under
+     * {@code llm.gateway}, so the client itself does not retry. All tasks share
+     * one {@link LlmAdmissionController}, configured under {@code llm.admission}
+     * to match the provider's quotas. Chat models call {@code llm.base-url}
+     * when it is set, e.g. a local OpenAI-compatible stub for load tests.
+     */
+    @Bean
+    public LlmRouter llmRouter(Environment environment) {
+        Map<LlmTask, LlmRouter.Settings> settings = new EnumMap<>(LlmTask.class);
+        Map<LlmTask, ChatLanguageModel> models = new EnumMap<>(LlmTask.class);
+        Map<LlmRouter.Settings, ChatLanguageModel> built = new HashMap<>();
+        for (LlmTask task : LlmTask.values()) {
+            LlmRouter.Settings taskSettings = taskSettings(environment, task);
+            settings.put(task, taskSettings);
+            models.put(task, built.computeIfAbsent(taskSettings, s -> OpenAiChatModel.builder()
+                    .baseUrl(baseUrl(environment))
+                    .apiKey(openAiApiKey)
+                    .timeout(s.timeout())
+                    .maxRetries(1)
+                    .defaultRequestParameters(requestParameters(s))
+                    .build()));
+        }
+        return new LlmRouter(settings, models, gatewayOptions(environment),
+                new LlmAdmissionController(admissionOptions(environment)));
+    }
+
+    /** OpenAI-compatible endpoint to call instead of OpenAI, or null for OpenAI itself. */
+    private static String baseUrl(Environment environment) {
+        return environment.getProperty("llm.base-url");
+    }
+
+    private static LlmAdmissionController.Options admissionOptions(Environment environment) {
+        LlmAdmissionController.Options defaults = LlmAdmissionController.Options.defaults();
+        return new LlmAdmissionController.Options(
+                environment.getProperty("llm.admission.max-concurrent", Integer.class, defaults.maxConcurrent()),
+                environment.getProperty("llm.admission.requests-per-minute", Integer.class, defaults.requestsPerMinute()),
+                environment.getProperty("llm.admission.tokens-per-minute", Integer.class, defaults.tokensPerMinute()),
+                environment.getProperty("llm.admission.near-real-time-share", Double.class, defaults.nearRealTimeShare()),
+                environment.getProperty("llm.admission.batch-share", Double.class, defaults.batchShare()),
+                environment.getProperty("llm.admission.near-real-time-reserve", Double.class, defaults.nearRealTimeReserve()),
+                environment.getProperty("llm.admission.batch-reserve", Double.class, defaults.batchReserve()));
+    }
+
+    private static LlmGateway.Options gatewayOptions(Environment environment) {
+        LlmGateway.Options defaults = LlmGateway.Options.defaults();
+        return new LlmGateway.Options(
+                environment.getProperty("llm.gateway.hedge-after", Duration.class, defaults.hedgeAfter()),
+                environment.getProperty("llm.gateway.min-hedge-after", Duration.class, defaults.minHedgeAfter()),
+                environment.getProperty("llm.gateway.retries", Integer.class, defaults.retries()),
+                environment.getProperty("llm.gateway.retry-backoff", Duration.class, defaults.retryBackoff()),
+                environment.getProperty("llm.gateway.failure-threshold", Integer.class, defaults.failureThreshold()),
+                environment.getProperty("llm.gateway.open-for", Duration.class, defaults.openFor()));
+    }
+
+    private static LlmRouter.Settings taskSettings(Environment environment, LlmTask task) {
+        String prefix = "llm.tasks." + task.getPropertyKey() + ".";
+        LlmRouter.Settings defaults = LlmRouter.Settings.defaultsFor(task);
+        return new LlmRouter.Settings(
+                environment.getProperty(prefix + "model", defaults.model()),
+                environment.getProperty(prefix + "temperature", Double.class, defaults.temperature()),
+                environment.getProperty(prefix + "max-tokens", Integer.class, defaults.maxTokens()),
+                environment.getProperty(prefix + "timeout", Duration.class, defaults.timeout()));
+    }
+
+    private static ChatRequestParameters requestParameters(LlmRouter.Settings settings) {
+        return ChatRequestParameters.builder()
+                .modelName(settings.model())
+                .temperature(settings.temperature())
+                .maxOutputTokens(settings.maxTokens())
+                .build();
+    }
+
+    /**
+     * Embedding model for near-match lookups in the LLM response cache. Only
+     * created when {@code llm.cache.semantic.enabled=true}; otherwise the cache
+     * matches exact prompts only.
+     */
     @Bean
-    public ChatLanguageModel chatLanguageModel() {
-        return OpenAiChatModel.builder()
+    @ConditionalOnProperty(name = "llm.cache.semantic.enabled", havingValue = "true")
+    public EmbeddingModel embeddingModel() {
+        return OpenAiEmbeddingModel.builder()
                 .apiKey(openAiApiKey)
-                .defaultRequestParameters(ChatRequestParameters.builder()
-                        .modelName("gpt-4o-mini")
-                        .temperature(0.7)
-                        .build())
+                .modelName("text-embedding-3-small")
                 .build();
     }
 }
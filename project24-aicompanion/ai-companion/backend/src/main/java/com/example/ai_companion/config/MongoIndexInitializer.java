@@ -0,0 +1,53 @@
+package com.example.ai_companion.config;
+
+import com.example.ai_companion.model.AvatarSession;
+import com.example.ai_companion.model.Reminder;
+import com.example.ai_companion.model.UserDataPurge;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexDefinition;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.index.IndexResolver;
+import org.springframework.data.mongodb.core.index.MongoPersistentEntityIndexResolver;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Builds the indexes declared with {@code @Indexed} and {@code @CompoundIndex}
+ * on the listed documents once the application is up. Spring Data only does
+ * this itself when {@code spring.data.mongodb.auto-index-creation} is on, and
+ * it is off by default. Creating an index that already exists is a no-op; one
+ * that cannot be built (e.g. a unique index over existing duplicates) is
+ * logged and skipped so startup is not blocked.
+ */
+@Component
+public class MongoIndexInitializer {
+
+    private static final Logger log = LoggerFactory.getLogger(MongoIndexInitializer.class);
+
+    static final List<Class<?>> INDEXED_DOCUMENTS = List.of(Reminder.class, AvatarSession.class, UserDataPurge.class);
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void ensureIndexes() {
+        IndexResolver resolver = new MongoPersistentEntityIndexResolver(mongoTemplate.getConverter().getMappingContext());
+        for (Class<?> type : INDEXED_DOCUMENTS) {
+            IndexOperations indexOps = mongoTemplate.indexOps(type);
+            for (IndexDefinition index : resolver.resolveIndexFor(type)) {
+                try {
+                    indexOps.ensureIndex(index);
+                } catch (Exception e) {
+                    log.error("[MongoIndex] Failed to build index {} on {}: {}",
+                            index.getIndexOptions().get("name"), type.getSimpleName(), e.getMessage());
+                }
+            }
+        }
+    }
+}
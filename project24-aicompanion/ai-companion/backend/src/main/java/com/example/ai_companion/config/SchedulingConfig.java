@@ -0,0 +1,12 @@
+package com.example.ai_companion.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * Enables {@code @Scheduled} background jobs such as reminder dispatch.
+ */
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+}
@@ -1,7 +1,10 @@
 package com.example.ai_companion.config;
 
+import com.example.ai_companion.security.StompAuthChannelInterceptor;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.lang.NonNull;
+import org.springframework.messaging.simp.config.ChannelRegistration;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
 import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
 import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
@@ -11,6 +14,9 @@ import org.springframework.web.socket.config.annotation.WebSocketTransportRegist
 @Configuration
 @EnableWebSocketMessageBroker
 public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
+
+    @Autowired
+    private StompAuthChannelInterceptor stompAuthChannelInterceptor;
     
     @Override
     public void configureMessageBroker(@NonNull MessageBrokerRegistry config) {
@@ -24,6 +30,12 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
         registry.addEndpoint("/ws").setAllowedOriginPatterns("*").withSockJS();
     }
     
+    @Override
+    public void configureClientInboundChannel(@NonNull ChannelRegistration registration) {
+        // Authenticates CONNECT frames so conversation turns run as the connected user
+        registration.interceptors(stompAuthChannelInterceptor);
+    }
+
     @Override
     public void configureWebSocketTransport(WebSocketTransportRegistration registration) {
         registration.setMessageSizeLimit(64 * 1024) // 64KB
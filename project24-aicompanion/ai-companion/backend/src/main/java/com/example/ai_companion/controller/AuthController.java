@@ -73,6 +73,7 @@ public class AuthController {
             userResponse.setId(user.getId());
             userResponse.setBloodType(user.getBloodType());
             userResponse.setGender(user.getGender());
+            userResponse.setTimezone(user.getTimezone());
             userResponse.setCoreInformation(user.getCoreInformation());
             // ElderlyStage2 fields
             userResponse.setDailyLife(user.getDailyLife());
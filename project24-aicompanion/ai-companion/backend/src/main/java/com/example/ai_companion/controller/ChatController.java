@@ -4,11 +4,15 @@ import com.example.ai_companion.model.Message;
 import com.example.ai_companion.model.User;
 import com.example.ai_companion.repository.MessageRepository;
 import com.example.ai_companion.repository.UserRepository;
+import com.example.ai_companion.service.AvatarTaskDispatcher;
+import com.example.ai_companion.service.ConversationSummaryService;
 import com.example.ai_companion.service.LLMService;
+import com.example.ai_companion.service.LlmResponseCache;
 import com.example.ai_companion.service.MemoryService;
-import com.example.ai_companion.service.HeyGenService;
 import com.example.ai_companion.service.ReminderService;
 import com.example.ai_companion.service.GameService;
+import com.example.ai_companion.service.GreetingService;
+import com.example.ai_companion.service.TurnCoordinator;
 import com.example.ai_companion.utils.ApiResponseBuilder;
 import com.example.ai_companion.utils.logger;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -40,9 +44,6 @@ public class ChatController {
     @Autowired
     private MessageRepository messageRepository;
 
-    @Autowired
-    private HeyGenService heyGenService;
-
     @Autowired
     private UserRepository userRepository;
 
@@ -52,13 +53,28 @@ public class ChatController {
     @Autowired
     private GameService gameService;
 
+    @Autowired
+    private ConversationSummaryService conversationSummaryService;
+
+    @Autowired
+    private GreetingService greetingService;
+
+    @Autowired
+    private TurnCoordinator turnCoordinator;
+
+    @Autowired
+    private AvatarTaskDispatcher avatarTaskDispatcher;
+
     private static final java.util.concurrent.ExecutorService executor = java.util.concurrent.Executors.newFixedThreadPool(8);
 
     /**
      * Handles a new user question and returns the assistant's response.
+     * Turns for one user run in the order they arrive; a repeat of a request
+     * still being answered gets that answer instead of running again (see
+     * {@link #requestKey}).
      *
      * @param userId   The ID of the user sending the question.
-     * @param payload  The user's message and optional location info.
+     * @param payload  The user's message, optional location info and optional requestId.
      * @return The assistant's response as a plain string.
      */
     @PostMapping("/ask")
@@ -66,36 +82,50 @@ public class ChatController {
         String message = (String) payload.get("message");
         // location optional in payload; not used currently
         Object location = payload.get("location");
-        logger.logToFile(userId, "new question");
-        
-        String aiResponse = llmService.generateAndTrack(userId, message, location);
-        
-        // Async reminder extraction from user message
-        executor.submit(() -> {
-            try {
-                reminderService.extractReminders(userId, message);
-                logger.logToFile(userId, "Reminder extraction completed for: " + message);
-            } catch (Exception e) {
-                logger.logToFile(userId, "Error extracting reminders: " + e.getMessage());
-            }
+
+        return turnCoordinator.run(userId, "ask\n" + requestKey(payload, message), replays(payload), () -> {
+            logger.logToFile(userId, "new question");
+
+            String aiResponse = llmService.generateAndTrack(userId, message, location);
+
+            // Async reminder extraction from user message
+            executor.submit(() -> {
+                try {
+                    reminderService.extractReminders(userId, message);
+                    logger.logToFile(userId, "Reminder extraction completed for: " + message);
+                } catch (Exception e) {
+                    logger.logToFile(userId, "Error extracting reminders: " + e.getMessage());
+                }
+            });
+
+            return aiResponse;
         });
-        
-        return aiResponse;
     }
 
     /**
-     * Handles a new user question and returns both the AI text and avatar audio response.
+     * Handles a new user question and returns the AI text as soon as it is ready.
+     * The avatar task is queued (see {@link AvatarTaskDispatcher}); its HeyGen task id
+     * and duration follow on the conversation channel under the returned task handle.
+     * Ordered and de-duplicated per user like {@link #ask}, so a double-tap costs
+     * one LLM call and one avatar task.
      *
      * @param userId   The ID of the user sending the question.
-     * @param payload  The user's message, sessionId, and optional location info.
-     * @return ApiResponse with AI text and HeyGen audio response.
+     * @param payload  The user's message, sessionId, optional location info and optional requestId.
+     * @return ApiResponse with AI text and the pending avatar task handle.
      */
     @PostMapping("/ask-avatar")
     public ResponseEntity<?> askAvatar(@RequestParam String userId, @RequestBody Map<String, Object> payload) {
-        double overallStart = System.currentTimeMillis() / 1000.0;
         String message = (String) payload.get("message");
         String sessionId = (String) payload.get("sessionId");
 
+        Map<String, Object> result = turnCoordinator.run(userId, "ask-avatar\n" + sessionId + "\n" + requestKey(payload, message),
+                replays(payload), () -> answerWithAvatar(userId, message, sessionId));
+        return ApiResponseBuilder.build(org.springframework.http.HttpStatus.OK, "AI and avatar response", result);
+    }
+
+    private Map<String, Object> answerWithAvatar(String userId, String message, String sessionId) {
+        double overallStart = System.currentTimeMillis() / 1000.0;
+
         // Log file: timestamp + userId
         String logFilename = String.format("msg_%d_%s.txt", (long)(overallStart * 1000), userId);
         logger.logToFile(logFilename, String.format("[START] ask-avatar for userId=%s at %.3f", userId, overallStart));
@@ -108,27 +138,22 @@ public class ChatController {
         double llmEnd = System.currentTimeMillis() / 1000.0;
         logger.logToFile(logFilename, String.format("[LLM] End at %.3f (duration: %.2f s)", llmEnd, (llmEnd-llmStart)));
 
-        // Step 2: Avatar
-        double avatarStart = System.currentTimeMillis() / 1000.0;
-        logger.logToFile(logFilename, String.format("[Avatar] Start at %.3f", avatarStart));
-        Map<String, Object> taskResult = heyGenService.sendTaskToHeyGen(sessionId, aiText, "repeat", logFilename);
-        double avatarEnd = System.currentTimeMillis() / 1000.0;
-        logger.logToFile(logFilename, String.format("[Avatar] End at %.3f (duration: %.2f s)", avatarEnd, (avatarEnd-avatarStart)));
+        // Step 2: Avatar, completed asynchronously
+        String taskHandle = avatarTaskDispatcher.dispatch(userId, sessionId, aiText, null, logFilename);
+
+        // Step 3: Save the exchange before the next turn of this user builds its prompt
+        messageRepository.save(new Message(userId, message, true, java.time.Instant.now()));
+        messageRepository.save(new Message(userId, aiText, false, java.time.Instant.now()));
 
-        // Step 3: Async non-blocking work (after HeyGen)
+        // Step 4: Async non-blocking work
         executor.submit(() -> {
             double asyncStart = System.currentTimeMillis() / 1000.0;
             memoryService.extractAndStoreInsights(userId, message, aiText);
             double asyncEnd = System.currentTimeMillis() / 1000.0;
             logger.logToFile(logFilename, "Memory insight extraction (async): " + String.format("%.2f s", (asyncEnd - asyncStart)));
         });
-        executor.submit(() -> {
-            double asyncStart = System.currentTimeMillis() / 1000.0;
-            messageRepository.save(new Message(userId, message, true, java.time.Instant.now()));
-            messageRepository.save(new Message(userId, aiText, false, java.time.Instant.now()));
-            double asyncEnd = System.currentTimeMillis() / 1000.0;
-            logger.logToFile(logFilename, "Message saving (async): " + String.format("%.2f s", (asyncEnd - asyncStart)));
-        });
+        conversationSummaryService.refreshInBackground(userId);
+        greetingService.noteActivity(userId);
         executor.submit(() -> {
             double asyncStart = System.currentTimeMillis() / 1000.0;
             try {
@@ -140,29 +165,48 @@ public class ChatController {
                 logger.logToFile(logFilename, "Error extracting reminders (async): " + e.getMessage() + " " + String.format("%.2f s", (asyncEnd - asyncStart)));
             }
         });
-        executor.submit(() -> {
-            double asyncStart = System.currentTimeMillis() / 1000.0;
-            memoryService.extractAndStoreInsights(userId, message, aiText);
-            double asyncEnd = System.currentTimeMillis() / 1000.0;
-            logger.logToFile(logFilename, "Memory insight extraction (async): " + String.format("%.2f s", (asyncEnd - asyncStart)));
-        });
 
-        // Step 4: Total
+        // Step 5: Total
         double overallEnd = System.currentTimeMillis() / 1000.0;
         logger.logToFile(logFilename, String.format("[END] ask-avatar for userId=%s at %.3f (total duration: %.2f s)", userId, overallEnd, (overallEnd-overallStart)));
 
+        return pendingAvatarResult(aiText, taskHandle);
+    }
+
+    /** Reply text plus the handle the avatar task's completion event will carry. */
+    private static Map<String, Object> pendingAvatarResult(String text, String taskHandle) {
         Map<String, Object> result = new HashMap<>();
-        result.put("text", aiText);
-        result.put("duration_ms", taskResult.get("duration_ms"));
-        result.put("task_id", taskResult.get("task_id"));
-        return ApiResponseBuilder.build(org.springframework.http.HttpStatus.OK, "AI and avatar response", result);
+        result.put("text", text);
+        result.put("task_handle", taskHandle);
+        result.put("avatar_status", "pending");
+        return result;
+    }
+
+    /**
+     * What makes two requests duplicates: the client's {@code requestId} when
+     * it sends one (a retry reuses it), otherwise the message itself, so a
+     * double-tap or resend of the same words is answered once.
+     */
+    private static String requestKey(Map<String, Object> payload, String message) {
+        Object requestId = payload.get("requestId");
+        return requestId != null ? "id:" + requestId : "message:" + message;
+    }
+
+    /**
+     * Whether a finished answer is handed to later repeats. Only a client
+     * {@code requestId} marks a retry; the same words sent again after the
+     * answer arrived are a new turn, so message keys merge in-flight repeats only.
+     */
+    private static boolean replays(Map<String, Object> payload) {
+        return payload.get("requestId") != null;
     }
 
     /**
      * Generates an AI-only message to initiate or resume conversation without creating a user message.
      * If user has no prior messages, generates a short warm greeting and invitation to talk.
-     * If user has prior messages, generates a brief resume/continuation line and prompt to continue.
-     * Then sends the text to HeyGen for audio, and stores ONLY the assistant message in history.
+     * If user has prior messages, greets them with a reference to their last conversation; this
+     * greeting is usually prepared after that conversation ended (see {@link GreetingService}).
+     * Then queues the text for HeyGen, and stores ONLY the assistant message in history.
      */
     @PostMapping("/ask-auto-avatar")
     public ResponseEntity<?> askAutoAvatar(@RequestParam String userId, @RequestBody Map<String, Object> payload) {
@@ -173,99 +217,32 @@ public class ChatController {
         String logFilename = String.format("auto_msg_%d_%s.txt", (long)(overallStart * 1000), userId);
         logger.logToFile(logFilename, String.format("[START] ask-auto-avatar for userId=%s at %.3f", userId, overallStart));
 
-        // Determine if first-time or returning user (always provide proper greeting on app re-entry)
-        List<com.example.ai_companion.model.Message> recent = messageRepository.findTop10ByUserIdOrderByTimestampDesc(userId);
-        boolean isFirst = recent == null || recent.isEmpty();
-        
-        // Get user profile for personalized greeting
-        com.example.ai_companion.model.User user = userRepository.findByFirebaseUid(userId);
-        String name = user != null && user.getFullName() != null ? user.getFullName() : "there";
-        String coreInfo = user != null && user.getCoreInformation() != null ? user.getCoreInformation() : "";
-
-        // Build prompt - always provide proper greeting and context
-        String prompt;
-        if (isFirst) {
-            // Personalized first greeting using user profile
-            prompt = ("You are a warm, friendly AI companion for elderly care. " +
-                    "Greet the user by name (" + name + ") in a short, gentle way (1-2 sentences). " +
-                    "Offer help and invite them to speak. " +
-                    "End your message by reassuring them that you're always here to help. " +
-                    "Keep it natural and encouraging. " +
-                    (coreInfo.isEmpty() ? "" : ("Consider this profile note: " + coreInfo + ". ")) +
-                    "Do not ask multiple questions; one simple invitation is enough. No emojis.");
-        } else {
-            // Returning user - always provide proper greeting with context from last conversation
-            StringBuilder context = new StringBuilder();
-            recent.stream()
-                  .sorted((a, b) -> a.getTimestamp().compareTo(b.getTimestamp()))
-                  .forEach(m -> context.append(m.isFromUser() ? "User: " : "Assistant: ")
-                                       .append(m.getText()).append("\n"));
-            
-            // Calculate time since last message for time-aware greeting
-            com.example.ai_companion.model.Message lastMessage = recent.get(0);
-            long minutesSinceLastMessage = java.time.Duration.between(
-                lastMessage.getTimestamp(), 
-                java.time.Instant.now()
-            ).toMinutes();
-            
-            String timeContext;
-            if (minutesSinceLastMessage < 60) {
-                timeContext = "just a few minutes ago";
-            } else if (minutesSinceLastMessage < 1440) { // less than 24 hours
-                long hours = minutesSinceLastMessage / 60;
-                timeContext = hours == 1 ? "about an hour ago" : "a few hours ago";
-            } else {
-                long days = minutesSinceLastMessage / 1440;
-                timeContext = days == 1 ? "yesterday" : days + " days ago";
-            }
-            
-            prompt = ("You are a warm, friendly AI companion for elderly care. " +
-                    "The user is returning to the app. Greet them warmly by name (" + name + ") and ask how they're doing. " +
-                    "Reference something from their last conversation to show you remember and care, using the appropriate time reference. " +
-                    "The following are the last few messages from their previous conversation (most recent last):\n" +
-                    context.toString() +
-                    "\nThe last conversation was " + timeContext + ". " +
-                    "Use phrases like 'I remember you were talking about...' or 'How did that go with...' to reference their last topic with the correct time context. " +
-                    "Then ask how they're doing and what you can help with. " +
-                    "End your message by reassuring them that you're always here to help. " +
-                    "Keep it warm and personal (2-3 sentences). " +
-                    (coreInfo.isEmpty() ? "" : ("Consider this profile note: " + coreInfo + ". ")) +
-                    "No emojis.");
-        }
-
-        // Generate text
+        // Greeting, prepared ahead of time when possible
         double llmStart = System.currentTimeMillis() / 1000.0;
         logger.logToFile(logFilename, String.format("[Auto LLM] Start at %.3f", llmStart));
-        String aiText = llmService.generateResponse(prompt);
+        String aiText = greetingService.getGreeting(userId, logFilename);
         double llmEnd = System.currentTimeMillis() / 1000.0;
         logger.logToFile(logFilename, String.format("[Auto LLM] End at %.3f (duration: %.2f s)", llmEnd, (llmEnd-llmStart)));
 
         // Store assistant message only
+        // Opening the app is not a turn; only ask-avatar and the socket note activity
         messageRepository.save(new com.example.ai_companion.model.Message(userId, aiText, false, java.time.Instant.now()));
 
-        // Send to HeyGen
-        double avatarStart = System.currentTimeMillis() / 1000.0;
-        logger.logToFile(logFilename, String.format("[Avatar] Start at %.3f", avatarStart));
-        Map<String, Object> taskResult = heyGenService.sendTaskToHeyGen(sessionId, aiText, "repeat", logFilename);
-        double avatarEnd = System.currentTimeMillis() / 1000.0;
-        logger.logToFile(logFilename, String.format("[Avatar] End at %.3f (duration: %.2f s)", avatarEnd, (avatarEnd-avatarStart)));
+        // Send to HeyGen without waiting for it
+        String taskHandle = avatarTaskDispatcher.dispatch(userId, sessionId, aiText, null, logFilename);
 
         double overallEnd = System.currentTimeMillis() / 1000.0;
         logger.logToFile(logFilename, String.format("[END] ask-auto-avatar for userId=%s at %.3f (total duration: %.2f s)", userId, overallEnd, (overallEnd-overallStart)));
 
-        Map<String, Object> result = new HashMap<>();
-        result.put("text", aiText);
-        result.put("duration_ms", taskResult.get("duration_ms"));
-        result.put("task_id", taskResult.get("task_id"));
-        return ApiResponseBuilder.build(org.springframework.http.HttpStatus.OK, "AI auto and avatar response", result);
+        return ApiResponseBuilder.build(org.springframework.http.HttpStatus.OK, "AI auto and avatar response", pendingAvatarResult(aiText, taskHandle));
     }
 
     /**
-     * Handles a game message and returns both the AI text and avatar audio response.
+     * Handles a game message and returns the AI text with the pending avatar task handle.
      *
      * @param userId   The ID of the user sending the message.
      * @param payload  The user's message, game session ID, session ID, and optional location info.
-     * @return ApiResponse with AI text and HeyGen audio response.
+     * @return ApiResponse with AI text and the pending avatar task handle.
      */
     @PostMapping("/ask-game-avatar")
     public ResponseEntity<?> askGameAvatar(@RequestParam String userId, @RequestBody Map<String, Object> payload) {
@@ -286,22 +263,14 @@ public class ChatController {
         double gameEnd = System.currentTimeMillis() / 1000.0;
         logger.logToFile(logFilename, String.format("[Game LLM] End at %.3f (duration: %.2f s)", gameEnd, (gameEnd-gameStart)));
 
-        // Step 2: Avatar
-        double avatarStart = System.currentTimeMillis() / 1000.0;
-        logger.logToFile(logFilename, String.format("[Avatar] Start at %.3f", avatarStart));
-        Map<String, Object> taskResult = heyGenService.sendTaskToHeyGen(sessionId, gameResponse, "repeat", logFilename);
-        double avatarEnd = System.currentTimeMillis() / 1000.0;
-        logger.logToFile(logFilename, String.format("[Avatar] End at %.3f (duration: %.2f s)", avatarEnd, (avatarEnd-avatarStart)));
+        // Step 2: Avatar, completed asynchronously
+        String taskHandle = avatarTaskDispatcher.dispatch(userId, sessionId, gameResponse, null, logFilename);
 
         // Step 3: Total
         double overallEnd = System.currentTimeMillis() / 1000.0;
         logger.logToFile(logFilename, String.format("[END] ask-game-avatar for userId=%s at %.3f (total duration: %.2f s)", userId, overallEnd, (overallEnd-overallStart)));
 
-        Map<String, Object> result = new HashMap<>();
-        result.put("text", gameResponse);
-        result.put("duration_ms", taskResult.get("duration_ms"));
-        result.put("task_id", taskResult.get("task_id"));
-        return ApiResponseBuilder.build(org.springframework.http.HttpStatus.OK, "AI game and avatar response", result);
+        return ApiResponseBuilder.build(org.springframework.http.HttpStatus.OK, "AI game and avatar response", pendingAvatarResult(gameResponse, taskHandle));
     }
 
     /**
@@ -385,7 +354,7 @@ public class ChatController {
         
         prompt.append("Respond with a natural, conversational welcome message that makes the user feel comfortable and supported.");
 
-        return llmService.generateResponse(prompt.toString());
+        return llmService.generateResponse(prompt.toString(), LlmResponseCache.UseCase.WELCOME);
     }
 
     /**
@@ -0,0 +1,69 @@
+package com.example.ai_companion.controller;
+
+import com.example.ai_companion.dto.ConversationTurnRequest;
+import com.example.ai_companion.model.User;
+import com.example.ai_companion.response.ConversationEvent;
+import com.example.ai_companion.service.ConversationService;
+import com.example.ai_companion.service.ConversationSession;
+import com.example.ai_companion.service.ConversationSessionRegistry;
+import com.example.ai_companion.utils.logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.messaging.handler.annotation.MessageExceptionHandler;
+import org.springframework.messaging.handler.annotation.MessageMapping;
+import org.springframework.messaging.handler.annotation.Payload;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.annotation.SendToUser;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.stereotype.Controller;
+
+import java.security.Principal;
+
+/**
+ * STOMP controller for the companion conversation channel.
+ * <p>
+ * Clients connect to {@code /ws} with a Firebase {@code Authorization} header,
+ * subscribe to {@code /user/queue/conversation} and send turns to
+ * {@code /app/conversation.send}. Replies are pushed back asynchronously.
+ */
+@Controller
+public class ConversationSocketController {
+
+    @Autowired
+    private ConversationService conversationService;
+
+    @Autowired
+    private ConversationSessionRegistry sessionRegistry;
+
+    /**
+     * Accepts a user turn on the conversation channel.
+     *
+     * @param request        the user's message, optional avatar session id and location
+     * @param headerAccessor STOMP headers, used for the connection id
+     * @param principal      the user authenticated on CONNECT
+     */
+    @MessageMapping("/conversation.send")
+    public void sendTurn(@Payload ConversationTurnRequest request, SimpMessageHeaderAccessor headerAccessor, Principal principal) {
+        ConversationSession session = resolveSession(headerAccessor.getSessionId(), principal);
+        conversationService.submitTurn(session, request);
+    }
+
+    /** Logs the failure and tells the client in plain words; internal details stay in the log. */
+    @MessageExceptionHandler
+    @SendToUser(value = ConversationService.USER_DESTINATION, broadcast = false)
+    public ConversationEvent handleException(Exception e) {
+        logger.logToFile("system", "Conversation message rejected: " + e.getMessage());
+        return ConversationEvent.of(ConversationEvent.Type.ERROR, null, ConversationService.TURN_FAILED_TEXT, null);
+    }
+
+    private ConversationSession resolveSession(String connectionId, Principal principal) {
+        ConversationSession session = sessionRegistry.get(connectionId);
+        if (session != null) {
+            return session;
+        }
+        if (principal instanceof UsernamePasswordAuthenticationToken auth && auth.getPrincipal() instanceof User user) {
+            return sessionRegistry.open(connectionId, user);
+        }
+        throw new AccessDeniedException("Conversation channel requires an authenticated connection");
+    }
+}
@@ -2,14 +2,20 @@ package com.example.ai_companion.controller;
 
 import com.example.ai_companion.model.GameMessage;
 import com.example.ai_companion.model.GameSession;
+import com.example.ai_companion.model.User;
+import com.example.ai_companion.service.GamePreviewPrefetcher;
 import com.example.ai_companion.service.GameService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.stream.Stream;
 
 /**
  * Controller for handling cognitive game operations.
@@ -21,15 +27,36 @@ public class GameController {
     @Autowired
     private GameService gameService;
 
+    @Autowired
+    private GamePreviewPrefetcher gamePreviewPrefetcher;
+
     /**
-     * Generates a game preview without creating a session.
+     * Returns a game preview without creating a session, from the user's
+     * prefetched previews when one is ready.
      */
     @PostMapping("/preview")
     public ResponseEntity<Map<String, String>> generateGamePreview(@RequestParam String userId) {
-        Map<String, String> preview = gameService.generateGamePreview(userId);
+        Map<String, String> preview = gamePreviewPrefetcher.next(userId);
         return ResponseEntity.ok(preview);
     }
 
+    /**
+     * Reports how many previews were served ready versus generated on request.
+     */
+    @GetMapping("/preview-stats")
+    public ResponseEntity<Map<String, Object>> getPreviewStats() {
+        return ResponseEntity.ok(gamePreviewPrefetcher.getStats());
+    }
+
+    /**
+     * Lists the games played without the model. Pass one's gameType to
+     * {@code /create} to start it.
+     */
+    @GetMapping("/local")
+    public ResponseEntity<List<Map<String, String>>> getLocalGames() {
+        return ResponseEntity.ok(gameService.getLocalGames());
+    }
+
     /**
      * Creates a new game session.
      */
@@ -38,7 +65,7 @@ public class GameController {
             @RequestParam String userId,
             @RequestBody Map<String, String> payload) {
         
-        String gameType = payload.get("gameType"); // "generated" or "custom"
+        String gameType = payload.get("gameType"); // "generated", "custom" or a local engine id
         String userDescription = payload.get("userDescription");
         
         GameSession gameSession = gameService.createGameSession(userId, gameType, userDescription);
@@ -46,10 +73,12 @@ public class GameController {
     }
 
     /**
-     * Gets all game sessions for a user.
+     * Gets all game sessions for a user. The games list is where a new game
+     * is started from, so previews are prefetched here.
      */
     @GetMapping("/sessions")
     public ResponseEntity<List<GameSession>> getUserGameSessions(@RequestParam String userId) {
+        gamePreviewPrefetcher.prefetch(userId);
         List<GameSession> sessions = gameService.getUserGameSessions(userId);
         return ResponseEntity.ok(sessions);
     }
@@ -102,4 +131,27 @@ public class GameController {
         gameService.deleteGameSession(sessionId);
         return ResponseEntity.noContent().build();
     }
+
+    /**
+     * Deletes all of the caller's game sessions and their messages. A
+     * {@code userId}, if given, must be the caller's own.
+     */
+    @DeleteMapping("/sessions")
+    public ResponseEntity<Map<String, Long>> deleteUserGameSessions(Authentication authentication,
+                                                                     @RequestParam(required = false) String userId) {
+        User caller = authentication != null && authentication.getPrincipal() instanceof User user ? user : null;
+        if (caller == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        if (userId != null && !userId.equals(caller.getFirebaseUid()) && !userId.equals(caller.getId())) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        // Sessions are stored under whichever of the caller's ids the client sent
+        long deleted = Stream.of(caller.getId(), caller.getFirebaseUid())
+                .filter(Objects::nonNull)
+                .distinct()
+                .mapToLong(gameService::deleteUserGameSessions)
+                .sum();
+        return ResponseEntity.ok(Map.of("deleted", deleted));
+    }
 } 
\ No newline at end of file
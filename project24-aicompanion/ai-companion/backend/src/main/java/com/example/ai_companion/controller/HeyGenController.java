@@ -2,7 +2,12 @@ package com.example.ai_companion.controller;
 
 import com.example.ai_companion.dto.HeyGenSessionRequest;
 import com.example.ai_companion.dto.HeyGenStartSessionRequest;
+import com.example.ai_companion.dto.HeyGenTextToSpeechRequest;
+import com.example.ai_companion.service.AvatarTaskDispatcher;
 import com.example.ai_companion.service.HeyGenService;
+import com.example.ai_companion.service.HeyGenSessionManager;
+import com.example.ai_companion.service.SpokenPhraseCache;
+import com.example.ai_companion.response.HeyGenAudioResponse;
 import com.example.ai_companion.response.HeyGenSessionResponse;
 import com.example.ai_companion.utils.ApiResponseBuilder;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -29,6 +34,15 @@ public class HeyGenController {
     @Autowired
     private HeyGenService heyGenService;
 
+    @Autowired
+    private HeyGenSessionManager sessionManager;
+
+    @Autowired
+    private AvatarTaskDispatcher avatarTaskDispatcher;
+
+    @Autowired
+    private SpokenPhraseCache spokenPhraseCache;
+
     @GetMapping("/session-token")
     public ResponseEntity<?> getSessionToken() {
         String token = heyGenService.createSessionToken();
@@ -38,10 +52,11 @@ public class HeyGenController {
 
 
     @PostMapping("/create-session")
-    public ResponseEntity<?> createSession(@RequestBody HeyGenSessionRequest request) {
+    public ResponseEntity<?> createSession(Authentication authentication, @RequestBody HeyGenSessionRequest request) {
         logger.info("[HeyGenController] Received session request: {}", request);
         logger.info("[HeyGenController] Voice settings: {}", request.getVoice());
-        HeyGenSessionResponse sessionInfo = heyGenService.createSession(request);
+        String firebaseUid = authentication != null && authentication.getPrincipal() instanceof User user ? user.getFirebaseUid() : null;
+        HeyGenSessionResponse sessionInfo = sessionManager.createSession(firebaseUid, request);
         return ApiResponseBuilder.build(HttpStatus.OK, "Session created", sessionInfo);
     }
 
@@ -50,7 +65,7 @@ public class HeyGenController {
         User user = (User) authentication.getPrincipal();
         String firebaseUid = user.getFirebaseUid();
         logger.info("[HeyGenController] Starting session for user: {}, sessionId: {}", firebaseUid, request.getSessionId());
-        HeyGenSessionResponse startInfo = heyGenService.startSession(firebaseUid, request);
+        HeyGenSessionResponse startInfo = sessionManager.startSession(firebaseUid, request);
         return ApiResponseBuilder.build(HttpStatus.OK, "Session started", startInfo);
     }
 
@@ -64,13 +79,35 @@ public class HeyGenController {
         return ApiResponseBuilder.build(HttpStatus.OK, "Task sent to avatar", taskResult);
     }
 
+    // Audio for clients that play speech themselves; repeated phrases come from the cache
+    @PostMapping("/text-to-speech")
+    public ResponseEntity<?> textToSpeech(@RequestBody HeyGenTextToSpeechRequest request) {
+        HeyGenAudioResponse audio = spokenPhraseCache.speak(request);
+        return ApiResponseBuilder.build(HttpStatus.OK, "Speech synthesized", audio);
+    }
+
     @PostMapping("/stop-session")
     public ResponseEntity<?> stopSession(@RequestBody Map<String, String> payload) {
         String sessionId = payload.get("sessionId");
-        heyGenService.stopSession(sessionId);
+        sessionManager.stopSession(sessionId);
         return com.example.ai_companion.utils.ApiResponseBuilder.build(org.springframework.http.HttpStatus.OK, "Session stopped");
     }
 
+    @GetMapping("/session-stats")
+    public ResponseEntity<?> getSessionStats() {
+        return ApiResponseBuilder.build(HttpStatus.OK, "Session stats", sessionManager.getStats());
+    }
+
+    @GetMapping("/task-stats")
+    public ResponseEntity<?> getTaskStats() {
+        return ApiResponseBuilder.build(HttpStatus.OK, "Avatar task stats", avatarTaskDispatcher.getStats());
+    }
+
+    @GetMapping("/speech-cache-stats")
+    public ResponseEntity<?> getSpeechCacheStats() {
+        return ApiResponseBuilder.build(HttpStatus.OK, "Speech cache stats", spokenPhraseCache.getStats());
+    }
+
     @GetMapping("/avatar-details")
     public ResponseEntity<?> getAvatarDetails(@RequestParam String avatarId) {
         String url = "https://api.heygen.com/v2/avatar/" + avatarId + "/details";
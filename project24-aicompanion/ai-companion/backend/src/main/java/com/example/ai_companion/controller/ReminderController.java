@@ -1,12 +1,21 @@
 package com.example.ai_companion.controller;
 
 import com.example.ai_companion.model.Reminder;
+import com.example.ai_companion.model.ReminderStatus;
 import com.example.ai_companion.repository.ReminderRepository;
+import com.example.ai_companion.response.ReminderDayCount;
+import com.example.ai_companion.service.RecurrenceRule;
+import com.example.ai_companion.service.ReminderOccurrenceService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.*;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.DateTimeException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -22,14 +31,24 @@ public class ReminderController {
     @Autowired
     private ReminderRepository reminderRepository;
 
+    @Autowired
+    private ReminderOccurrenceService reminderOccurrenceService;
+
+    // Longest window /reminders/occurrences and /reminders/calendar will expand series over
+    private static final Duration MAX_OCCURRENCE_WINDOW = Duration.ofDays(366);
+
     /**
-     * Create a new reminder.
+     * Create a new reminder. A reminder with a {@code recurrence} rule
+     * (e.g. {@code FREQ=DAILY}) is stored as a series starting at its timestamp.
      *
      * @param reminder The reminder object from the request body.
      * @return The saved reminder.
      */
     @PostMapping
     public ResponseEntity<Reminder> createReminder(@RequestBody Reminder reminder) {
+        if (reminder != null && reminder.getRecurrence() != null && !RecurrenceRule.isValid(reminder.getRecurrence())) {
+            return ResponseEntity.badRequest().build();
+        }
         Reminder saved = reminderRepository.save(reminder);
         return ResponseEntity.ok(saved);
     }
@@ -58,7 +77,66 @@ public class ReminderController {
     }
 
     /**
-     * Update a specific reminder.
+     * Retrieve a user's reminders due within a time window, with recurring
+     * series expanded into their individual occurrences.
+     *
+     * @param userId The ID of the user.
+     * @param from   Start of the window (inclusive).
+     * @param to     End of the window (exclusive), at most a year after {@code from}.
+     * @param status Optional status to filter by.
+     * @return The reminders and occurrences in the window, ordered by timestamp.
+     */
+    @GetMapping("/occurrences")
+    public ResponseEntity<List<Reminder>> getOccurrences(
+            @RequestParam String userId,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant to,
+            @RequestParam(required = false) ReminderStatus status) {
+
+        if (!isValidWindow(from, to)) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(reminderOccurrenceService.findInRange(userId, from, to, status));
+    }
+
+    /**
+     * Retrieve the number of reminders per day within a time window, for
+     * rendering a calendar grid without loading the reminders themselves.
+     *
+     * @param userId   The ID of the user.
+     * @param from     Start of the window (inclusive).
+     * @param to       End of the window (exclusive), at most a year after {@code from}.
+     * @param timezone IANA timezone the days are counted in (default UTC).
+     * @param status   Optional status to count.
+     * @return One entry per day that has reminders, ordered by date.
+     */
+    @GetMapping("/calendar")
+    public ResponseEntity<List<ReminderDayCount>> getCalendar(
+            @RequestParam String userId,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant to,
+            @RequestParam(defaultValue = "UTC") String timezone,
+            @RequestParam(required = false) ReminderStatus status) {
+
+        if (!isValidWindow(from, to)) {
+            return ResponseEntity.badRequest().build();
+        }
+        ZoneId zone;
+        try {
+            zone = ZoneId.of(timezone);
+        } catch (DateTimeException e) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(reminderOccurrenceService.countByDay(userId, from, to, zone, status));
+    }
+
+    private boolean isValidWindow(Instant from, Instant to) {
+        return from.isBefore(to) && Duration.between(from, to).compareTo(MAX_OCCURRENCE_WINDOW) <= 0;
+    }
+
+    /**
+     * Update a specific reminder. Updating a single occurrence of a series
+     * (id {@code <seriesId>@<epochMillis>}) gives it its own document first.
      *
      * @param id       The reminder ID.
      * @param updates  The fields to update (partial or full).
@@ -69,7 +147,9 @@ public class ReminderController {
             @PathVariable String id,
             @RequestBody Reminder updates) {
 
-        Optional<Reminder> optional = reminderRepository.findById(id);
+        Optional<Reminder> optional = ReminderOccurrenceService.isOccurrenceId(id)
+                ? reminderOccurrenceService.materialise(id)
+                : reminderRepository.findById(id);
         if (optional.isEmpty()) {
             return ResponseEntity.notFound().build();
         }
@@ -82,19 +162,31 @@ public class ReminderController {
         if (updates.getDescription() != null) existing.updateDescription(updates.getDescription());
         if (updates.getTags() != null) existing.updateTags(updates.getTags());
         if (updates.getStatus() != null) existing.updateStatus(updates.getStatus());
+        if (updates.getRecurrence() != null && existing.isRecurring()) {
+            if (!RecurrenceRule.isValid(updates.getRecurrence())) {
+                return ResponseEntity.badRequest().build();
+            }
+            existing.setRecurrence(updates.getRecurrence());
+        }
 
         Reminder saved = reminderRepository.save(existing);
         return ResponseEntity.ok(saved);
     }
 
     /**
-     * Delete a reminder by ID.
+     * Delete a reminder by ID. Deleting a single occurrence of a series
+     * skips that occurrence and leaves the rest of the series in place.
      *
      * @param id The reminder ID.
      * @return HTTP 204 if deleted, or 404 if not found.
      */
     @DeleteMapping("/{id}")
     public ResponseEntity<Void> deleteReminder(@PathVariable String id) {
+        if (ReminderOccurrenceService.isOccurrenceId(id)) {
+            return reminderOccurrenceService.skipOccurrence(id)
+                    ? ResponseEntity.noContent().build()
+                    : ResponseEntity.notFound().build();
+        }
         if (!reminderRepository.existsById(id)) {
             return ResponseEntity.notFound().build();
         }
@@ -1,9 +1,13 @@
 package com.example.ai_companion.controller;
 
 import com.example.ai_companion.dto.UserDTO;
+import com.example.ai_companion.model.User;
+import com.example.ai_companion.model.UserDataPurge;
 import com.example.ai_companion.response.UserResponse;
+import com.example.ai_companion.service.UserDataPurgeService;
 import com.example.ai_companion.service.UserService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
@@ -12,10 +16,12 @@ import org.springframework.web.bind.annotation.*;
 @RequestMapping("/users")
 public class UserController {
     private final UserService userService;
+    private final UserDataPurgeService userDataPurgeService;
 
     @Autowired
-    public UserController(UserService userService) {
+    public UserController(UserService userService, UserDataPurgeService userDataPurgeService) {
         this.userService = userService;
+        this.userDataPurgeService = userDataPurgeService;
     }
 
     @PutMapping("/profile")
@@ -72,4 +78,46 @@ public class UserController {
         System.out.println("[UserController] Returning updated favorites: " + result);
         return ResponseEntity.ok(result);
     }
-}
\ No newline at end of file
+
+    /**
+     * Starts deleting all of the signed-in user's data in the background, and
+     * their account too if asked. Poll the returned purge for progress. A
+     * {@code userId} naming anyone but the caller is refused.
+     */
+    @DeleteMapping("/data")
+    public ResponseEntity<UserDataPurge> purgeUserData(
+        Authentication authentication,
+        @RequestParam(required = false) String userId,
+        @RequestParam(defaultValue = "false") boolean deleteAccount
+    ) {
+        User caller = authenticatedUser(authentication);
+        if (caller == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        if (userId != null && !isCaller(caller, userId)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        String ownId = caller.getFirebaseUid() != null ? caller.getFirebaseUid() : caller.getId();
+        return ResponseEntity.accepted().body(userDataPurgeService.start(ownId, deleteAccount));
+    }
+
+    @GetMapping("/data-purges/{purgeId}")
+    public ResponseEntity<UserDataPurge> getUserDataPurge(Authentication authentication, @PathVariable String purgeId) {
+        User caller = authenticatedUser(authentication);
+        if (caller == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        UserDataPurge purge = userDataPurgeService.get(purgeId);
+        // Other users' purges are reported as missing
+        return purge != null && isCaller(caller, purge.getUserId()) ? ResponseEntity.ok(purge) : ResponseEntity.notFound().build();
+    }
+
+    private static User authenticatedUser(Authentication authentication) {
+        return authentication != null && authentication.getPrincipal() instanceof User user ? user : null;
+    }
+
+    // Users are known by their account id or their Firebase UID
+    private static boolean isCaller(User caller, String userId) {
+        return userId.equals(caller.getFirebaseUid()) || userId.equals(caller.getId());
+    }
+}
@@ -0,0 +1,18 @@
+package com.example.ai_companion.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+/**
+ * DTO for a user turn sent over the WebSocket conversation channel
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ConversationTurnRequest {
+    private String turnId; // Client-generated id echoed back on every event for this turn
+    private String message;
+    private String sessionId; // HeyGen session id, optional
+    private Object location;
+}
@@ -29,6 +29,7 @@ public class UserDTO {
 
     private String bloodType;
     private String gender;
+    private String timezone; // IANA zone id, e.g. "Pacific/Auckland"
     
     // ElderlyStage2 fields
     private String dailyLife;
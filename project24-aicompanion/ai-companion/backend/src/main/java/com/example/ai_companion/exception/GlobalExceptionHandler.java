@@ -4,6 +4,7 @@ import com.example.ai_companion.response.ApiResponse;
 import com.example.ai_companion.utils.ApiResponseBuilder;
 
 import org.springframework.context.MessageSource;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.FieldError;
@@ -66,6 +67,18 @@ public class GlobalExceptionHandler {
         return ApiResponseBuilder.build(HttpStatus.INTERNAL_SERVER_ERROR, errorMessage, null);
     }
 
+    /**
+     * Handles DuplicateKeyException, which occurs when a write would break a unique index,
+     * e.g. editing a reminder into a copy of another one.
+     *
+     * @param ex the DuplicateKeyException thrown
+     * @return a ResponseEntity containing an ApiResponse with a conflict status
+     */
+    @ExceptionHandler(DuplicateKeyException.class)
+    public ResponseEntity<ApiResponse> handleDuplicateKey(DuplicateKeyException ex) {
+        return ApiResponseBuilder.build(HttpStatus.CONFLICT, "A matching record already exists");
+    }
+
     @ExceptionHandler(UserProfileValidationException.class)
     public ResponseEntity<ApiResponse> handleUserProfileValidation(UserProfileValidationException ex) {
         return ApiResponseBuilder.build(HttpStatus.BAD_REQUEST, ex.getMessage());
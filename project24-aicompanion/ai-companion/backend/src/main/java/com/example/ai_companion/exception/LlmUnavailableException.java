@@ -0,0 +1,15 @@
+package com.example.ai_companion.exception;
+
+/**
+ * Thrown when an LLM call fails, misses its deadline or is refused by an open
+ * circuit breaker, and the task has no fallback reply.
+ */
+public class LlmUnavailableException extends RuntimeException {
+    public LlmUnavailableException(String message) {
+        super(message);
+    }
+
+    public LlmUnavailableException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
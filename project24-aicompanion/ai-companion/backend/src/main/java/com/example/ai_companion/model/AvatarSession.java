@@ -0,0 +1,63 @@
+package com.example.ai_companion.model;
+
+import com.example.ai_companion.response.HeyGenSessionResponse;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+
+/**
+ * A HeyGen streaming session known to the backend, shared by all nodes. The
+ * node holding the lease keeps the session alive and stops it when idle; if
+ * that node goes away, another one takes the lease over once it lapses.
+ */
+@Data
+@NoArgsConstructor
+@Document(collection = "avatar_sessions")
+public class AvatarSession {
+
+    @Id
+    private String sessionId;
+
+    // Firebase UID of the user holding the session; null while prewarmed
+    @Indexed
+    private String userId;
+    // Avatar and voice settings; sessions with the same key are interchangeable
+    private String configKey;
+    // Created but not yet handed to a user
+    private boolean pooled;
+
+    private HeyGenSessionResponse created;
+    private HeyGenSessionResponse started;
+    private Instant createdAt;
+    private Instant startedAt;
+    private Instant lastTaskAt;
+    private Instant lastKeepAlive;
+
+    private String ownerNode;
+    // Records whose lease lapsed an hour ago with no node to take over are dropped
+    @Indexed(expireAfter = "1h")
+    private Instant leaseUntil;
+
+    public AvatarSession(String sessionId, String configKey, HeyGenSessionResponse created, Instant createdAt) {
+        this.sessionId = sessionId;
+        this.configKey = configKey;
+        this.created = created;
+        this.createdAt = createdAt;
+    }
+
+    public AvatarSession(AvatarSession other) {
+        this(other.sessionId, other.configKey, other.created, other.createdAt);
+        this.userId = other.userId;
+        this.pooled = other.pooled;
+        this.started = other.started;
+        this.startedAt = other.startedAt;
+        this.lastTaskAt = other.lastTaskAt;
+        this.lastKeepAlive = other.lastKeepAlive;
+        this.ownerNode = other.ownerNode;
+        this.leaseUntil = other.leaseUntil;
+    }
+}
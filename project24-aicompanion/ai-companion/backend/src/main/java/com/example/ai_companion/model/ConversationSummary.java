@@ -0,0 +1,31 @@
+package com.example.ai_companion.model;
+
+import lombok.Data;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Rolling summary of a user's conversation before the recent messages that
+ * prompts carry verbatim. One document per user, keyed by Firebase UID.
+ */
+@Data
+@Document(collection = "conversation_summaries")
+public class ConversationSummary {
+
+    @Id
+    private String userId;
+
+    private String summary;
+    // Timestamp of the newest message folded into the summary
+    private Instant coveredUntil;
+    // Ids of the folded messages stamped exactly coveredUntil; a user message
+    // and its reply are often saved in the same millisecond, so a later
+    // message can share the timestamp without having been folded
+    private List<String> coveredIds = new ArrayList<>();
+    private long summarizedMessages;
+    private Instant updatedAt;
+}
@@ -0,0 +1,36 @@
+package com.example.ai_companion.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * A puzzle set by a local game engine, stored on its game session until it
+ * is solved or revealed. The answer and hint are kept out of API responses.
+ */
+@Data
+@NoArgsConstructor
+public class GamePuzzle {
+
+    private String question;
+    @JsonIgnore
+    private String answer;
+    @JsonIgnore
+    private String hint;
+    private int attempts;
+    // The choices shown in the question, for puzzles that offer some
+    private List<String> options;
+
+    public GamePuzzle(String question, String answer, String hint) {
+        this.question = question;
+        this.answer = answer;
+        this.hint = hint;
+    }
+
+    public GamePuzzle(String question, String answer, String hint, List<String> options) {
+        this(question, answer, hint);
+        this.options = options;
+    }
+}
@@ -19,12 +19,14 @@ public class GameSession {
     private String userId;
     private String title;
     private String description;
-    private String gameType; // "generated" or "custom"
+    private String gameType; // "generated", "custom" or a local engine id
     private String initialPrompt; // The user's description for custom games
     private Instant createdAt;
     private Instant lastActivityAt;
     private boolean isActive;
 
+    private GameState state;
+
     public GameSession(String userId, String title, String description, String gameType, String initialPrompt) {
         this.userId = userId;
         this.title = title;
@@ -0,0 +1,37 @@
+package com.example.ai_companion.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The compact state a game turn is played from, embedded in its
+ * {@link GameSession}: score, level, current puzzle, a short summary of the
+ * game so far and the last few lines of conversation, oldest first.
+ * <p>
+ * {@code version} goes up by one with every turn. A turn is only written if
+ * the version is still the one it read, so two overlapping turns of the same
+ * game cannot overwrite each other.
+ */
+@Data
+public class GameState {
+
+    private long version;
+
+    // Set when a local game engine sets and marks the puzzles
+    private String engine;
+
+    private GamePuzzle puzzle;
+    private int score;
+    private int level = 1;
+    private String summary;
+
+    @JsonIgnore
+    private List<String> recentTurns = new ArrayList<>();
+
+    // The user's core information when the game started
+    @JsonIgnore
+    private String profile;
+}
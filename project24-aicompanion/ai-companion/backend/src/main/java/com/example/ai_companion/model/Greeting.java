@@ -0,0 +1,29 @@
+package com.example.ai_companion.model;
+
+import lombok.Data;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+import java.util.Map;
+
+/**
+ * Greetings prepared ahead of the user's next app open, one per time bucket
+ * (see {@code GreetingService.TimeBucket}). They are only valid while the
+ * user's newest message is still the one they were written after.
+ */
+@Data
+@Document(collection = "greetings")
+public class Greeting {
+
+    @Id
+    private String userId;
+
+    // Timestamp of the newest message when the greetings were written
+    private Instant basis;
+    // Hash of the name and core information the greetings were written with
+    private int profileHash;
+    // Time bucket name -> greeting
+    private Map<String, String> texts;
+    private Instant generatedAt;
+}
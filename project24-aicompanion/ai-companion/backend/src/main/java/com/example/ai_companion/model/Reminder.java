@@ -2,12 +2,19 @@ package com.example.ai_companion.model;
 
 import lombok.Data;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
 import org.springframework.data.mongodb.core.mapping.Document;
 import java.time.Instant;
 import java.util.List;
 
 @Data
 @Document(collection = "reminders")
+@CompoundIndex(name = "status_timestamp", def = "{'status': 1, 'timestamp': 1}")
+@CompoundIndex(name = "user_timestamp_status", def = "{'userId': 1, 'timestamp': 1, 'status': 1}")
+@CompoundIndex(name = "user_fingerprint", def = "{'userId': 1, 'fingerprint': 1}", unique = true,
+        partialFilter = "{'fingerprint': {'$type': 'string'}}")
+@CompoundIndex(name = "series_occurrence", def = "{'seriesId': 1, 'occurrenceStart': 1}")
+@CompoundIndex(name = "recurrence_status_series", def = "{'recurrence': 1, 'status': 1, 'seriesId': 1}")
 public class Reminder {
 
     @Id
@@ -18,6 +25,21 @@ public class Reminder {
     private String description;
     private List<ReminderTag> tags;
     private ReminderStatus status = ReminderStatus.INCOMPLETE;
+    // Normalised title plus hour bucket, used to spot repeated reminders (see ReminderFingerprint)
+    private String fingerprint;
+    // Recurring series: RRULE-style rule (see RecurrenceRule), its timezone, and skipped occurrences.
+    // The series' timestamp is its first occurrence.
+    private String recurrence;
+    private String recurrenceZone;
+    private List<Instant> recurrenceExceptions;
+    private Instant lastDispatchedOccurrence;
+    // Set on an occurrence of a series, both on the virtual copies returned by queries
+    // and on documents materialised when an occurrence is completed or edited
+    private String seriesId;
+    private Instant occurrenceStart;
+    // Set when a node claims the reminder for dispatch; cleared when it is rescheduled
+    private Instant dispatchedAt;
+    private String dispatchedBy;
 
     public Reminder(String userId, String title, Instant timestamp, String description, List<ReminderTag> tags) {
         this.userId = userId;
@@ -28,11 +50,19 @@ public class Reminder {
         this.status = ReminderStatus.INCOMPLETE;
     }
 
+    public boolean isRecurring() {
+        return recurrence != null && seriesId == null;
+    }
+
     public void updateStatus(ReminderStatus newStatus) {
         this.status = newStatus;
     }
 
     public void updateTimestamp(Instant newTimestamp) {
+        if (!newTimestamp.equals(this.timestamp)) {
+            this.dispatchedAt = null;
+            this.dispatchedBy = null;
+        }
         this.timestamp = newTimestamp;
     }
     
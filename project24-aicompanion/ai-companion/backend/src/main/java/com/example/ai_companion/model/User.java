@@ -73,6 +73,9 @@ public class User implements UserDetails {
 
     private String coreInformation;
 
+    // IANA zone id, e.g. "Pacific/Auckland"; used to resolve reminder times
+    private String timezone;
+
     private Role role;
 
     // Additional profile fields
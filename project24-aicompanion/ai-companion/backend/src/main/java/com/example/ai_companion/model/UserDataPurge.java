@@ -0,0 +1,58 @@
+package com.example.ai_companion.model;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A background deletion of everything stored for one user, with its
+ * progress: documents deleted so far per collection and the collection
+ * being worked on.
+ */
+@Data
+@NoArgsConstructor
+@Document(collection = "user_data_purges")
+public class UserDataPurge {
+
+    public enum Status { PENDING, RUNNING, DONE, FAILED }
+
+    @Id
+    private String id;
+
+    @Indexed
+    private String userId;
+    // Set to userId until the purge finishes; its unique index allows one unfinished purge per user
+    @Indexed(unique = true, sparse = true)
+    private String activeUserId;
+    // Also delete the user's account once their data is gone
+    private boolean deleteAccount;
+
+    private Status status;
+    private String currentCollection;
+    private Map<String, Long> deleted = new LinkedHashMap<>();
+    private String error;
+
+    private Instant createdAt;
+    // Moved forward after every batch; a running purge that stops moving is resumed
+    private Instant updatedAt;
+    private Instant finishedAt;
+
+    public UserDataPurge(String userId, boolean deleteAccount, Instant createdAt) {
+        this.userId = userId;
+        this.activeUserId = userId;
+        this.deleteAccount = deleteAccount;
+        this.status = Status.PENDING;
+        this.createdAt = createdAt;
+        this.updatedAt = createdAt;
+    }
+
+    public long getTotalDeleted() {
+        return deleted.values().stream().mapToLong(Long::longValue).sum();
+    }
+}
@@ -19,4 +19,8 @@ public interface GameMessageRepository extends MongoRepository<GameMessage, Stri
     Page<GameMessage> findByGameSessionIdOrderByTimestampDesc(String gameSessionId, Pageable pageable);
     
     List<GameMessage> findTop10ByGameSessionIdOrderByTimestampDesc(String gameSessionId);
+
+    long deleteByGameSessionId(String gameSessionId);
+
+    long deleteByUserId(String userId);
 } 
\ No newline at end of file
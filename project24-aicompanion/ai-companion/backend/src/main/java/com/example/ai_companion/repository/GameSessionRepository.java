@@ -19,4 +19,6 @@ public interface GameSessionRepository extends MongoRepository<GameSession, Stri
     Page<GameSession> findByUserIdOrderByLastActivityAtDesc(String userId, Pageable pageable);
     
     List<GameSession> findByUserIdAndIsActiveTrueOrderByLastActivityAtDesc(String userId);
+
+    long deleteByUserId(String userId);
 } 
\ No newline at end of file
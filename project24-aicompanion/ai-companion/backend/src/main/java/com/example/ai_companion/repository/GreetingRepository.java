@@ -0,0 +1,7 @@
+package com.example.ai_companion.repository;
+
+import com.example.ai_companion.model.Greeting;
+import org.springframework.data.mongodb.repository.MongoRepository;
+
+public interface GreetingRepository extends MongoRepository<Greeting, String> {
+}
@@ -4,11 +4,15 @@ import com.example.ai_companion.model.Message;
 import org.springframework.data.mongodb.repository.MongoRepository;
 import org.springframework.data.domain.Pageable;
 
+import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
 
 public interface MessageRepository extends MongoRepository<Message, String> {
     List<Message> findByUserId(String userId);
     List<Message> findTop10ByUserIdOrderByTimestampDesc(String userId);  
     List<Message> findByUserId(String userId, Pageable pageable);
+    long countByUserIdAndTimestampGreaterThanEqualAndIdNotIn(String userId, Instant from, Collection<String> excludedIds);
+    List<Message> findByUserIdAndTimestampGreaterThanEqualAndIdNotInOrderByTimestampAsc(String userId, Instant from, Collection<String> excludedIds, Pageable pageable);
 
 }
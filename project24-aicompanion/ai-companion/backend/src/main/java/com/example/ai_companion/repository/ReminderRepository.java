@@ -1,6 +1,7 @@
 package com.example.ai_companion.repository;
 
 import com.example.ai_companion.model.Reminder;
+import com.example.ai_companion.model.ReminderStatus;
 
 import org.springframework.data.domain.Page;
 import org.springframework.data.mongodb.repository.MongoRepository;
@@ -9,10 +10,17 @@ import org.springframework.data.domain.Pageable;
 
 
 import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface ReminderRepository extends MongoRepository<Reminder, String> {
     List<Reminder> findTop10ByUserIdAndTimestampGreaterThanOrderByTimestampAsc(String userId, Instant now);
     Page<Reminder> findByUserId(String userId, Pageable pageable);
+    List<Reminder> findByUserIdAndRecurrenceIsNotNullAndSeriesIdIsNull(String userId);
+    List<Reminder> findByUserIdAndRecurrenceIsNullAndTimestampGreaterThanEqualAndTimestampLessThanOrderByTimestampAsc(String userId, Instant from, Instant to);
+    List<Reminder> findByUserIdAndRecurrenceIsNullAndStatusAndTimestampGreaterThanEqualAndTimestampLessThanOrderByTimestampAsc(String userId, ReminderStatus status, Instant from, Instant to);
+    List<Reminder> findBySeriesIdInAndOccurrenceStartGreaterThanEqualAndOccurrenceStartLessThan(Collection<String> seriesIds, Instant from, Instant to);
+    Optional<Reminder> findBySeriesIdAndOccurrenceStart(String seriesId, Instant occurrenceStart);
 }
\ No newline at end of file
@@ -0,0 +1,36 @@
+package com.example.ai_companion.response;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+import java.time.Instant;
+import java.util.Map;
+
+/**
+ * Event pushed to the user on the WebSocket conversation channel
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ConversationEvent {
+
+    public enum Type {
+        PARTIAL,               // Incremental chunk of the assistant reply
+        FINAL,                 // Complete assistant reply
+        AVATAR_TASK,           // HeyGen task id and duration for the reply
+        AVATAR_TASK_FAILED,    // The avatar could not be given the reply
+        REMINDER_CONFIRMATION, // Reminders created from the user's message
+        ERROR
+    }
+
+    private Type type;
+    private String turnId;
+    private String text;
+    private Map<String, Object> data;
+    private Instant timestamp;
+
+    public static ConversationEvent of(Type type, String turnId, String text, Map<String, Object> data) {
+        return new ConversationEvent(type, turnId, text, data, Instant.now());
+    }
+}
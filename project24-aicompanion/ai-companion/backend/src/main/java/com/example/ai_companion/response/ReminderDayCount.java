@@ -0,0 +1,24 @@
+package com.example.ai_companion.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Number of reminders due on one calendar day, by status
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReminderDayCount {
+
+    private String date; // yyyy-MM-dd in the requested timezone
+    private long total;
+    private long incomplete;
+    private long complete;
+    private long missed;
+
+    public ReminderDayCount(String date) {
+        this.date = date;
+    }
+}
@@ -21,6 +21,7 @@ public class UserResponse {
     private String firebaseUid;
     private String bloodType;
     private String gender;
+    private String timezone;
     private String coreInformation;
     // ElderlyStage2 fields
     private String dailyLife;
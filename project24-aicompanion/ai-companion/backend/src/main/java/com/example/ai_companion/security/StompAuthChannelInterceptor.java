@@ -0,0 +1,64 @@
+package com.example.ai_companion.security;
+
+import com.example.ai_companion.model.User;
+import com.example.ai_companion.service.ConversationSessionRegistry;
+import com.example.ai_companion.service.CustomUserDetailsService;
+import com.google.firebase.auth.FirebaseAuth;
+import com.google.firebase.auth.FirebaseToken;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageDeliveryException;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageHeaderAccessor;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.stereotype.Component;
+
+/**
+ * Authenticates STOMP connections with the same Firebase ID token the HTTP
+ * filter uses. The token is verified once on CONNECT and the resolved user is
+ * bound to the connection, so individual conversation turns skip verification.
+ * Connections without a token are still accepted for the public topics.
+ */
+@Component
+public class StompAuthChannelInterceptor implements ChannelInterceptor {
+
+    private static final Logger log = LoggerFactory.getLogger(StompAuthChannelInterceptor.class);
+
+    @Autowired
+    private CustomUserDetailsService userDetailsService;
+
+    @Autowired
+    @Lazy
+    private ConversationSessionRegistry sessionRegistry;
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        StompHeaderAccessor accessor = MessageHeaderAccessor.getAccessor(message, StompHeaderAccessor.class);
+        if (accessor == null || !StompCommand.CONNECT.equals(accessor.getCommand())) {
+            return message;
+        }
+
+        String header = accessor.getFirstNativeHeader("Authorization");
+        if (header == null || !header.startsWith("Bearer ")) {
+            return message;
+        }
+
+        try {
+            FirebaseToken decodedToken = FirebaseAuth.getInstance().verifyIdToken(header.substring(7));
+            userDetailsService.createOrUpdateUserFromFirebaseToken(decodedToken);
+            User user = (User) userDetailsService.loadUserByUsername(decodedToken.getUid());
+            accessor.setUser(new UsernamePasswordAuthenticationToken(user, null, user.getAuthorities()));
+            sessionRegistry.open(accessor.getSessionId(), user);
+            return message;
+        } catch (Exception e) {
+            log.warn("[WebSocket] Rejected STOMP connection: {}", e.getMessage());
+            throw new MessageDeliveryException("Unauthorized: Invalid Firebase token");
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.example.ai_companion.service;
+
+import com.example.ai_companion.model.GamePuzzle;
+import com.example.ai_companion.utils.GameAnswers;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Unscramble a jumbled everyday word: four letters at level 1, five at
+ * level 2 and six or more from level 3.
+ */
+@Component
+public class AnagramGameEngine implements GameEngine {
+
+    // None of these can be rearranged into another common word, so the
+    // scramble of "lamp" never also spells "palm".
+    private static final List<List<String>> WORDS = List.of(
+            List.of("cake", "fish", "book", "boat", "frog", "milk", "tree", "bird", "sock", "duck", "bell", "rain"),
+            List.of("apple", "bench", "chair", "clock", "grass", "juice", "house", "plant", "river", "sugar", "train", "water"),
+            List.of("basket", "kettle", "bottle", "pencil", "rabbit", "spring", "summer", "window", "teapot", "biscuit", "picture", "morning"));
+
+    @Override
+    public String id() {
+        return "anagram";
+    }
+
+    @Override
+    public String title() {
+        return "Word Scramble";
+    }
+
+    @Override
+    public String description() {
+        return "The letters of an everyday word have been jumbled up. Can you put them back in order?";
+    }
+
+    @Override
+    public List<String> keywords() {
+        return List.of("anagram", "anagrams", "unscramble", "scrambled letters", "scrambled words", "jumbled letters", "jumbled words", "word scramble");
+    }
+
+    @Override
+    public GamePuzzle newPuzzle(int level, Random random) {
+        List<String> words = WORDS.get(Math.min(level, WORDS.size()) - 1);
+        String word = words.get(random.nextInt(words.size()));
+        String scrambled = scramble(word, random);
+        return new GamePuzzle("Unscramble these letters to make a word: " + scrambled.toUpperCase(Locale.ROOT),
+                word, "It starts with the letter " + Character.toUpperCase(word.charAt(0)) + ".");
+    }
+
+    private static String scramble(String word, Random random) {
+        List<Character> letters = new ArrayList<>();
+        for (char c : word.toCharArray()) letters.add(c);
+        StringBuilder shuffled = new StringBuilder();
+        do {
+            Collections.shuffle(letters, random);
+            shuffled.setLength(0);
+            letters.forEach(shuffled::append);
+        } while (shuffled.toString().equals(word));
+        return shuffled.toString();
+    }
+
+    @Override
+    public boolean isCorrect(GamePuzzle puzzle, String reply) {
+        return GameAnswers.containsWord(reply, puzzle.getAnswer());
+    }
+}
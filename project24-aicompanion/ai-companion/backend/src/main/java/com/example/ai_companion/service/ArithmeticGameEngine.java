@@ -0,0 +1,69 @@
+package com.example.ai_companion.service;
+
+import com.example.ai_companion.model.GamePuzzle;
+import com.example.ai_companion.utils.GameAnswers;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Mental arithmetic: sums within 20 at level 1, adding and taking away
+ * within 100 at level 2, and times tables up to 12 from level 3.
+ */
+@Component
+public class ArithmeticGameEngine implements GameEngine {
+
+    @Override
+    public String id() {
+        return "arithmetic";
+    }
+
+    @Override
+    public String title() {
+        return "Mental Arithmetic";
+    }
+
+    @Override
+    public String description() {
+        return "Work out quick sums in your head, getting a little trickier as you go.";
+    }
+
+    @Override
+    public List<String> keywords() {
+        return List.of("arithmetic", "mental math", "mental maths", "times tables", "adding up numbers");
+    }
+
+    @Override
+    public GamePuzzle newPuzzle(int level, Random random) {
+        int a;
+        int b;
+        if (level <= 1) {
+            a = 1 + random.nextInt(10);
+            b = 1 + random.nextInt(10);
+            return puzzle(a + " plus " + b, a + b, "Try counting on from " + Math.max(a, b) + ".");
+        }
+        if (level == 2) {
+            a = 10 + random.nextInt(90);
+            b = 1 + random.nextInt(a);
+            if (random.nextBoolean()) {
+                return puzzle(a + " take away " + b, a - b, "Take away the tens first, then the ones.");
+            }
+            b = 1 + random.nextInt(100 - a);
+            return puzzle(a + " plus " + b, a + b, "Add the tens first, then the ones.");
+        }
+        a = 2 + random.nextInt(11);
+        b = 2 + random.nextInt(11);
+        return puzzle(a + " times " + b, a * b, "That's " + b + " lots of " + a + ".");
+    }
+
+    private static GamePuzzle puzzle(String sum, int answer, String hint) {
+        return new GamePuzzle("What is " + sum + "?", String.valueOf(answer), hint);
+    }
+
+    @Override
+    public boolean isCorrect(GamePuzzle puzzle, String reply) {
+        Integer number = GameAnswers.number(reply);
+        return number != null && String.valueOf(number).equals(puzzle.getAnswer());
+    }
+}
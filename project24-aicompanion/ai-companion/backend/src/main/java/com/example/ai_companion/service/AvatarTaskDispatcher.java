@@ -0,0 +1,156 @@
+package com.example.ai_companion.service;
+
+import com.example.ai_companion.response.ConversationEvent;
+import com.example.ai_companion.utils.logger;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.HttpClientErrorException;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Sends text to the avatar off the request thread. {@link #dispatch} returns
+ * a task handle at once; when HeyGen acknowledges the task, its id and
+ * {@code duration_ms} are pushed to the user on the conversation channel as
+ * an {@link ConversationEvent.Type#AVATAR_TASK} event carrying that handle.
+ *
+ * <p>Tasks for one avatar session are sent one at a time in the order they
+ * were dispatched, so replies are spoken in order. A failed send is retried
+ * up to {@code heygen.tasks.max-attempts} times with a growing pause of
+ * {@code heygen.tasks.retry-backoff-ms}; client errors other than 429 are not
+ * retried. A task that still fails is reported as
+ * {@link ConversationEvent.Type#AVATAR_TASK_FAILED}.
+ */
+@Service
+public class AvatarTaskDispatcher {
+
+    private static final Logger log = LoggerFactory.getLogger(AvatarTaskDispatcher.class);
+
+    @Autowired
+    private HeyGenService heyGenService;
+
+    @Autowired
+    private SimpMessagingTemplate messagingTemplate;
+
+    @Value("${heygen.tasks.max-attempts:3}")
+    private int maxAttempts = 3;
+
+    @Value("${heygen.tasks.retry-backoff-ms:500}")
+    private long retryBackoffMs = 500;
+
+    private static final ExecutorService executor = Executors.newFixedThreadPool(4);
+
+    // Last task queued per avatar session; each task runs after the one before it
+    private final Map<String, CompletableFuture<Void>> lanes = new ConcurrentHashMap<>();
+
+    private final AtomicLong dispatched = new AtomicLong();
+    private final AtomicLong acknowledged = new AtomicLong();
+    private final AtomicLong retries = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong ackMillis = new AtomicLong();
+    private final AtomicLong ackMillisMax = new AtomicLong();
+
+    /**
+     * Queues text for the avatar to repeat.
+     *
+     * @param userId      the user to notify
+     * @param sessionId   the HeyGen session
+     * @param text        what the avatar should say
+     * @param turnId      the conversation turn the event belongs to, or null
+     * @param logFilename per-request log file, or null
+     * @return the task handle the completion event will carry
+     */
+    public String dispatch(String userId, String sessionId, String text, String turnId, String logFilename) {
+        String handle = UUID.randomUUID().toString();
+        long queuedAt = System.currentTimeMillis();
+        dispatched.incrementAndGet();
+        String lane = Objects.toString(sessionId);
+        CompletableFuture<Void> next = lanes.compute(lane, (key, tail) ->
+                (tail != null ? tail : CompletableFuture.<Void>completedFuture(null))
+                        .thenRunAsync(() -> send(userId, sessionId, text, turnId, handle, queuedAt, logFilename), executor));
+        // Registered outside compute: a finished task would run this inline and change the map mid-update
+        next.whenComplete((ignored, e) -> lanes.remove(lane, next));
+        if (logFilename != null) logger.logToFile(logFilename, "[Avatar] Queued task " + handle + " for session " + sessionId);
+        return handle;
+    }
+
+    private void send(String userId, String sessionId, String text, String turnId, String handle, long queuedAt, String logFilename) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                Map<String, Object> taskResult = heyGenService.sendTaskToHeyGen(sessionId, text, "repeat", logFilename);
+                long elapsed = System.currentTimeMillis() - queuedAt;
+                acknowledged.incrementAndGet();
+                ackMillis.addAndGet(elapsed);
+                ackMillisMax.accumulateAndGet(elapsed, Math::max);
+                if (logFilename != null) logger.logToFile(logFilename, "[Avatar] Task " + handle + " acknowledged after " + elapsed + " ms");
+
+                Map<String, Object> data = new HashMap<>();
+                data.put("task_handle", handle);
+                data.put("task_id", taskResult.get("task_id"));
+                data.put("duration_ms", taskResult.get("duration_ms"));
+                publish(userId, ConversationEvent.of(ConversationEvent.Type.AVATAR_TASK, turnId, null, data));
+                return;
+            } catch (Exception e) {
+                if (attempt >= maxAttempts || !isRetryable(e)) {
+                    failed.incrementAndGet();
+                    log.warn("[AvatarTaskDispatcher] Task {} for session {} failed after {} attempts: {}", handle, sessionId, attempt, e.getMessage());
+                    if (logFilename != null) logger.logToFile(logFilename, "[Avatar] Task " + handle + " failed: " + e.getMessage());
+
+                    Map<String, Object> data = new HashMap<>();
+                    data.put("task_handle", handle);
+                    data.put("error", e.getMessage());
+                    publish(userId, ConversationEvent.of(ConversationEvent.Type.AVATAR_TASK_FAILED, turnId, null, data));
+                    return;
+                }
+                retries.incrementAndGet();
+                log.info("[AvatarTaskDispatcher] Retrying task {} for session {} (attempt {}): {}", handle, sessionId, attempt, e.getMessage());
+                try {
+                    Thread.sleep(retryBackoffMs * attempt);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    /** Client errors will fail the same way again, except rate limiting. */
+    private static boolean isRetryable(Exception e) {
+        return !(e instanceof HttpClientErrorException clientError) || clientError.getStatusCode().value() == 429;
+    }
+
+    private void publish(String userId, ConversationEvent event) {
+        try {
+            messagingTemplate.convertAndSendToUser(userId, ConversationService.USER_DESTINATION, event);
+        } catch (Exception e) {
+            log.warn("[AvatarTaskDispatcher] Could not notify user {}: {}", userId, e.getMessage());
+        }
+    }
+
+    /** Task counts and time from dispatch to HeyGen's acknowledgement. */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        long acked = acknowledged.get();
+        stats.put("dispatched", dispatched.get());
+        stats.put("acknowledged", acked);
+        stats.put("retries", retries.get());
+        stats.put("failed", failed.get());
+        stats.put("busySessions", lanes.size());
+        stats.put("avgAckMs", acked == 0 ? 0 : ackMillis.get() / acked);
+        stats.put("maxAckMs", ackMillisMax.get());
+        return stats;
+    }
+}
@@ -0,0 +1,177 @@
+package com.example.ai_companion.service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Fits the context blocks of a prompt into a token budget.
+ * <p>
+ * Each block is a list of items (messages, reminders, memories) with a
+ * priority. Blocks are filled in priority order, and within a block the most
+ * valuable items go first: the newest messages, the nearest reminders, the
+ * closest memories. Once an item no longer fits, it is cut down to the tokens
+ * that are left, or dropped if too few are left, and the rest of the block is
+ * dropped. Kept items are rendered in their original order, so the history
+ * still reads chronologically. Tokens are counted with the same local
+ * tokenizer as {@link PromptTemplate}.
+ */
+public final class ContextBudget {
+
+    /** Which end of a block's item list holds its most valuable items. */
+    public enum Keep { FIRST, LAST }
+
+    // Below this many tokens a cut-down item says too little to be worth sending
+    static final int MIN_TRUNCATED_TOKENS = 16;
+
+    private static final String ELLIPSIS = "...";
+
+    private final int maxTokens;
+    private final List<Block> blocks = new ArrayList<>();
+
+    public ContextBudget(int maxTokens) {
+        this.maxTokens = maxTokens;
+    }
+
+    private record Block(String name, int priority, List<String> items, Keep keep, int maxTokens, String separator) {}
+
+    /**
+     * Adds a block. Lower priorities are filled first.
+     *
+     * @param items     the block's items, in the order they should be rendered
+     * @param keep      which end of {@code items} to keep when they do not all fit
+     * @param maxTokens cap for this block on top of the overall budget
+     * @param separator text placed between items
+     */
+    public ContextBudget add(String name, int priority, List<String> items, Keep keep, int maxTokens, String separator) {
+        blocks.add(new Block(name, priority, items != null ? items : List.of(), keep, maxTokens, separator));
+        return this;
+    }
+
+    /** Adds a block limited only by the overall budget. */
+    public ContextBudget add(String name, int priority, List<String> items, Keep keep, String separator) {
+        return add(name, priority, items, keep, Integer.MAX_VALUE, separator);
+    }
+
+    public Result fill() {
+        List<Block> ordered = new ArrayList<>(blocks);
+        ordered.sort(Comparator.comparingInt(Block::priority));
+        int remaining = maxTokens;
+        Map<String, String> texts = new LinkedHashMap<>();
+        Map<String, Integer> tokens = new LinkedHashMap<>();
+        Map<String, Integer> dropped = new LinkedHashMap<>();
+        Map<String, Integer> truncated = new LinkedHashMap<>();
+
+        for (Block block : ordered) {
+            int cap = Math.min(remaining, block.maxTokens());
+            int separatorTokens = PromptTemplate.countTokens(block.separator());
+            int used = 0;
+            int cut = 0;
+            // Kept items by their index in the block, so they render in the original order
+            Map<Integer, String> kept = new LinkedHashMap<>();
+            int n = block.items().size();
+            for (int i = 0; i < n; i++) {
+                int index = block.keep() == Keep.FIRST ? i : n - 1 - i;
+                String item = block.items().get(index);
+                if (item == null || item.isBlank()) continue;
+                int cost = PromptTemplate.countTokens(item) + (kept.isEmpty() ? 0 : separatorTokens);
+                if (used + cost <= cap) {
+                    kept.put(index, item);
+                    used += cost;
+                    continue;
+                }
+                int available = cap - used - (kept.isEmpty() ? 0 : separatorTokens);
+                if (available >= MIN_TRUNCATED_TOKENS) {
+                    String shortened = truncate(item, available);
+                    kept.put(index, shortened);
+                    used += PromptTemplate.countTokens(shortened) + (kept.size() > 1 ? separatorTokens : 0);
+                    cut++;
+                }
+                break;
+            }
+
+            List<Integer> indexes = new ArrayList<>(kept.keySet());
+            Collections.sort(indexes);
+            List<String> parts = new ArrayList<>();
+            for (int index : indexes) {
+                parts.add(kept.get(index));
+            }
+            long nonBlank = block.items().stream().filter(item -> item != null && !item.isBlank()).count();
+            texts.put(block.name(), parts.isEmpty() ? "none" : String.join(block.separator(), parts));
+            tokens.put(block.name(), used);
+            dropped.put(block.name(), (int) nonBlank - kept.size());
+            truncated.put(block.name(), cut);
+            remaining -= used;
+        }
+        return new Result(texts, tokens, dropped, truncated);
+    }
+
+    /**
+     * Cuts {@code text} at a word boundary so that it, plus an ellipsis, fits in {@code maxTokens}.
+     */
+    static String truncate(String text, int maxTokens) {
+        int tokens = PromptTemplate.countTokens(text);
+        if (tokens <= maxTokens) {
+            return text;
+        }
+        int length = (int) ((long) text.length() * maxTokens / tokens);
+        while (length > 0) {
+            int end = text.lastIndexOf(' ', length);
+            String candidate = text.substring(0, end > 0 ? end : length).stripTrailing() + ELLIPSIS;
+            if (PromptTemplate.countTokens(candidate) <= maxTokens) {
+                return candidate;
+            }
+            length = Math.min(length - 1, (end > 0 ? end : length) * 9 / 10);
+        }
+        return ELLIPSIS;
+    }
+
+    /**
+     * The filled blocks. Blocks left empty render as {@code none}.
+     */
+    public static final class Result {
+        private final Map<String, String> texts;
+        private final Map<String, Integer> tokens;
+        private final Map<String, Integer> dropped;
+        private final Map<String, Integer> truncated;
+
+        private Result(Map<String, String> texts, Map<String, Integer> tokens,
+                       Map<String, Integer> dropped, Map<String, Integer> truncated) {
+            this.texts = Collections.unmodifiableMap(texts);
+            this.tokens = Collections.unmodifiableMap(tokens);
+            this.dropped = Collections.unmodifiableMap(dropped);
+            this.truncated = Collections.unmodifiableMap(truncated);
+        }
+
+        public String get(String name) {
+            return texts.getOrDefault(name, "none");
+        }
+
+        /** Tokens used per block. */
+        public Map<String, Integer> getTokens() {
+            return tokens;
+        }
+
+        /** Items left out per block. */
+        public Map<String, Integer> getDropped() {
+            return dropped;
+        }
+
+        /** Items that were cut down to fit, per block. */
+        public Map<String, Integer> getTruncated() {
+            return truncated;
+        }
+
+        public int getTotalTokens() {
+            return tokens.values().stream().mapToInt(Integer::intValue).sum();
+        }
+
+        @Override
+        public String toString() {
+            return "tokens " + tokens + ", dropped " + dropped + ", truncated " + truncated;
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package com.example.ai_companion.service;
+
+import com.example.ai_companion.dto.ConversationTurnRequest;
+import com.example.ai_companion.model.Message;
+import com.example.ai_companion.model.Reminder;
+import com.example.ai_companion.repository.MessageRepository;
+import com.example.ai_companion.repository.UserRepository;
+import com.example.ai_companion.response.ConversationEvent;
+import com.example.ai_companion.utils.logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Runs conversation turns received over the WebSocket channel and pushes the
+ * results back to the user as {@link ConversationEvent}s on
+ * {@code /user/queue/conversation}: partial reply chunks, the final reply,
+ * the avatar task and any reminders created from the message.
+ */
+@Service
+public class ConversationService {
+
+    public static final String USER_DESTINATION = "/queue/conversation";
+
+    /** Partial chunks are flushed once they reach this size or end a sentence. */
+    private static final int PARTIAL_FLUSH_CHARS = 40;
+
+    @Autowired private LLMService llmService;
+    @Autowired private AvatarTaskDispatcher avatarTaskDispatcher;
+    @Autowired private ReminderService reminderService;
+    @Autowired private MemoryService memoryService;
+    @Autowired private ConversationSummaryService conversationSummaryService;
+    @Autowired private GreetingService greetingService;
+    @Autowired private MessageRepository messageRepository;
+    @Autowired private UserRepository userRepository;
+    @Autowired private SimpMessagingTemplate messagingTemplate;
+
+    private static final ExecutorService executor = Executors.newFixedThreadPool(8);
+
+    /** What the user is told when a turn cannot be answered. */
+    public static final String TURN_FAILED_TEXT = "Sorry, I had trouble answering that. Could you say it again?";
+
+    // Last turn queued per connection; each turn runs after the one before it
+    private final Map<String, CompletableFuture<Void>> lanes = new ConcurrentHashMap<>();
+
+    /**
+     * Queues a turn for processing so the inbound STOMP thread is released
+     * immediately. Turns on one connection run one at a time, in the order
+     * they arrived, and a connection's queued turns hold no pool thread
+     * while they wait.
+     */
+    public void submitTurn(ConversationSession session, ConversationTurnRequest request) {
+        String lane = session.getConnectionId();
+        CompletableFuture<Void> next = lanes.compute(lane, (key, tail) ->
+                (tail != null ? tail : CompletableFuture.<Void>completedFuture(null))
+                        .thenRunAsync(() -> runTurn(session, request), executor));
+        // Registered outside compute: a finished turn would run this inline and change the map mid-update
+        next.whenComplete((ignored, e) -> lanes.remove(lane, next));
+    }
+
+    private void runTurn(ConversationSession session, ConversationTurnRequest request) {
+        try {
+            handleTurn(session, request);
+        } catch (Exception e) {
+            logger.logToFile(session.getUserId(), "Conversation turn failed: " + e.getMessage());
+            send(session, ConversationEvent.of(ConversationEvent.Type.ERROR, request.getTurnId(), TURN_FAILED_TEXT, null));
+        }
+    }
+
+    /**
+     * Processes one turn. Callers keep one connection's turns apart, as
+     * {@link #submitTurn} does.
+     */
+    public void handleTurn(ConversationSession session, ConversationTurnRequest request) {
+        String userId = session.getUserId();
+        String turnId = request.getTurnId();
+        String message = request.getMessage();
+        long start = System.currentTimeMillis();
+
+        StringBuilder pending = new StringBuilder();
+        String aiText = llmService.streamConversationReply(session, message, request.getLocation(), chunk -> {
+            pending.append(chunk);
+            if (pending.length() >= PARTIAL_FLUSH_CHARS || endsSentence(chunk)) {
+                send(session, ConversationEvent.of(ConversationEvent.Type.PARTIAL, turnId, pending.toString(), null));
+                pending.setLength(0);
+            }
+        });
+        if (pending.length() > 0) {
+            send(session, ConversationEvent.of(ConversationEvent.Type.PARTIAL, turnId, pending.toString(), null));
+        }
+        send(session, ConversationEvent.of(ConversationEvent.Type.FINAL, turnId, aiText, null));
+        logger.logToFile(userId, "Conversation turn reply: " + (System.currentTimeMillis() - start) + " ms");
+
+        Message userMessage = new Message(userId, message, true, Instant.now());
+        Message assistantMessage = new Message(userId, aiText, false, Instant.now());
+        session.recordTurn(userMessage, assistantMessage);
+
+        if (request.getSessionId() != null) {
+            avatarTaskDispatcher.dispatch(userId, request.getSessionId(), aiText, turnId, null);
+        }
+        executor.submit(() -> {
+            messageRepository.save(userMessage);
+            messageRepository.save(assistantMessage);
+            conversationSummaryService.refreshInBackground(userId);
+            greetingService.noteActivity(userId);
+        });
+        executor.submit(() -> extractReminders(session, turnId, message));
+        executor.submit(() -> {
+            memoryService.extractAndStoreInsights(userId, message, aiText);
+            session.refreshUser(userRepository.findByFirebaseUid(userId));
+        });
+    }
+
+    private void extractReminders(ConversationSession session, String turnId, String message) {
+        try {
+            List<Reminder> created = reminderService.extractReminders(session.getUserId(), message);
+            if (created != null && !created.isEmpty()) {
+                Map<String, Object> data = new HashMap<>();
+                data.put("reminders", created);
+                send(session, ConversationEvent.of(ConversationEvent.Type.REMINDER_CONFIRMATION, turnId, null, data));
+            }
+        } catch (Exception e) {
+            logger.logToFile(session.getUserId(), "Error extracting reminders: " + e.getMessage());
+        }
+    }
+
+    private void send(ConversationSession session, ConversationEvent event) {
+        messagingTemplate.convertAndSendToUser(session.getUserId(), USER_DESTINATION, event);
+    }
+
+    private static boolean endsSentence(String chunk) {
+        String trimmed = chunk.trim();
+        return !trimmed.isEmpty() && ".!?".indexOf(trimmed.charAt(trimmed.length() - 1)) >= 0;
+    }
+}
@@ -0,0 +1,112 @@
+package com.example.ai_companion.service;
+
+import com.example.ai_companion.model.Message;
+import com.example.ai_companion.model.User;
+
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Per-connection state for a user on the WebSocket conversation channel.
+ * Holds the user resolved when the STOMP connection was authenticated and a
+ * rolling window of recent messages, so consecutive turns on the same
+ * connection don't have to reload either from the database.
+ */
+public class ConversationSession {
+
+    /** Number of recent messages kept in memory, matching the HTTP prompt window. */
+    public static final int HISTORY_WINDOW = 10;
+
+    private final String connectionId;
+    private final String userId;
+    private final Deque<Message> history = new ArrayDeque<>();
+    private final Instant openedAt = Instant.now();
+
+    private volatile User user;
+    private volatile boolean historyLoaded;
+    private volatile Instant lastActivityAt = Instant.now();
+    private int turnCount;
+
+    public ConversationSession(String connectionId, User user) {
+        this.connectionId = connectionId;
+        this.user = user;
+        this.userId = user.getFirebaseUid();
+    }
+
+    public String getConnectionId() {
+        return connectionId;
+    }
+
+    /** Firebase UID of the connected user. */
+    public String getUserId() {
+        return userId;
+    }
+
+    public User getUser() {
+        return user;
+    }
+
+    /** Replaces the cached user, e.g. after core information was merged in the background. */
+    public void refreshUser(User refreshed) {
+        if (refreshed != null) {
+            this.user = refreshed;
+        }
+    }
+
+    public String getCoreInformation() {
+        User current = user;
+        return (current != null && current.getCoreInformation() != null) ? current.getCoreInformation() : "none";
+    }
+
+    public boolean isHistoryLoaded() {
+        return historyLoaded;
+    }
+
+    /**
+     * Seeds the history window from the database. Messages may be in any order.
+     */
+    public synchronized void loadHistory(List<Message> messages) {
+        history.clear();
+        if (messages != null) {
+            messages.stream()
+                    .sorted((a, b) -> a.getTimestamp().compareTo(b.getTimestamp()))
+                    .forEach(this::append);
+        }
+        historyLoaded = true;
+    }
+
+    /** Appends a completed user/assistant exchange to the history window. */
+    public synchronized void recordTurn(Message userMessage, Message assistantMessage) {
+        append(userMessage);
+        append(assistantMessage);
+        turnCount++;
+        lastActivityAt = Instant.now();
+    }
+
+    /** Snapshot of the history window in chronological order. */
+    public synchronized List<Message> getHistory() {
+        return new ArrayList<>(history);
+    }
+
+    public synchronized int getTurnCount() {
+        return turnCount;
+    }
+
+    public Instant getOpenedAt() {
+        return openedAt;
+    }
+
+    public Instant getLastActivityAt() {
+        return lastActivityAt;
+    }
+
+    private void append(Message message) {
+        history.addLast(message);
+        while (history.size() > HISTORY_WINDOW) {
+            history.removeFirst();
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.example.ai_companion.service;
+
+import com.example.ai_companion.model.User;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Tracks open conversation sessions by STOMP connection id. Sessions are
+ * opened when an authenticated client connects and dropped on disconnect.
+ */
+@Component
+public class ConversationSessionRegistry {
+
+    private static final Logger log = LoggerFactory.getLogger(ConversationSessionRegistry.class);
+
+    private final Map<String, ConversationSession> sessions = new ConcurrentHashMap<>();
+
+    /**
+     * Opens (or returns the existing) session for a connection.
+     */
+    public ConversationSession open(String connectionId, User user) {
+        return sessions.computeIfAbsent(connectionId, id -> {
+            log.info("[Conversation] Opened session {} for user {}", id, user.getFirebaseUid());
+            return new ConversationSession(id, user);
+        });
+    }
+
+    public ConversationSession get(String connectionId) {
+        return connectionId != null ? sessions.get(connectionId) : null;
+    }
+
+    public void close(String connectionId) {
+        ConversationSession removed = sessions.remove(connectionId);
+        if (removed != null) {
+            log.info("[Conversation] Closed session {} for user {} after {} turns",
+                    connectionId, removed.getUserId(), removed.getTurnCount());
+        }
+    }
+
+    public int size() {
+        return sessions.size();
+    }
+
+    @EventListener
+    public void onDisconnect(SessionDisconnectEvent event) {
+        close(event.getSessionId());
+    }
+}
@@ -0,0 +1,161 @@
+package com.example.ai_companion.service;
+
+import com.example.ai_companion.model.ConversationSummary;
+import com.example.ai_companion.model.Message;
+import com.example.ai_companion.repository.ConversationSummaryRepository;
+import com.example.ai_companion.repository.MessageRepository;
+import com.example.ai_companion.utils.logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Keeps a rolling summary of each user's conversation, so that prompts can
+ * carry the gist of older turns next to the recent messages at a small, fixed
+ * token cost.
+ * <p>
+ * Messages older than the recent window are folded into the summary once at
+ * least {@code conversation.summary.every-turns} turns have piled up, by asking
+ * the model to rewrite the summary so far together with those messages.
+ */
+@Service
+public class ConversationSummaryService {
+
+    /** Most messages folded in one refresh; a long backlog is caught up over several turns. */
+    private static final int MAX_FOLD_MESSAGES = 200;
+
+    @Autowired private ConversationSummaryRepository conversationSummaryRepository;
+    @Autowired private MessageRepository messageRepository;
+    @Autowired private LlmRouter llmRouter;
+
+    // Turns (a message and its reply) past the recent window before they are folded in
+    @Value("${conversation.summary.every-turns:5}")
+    private int everyTurns = 5;
+
+    // Messages prompts carry verbatim; matches the chat history window
+    @Value("${conversation.summary.recent-messages:10}")
+    private int recentMessages = 10;
+
+    // Users whose summary is being refreshed, so overlapping turns do not fold the same messages twice
+    private final Set<String> refreshing = ConcurrentHashMap.newKeySet();
+
+    // Summary calls are slow; kept off the shared turn pools so they never delay a turn's other work
+    private static final ExecutorService executor = Executors.newFixedThreadPool(2);
+
+    /**
+     * @param userId the user ID (Firebase UID)
+     * @return the summary of the conversation before the recent messages, or null if there is none yet
+     */
+    public String getSummary(String userId) {
+        return conversationSummaryRepository.findById(userId)
+                .map(ConversationSummary::getSummary)
+                .orElse(null);
+    }
+
+    /**
+     * Folds the messages that have left the recent window into the user's
+     * summary, if enough of them have piled up. Meant to run in the background
+     * after a turn's messages are saved.
+     *
+     * @param userId the user ID (Firebase UID)
+     * @return true if the summary was refreshed
+     */
+    public boolean refreshIfDue(String userId) {
+        if (!refreshing.add(userId)) {
+            return false;
+        }
+        try {
+            ConversationSummary current = conversationSummaryRepository.findById(userId).orElse(null);
+            Instant coveredUntil = current != null && current.getCoveredUntil() != null ? current.getCoveredUntil() : Instant.EPOCH;
+            List<String> coveredIds = current != null && current.getCoveredIds() != null ? current.getCoveredIds() : List.of();
+            // Messages from the covered timestamp on, less those already folded at exactly that timestamp
+            long older = messageRepository.countByUserIdAndTimestampGreaterThanEqualAndIdNotIn(userId, coveredUntil, coveredIds)
+                    - recentMessages;
+            if (older < 2L * everyTurns) {
+                return false;
+            }
+
+            List<Message> messages = messageRepository.findByUserIdAndTimestampGreaterThanEqualAndIdNotInOrderByTimestampAsc(
+                    userId, coveredUntil, coveredIds, PageRequest.of(0, (int) Math.min(older, MAX_FOLD_MESSAGES)));
+            if (messages.isEmpty()) {
+                return false;
+            }
+            String previous = current != null && current.getSummary() != null ? current.getSummary() : "none";
+            String summary = SUMMARY.render("summary", previous, "transcript", formatTranscript(messages))
+                    .call(llmRouter.model(LlmTask.CONVERSATION_SUMMARY, userId)).trim();
+
+            ConversationSummary updated = current != null ? current : new ConversationSummary();
+            updated.setUserId(userId);
+            updated.setSummary(summary);
+            Instant newest = messages.get(messages.size() - 1).getTimestamp();
+            List<String> newestIds = new ArrayList<>(newest.equals(coveredUntil) ? coveredIds : List.of());
+            messages.stream().filter(m -> newest.equals(m.getTimestamp())).map(Message::getId).forEach(newestIds::add);
+            updated.setCoveredUntil(newest);
+            updated.setCoveredIds(newestIds);
+            updated.setSummarizedMessages(updated.getSummarizedMessages() + messages.size());
+            updated.setUpdatedAt(Instant.now());
+            conversationSummaryRepository.save(updated);
+            logger.logToFile(userId, "Conversation summary refreshed with " + messages.size() + " messages");
+            return true;
+        } catch (Exception e) {
+            logger.logToFile(userId, "Conversation summary refresh failed: " + e.getMessage());
+            return false;
+        } finally {
+            refreshing.remove(userId);
+        }
+    }
+
+    /**
+     * Runs {@link #refreshIfDue} on this service's own threads. Call it once
+     * the turn's messages are saved.
+     *
+     * @param userId the user ID (Firebase UID)
+     */
+    public void refreshInBackground(String userId) {
+        executor.submit(() -> refreshIfDue(userId));
+    }
+
+    /** One line per message, tagged with its date so the summary can keep events in order. */
+    private static String formatTranscript(List<Message> messages) {
+        StringBuilder transcript = new StringBuilder();
+        for (Message m : messages) {
+            if (m.getTimestamp() != null) {
+                transcript.append('[').append(m.getTimestamp().atZone(ZoneOffset.UTC).toLocalDate()).append("] ");
+            }
+            transcript.append(m.isFromUser() ? "User: " : "Assistant: ").append(m.getText()).append('\n');
+        }
+        return transcript.toString().trim();
+    }
+
+    private static final PromptTemplate SUMMARY = PromptTemplate.of("conversation-summary", """
+            You keep a running summary of the conversation between an older adult and their companion assistant.
+            You will be given the summary so far and the next part of the conversation.
+            Rewrite the summary so it also covers the new part.
+
+            Keep:
+            - Topics discussed and questions the user asked
+            - Events, plans and people the user mentioned, with dates where known
+            - How the user was feeling
+            - Anything the assistant promised or suggested
+
+            Leave out greetings, small talk and exact wording.
+            Write plain sentences about "the user", oldest topics first, in at most 150 words.
+            Reply with the summary only.
+            """, """
+            --- SUMMARY SO FAR ---
+            {{summary}}
+
+            --- NEXT PART OF THE CONVERSATION ---
+            {{transcript}}
+            """);
+}
@@ -5,7 +5,6 @@ import com.example.ai_companion.model.Message;
 import com.example.ai_companion.repository.DailySummaryRepository;
 import com.example.ai_companion.repository.MessageRepository;
 import com.example.ai_companion.utils.logger;
-import dev.langchain4j.model.chat.ChatLanguageModel;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
@@ -29,7 +28,7 @@ public class DailySummaryService {
     private MessageRepository messageRepository;
 
     @Autowired
-    private ChatLanguageModel chatLanguageModel;
+    private LlmRouter llmRouter;
 
     public DailySummary getDailySummary(String userId, LocalDate date) {
         return dailySummaryRepository.findByUserIdAndDate(userId, date).orElse(null);
@@ -81,8 +80,7 @@ public class DailySummaryService {
         String chatHistory = compileChatHistory(messages);
         
         // Generate AI analysis
-        String analysisPrompt = createAnalysisPrompt(chatHistory, date);
-        String aiResponse = chatLanguageModel.chat(analysisPrompt);
+        String aiResponse = createAnalysisPrompt(chatHistory, date).call(llmRouter.model(LlmTask.DAILY_SUMMARY, userId));
 
         // Parse AI response to extract summary, scores, and analysis
         Map<String, Object> parsedResponse = parseAIResponse(aiResponse);
@@ -141,24 +139,28 @@ public class DailySummaryService {
         return history.toString();
     }
 
-    private String createAnalysisPrompt(String chatHistory, LocalDate date) {
-        return String.format(
-            "Analyze the following chat history from %s and provide a comprehensive daily summary. " +
-            "Please respond in the following JSON format:\n" +
-            "{\n" +
-            "  \"summary\": \"A concise summary of what the person did and discussed today\",\n" +
-            "  \"scores\": {\n" +
-            "    \"health\": <score 1-10>,\n" +
-            "    \"exercise\": <score 1-10>,\n" +
-            "    \"mental\": <score 1-10>,\n" +
-            "    \"social\": <score 1-10>,\n" +
-            "    \"productivity\": <score 1-10>\n" +
-            "  },\n" +
-            "  \"analysis\": \"Detailed analysis of their day including mood, activities, and insights\"\n" +
-            "}\n\n" +
-            "Chat History:\n%s",
-            date.toString(), chatHistory
-        );
+    private static final PromptTemplate DAILY_ANALYSIS = PromptTemplate.of("daily-analysis", """
+            Analyze the chat history you are given from one day and provide a comprehensive daily summary. Please respond in the following JSON format:
+            {
+              "summary": "A concise summary of what the person did and discussed today",
+              "scores": {
+                "health": <score 1-10>,
+                "exercise": <score 1-10>,
+                "mental": <score 1-10>,
+                "social": <score 1-10>,
+                "productivity": <score 1-10>
+              },
+              "analysis": "Detailed analysis of their day including mood, activities, and insights"
+            }
+            """, """
+            Date: {{date}}
+
+            Chat History:
+            {{history}}
+            """);
+
+    private PromptTemplate.Rendered createAnalysisPrompt(String chatHistory, LocalDate date) {
+        return DAILY_ANALYSIS.render("date", date, "history", chatHistory);
     }
 
     private Map<String, Object> parseAIResponse(String aiResponse) {
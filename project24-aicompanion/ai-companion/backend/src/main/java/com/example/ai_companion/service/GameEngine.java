@@ -0,0 +1,41 @@
+package com.example.ai_companion.service;
+
+import com.example.ai_companion.model.GamePuzzle;
+import com.example.ai_companion.utils.GameAnswers;
+
+import java.util.List;
+import java.util.Random;
+
+/**
+ * A game whose puzzles have one right answer, so they can be set and marked
+ * locally instead of by the model. Engines are Spring beans picked up by
+ * {@link GameEngineRegistry}; a game session names its engine by {@link #id()}.
+ */
+public interface GameEngine {
+
+    /** Stable id stored on the game session, e.g. {@code sequence}. */
+    String id();
+
+    String title();
+
+    String description();
+
+    /**
+     * Phrases that mark a game description as this kind of game. They are
+     * matched as whole words, so keep them specific: a model-written "find
+     * patterns in sequences" is not a number-sequence game.
+     */
+    List<String> keywords();
+
+    /**
+     * Sets a new puzzle. Levels start at 1; higher levels give harder puzzles.
+     */
+    GamePuzzle newPuzzle(int level, Random random);
+
+    /** Whether the player's reply answers the puzzle. */
+    boolean isCorrect(GamePuzzle puzzle, String reply);
+
+    default boolean matches(String text) {
+        return text != null && keywords().stream().anyMatch(keyword -> GameAnswers.containsWord(text, keyword));
+    }
+}
@@ -0,0 +1,33 @@
+package com.example.ai_companion.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Looks up the local {@link GameEngine}s, by id or by a game's description.
+ */
+@Component
+public class GameEngineRegistry {
+
+    @Autowired
+    private List<GameEngine> engines;
+
+    /** Returns the engine with this id, or null. */
+    public GameEngine find(String id) {
+        if (id == null) {
+            return null;
+        }
+        return engines.stream().filter(e -> e.id().equals(id)).findFirst().orElse(null);
+    }
+
+    /** Returns the first engine whose keywords appear in the text, or null. */
+    public GameEngine match(String text) {
+        return engines.stream().filter(e -> e.matches(text)).findFirst().orElse(null);
+    }
+
+    public List<GameEngine> all() {
+        return List.copyOf(engines);
+    }
+}
@@ -0,0 +1,166 @@
+package com.example.ai_companion.service;
+
+import com.example.ai_companion.model.User;
+import com.example.ai_companion.repository.UserRepository;
+import com.example.ai_companion.utils.logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps a few game previews ready per user so "new game" does not wait on
+ * the model. Taking a preview starts generating its replacement in the
+ * background; at most two previews are generated at a time across all users.
+ * <p>
+ * Previews are written from the user's core information, so each remembers
+ * the profile it was written from and is dropped once the profile changes.
+ * Previews older than {@code games.preview.max-age-minutes} are dropped too,
+ * and buffers of users who stopped playing are cleared by a periodic sweep.
+ */
+@Service
+public class GamePreviewPrefetcher {
+
+    @Autowired
+    private GameService gameService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    // Previews kept ready per user
+    @Value("${games.preview.prefetch:2}")
+    private int depth = 2;
+
+    @Value("${games.preview.max-age-minutes:360}")
+    private long maxAgeMinutes = 360;
+
+    // Bounds concurrent preview generation
+    private static final ExecutorService executor = Executors.newFixedThreadPool(2);
+
+    private record Prefetched(Map<String, String> preview, int profileHash, Instant createdAt) {}
+
+    /** A user's ready previews and the ones being generated; guarded by itself. */
+    private static final class Buffer {
+        final Deque<Prefetched> ready = new ArrayDeque<>();
+        int inFlight;
+        Instant lastUsed = Instant.now();
+    }
+
+    private final Map<String, Buffer> buffers = new ConcurrentHashMap<>();
+
+    private final AtomicLong served = new AtomicLong();
+    private final AtomicLong missed = new AtomicLong();
+    private final AtomicLong generated = new AtomicLong();
+    private final AtomicLong discarded = new AtomicLong();
+
+    /**
+     * Returns a ready preview if there is one, otherwise generates one on the
+     * spot, and tops the user's buffer up in the background either way.
+     */
+    public Map<String, String> next(String userId) {
+        int profileHash = profileHash(userId);
+        Buffer buffer = buffers.computeIfAbsent(userId, id -> new Buffer());
+        Prefetched item;
+        synchronized (buffer) {
+            buffer.lastUsed = Instant.now();
+            dropStale(buffer, profileHash);
+            item = buffer.ready.pollFirst();
+        }
+        refill(userId, buffer, profileHash);
+        if (item != null) {
+            served.incrementAndGet();
+            return new HashMap<>(item.preview());
+        }
+        missed.incrementAndGet();
+        return gameService.generateGamePreview(userId, LlmTask.GAME_MASTER);
+    }
+
+    /** Fills the user's buffer ahead of their first "new game", e.g. when they open the games list. */
+    public void prefetch(String userId) {
+        Buffer buffer = buffers.computeIfAbsent(userId, id -> new Buffer());
+        synchronized (buffer) {
+            buffer.lastUsed = Instant.now();
+        }
+        refill(userId, buffer, profileHash(userId));
+    }
+
+    private void refill(String userId, Buffer buffer, int profileHash) {
+        int missing;
+        synchronized (buffer) {
+            missing = depth - buffer.ready.size() - buffer.inFlight;
+            if (missing <= 0) {
+                return;
+            }
+            buffer.inFlight += missing;
+        }
+        for (int i = 0; i < missing; i++) {
+            executor.submit(() -> generate(userId, buffer, profileHash));
+        }
+    }
+
+    private void generate(String userId, Buffer buffer, int profileHash) {
+        try {
+            Map<String, String> preview = gameService.generateGamePreview(userId, LlmTask.GAME_PREVIEW);
+            synchronized (buffer) {
+                buffer.ready.addLast(new Prefetched(preview, profileHash, Instant.now()));
+                generated.incrementAndGet();
+            }
+        } catch (Exception e) {
+            logger.logToFile(userId, "Game preview prefetch failed: " + e.getMessage());
+        } finally {
+            synchronized (buffer) {
+                buffer.inFlight--;
+            }
+        }
+    }
+
+    private void dropStale(Buffer buffer, int profileHash) {
+        Instant oldest = Instant.now().minus(Duration.ofMinutes(maxAgeMinutes));
+        int before = buffer.ready.size();
+        buffer.ready.removeIf(p -> p.profileHash() != profileHash || p.createdAt().isBefore(oldest));
+        discarded.addAndGet(before - buffer.ready.size());
+    }
+
+    // The preview prompt is built from the core information alone, so only that invalidates a preview
+    private int profileHash(String userId) {
+        User user = userRepository.findById(userId).orElse(null);
+        return Objects.hashCode(user != null ? user.getCoreInformation() : null);
+    }
+
+    /** Clears the buffers of users who have not asked for a preview within the max age. */
+    @Scheduled(fixedDelayString = "${games.preview.sweep-ms:600000}")
+    public void sweep() {
+        Instant idleSince = Instant.now().minus(Duration.ofMinutes(maxAgeMinutes));
+        buffers.entrySet().removeIf(entry -> {
+            synchronized (entry.getValue()) {
+                return entry.getValue().inFlight == 0 && entry.getValue().lastUsed.isBefore(idleSince);
+            }
+        });
+    }
+
+    /** {@code hitRate} is the share of previews served without waiting on the model. */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        long requests = served.get() + missed.get();
+        stats.put("users", buffers.size());
+        stats.put("served", served.get());
+        stats.put("missed", missed.get());
+        stats.put("hitRate", requests == 0 ? 0.0 : (double) served.get() / requests);
+        stats.put("generated", generated.get());
+        stats.put("discarded", discarded.get());
+        return stats;
+    }
+}
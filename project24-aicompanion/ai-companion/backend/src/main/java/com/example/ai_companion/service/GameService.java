@@ -1,20 +1,35 @@
 package com.example.ai_companion.service;
 
 import com.example.ai_companion.model.GameMessage;
+import com.example.ai_companion.model.GamePuzzle;
 import com.example.ai_companion.model.GameSession;
+import com.example.ai_companion.model.GameState;
 import com.example.ai_companion.model.User;
 import com.example.ai_companion.repository.GameMessageRepository;
 import com.example.ai_companion.repository.GameSessionRepository;
 import com.example.ai_companion.repository.UserRepository;
+import com.example.ai_companion.utils.GameAnswers;
 import com.example.ai_companion.utils.logger;
-import dev.langchain4j.model.chat.ChatLanguageModel;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.stereotype.Service;
 
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 /**
  * Service for managing cognitive game sessions and interactions.
@@ -23,7 +38,7 @@ import java.util.Map;
 public class GameService {
 
     @Autowired
-    private ChatLanguageModel gemini;
+    private LlmRouter llmRouter;
 
     @Autowired
     private GameSessionRepository gameSessionRepository;
@@ -34,20 +49,51 @@ public class GameService {
     @Autowired
     private UserRepository userRepository;
 
-    /**
-     * Generates a game preview without creating a session.
-     */
-    public Map<String, String> generateGamePreview(String userId) {
-        // Get user profile for personalized games
-        User user = userRepository.findById(userId).orElse(null);
-        String userProfile = (user != null && user.getCoreInformation() != null) ? user.getCoreInformation() : "";
-        
-                String prompt = """
+    @Autowired
+    private LlmResponseCache llmResponseCache;
+
+    @Autowired
+    private GameEngineRegistry gameEngineRegistry;
+
+    // Whether the model rewords local verdicts; templates are used otherwise
+    @Value("${games.engine.llm-feedback:false}")
+    private boolean llmFeedback;
+
+    // Whether generated and custom games are handed to a local engine when their description fits one
+    // Off by default: model-written titles match too loosely, so engines are picked by gameType
+    @Value("${games.engine.match-descriptions:false}")
+    private boolean matchDescriptions;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    // Lines of conversation kept in the game state, and their length
+    private static final int RECENT_TURN_LINES = 6;
+    private static final int MAX_TURN_LINE_CHARS = 500;
+    private static final int MAX_SUMMARY_CHARS = 400;
+
+    // Times a turn is played again after losing to an overlapping turn
+    private static final int MAX_TURN_ATTEMPTS = 2;
+
+    // Any line starting with STATE:, wherever the model put it
+    private static final Pattern STATE_LINE = Pattern.compile("(?m)^[ \\t]*STATE:(.*)(?:\\R|$)");
+
+    // Correct answers per level, and wrong answers before a puzzle is revealed
+    private static final int ANSWERS_PER_LEVEL = 3;
+    private static final int MAX_ATTEMPTS = 2;
+
+    private static final List<String> PRAISE = List.of(
+            "That's right, well done!", "Spot on!", "Excellent, that's correct!", "Yes, you got it!");
+
+    private static final List<String> GIVE_UP_PHRASES = List.of(
+            "skip", "pass", "give up", "i give up", "tell me", "don t know", "dont know", "no idea", "next one");
+
+    private static final PromptTemplate GAME_PREVIEW = PromptTemplate.of("game-preview", """
             You are a game designer creating diverse cognitive games for elderly users. 
             IMPORTANT: Avoid memory/storytelling games. Create something completely different each time.
 
-            User Profile: %s
-
             CRITICAL: Choose a RANDOM category from this list (don't always pick the first few):
             1. Logic & Problem-Solving Games
             2. Pattern Recognition & Sequences  
@@ -106,9 +152,127 @@ public class GameService {
                 "title": "Creative Game Title",
                 "description": "Brief description (2-3 sentences max)"
             }
-            """.formatted(userProfile);
+            """, """
+            User Profile: {{profile}}
+            """);
+
+    private static final PromptTemplate PROFILE_GAME = PromptTemplate.of("profile-game", """
+            You are a cognitive game master. Create a fun, engaging game for an elderly user.
+
+            Generate a game that is:
+            - Mentally stimulating but not overwhelming
+            - Fun and engaging
+            - Appropriate for elderly users
+            - Can be played through conversation
+
+            Return ONLY a JSON object with:
+            {
+                "title": "Game Title",
+                "description": "Brief description of the game"
+            }
+            """, """
+            User Profile: {{profile}}
+            """);
+
+    private static final PromptTemplate CUSTOM_GAME = PromptTemplate.of("custom-game", """
+            You are a cognitive game master. Create a game based on the user's description.
+
+            Generate a game that matches their request while being:
+            - Mentally stimulating
+            - Fun and engaging
+            - Appropriate for elderly users
+            - Can be played through conversation
+
+            Return ONLY a JSON object with:
+            {
+                "title": "Game Title",
+                "description": "Brief description of the game"
+            }
+            """, """
+            User Description: {{description}}
+            User Profile: {{profile}}
+            """);
+
+    private static final PromptTemplate GAME_TURN = PromptTemplate.of("game-turn", """
+            You are an AI-powered Cognitive Game Master hosting a conversational game for an elderly user.
+
+            Your role is to:
+            - Keep the game engaging and fun
+            - Provide appropriate challenges
+            - Give encouraging feedback
+            - Adapt difficulty based on user responses
+            - Keep responses conversational and warm
+
+            Respond as the game master, continuing the game naturally. Keep your response engaging and game-focused.
+
+            After your response, add one last line that the user will not see, in exactly this form:
+            STATE: {"score": <points so far>, "level": <difficulty, 1 or more>, "puzzle": "<the question the user should answer next, or empty>", "summary": "<one or two sentences on how the game has gone so far>"}
+            """, """
+            Game: "{{title}}"
+            Game Description: {{description}}
+            Game Type: {{gameType}}
+
+            User Profile: {{profile}}
+
+            Game State: score {{score}}, level {{level}}
+            Current Puzzle: {{puzzle}}
+            Summary So Far: {{summary}}
+
+            Recent Game Context (oldest first):
+            {{context}}
+
+            User's Latest Message: "{{message}}"
+            """);
+
+    private static final PromptTemplate GAME_OPENING = PromptTemplate.of("game-opening", """
+            You are starting a new cognitive game.
+
+            Create an engaging opening message that:
+            - Welcomes the user warmly
+            - Explains the game in an exciting way
+            - Gives clear instructions on how to play
+            - Invites the user to start participating
+            - Sets a positive, encouraging tone
+            - Is conversational and friendly
 
-        String response = gemini.chat(prompt);
+            Keep the message concise but engaging (2-3 sentences maximum).
+            Don't ask multiple questions - just one clear invitation to start.
+
+            Example tone: "Welcome to [Game Name]! I'm excited to play this [description] with you. [Simple instruction]. Let's begin!"
+            """, """
+            Game: "{{title}}"
+            Game Description: {{description}}
+            Game Type: {{gameType}}
+            """);
+
+    private static final PromptTemplate GAME_FEEDBACK = PromptTemplate.of("game-feedback", """
+            You are a warm, encouraging game host playing a puzzle game with an elderly user.
+            Reword the verdict below in one or two short, friendly sentences.
+            Keep every fact and number as given. Do not ask a question or set a new puzzle.
+            """, """
+            Game: "{{title}}"
+            Verdict: {{verdict}}
+            """);
+
+    /**
+     * Generates a game preview without creating a session.
+     */
+    public Map<String, String> generateGamePreview(String userId) {
+        return generateGamePreview(userId, LlmTask.GAME_MASTER);
+    }
+
+    /**
+     * Generates a game preview on the given task's model and lane, e.g.
+     * {@link LlmTask#GAME_PREVIEW} when no user is waiting for it.
+     */
+    public Map<String, String> generateGamePreview(String userId, LlmTask task) {
+        // Get user profile for personalized games
+        User user = userRepository.findById(userId).orElse(null);
+        String userProfile = (user != null && user.getCoreInformation() != null) ? user.getCoreInformation() : "";
+        
+        PromptTemplate.Rendered prompt = GAME_PREVIEW.render("profile", userProfile);
+
+        String response = llmResponseCache.getOrCompute(LlmResponseCache.UseCase.GAME_PREVIEW, prompt.text(), () -> prompt.call(llmRouter.model(task, userId)));
         String title = extractJsonValue(response, "title");
         String description = extractJsonValue(response, "description");
 
@@ -128,8 +292,12 @@ public class GameService {
 
         String title;
         String description;
+        GameEngine engine = gameEngineRegistry.find(gameType);
 
-        if ("generated".equals(gameType)) {
+        if (engine != null) {
+            title = engine.title();
+            description = engine.description();
+        } else if ("generated".equals(gameType)) {
             // Check if userDescription contains preview data (format: "Title: Description")
             if (userDescription != null && !userDescription.trim().isEmpty() && userDescription.contains(":")) {
                 // Extract title and description from the preview data
@@ -138,60 +306,42 @@ public class GameService {
                 description = parts[1].trim();
             } else {
                 // Generate a game based on user profile (fallback)
-                String prompt = """
-                    You are a cognitive game master. Create a fun, engaging game for an elderly user.
-                    
-                    User Profile: %s
-                    
-                    Generate a game that is:
-                    - Mentally stimulating but not overwhelming
-                    - Fun and engaging
-                    - Appropriate for elderly users
-                    - Can be played through conversation
-
-                    Return ONLY a JSON object with:
-                    {
-                        "title": "Game Title",
-                        "description": "Brief description of the game"
-                    }
-                    """.formatted(coreInfo);
-
-                String response = gemini.chat(prompt);
+                PromptTemplate.Rendered prompt = PROFILE_GAME.render("profile", coreInfo);
+
+                String response = prompt.call(llmRouter.model(LlmTask.GAME_MASTER, userId));
                 // Simple JSON parsing (in production, use proper JSON library)
                 title = extractJsonValue(response, "title");
                 description = extractJsonValue(response, "description");
             }
         } else {
             // Custom game based on user description
-            String prompt = """
-                You are a cognitive game master. Create a game based on the user's description.
-                
-                User Description: %s
-                User Profile: %s
-                
-                Generate a game that matches their request while being:
-                - Mentally stimulating
-                - Fun and engaging
-                - Appropriate for elderly users
-                - Can be played through conversation
-
-                Return ONLY a JSON object with:
-                {
-                    "title": "Game Title",
-                    "description": "Brief description of the game"
-                }
-                """.formatted(userDescription, coreInfo);
-
-            String response = gemini.chat(prompt);
+            PromptTemplate.Rendered prompt = CUSTOM_GAME.render("description", userDescription, "profile", coreInfo);
+
+            String response = prompt.call(llmRouter.model(LlmTask.GAME_MASTER, userId));
             title = extractJsonValue(response, "title");
             description = extractJsonValue(response, "description");
         }
 
+        if (engine == null && matchDescriptions) {
+            engine = gameEngineRegistry.match(title + " " + description);
+        }
+
         GameSession gameSession = new GameSession(userId, title, description, gameType, userDescription);
-        gameSession = gameSessionRepository.save(gameSession);
-        
+        // Not in the constructor: Mongo reads go through it too, and a session
+        // stored before game states existed must come back without one
+        GameState state = new GameState();
+        gameSession.setState(state);
+        state.setProfile(coreInfo);
+        if (engine != null) {
+            state.setEngine(engine.id());
+            state.setPuzzle(engine.newPuzzle(state.getLevel(), ThreadLocalRandom.current()));
+        }
+
         // Create an initial AI message to start the game
-        String initialMessage = generateInitialGameMessage(gameSession);
+        String initialMessage = engine != null ? localOpening(gameSession) : generateInitialGameMessage(gameSession);
+        remember(state, "Assistant", initialMessage);
+        gameSession = gameSessionRepository.save(gameSession);
+
         GameMessage aiMessage = new GameMessage(gameSession.getId(), userId, initialMessage, false, Instant.now());
         gameMessageRepository.save(aiMessage);
         
@@ -200,73 +350,206 @@ public class GameService {
 
     /**
      * Handles a user message in a game session and returns AI response.
+     * <p>
+     * The turn is played from the session's {@link GameState} alone. The new
+     * state is written with one conditional update, and only then are both
+     * messages inserted together. If another turn of the same game was
+     * written in the meantime, the turn is played again from the newer state.
      */
     public String processGameMessage(String gameSessionId, String userId, String message) {
-        GameSession gameSession = gameSessionRepository.findById(gameSessionId).orElse(null);
-        if (gameSession == null) {
-            return "Game session not found.";
+        for (int attempt = 1; ; attempt++) {
+            GameSession gameSession = gameSessionRepository.findById(gameSessionId).orElse(null);
+            if (gameSession == null) {
+                return "Game session not found.";
+            }
+            GameState state = gameSession.getState() != null ? gameSession.getState() : rebuildState(gameSession, userId);
+            long readVersion = state.getVersion();
+
+            GameEngine engine = gameEngineRegistry.find(state.getEngine());
+            String response = engine != null && state.getPuzzle() != null
+                    ? playLocalTurn(gameSession, state, engine, userId, message)
+                    : playModelTurn(gameSession, state, userId, message);
+
+            remember(state, "User", message);
+            remember(state, "Assistant", response);
+            if (commitTurn(gameSessionId, state, readVersion)) {
+                Instant now = Instant.now();
+                gameMessageRepository.insert(List.of(
+                        new GameMessage(gameSessionId, userId, message, true, now),
+                        new GameMessage(gameSessionId, userId, response, false, now.plusMillis(1))));
+                return response;
+            }
+            logger.logToFile(userId, "Game turn conflicted with another turn of " + gameSessionId + " (attempt " + attempt + ")");
+            if (attempt >= MAX_TURN_ATTEMPTS) {
+                return "Sorry, I lost track of our game for a moment. Could you say that again?";
+            }
         }
+    }
 
-        User user = userRepository.findById(userId).orElse(null);
-        String coreInfo = (user != null && user.getCoreInformation() != null) ? user.getCoreInformation() : "none";
+    /**
+     * Writes the state if it is still at the version the turn was played
+     * from, bumping the version and the session's activity time with it.
+     */
+    private boolean commitTurn(String gameSessionId, GameState state, long readVersion) {
+        state.setVersion(readVersion + 1);
+        Criteria version = readVersion == 0
+                ? Criteria.where("state.version").in(0L, null)
+                : Criteria.where("state.version").is(readVersion);
+        Query query = new Query(Criteria.where("_id").is(gameSessionId).andOperator(version));
+        Update update = new Update().set("state", state).set("lastActivityAt", Instant.now());
+        return mongoTemplate.updateFirst(query, update, GameSession.class).getModifiedCount() > 0;
+    }
 
-        // Get recent game messages for context
-        List<GameMessage> recentMessages = gameMessageRepository.findTop10ByGameSessionIdOrderByTimestampDesc(gameSessionId);
-        StringBuilder context = new StringBuilder();
+    /**
+     * Builds the state of a session created before game states existed,
+     * from the user's profile and the session's last messages.
+     */
+    private GameState rebuildState(GameSession gameSession, String userId) {
+        User user = userRepository.findById(userId).orElse(null);
+        GameState state = new GameState();
+        state.setProfile((user != null && user.getCoreInformation() != null) ? user.getCoreInformation() : "none");
+        List<GameMessage> recentMessages = new ArrayList<>(gameMessageRepository.findTop10ByGameSessionIdOrderByTimestampDesc(gameSession.getId()));
+        Collections.reverse(recentMessages);
         for (GameMessage gameMessage : recentMessages) {
-            if (gameMessage.isFromUser()) {
-                context.append("User: ").append(gameMessage.getText()).append("\n");
-            } else {
-                context.append("Assistant: ").append(gameMessage.getText()).append("\n");
-            }
+            remember(state, gameMessage.isFromUser() ? "User" : "Assistant", gameMessage.getText());
         }
+        return state;
+    }
 
-        String prompt = """
-            You are an AI-powered Cognitive Game Master hosting a game called "%s".
-            
-            Game Description: %s
-            Game Type: %s
-            
-            Your role is to:
-            - Keep the game engaging and fun
-            - Provide appropriate challenges
-            - Give encouraging feedback
-            - Adapt difficulty based on user responses
-            - Keep responses conversational and warm
-            
-            User Profile: %s
-            
-            Recent Game Context:
-            %s
-            
-            User's Latest Message: "%s"
-            
-            Respond as the game master, continuing the game naturally. Keep your response engaging and game-focused.
-            """.formatted(
-                gameSession.getTitle(),
-                gameSession.getDescription(),
-                gameSession.getGameType(),
-                coreInfo,
-                context.toString(),
-                message
-            );
-
-        String response = gemini.chat(prompt);
-        logger.logToFile(userId, "Game Prompt: " + prompt);
+    /** Appends a line to the state's recent turns, keeping only the last few. */
+    private static void remember(GameState state, String speaker, String text) {
+        String line = speaker + ": " + (text == null ? "" : text.strip());
+        if (line.length() > MAX_TURN_LINE_CHARS) {
+            line = line.substring(0, MAX_TURN_LINE_CHARS) + "...";
+        }
+        List<String> turns = state.getRecentTurns() != null ? new ArrayList<>(state.getRecentTurns()) : new ArrayList<>();
+        turns.add(line);
+        state.setRecentTurns(new ArrayList<>(turns.subList(Math.max(0, turns.size() - RECENT_TURN_LINES), turns.size())));
+    }
+
+    /**
+     * Plays a turn with the model. The model also returns the updated score,
+     * level, puzzle and summary on a {@code STATE:} line. The last such line
+     * is read, and every one is taken off before the reply is shown.
+     */
+    private String playModelTurn(GameSession gameSession, GameState state, String userId, String message) {
+        PromptTemplate.Rendered prompt = GAME_TURN.render(
+                "title", gameSession.getTitle(),
+                "description", gameSession.getDescription(),
+                "gameType", gameSession.getGameType(),
+                "profile", state.getProfile() != null ? state.getProfile() : "none",
+                "score", state.getScore(),
+                "level", state.getLevel(),
+                "puzzle", state.getPuzzle() != null ? state.getPuzzle().getQuestion() : "none",
+                "summary", state.getSummary() != null ? state.getSummary() : "The game has just started.",
+                "context", String.join("\n", state.getRecentTurns() != null ? state.getRecentTurns() : List.of()),
+                "message", message);
+
+        String response = prompt.call(llmRouter.model(LlmTask.GAME_MASTER, userId));
+        logger.logToFile(userId, "Game Prompt: " + prompt.text());
         logger.logToFile(userId, "Game Response: " + response);
 
-        // Save messages
-        GameMessage userMessage = new GameMessage(gameSessionId, userId, message, true, Instant.now());
-        GameMessage assistantMessage = new GameMessage(gameSessionId, userId, response, false, Instant.now());
+        Matcher stateLine = STATE_LINE.matcher(response);
+        String stateJson = null;
+        while (stateLine.find()) {
+            stateJson = stateLine.group(1).strip();
+        }
+        if (stateJson == null) {
+            return response.strip();
+        }
+        try {
+            JsonNode update = objectMapper.readTree(stateJson);
+            state.setScore(Math.max(0, update.path("score").asInt(state.getScore())));
+            state.setLevel(Math.max(1, update.path("level").asInt(state.getLevel())));
+            String puzzle = update.path("puzzle").asText("").strip();
+            state.setPuzzle(puzzle.isEmpty() ? null : new GamePuzzle(puzzle, null, null));
+            String summary = update.path("summary").asText("").strip();
+            if (!summary.isEmpty()) {
+                state.setSummary(summary.length() > MAX_SUMMARY_CHARS ? summary.substring(0, MAX_SUMMARY_CHARS) + "..." : summary);
+            }
+        } catch (Exception e) {
+            logger.logToFile(userId, "Game state line could not be read, keeping previous state: " + e.getMessage());
+        }
+        // The state line is never shown or spoken, even if it did not parse
+        return STATE_LINE.matcher(response).replaceAll("").strip();
+    }
+
+    /**
+     * Plays a turn of a local engine game: marks the answer without the
+     * model, then sets the next puzzle once this one is solved or revealed.
+     * A wrong answer gets the hint first; the puzzle is revealed after
+     * {@link #MAX_ATTEMPTS} wrong answers or when the player gives up.
+     */
+    private String playLocalTurn(GameSession gameSession, GameState state, GameEngine engine, String userId, String message) {
+        GamePuzzle puzzle = state.getPuzzle();
+        String verdict;
+        boolean nextPuzzle = true;
+
+        if (engine.isCorrect(puzzle, message)) {
+            state.setScore(state.getScore() + 1);
+            verdict = PRAISE.get(ThreadLocalRandom.current().nextInt(PRAISE.size()))
+                    + " Your score is now " + state.getScore() + ".";
+            int level = 1 + state.getScore() / ANSWERS_PER_LEVEL;
+            if (level > state.getLevel()) {
+                state.setLevel(level);
+                verdict += " You're doing so well that I'll make the next one a little harder.";
+            }
+        } else if (GameAnswers.containsWord(message, "hint")) {
+            verdict = "Here's a hint: " + puzzle.getHint();
+            nextPuzzle = false;
+        } else if (GIVE_UP_PHRASES.stream().anyMatch(phrase -> GameAnswers.containsWord(message, phrase))) {
+            verdict = "No problem at all. The answer was " + puzzle.getAnswer() + ".";
+        } else {
+            puzzle.setAttempts(puzzle.getAttempts() + 1);
+            if (puzzle.getAttempts() >= MAX_ATTEMPTS) {
+                verdict = "Not quite, but good try! The answer was " + puzzle.getAnswer() + ".";
+            } else {
+                verdict = "Not quite, have another go. Here's a hint: " + puzzle.getHint();
+                nextPuzzle = false;
+            }
+        }
 
-        gameMessageRepository.save(userMessage);
-        gameMessageRepository.save(assistantMessage);
+        if (nextPuzzle) {
+            state.setPuzzle(engine.newPuzzle(state.getLevel(), ThreadLocalRandom.current()));
+        }
+        logger.logToFile(userId, "Game turn marked locally by " + engine.id() + ": " + verdict);
+        return phrase(gameSession, userId, verdict)
+                + (nextPuzzle ? "\n\nNext one: " : "\n\n") + state.getPuzzle().getQuestion();
+    }
 
-        // Update session activity
-        gameSession.setLastActivityAt(Instant.now());
-        gameSessionRepository.save(gameSession);
+    /** Has the model reword a verdict when enabled, keeping the template on failure. */
+    private String phrase(GameSession gameSession, String userId, String verdict) {
+        if (!llmFeedback) {
+            return verdict;
+        }
+        try {
+            PromptTemplate.Rendered prompt = GAME_FEEDBACK.render("title", gameSession.getTitle(), "verdict", verdict);
+            return prompt.call(llmRouter.model(LlmTask.GAME_MASTER, userId)).trim();
+        } catch (Exception e) {
+            logger.logToFile(userId, "Game feedback wording failed, using template: " + e.getMessage());
+            return verdict;
+        }
+    }
 
-        return response;
+    private String localOpening(GameSession gameSession) {
+        return "Welcome to " + gameSession.getTitle() + "! " + gameSession.getDescription()
+                + " Just type your answer, ask for a hint, or say \"skip\" to move on. Here's the first one:\n\n"
+                + gameSession.getState().getPuzzle().getQuestion();
+    }
+
+    /**
+     * Lists the games that are played without the model, for starting one directly.
+     */
+    public List<Map<String, String>> getLocalGames() {
+        return gameEngineRegistry.all().stream()
+                .map(engine -> {
+                    Map<String, String> game = new LinkedHashMap<>();
+                    game.put("gameType", engine.id());
+                    game.put("title", engine.title());
+                    game.put("description", engine.description());
+                    return game;
+                })
+                .toList();
     }
 
     /**
@@ -280,32 +563,13 @@ public class GameService {
      * Generates an initial message to start the game.
      */
     private String generateInitialGameMessage(GameSession gameSession) {
-        String prompt = """
-            You are starting a new cognitive game called "%s".
-            
-            Game Description: %s
-            Game Type: %s
-            
-            Create an engaging opening message that:
-            - Welcomes the user warmly
-            - Explains the game in an exciting way
-            - Gives clear instructions on how to play
-            - Invites the user to start participating
-            - Sets a positive, encouraging tone
-            - Is conversational and friendly
-            
-            Keep the message concise but engaging (2-3 sentences maximum).
-            Don't ask multiple questions - just one clear invitation to start.
-            
-            Example tone: "Welcome to [Game Name]! I'm excited to play this [description] with you. [Simple instruction]. Let's begin!"
-            """.formatted(
-                gameSession.getTitle(),
-                gameSession.getDescription(),
-                gameSession.getGameType()
-            );
-
-        String response = gemini.chat(prompt);
-        logger.logToFile(gameSession.getUserId(), "Initial Game Message Prompt: " + prompt);
+        PromptTemplate.Rendered prompt = GAME_OPENING.render(
+                "title", gameSession.getTitle(),
+                "description", gameSession.getDescription(),
+                "gameType", gameSession.getGameType());
+
+        String response = llmResponseCache.getOrCompute(LlmResponseCache.UseCase.GAME_OPENING, prompt.text(), () -> prompt.call(llmRouter.model(LlmTask.GAME_MASTER, gameSession.getUserId())));
+        logger.logToFile(gameSession.getUserId(), "Initial Game Message Prompt: " + prompt.text());
         logger.logToFile(gameSession.getUserId(), "Initial Game Message Response: " + response);
         
         return response;
@@ -326,17 +590,30 @@ public class GameService {
     }
 
     /**
-     * Deletes a game session and all its messages.
+     * Deletes a game session and all its messages. The messages are removed
+     * by one delete-by-query on the database, without loading them.
      */
     public void deleteGameSession(String gameSessionId) {
         // Delete all messages first
-        List<GameMessage> messages = gameMessageRepository.findByGameSessionIdOrderByTimestampAsc(gameSessionId);
-        gameMessageRepository.deleteAll(messages);
+        gameMessageRepository.deleteByGameSessionId(gameSessionId);
         
         // Delete the session
         gameSessionRepository.deleteById(gameSessionId);
     }
 
+    /**
+     * Deletes all of a user's game sessions and their messages, each with
+     * one delete-by-query.
+     *
+     * @return the number of sessions deleted
+     */
+    public long deleteUserGameSessions(String userId) {
+        long messages = gameMessageRepository.deleteByUserId(userId);
+        long sessions = gameSessionRepository.deleteByUserId(userId);
+        logger.logToFile(userId, "Deleted " + sessions + " game sessions and " + messages + " game messages");
+        return sessions;
+    }
+
     /**
      * Simple JSON value extraction (for demo purposes).
      */
@@ -0,0 +1,290 @@
+package com.example.ai_companion.service;
+
+import com.example.ai_companion.model.Greeting;
+import com.example.ai_companion.model.Message;
+import com.example.ai_companion.model.User;
+import com.example.ai_companion.repository.GreetingRepository;
+import com.example.ai_companion.repository.MessageRepository;
+import com.example.ai_companion.repository.UserRepository;
+import com.example.ai_companion.utils.logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Greets the user when they open the app. Once a conversation has been idle
+ * for {@code greetings.idle-minutes}, the next greeting is written ahead of
+ * time in one version per {@link TimeBucket}, so the app-open request can be
+ * answered without waiting on the model. A prepared greeting is served while
+ * the user's newest message is still the one it was written after; if only
+ * the profile has changed since, it is still served and rewritten in the
+ * background. Otherwise the greeting is generated on the spot.
+ */
+@Service
+public class GreetingService {
+
+    /** How long ago the last conversation was, as the greeting phrases it. */
+    public enum TimeBucket {
+        FIRST(null),
+        JUST_NOW("just a few minutes ago"),
+        HOUR("about an hour ago"),
+        HOURS("a few hours ago"),
+        YESTERDAY("yesterday"),
+        DAYS("a few days ago"),
+        WEEKS("over a week ago");
+
+        private final String phrase;
+
+        TimeBucket(String phrase) {
+            this.phrase = phrase;
+        }
+
+        public String getPhrase() { return phrase; }
+
+        public static TimeBucket since(Duration elapsed) {
+            long minutes = elapsed.toMinutes();
+            if (minutes < 60) return JUST_NOW;
+            if (minutes < 120) return HOUR;
+            if (minutes < 1440) return HOURS;
+            if (minutes < 2 * 1440) return YESTERDAY;
+            if (minutes < 7 * 1440) return DAYS;
+            return WEEKS;
+        }
+    }
+
+    private static final Pattern VERSION_LINE = Pattern.compile("^\\s*\\[(\\w+)]\\s*(.+)$");
+
+    @Autowired private UserRepository userRepository;
+    @Autowired private MessageRepository messageRepository;
+    @Autowired private GreetingRepository greetingRepository;
+    @Autowired private LLMService llmService;
+    @Autowired private LlmRouter llmRouter;
+
+    // Quiet time after the last message before the conversation counts as over
+    @Value("${greetings.idle-minutes:10}")
+    private long idleMinutes = 10;
+
+    // Last message time of users whose next greeting has not been prepared yet
+    private final Map<String, Instant> lastActivity = new ConcurrentHashMap<>();
+    private final Set<String> preparing = ConcurrentHashMap.newKeySet();
+
+    private static final ExecutorService executor = Executors.newFixedThreadPool(2);
+
+    /** What a greeting is written from. */
+    private record Context(String name, String coreInfo, List<Message> history, Instant basis, int profileHash) {
+        boolean isFirst() {
+            return history.isEmpty();
+        }
+    }
+
+    /**
+     * Returns the greeting for the user opening the app, prepared if possible.
+     *
+     * @param userId      the user ID (Firebase UID)
+     * @param logFilename timing log file, or null
+     */
+    public String getGreeting(String userId, String logFilename) {
+        Context context = loadContext(userId);
+        TimeBucket bucket = context.isFirst() ? TimeBucket.FIRST : TimeBucket.since(Duration.between(context.basis(), Instant.now()));
+        Greeting prepared = greetingRepository.findById(userId).orElse(null);
+        if (prepared != null && Objects.equals(prepared.getBasis(), context.basis())
+                && prepared.getTexts() != null && prepared.getTexts().get(bucket.name()) != null) {
+            if (prepared.getProfileHash() != context.profileHash()) {
+                // Still about the right conversation; refresh for next time
+                prepareAsync(userId);
+            }
+            if (logFilename != null) logger.logToFile(logFilename, "[Greeting] Served prepared " + bucket + " greeting");
+            return prepared.getTexts().get(bucket.name());
+        }
+        if (logFilename != null) logger.logToFile(logFilename, "[Greeting] No prepared " + bucket + " greeting, generating");
+        return llmService.generateResponse(buildGreetingPrompt(context, bucket));
+    }
+
+    /**
+     * Records that the user's conversation moved on, so their next greeting
+     * is prepared once it has been idle long enough.
+     */
+    public void noteActivity(String userId) {
+        lastActivity.put(userId, Instant.now());
+    }
+
+    /** Prepares greetings for users whose conversation has gone quiet. */
+    @Scheduled(fixedDelayString = "${greetings.sweep-ms:60000}")
+    public void sweep() {
+        Instant idleSince = Instant.now().minus(Duration.ofMinutes(idleMinutes));
+        for (Map.Entry<String, Instant> entry : lastActivity.entrySet()) {
+            if (entry.getValue().isBefore(idleSince) && lastActivity.remove(entry.getKey(), entry.getValue())) {
+                prepareAsync(entry.getKey());
+            }
+        }
+    }
+
+    private void prepareAsync(String userId) {
+        if (!preparing.add(userId)) {
+            return;
+        }
+        executor.submit(() -> {
+            try {
+                prepare(userId);
+            } finally {
+                preparing.remove(userId);
+            }
+        });
+    }
+
+    /**
+     * Writes the user's next greeting in one version per time bucket, in a
+     * single model call, unless the stored versions are still current.
+     *
+     * @return true if new greetings were stored
+     */
+    public boolean prepare(String userId) {
+        try {
+            Context context = loadContext(userId);
+            if (context.isFirst()) {
+                return false;
+            }
+            Greeting current = greetingRepository.findById(userId).orElse(null);
+            if (current != null && Objects.equals(current.getBasis(), context.basis()) && current.getProfileHash() == context.profileHash()) {
+                return false;
+            }
+
+            StringBuilder versions = new StringBuilder();
+            for (TimeBucket bucket : TimeBucket.values()) {
+                if (bucket != TimeBucket.FIRST) {
+                    versions.append('[').append(bucket.name()).append("] the last conversation was ").append(bucket.getPhrase()).append('\n');
+                }
+            }
+            String response = PREPARED_GREETINGS.render(
+                    "name", context.name(),
+                    "coreInfo", context.coreInfo().isEmpty() ? "none" : context.coreInfo(),
+                    "history", formatHistory(context.history()),
+                    "versions", versions.toString().trim())
+                    .call(llmRouter.model(LlmTask.GREETING, userId));
+            Map<String, String> texts = parseVersions(response);
+            if (texts.isEmpty()) {
+                logger.logToFile(userId, "Greeting preparation returned no usable versions: " + response);
+                return false;
+            }
+
+            Greeting greeting = new Greeting();
+            greeting.setUserId(userId);
+            greeting.setBasis(context.basis());
+            greeting.setProfileHash(context.profileHash());
+            greeting.setTexts(texts);
+            greeting.setGeneratedAt(Instant.now());
+            greetingRepository.save(greeting);
+            logger.logToFile(userId, "Prepared greetings for " + texts.keySet());
+            return true;
+        } catch (Exception e) {
+            logger.logToFile(userId, "Greeting preparation failed: " + e.getMessage());
+            return false;
+        }
+    }
+
+    private Context loadContext(String userId) {
+        List<Message> recent = messageRepository.findTop10ByUserIdOrderByTimestampDesc(userId);
+        List<Message> history = recent != null ? new ArrayList<>(recent) : new ArrayList<>();
+        history.sort(Comparator.comparing(Message::getTimestamp));
+        User user = userRepository.findByFirebaseUid(userId);
+        String name = user != null && user.getFullName() != null ? user.getFullName() : "there";
+        String coreInfo = user != null && user.getCoreInformation() != null ? user.getCoreInformation() : "";
+        Instant basis = history.isEmpty() ? null : history.get(history.size() - 1).getTimestamp();
+        return new Context(name, coreInfo, history, basis, Objects.hash(name, coreInfo));
+    }
+
+    /** Reads {@code [BUCKET] greeting} lines; unknown labels are ignored. */
+    static Map<String, String> parseVersions(String response) {
+        Map<TimeBucket, String> versions = new EnumMap<>(TimeBucket.class);
+        for (String line : response.split("\\r?\\n")) {
+            Matcher m = VERSION_LINE.matcher(line);
+            if (!m.matches()) continue;
+            try {
+                TimeBucket bucket = TimeBucket.valueOf(m.group(1).toUpperCase());
+                if (bucket != TimeBucket.FIRST) {
+                    versions.put(bucket, m.group(2).trim());
+                }
+            } catch (IllegalArgumentException ignored) {
+                // Not one of our labels
+            }
+        }
+        Map<String, String> texts = new LinkedHashMap<>();
+        versions.forEach((bucket, text) -> texts.put(bucket.name(), text));
+        return texts;
+    }
+
+    private static String formatHistory(List<Message> history) {
+        StringBuilder text = new StringBuilder();
+        for (Message m : history) {
+            text.append(m.isFromUser() ? "User: " : "Assistant: ").append(m.getText()).append("\n");
+        }
+        return text.toString();
+    }
+
+    /** The on-the-spot greeting prompt, for when nothing usable was prepared. */
+    private static String buildGreetingPrompt(Context context, TimeBucket bucket) {
+        String profileNote = context.coreInfo().isEmpty() ? "" : ("Consider this profile note: " + context.coreInfo() + ". ");
+        if (bucket == TimeBucket.FIRST) {
+            return "You are a warm, friendly AI companion for elderly care. " +
+                    "Greet the user by name (" + context.name() + ") in a short, gentle way (1-2 sentences). " +
+                    "Offer help and invite them to speak. " +
+                    "End your message by reassuring them that you're always here to help. " +
+                    "Keep it natural and encouraging. " +
+                    profileNote +
+                    "Do not ask multiple questions; one simple invitation is enough. No emojis.";
+        }
+        return "You are a warm, friendly AI companion for elderly care. " +
+                "The user is returning to the app. Greet them warmly by name (" + context.name() + ") and ask how they're doing. " +
+                "Reference something from their last conversation to show you remember and care, using the appropriate time reference. " +
+                "The following are the last few messages from their previous conversation (most recent last):\n" +
+                formatHistory(context.history()) +
+                "\nThe last conversation was " + bucket.getPhrase() + ". " +
+                "Use phrases like 'I remember you were talking about...' or 'How did that go with...' to reference their last topic with the correct time context. " +
+                "Then ask how they're doing and what you can help with. " +
+                "End your message by reassuring them that you're always here to help. " +
+                "Keep it warm and personal (2-3 sentences). " +
+                profileNote +
+                "No emojis.";
+    }
+
+    private static final PromptTemplate PREPARED_GREETINGS = PromptTemplate.of("prepared-greetings", """
+            You are a warm, friendly AI companion for elderly care.
+            Write the greeting the user will hear when they next open the app. You do not know yet when that will be, so write one version for each time since the last conversation listed at the end.
+
+            Each version should:
+            - Greet the user warmly by name
+            - Reference something from their last conversation to show you remember and care, with the matching time reference (e.g. "I remember you were talking about..." or "How did that go with...")
+            - Ask how they're doing and what you can help with
+            - End by reassuring them that you're always here to help
+            - Be warm and personal, 2-3 sentences, with no emojis
+
+            Reply with one line per version: the label in square brackets, then the greeting, e.g.
+            [HOURS] Hello Mary! ...
+            """, """
+            The user's name: {{name}}
+            Profile note: {{coreInfo}}
+
+            Last conversation (most recent last):
+            {{history}}
+
+            Versions to write:
+            {{versions}}
+            """);
+}
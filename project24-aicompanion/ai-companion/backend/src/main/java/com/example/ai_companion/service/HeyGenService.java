@@ -2,11 +2,14 @@ package com.example.ai_companion.service;
 
 import com.example.ai_companion.dto.HeyGenSessionRequest;
 import com.example.ai_companion.dto.HeyGenStartSessionRequest;
+import com.example.ai_companion.dto.HeyGenTextToSpeechRequest;
+import com.example.ai_companion.response.HeyGenAudioResponse;
 import com.example.ai_companion.response.HeyGenSessionResponse;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.*;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.RestTemplate;
+import java.time.Instant;
 import java.util.HashMap;
 import java.util.Map;
 import org.slf4j.Logger;
@@ -23,6 +26,10 @@ public class HeyGenService {
     @Value("${avatar.api.key:}")
     private String apiKey;
 
+    // Non-streaming text-to-speech endpoint; speech synthesis is off when empty
+    @Value("${heygen.tts.url:}")
+    private String ttsUrl;
+
     @PostConstruct
     public void init() {
         // Check if API key is loaded
@@ -39,7 +46,8 @@ public class HeyGenService {
     private static final String START_URL = "https://api.heygen.com/v1/streaming.start";
     private static final String TASK_URL = "https://api.heygen.com/v1/streaming.task";
 
-    private final Map<String, String> userIdToSessionId = new ConcurrentHashMap<>();
+    // When each session was last given something to say
+    private final Map<String, Instant> lastTaskAt = new ConcurrentHashMap<>();
 
     public String createSessionToken() {
         System.out.println("[NEW]:" + apiKey);
@@ -62,25 +70,11 @@ public class HeyGenService {
         throw new RuntimeException("Failed to get HeyGen session token");
     }
 
+    /**
+     * Creates a new streaming session. Which sessions a user holds, and when
+     * they are stopped, is decided by {@link HeyGenSessionManager}.
+     */
     public HeyGenSessionResponse createSession(HeyGenSessionRequest req) {
-        // First, try to close any existing sessions to free up capacity
-        log.info("[HeyGenService] Attempting to close any existing sessions before creating new one");
-        try {
-            // Close all existing sessions in our tracking map
-            for (Map.Entry<String, String> entry : userIdToSessionId.entrySet()) {
-                String sessionId = entry.getValue();
-                if (sessionId != null) {
-                    log.info("[HeyGenService] Closing existing session {} for user {}", sessionId, entry.getKey());
-                    stopSession(sessionId);
-                }
-            }
-            // Clear the tracking map
-            userIdToSessionId.clear();
-            log.info("[HeyGenService] Cleared session tracking map");
-        } catch (Exception e) {
-            log.warn("[HeyGenService] Error while closing existing sessions: {}", e.getMessage());
-        }
-        
         RestTemplate restTemplate = new RestTemplate();
         HttpHeaders headers = new HttpHeaders();
         headers.setContentType(MediaType.APPLICATION_JSON);
@@ -205,20 +199,6 @@ public class HeyGenService {
 
     public HeyGenSessionResponse startSession(String firebaseUid, HeyGenStartSessionRequest req) {
         log.info("[HeyGenService] Starting session for user: {}, sessionId: {}", firebaseUid, req.getSessionId());
-        if (firebaseUid != null) {
-            String previousSessionId = userIdToSessionId.get(firebaseUid);
-            log.info("[HeyGenService] Previous session for user {}: {}", firebaseUid, previousSessionId);
-            if (previousSessionId != null && !previousSessionId.equals(req.getSessionId())) {
-                log.info("[HeyGenService] Closing previous session {} for user {}", previousSessionId, firebaseUid);
-                stopSession(previousSessionId);
-            } else {
-                log.info("[HeyGenService] No previous session to close for user {}", firebaseUid);
-            }
-            userIdToSessionId.put(firebaseUid, req.getSessionId());
-            log.info("[HeyGenService] Updated session mapping for user {}: {}", firebaseUid, req.getSessionId());
-        } else {
-            log.warn("[HeyGenService] No firebaseUid provided, skipping session tracking");
-        }
         RestTemplate restTemplate = new RestTemplate();
         HttpHeaders headers = new HttpHeaders();
         headers.setContentType(MediaType.APPLICATION_JSON);
@@ -265,6 +245,7 @@ public class HeyGenService {
     public Map<String, Object> sendTaskToHeyGen(String sessionId, String text, String taskType, String logFilename) {
         long stepStart = System.currentTimeMillis();
         if (logFilename != null) logger.logToFile(logFilename, "[HeyGenService] SENDING TO HEYGEN: " + text);
+        if (sessionId != null) lastTaskAt.put(sessionId, Instant.now());
         org.springframework.web.client.RestTemplate restTemplate = new org.springframework.web.client.RestTemplate();
         org.springframework.http.HttpHeaders headers = new org.springframework.http.HttpHeaders();
         headers.setContentType(org.springframework.http.MediaType.APPLICATION_JSON);
@@ -304,6 +285,7 @@ public class HeyGenService {
     }
 
     public void stopSession(String sessionId) {
+        if (sessionId != null) lastTaskAt.remove(sessionId);
         RestTemplate restTemplate = new RestTemplate();
         HttpHeaders headers = new HttpHeaders();
         headers.setContentType(MediaType.APPLICATION_JSON);
@@ -340,6 +322,50 @@ public class HeyGenService {
         }
     }
 
+    /**
+     * Synthesizes speech outside a streaming session, for clients that play the
+     * audio themselves. Callers should go through {@link SpokenPhraseCache}.
+     * The endpoint answers with either base64 audio or a URL to fetch it from.
+     */
+    public HeyGenAudioResponse synthesizeSpeech(HeyGenTextToSpeechRequest req) {
+        if (ttsUrl == null || ttsUrl.isEmpty()) {
+            throw new IllegalStateException("Text-to-speech is not configured (heygen.tts.url)");
+        }
+        RestTemplate restTemplate = new RestTemplate();
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        headers.set("x-api-key", apiKey);
+        Map<String, Object> body = new HashMap<>();
+        body.put("text", req.getText());
+        body.put("voice_id", req.getVoiceId());
+        body.put("speed", req.getSpeed());
+        body.put("pitch", req.getPitch());
+        long start = System.currentTimeMillis();
+        ResponseEntity<Map> response = restTemplate.postForEntity(ttsUrl, new HttpEntity<>(body, headers), Map.class);
+        Map<String, Object> data = response.getBody() != null ? (Map<String, Object>) response.getBody().get("data") : null;
+        if (response.getStatusCode() != HttpStatus.OK || data == null) {
+            throw new RuntimeException("Text-to-speech failed: " + response.getBody());
+        }
+
+        String audio = (String) data.get("audio");
+        if (audio == null && data.get("audio_url") != null) {
+            byte[] bytes = restTemplate.getForObject((String) data.get("audio_url"), byte[].class);
+            audio = bytes != null ? java.util.Base64.getEncoder().encodeToString(bytes) : null;
+        }
+        if (audio == null) {
+            throw new RuntimeException("Text-to-speech returned no audio");
+        }
+        Object sampleRate = data.get("sample_rate");
+        log.info("[HeyGenService] Synthesized {} chars in {} ms", req.getText().length(), System.currentTimeMillis() - start);
+        return new HeyGenAudioResponse(req.getSessionId(), audio, (String) data.getOrDefault("format", "mp3"),
+                sampleRate instanceof Number n ? n.intValue() : null, "success", null);
+    }
+
+    /** When a task was last sent from this node, per session. */
+    public Map<String, Instant> getLastTaskTimes() {
+        return Map.copyOf(lastTaskAt);
+    }
+
     public String getApiKey() {
         return apiKey;
     }
@@ -0,0 +1,433 @@
+package com.example.ai_companion.service;
+
+import com.example.ai_companion.dto.HeyGenSessionRequest;
+import com.example.ai_companion.dto.HeyGenStartSessionRequest;
+import com.example.ai_companion.model.AvatarSession;
+import com.example.ai_companion.response.HeyGenSessionResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Owns the lifecycle of HeyGen streaming sessions. Each user holds at most
+ * one session. Opening the avatar again hands back the user's own session
+ * when its settings match, otherwise a prewarmed one, and only then creates
+ * one from scratch; other users' sessions are never touched.
+ *
+ * <p>Up to {@code heygen.sessions.prewarm} sessions are kept created (not
+ * started) for the most recently requested avatar settings, as long as the
+ * total stays within {@code heygen.sessions.capacity}, the account's limit on
+ * concurrent sessions. A periodic sweep sends keep-alives for all started
+ * sessions in one batch, stops sessions that have had no task for
+ * {@code heygen.sessions.idle-minutes}, and stops created sessions nobody
+ * started within {@code heygen.sessions.prewarm-ttl-seconds}.
+ *
+ * <p>Sessions live in the {@link HeyGenSessionRegistry} shared by all nodes,
+ * so any node can find and stop a user's session. Each node sweeps only the
+ * sessions it holds a lease on ({@code heygen.sessions.lease-seconds}), and
+ * takes over those of a node that stopped renewing.
+ */
+@Service
+public class HeyGenSessionManager {
+
+    private static final Logger log = LoggerFactory.getLogger(HeyGenSessionManager.class);
+
+    // Settings remembered for prewarming
+    private static final int RECENT_CONFIGS = 16;
+
+    @Autowired
+    private HeyGenService heyGenService;
+
+    @Value("${heygen.sessions.capacity:3}")
+    private int capacity = 3;
+
+    @Value("${heygen.sessions.prewarm:1}")
+    private int prewarm = 1;
+
+    @Value("${heygen.sessions.prewarm-ttl-seconds:120}")
+    private long prewarmTtlSeconds = 120;
+
+    @Value("${heygen.sessions.idle-minutes:15}")
+    private long idleMinutes = 15;
+
+    @Value("${heygen.sessions.keep-alive-seconds:60}")
+    private long keepAliveSeconds = 60;
+
+    @Value("${heygen.sessions.lease-seconds:90}")
+    private long leaseSeconds = 90;
+
+    @Value("${heygen.sessions.node-id:}")
+    private String nodeId = "";
+
+    @Autowired
+    private HeyGenSessionRegistry registry;
+
+    private static final ExecutorService executor = Executors.newFixedThreadPool(4);
+
+    // Settings requested on this node, guarded by this
+    private final Map<String, HeyGenSessionRequest> recentConfigs = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, HeyGenSessionRequest> eldest) {
+            return size() > RECENT_CONFIGS;
+        }
+    };
+    // Task times already written to the registry, touched only by the sweep
+    private final Map<String, Instant> publishedTaskTimes = new HashMap<>();
+    private final AtomicBoolean refilling = new AtomicBoolean();
+
+    private final AtomicLong reused = new AtomicLong();
+    private final AtomicLong prewarmedServed = new AtomicLong();
+    private final AtomicLong coldStarts = new AtomicLong();
+    private final AtomicLong prewarmed = new AtomicLong();
+    private final AtomicLong reaped = new AtomicLong();
+    private final AtomicLong expired = new AtomicLong();
+    private final AtomicLong keepAlives = new AtomicLong();
+    private final AtomicLong keepAliveFailures = new AtomicLong();
+    private final AtomicLong acquireMillis = new AtomicLong();
+    private final AtomicLong createMillis = new AtomicLong();
+    private final AtomicLong createMillisMax = new AtomicLong();
+
+    /**
+     * Gives the user a created session with the requested settings: their own
+     * live one, a prewarmed one, or a new one, in that order of preference.
+     * The user's previous session is stopped if it is not the one returned.
+     *
+     * @param userId the user's Firebase UID, or null if unknown
+     * @param req    the avatar settings
+     */
+    public HeyGenSessionResponse createSession(String userId, HeyGenSessionRequest req) {
+        long start = System.currentTimeMillis();
+        String key = configKey(req);
+        synchronized (this) {
+            recentConfigs.put(key, req);
+        }
+        AvatarSession current = userId != null ? registry.findByUser(userId) : null;
+        if (current != null && key.equals(current.getConfigKey())) {
+            reused.incrementAndGet();
+            acquireMillis.addAndGet(System.currentTimeMillis() - start);
+            log.info("[HeyGenSessionManager] Reusing session {} for user {}", current.getSessionId(), userId);
+            return current.getCreated();
+        }
+        if (current != null) {
+            stop(current.getSessionId());
+        }
+
+        Instant now = Instant.now();
+        AvatarSession session = registry.claimPooled(key, userId, resolveNodeId(), leaseUntil(now),
+                now.minusSeconds(prewarmTtlSeconds));
+        if (session != null) {
+            prewarmedServed.incrementAndGet();
+            log.info("[HeyGenSessionManager] Serving prewarmed session {} to user {}", session.getSessionId(), userId);
+        } else {
+            makeRoom();
+            session = create(req, key);
+            session.setUserId(userId);
+            registry.save(session);
+            coldStarts.incrementAndGet();
+        }
+        acquireMillis.addAndGet(System.currentTimeMillis() - start);
+        refillAsync();
+        return session.getCreated();
+    }
+
+    /**
+     * Starts a created session and makes it the user's session, stopping the
+     * one they held before, whichever node created it. A session that is
+     * already running is not started again; its start response is returned.
+     */
+    public HeyGenSessionResponse startSession(String userId, HeyGenStartSessionRequest req) {
+        String sessionId = req.getSessionId();
+        AvatarSession session = registry.find(sessionId);
+        if (session != null && session.getStarted() != null) {
+            return session.getStarted();
+        }
+        AvatarSession current = userId != null ? registry.findByUser(userId) : null;
+        if (current != null && !current.getSessionId().equals(sessionId)) {
+            log.info("[HeyGenSessionManager] Closing previous session {} for user {}", current.getSessionId(), userId);
+            stop(current.getSessionId());
+        }
+
+        HeyGenSessionResponse started = heyGenService.startSession(userId, req);
+        Instant now = Instant.now();
+        if (session != null) {
+            // Only the start fields change; the lease and task time may have moved since the read
+            registry.markStarted(sessionId, userId, started, now);
+            return started;
+        }
+        // Sessions created before the registry existed are not tracked yet
+        session = new AvatarSession(sessionId, null, started, now);
+        session.setOwnerNode(resolveNodeId());
+        session.setLeaseUntil(leaseUntil(now));
+        session.setStarted(started);
+        session.setStartedAt(now);
+        session.setLastKeepAlive(now);
+        session.setUserId(userId);
+        registry.save(session);
+        return started;
+    }
+
+    /** Stops a session and forgets it. */
+    public void stopSession(String sessionId) {
+        registry.remove(sessionId);
+        heyGenService.stopSession(sessionId);
+    }
+
+    /** Returns the avatar session currently started for a user, or null if none. */
+    public String getActiveSessionId(String userId) {
+        AvatarSession session = registry.findByUser(userId);
+        return session != null && session.getStarted() != null ? session.getSessionId() : null;
+    }
+
+    /**
+     * Renews this node's leases and takes over lapsed ones, then sends
+     * keep-alives for its started sessions in one batch, stops its idle and
+     * unclaimed sessions, and tops up the prewarmed pool.
+     */
+    @Scheduled(fixedDelayString = "${heygen.sessions.sweep-ms:30000}")
+    public void sweep() {
+        Instant now = Instant.now();
+        Instant idleSince = now.minus(Duration.ofMinutes(idleMinutes));
+        Instant unclaimedSince = now.minusSeconds(prewarmTtlSeconds);
+        Instant keepAliveDue = now.minusSeconds(keepAliveSeconds);
+        publishTaskTimes();
+        List<String> toStop = new ArrayList<>();
+        List<AvatarSession> toKeepAlive = new ArrayList<>();
+        for (AvatarSession session : registry.renewAndClaim(resolveNodeId(), now, leaseUntil(now))) {
+            if (session.getStartedAt() == null) {
+                if (session.getCreatedAt().isBefore(unclaimedSince) && registry.remove(session.getSessionId())) {
+                    toStop.add(session.getSessionId());
+                    expired.incrementAndGet();
+                }
+            } else if (lastActivity(session).isBefore(idleSince)) {
+                if (registry.remove(session.getSessionId())) {
+                    toStop.add(session.getSessionId());
+                    reaped.incrementAndGet();
+                }
+            } else if (session.getLastKeepAlive() == null || session.getLastKeepAlive().isBefore(keepAliveDue)) {
+                toKeepAlive.add(session);
+            }
+        }
+        if (!toStop.isEmpty()) {
+            log.info("[HeyGenSessionManager] Stopping idle or unclaimed sessions {}", toStop);
+            toStop.forEach(heyGenService::stopSession);
+        }
+        keepAlive(toKeepAlive, now);
+        refill();
+    }
+
+    /**
+     * Tasks are sent from whichever node served the user, so each node writes
+     * its task times to the registry for the owning node's idle check.
+     */
+    private void publishTaskTimes() {
+        Map<String, Instant> taskTimes = heyGenService.getLastTaskTimes();
+        publishedTaskTimes.keySet().retainAll(taskTimes.keySet());
+        taskTimes.forEach((sessionId, at) -> {
+            if (!at.equals(publishedTaskTimes.get(sessionId))) {
+                registry.touch(sessionId, at);
+                publishedTaskTimes.put(sessionId, at);
+            }
+        });
+    }
+
+    /** Sends the keep-alives concurrently and drops sessions HeyGen no longer knows. */
+    private void keepAlive(List<AvatarSession> batch, Instant now) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        List<CompletableFuture<Boolean>> results = new ArrayList<>();
+        for (AvatarSession session : batch) {
+            results.add(CompletableFuture.supplyAsync(() -> {
+                heyGenService.keepSessionAlive(session.getSessionId());
+                return true;
+            }, executor).exceptionally(e -> false));
+        }
+        for (int i = 0; i < batch.size(); i++) {
+            String sessionId = batch.get(i).getSessionId();
+            if (results.get(i).join()) {
+                registry.keptAlive(sessionId, now);
+                keepAlives.incrementAndGet();
+            } else {
+                log.warn("[HeyGenSessionManager] Keep-alive failed, dropping session {}", sessionId);
+                registry.remove(sessionId);
+                keepAliveFailures.incrementAndGet();
+            }
+        }
+    }
+
+    private void refillAsync() {
+        if (prewarm > 0) {
+            executor.submit(this::refill);
+        }
+    }
+
+    /** Creates sessions for the most recently requested settings until the pool is full. */
+    void refill() {
+        if (!refilling.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            while (true) {
+                String key = nextToPrewarm();
+                if (key == null) {
+                    return;
+                }
+                HeyGenSessionRequest req;
+                synchronized (this) {
+                    req = recentConfigs.get(key);
+                }
+                AvatarSession session;
+                try {
+                    session = create(req, key);
+                } catch (Exception e) {
+                    log.warn("[HeyGenSessionManager] Prewarming failed: {}", e.getMessage());
+                    return;
+                }
+                session.setPooled(true);
+                registry.save(session);
+                prewarmed.incrementAndGet();
+            }
+        } finally {
+            refilling.set(false);
+        }
+    }
+
+    /**
+     * Picks the settings the pool is shortest of. Prewarm slots go to the
+     * most recently requested settings first, one each, then around again.
+     */
+    private String nextToPrewarm() {
+        List<String> newestFirst;
+        synchronized (this) {
+            newestFirst = new ArrayList<>(recentConfigs.keySet());
+        }
+        if (prewarm <= 0 || newestFirst.isEmpty() || registry.count() >= capacity) {
+            return null;
+        }
+        Collections.reverse(newestFirst);
+        Map<String, Integer> wanted = new LinkedHashMap<>();
+        for (int i = 0; i < prewarm; i++) {
+            wanted.merge(newestFirst.get(i % newestFirst.size()), 1, Integer::sum);
+        }
+        for (Map.Entry<String, Integer> entry : wanted.entrySet()) {
+            if (registry.countPooled(entry.getKey()) < entry.getValue()) {
+                return entry.getKey();
+            }
+        }
+        return null;
+    }
+
+    /** At capacity, stops prewarmed sessions (oldest first) so a user's session fits. */
+    private void makeRoom() {
+        while (registry.count() >= capacity) {
+            AvatarSession oldest = registry.oldestPooled();
+            if (oldest == null) {
+                log.warn("[HeyGenSessionManager] At capacity ({}) with no prewarmed session to give up", capacity);
+                return;
+            }
+            stop(oldest.getSessionId());
+        }
+    }
+
+    /** Stops a session unless another node removed it first. */
+    private void stop(String sessionId) {
+        if (registry.remove(sessionId)) {
+            heyGenService.stopSession(sessionId);
+        }
+    }
+
+    private AvatarSession create(HeyGenSessionRequest req, String key) {
+        long start = System.currentTimeMillis();
+        HeyGenSessionResponse created = heyGenService.createSession(req);
+        long elapsed = System.currentTimeMillis() - start;
+        createMillis.addAndGet(elapsed);
+        createMillisMax.accumulateAndGet(elapsed, Math::max);
+        if (created == null || created.getSessionId() == null) {
+            throw new RuntimeException("HeyGen returned no session ID");
+        }
+        Instant now = Instant.now();
+        AvatarSession session = new AvatarSession(created.getSessionId(), key, created, now);
+        session.setOwnerNode(resolveNodeId());
+        session.setLeaseUntil(leaseUntil(now));
+        return session;
+    }
+
+    private Instant leaseUntil(Instant now) {
+        return now.plusSeconds(leaseSeconds);
+    }
+
+    private static Instant lastActivity(AvatarSession session) {
+        Instant lastTask = session.getLastTaskAt();
+        return lastTask != null && lastTask.isAfter(session.getStartedAt()) ? lastTask : session.getStartedAt();
+    }
+
+    private String resolveNodeId() {
+        if (nodeId == null || nodeId.isEmpty()) {
+            nodeId = ManagementFactory.getRuntimeMXBean().getName();
+        }
+        return nodeId;
+    }
+
+    /** Sessions with the same key are interchangeable. */
+    static String configKey(HeyGenSessionRequest req) {
+        HeyGenSessionRequest.VoiceSettings voice = req.getVoice();
+        return String.join("|",
+                Objects.toString(req.getAvatarId()),
+                Objects.toString(req.getVersion()),
+                voice != null ? Objects.toString(voice.getVoiceId()) : "default",
+                voice != null ? Objects.toString(voice.getRate()) : "default",
+                Objects.toString(req.getDisableIdleTimeout()),
+                Objects.toString(req.getActivityIdleTimeout()));
+    }
+
+    /**
+     * Session counts, how users' sessions were obtained, and how long that
+     * took: {@code reuseRate} is the share served without creating a session.
+     * Session counts cover all nodes; the rest are this node's.
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        long served = reused.get() + prewarmedServed.get() + coldStarts.get();
+        long creates = coldStarts.get() + prewarmed.get();
+        stats.put("node", resolveNodeId());
+        stats.put("sessions", registry.count());
+        stats.put("prewarmedIdle", registry.countPooled(null));
+        stats.put("capacity", capacity);
+        stats.put("reused", reused.get());
+        stats.put("prewarmedServed", prewarmedServed.get());
+        stats.put("coldStarts", coldStarts.get());
+        stats.put("reuseRate", served == 0 ? 0.0 : (double) (reused.get() + prewarmedServed.get()) / served);
+        stats.put("avgAcquireMs", served == 0 ? 0 : (acquireMillis.get() / served));
+        stats.put("avgCreateMs", creates == 0 ? 0 : (createMillis.get() / creates));
+        stats.put("maxCreateMs", createMillisMax.get());
+        stats.put("reaped", reaped.get());
+        stats.put("expired", expired.get());
+        stats.put("keepAlives", keepAlives.get());
+        stats.put("keepAliveFailures", keepAliveFailures.get());
+        return stats;
+    }
+
+    @Scheduled(fixedDelayString = "${heygen.sessions.report-ms:600000}")
+    public void report() {
+        log.info("[HeyGenSessionManager] Sessions {}", getStats());
+    }
+}
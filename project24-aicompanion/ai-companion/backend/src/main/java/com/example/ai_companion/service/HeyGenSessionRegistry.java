@@ -0,0 +1,70 @@
+package com.example.ai_companion.service;
+
+import com.example.ai_companion.model.AvatarSession;
+import com.example.ai_companion.response.HeyGenSessionResponse;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Where {@link HeyGenSessionManager} keeps its sessions. Every node of a
+ * deployment must see the same registry, so a session created on one node
+ * can be found, started and stopped from any other. Ownership is by lease:
+ * the owning node renews it on each sweep, and a lease that lapses is taken
+ * over by the next node to sweep.
+ *
+ * <p>Select the implementation with {@code heygen.sessions.registry}:
+ * {@code mongo} (default) or {@code memory} for a single node.
+ */
+public interface HeyGenSessionRegistry {
+
+    /** Inserts or replaces a session. */
+    void save(AvatarSession session);
+
+    AvatarSession find(String sessionId);
+
+    /** The session handed to the user most recently, or null. */
+    AvatarSession findByUser(String userId);
+
+    /**
+     * Atomically hands the oldest prewarmed session with these settings,
+     * created after {@code createdAfter}, to the user.
+     *
+     * @return the claimed session, or null if none was free
+     */
+    AvatarSession claimPooled(String configKey, String userId, String nodeId, Instant leaseUntil, Instant createdAfter);
+
+    /** The oldest prewarmed session with any settings, or null. */
+    AvatarSession oldestPooled();
+
+    /**
+     * Removes a session.
+     *
+     * @return true if this call removed it, so exactly one caller stops it
+     */
+    boolean remove(String sessionId);
+
+    long count();
+
+    /** Prewarmed sessions with these settings, or with any settings if null. */
+    long countPooled(String configKey);
+
+    /** Records that a task was sent to the session, if later than what is stored. */
+    void touch(String sessionId, Instant lastTaskAt);
+
+    void keptAlive(String sessionId, Instant at);
+
+    /**
+     * Records that a session was started for the user, changing only the
+     * start fields so a lease or task time another node wrote is kept.
+     *
+     * @return false if the session is no longer in the registry
+     */
+    boolean markStarted(String sessionId, String userId, HeyGenSessionResponse started, Instant at);
+
+    /**
+     * Extends the leases the node holds, takes over sessions whose lease
+     * lapsed before {@code now}, and returns every session the node now owns.
+     */
+    List<AvatarSession> renewAndClaim(String nodeId, Instant now, Instant leaseUntil);
+}
@@ -0,0 +1,134 @@
+package com.example.ai_companion.service;
+
+import com.example.ai_companion.model.AvatarSession;
+import com.example.ai_companion.response.HeyGenSessionResponse;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Session registry held in this JVM, for single-node deployments and tests.
+ * Sessions are copied in and out, as they would be through a database.
+ */
+@Component
+@ConditionalOnProperty(name = "heygen.sessions.registry", havingValue = "memory")
+public class InMemoryHeyGenSessionRegistry implements HeyGenSessionRegistry {
+
+    private final Map<String, AvatarSession> sessions = new HashMap<>();
+
+    @Override
+    public synchronized void save(AvatarSession session) {
+        sessions.put(session.getSessionId(), new AvatarSession(session));
+    }
+
+    @Override
+    public synchronized AvatarSession find(String sessionId) {
+        return copy(sessions.get(sessionId));
+    }
+
+    @Override
+    public synchronized AvatarSession findByUser(String userId) {
+        return copy(sessions.values().stream()
+                .filter(s -> !s.isPooled() && Objects.equals(s.getUserId(), userId))
+                .max(Comparator.comparing(AvatarSession::getCreatedAt))
+                .orElse(null));
+    }
+
+    @Override
+    public synchronized AvatarSession claimPooled(String configKey, String userId, String nodeId, Instant leaseUntil, Instant createdAfter) {
+        AvatarSession session = sessions.values().stream()
+                .filter(s -> s.isPooled() && s.getConfigKey().equals(configKey) && s.getCreatedAt().isAfter(createdAfter))
+                .min(Comparator.comparing(AvatarSession::getCreatedAt))
+                .orElse(null);
+        if (session == null) {
+            return null;
+        }
+        session.setPooled(false);
+        session.setUserId(userId);
+        session.setOwnerNode(nodeId);
+        session.setLeaseUntil(leaseUntil);
+        return copy(session);
+    }
+
+    @Override
+    public synchronized AvatarSession oldestPooled() {
+        return copy(sessions.values().stream()
+                .filter(AvatarSession::isPooled)
+                .min(Comparator.comparing(AvatarSession::getCreatedAt))
+                .orElse(null));
+    }
+
+    @Override
+    public synchronized boolean remove(String sessionId) {
+        return sessionId != null && sessions.remove(sessionId) != null;
+    }
+
+    @Override
+    public synchronized long count() {
+        return sessions.size();
+    }
+
+    @Override
+    public synchronized long countPooled(String configKey) {
+        return sessions.values().stream()
+                .filter(s -> s.isPooled() && (configKey == null || configKey.equals(s.getConfigKey())))
+                .count();
+    }
+
+    @Override
+    public synchronized void touch(String sessionId, Instant lastTaskAt) {
+        AvatarSession session = sessions.get(sessionId);
+        if (session != null && (session.getLastTaskAt() == null || session.getLastTaskAt().isBefore(lastTaskAt))) {
+            session.setLastTaskAt(lastTaskAt);
+        }
+    }
+
+    @Override
+    public synchronized void keptAlive(String sessionId, Instant at) {
+        AvatarSession session = sessions.get(sessionId);
+        if (session != null) {
+            session.setLastKeepAlive(at);
+        }
+    }
+
+    @Override
+    public synchronized boolean markStarted(String sessionId, String userId, HeyGenSessionResponse started, Instant at) {
+        AvatarSession session = sessions.get(sessionId);
+        if (session == null) {
+            return false;
+        }
+        session.setPooled(false);
+        session.setStarted(started);
+        session.setStartedAt(at);
+        session.setLastKeepAlive(at);
+        if (userId != null) {
+            session.setUserId(userId);
+        }
+        return true;
+    }
+
+    @Override
+    public synchronized List<AvatarSession> renewAndClaim(String nodeId, Instant now, Instant leaseUntil) {
+        List<AvatarSession> owned = new ArrayList<>();
+        for (AvatarSession session : sessions.values()) {
+            boolean lapsed = session.getLeaseUntil() == null || session.getLeaseUntil().isBefore(now);
+            if (nodeId.equals(session.getOwnerNode()) || lapsed) {
+                session.setOwnerNode(nodeId);
+                session.setLeaseUntil(leaseUntil);
+                owned.add(copy(session));
+            }
+        }
+        return owned;
+    }
+
+    private static AvatarSession copy(AvatarSession session) {
+        return session != null ? new AvatarSession(session) : null;
+    }
+}
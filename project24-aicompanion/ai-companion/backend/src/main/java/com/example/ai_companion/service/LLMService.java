@@ -6,35 +6,57 @@ import com.example.ai_companion.model.User;
 import com.example.ai_companion.repository.MessageRepository;
 import com.example.ai_companion.repository.ReminderRepository;
 import com.example.ai_companion.repository.UserRepository;
+import com.example.ai_companion.utils.ReminderFingerprint;
 import com.example.ai_companion.utils.logger;
-import dev.langchain4j.model.chat.ChatLanguageModel;
+import dev.langchain4j.model.chat.StreamingChatLanguageModel;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.*;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.RestTemplate;
 
+import java.time.Duration;
 import java.time.Instant;
 
 import java.util.*;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.function.Consumer;
 
 /**
  * Service responsible for handling AI interactions with the user, including:
  * - Generating contextual responses using LangChain LLM
  * - Retrieving recent messages, user core info, and reminders
  * - Fetching and embedding relevant memories
+ * - Carrying a rolling summary of the conversation before the recent messages
+ * - Fitting that context into a token budget
  * - Persisting interactions and extracted reminders
  */
 @Service
 public class LLMService {
 
-    @Autowired private ChatLanguageModel chatLanguageModel;
+    @Autowired private LlmRouter llmRouter;
+    @Autowired private StreamingChatLanguageModel streamingChatLanguageModel;
     @Autowired private UserRepository userRepository;
     @Autowired private MessageRepository messageRepository;
     @Autowired private MemoryService memoryService;
     @Autowired private ReminderRepository reminderRepository;
     @Autowired private ReminderService reminderService;
+    @Autowired private ReminderOccurrenceService reminderOccurrenceService;
+    @Autowired private LlmResponseCache llmResponseCache;
+    @Autowired private ConversationSummaryService conversationSummaryService;
+
+    // Token budget for the context blocks; the query, location and instructions come on top
+    @Value("${llm.context.max-tokens:1500}")
+    private int contextMaxTokens = 1500;
+
+    // Share of the budget the core information may take, since it grows with every merge
+    @Value("${llm.context.core-info-max-tokens:400}")
+    private int coreInfoMaxTokens = 400;
+
+    // Cap on the summary of older turns, so long conversations keep a fixed prompt cost
+    @Value("${llm.context.summary-max-tokens:300}")
+    private int summaryMaxTokens = 300;
 
     private final RestTemplate restTemplate = new RestTemplate();
 
@@ -59,12 +81,17 @@ public class LLMService {
         if (logFilename != null) logger.logToFile(logFilename, "User retrieval: " + String.format("%.2f s", (stepEnd - stepStart)));
 
         stepStart = System.currentTimeMillis() / 1000.0;
-        String chatHistory = buildChatHistory(userId);
+        List<String> chatHistory = buildChatHistory(userId);
         stepEnd = System.currentTimeMillis() / 1000.0;
         if (logFilename != null) logger.logToFile(logFilename, "Chat history retrieval: " + String.format("%.2f s", (stepEnd - stepStart)));
 
         stepStart = System.currentTimeMillis() / 1000.0;
-        String reminderBlock = buildUpcomingRemindersBlock(userId);
+        String conversationSummary = conversationSummaryService.getSummary(userId);
+        stepEnd = System.currentTimeMillis() / 1000.0;
+        if (logFilename != null) logger.logToFile(logFilename, "Conversation summary retrieval: " + String.format("%.2f s", (stepEnd - stepStart)));
+
+        stepStart = System.currentTimeMillis() / 1000.0;
+        List<String> reminderBlock = buildUpcomingRemindersBlock(userId);
         stepEnd = System.currentTimeMillis() / 1000.0;
         if (logFilename != null) logger.logToFile(logFilename, "Upcoming reminders retrieval: " + String.format("%.2f s", (stepEnd - stepStart)));
 
@@ -75,25 +102,28 @@ public class LLMService {
         // if (logFilename != null) logger.logToFile(logFilename, "Memory query generation: " + String.format("%.2f s", (stepEnd - stepStart)));
 
         stepStart = System.currentTimeMillis() / 1000.0;
-        String memoryContext = fetchMemoryContext(userId, query);
+        List<String> memoryContext = fetchMemoryContext(userId, query);
         stepEnd = System.currentTimeMillis() / 1000.0;
         if (logFilename != null) logger.logToFile(logFilename, "Memory context retrieval: " + String.format("%.2f s", (stepEnd - stepStart)));
 
         String today = java.time.LocalDate.now().toString();
         stepStart = System.currentTimeMillis() / 1000.0;
-        String prompt = buildLLMPrompt(today, coreInfo, memoryContext, chatHistory, reminderBlock, query, location);
+        ContextBudget.Result context = fitContext(coreInfo, chatHistory, conversationSummary, reminderBlock, memoryContext);
+        PromptTemplate.Rendered prompt = buildLLMPrompt(today, context, query, location);
         stepEnd = System.currentTimeMillis() / 1000.0;
         if (logFilename != null) logger.logToFile(logFilename, "LLM prompt building: " + String.format("%.2f s", (stepEnd - stepStart)));
+        if (logFilename != null) logger.logToFile(logFilename, "LLM context budget: " + context);
+        if (logFilename != null) logger.logToFile(logFilename, "LLM prompt tokens: " + prompt.getTokenCounts());
 
         stepStart = System.currentTimeMillis() / 1000.0;
-        String responseText = chatLanguageModel.chat(prompt);
+        String responseText = prompt.call(llmRouter.model(LlmTask.COMPANION_REPLY, userId));
         stepEnd = System.currentTimeMillis() / 1000.0;
         if (logFilename != null) logger.logToFile(logFilename, "LLM response generation: " + String.format("%.2f s", (stepEnd - stepStart)));
 
         // Only log full prompt and chat history if this is the first user message
-        boolean isFirstMessage = chatHistory == null || chatHistory.trim().isEmpty();
+        boolean isFirstMessage = chatHistory.isEmpty();
         if (isFirstMessage) {
-            if (logFilename != null) logger.logToFile(logFilename, "LLM Prompt: " + prompt);
+            if (logFilename != null) logger.logToFile(logFilename, "LLM Prompt: " + prompt.text());
             if (logFilename != null) logger.logToFile(logFilename, "LLM Response: " + responseText);
         }
 
@@ -115,41 +145,94 @@ public class LLMService {
      * @return the generated response
      */
     public String generateResponse(String prompt) {
-        String responseText = chatLanguageModel.chat(prompt);
+        String responseText = llmRouter.model(LlmTask.GENERAL).chat(prompt);
         logger.logToFile("system", "Generated response from prompt: " + responseText);
         return responseText;
     }
 
-    /** Builds the user's last 10 messages in chronological order. */
-    private String buildChatHistory(String userId) {
+    /**
+     * Same as {@link #generateResponse(String)}, answering repeated prompts
+     * from the response cache under the given use case.
+     */
+    public String generateResponse(String prompt, LlmResponseCache.UseCase useCase) {
+        return llmResponseCache.getOrCompute(useCase, prompt, () -> generateResponse(prompt));
+    }
+
+    /**
+     * Streams a reply for a turn on the WebSocket conversation channel. The user's
+     * core information and recent history come from the connection's session
+     * instead of being reloaded; only reminders and recalled memories are fetched
+     * per turn since they depend on time and on the query. The stream goes
+     * through the companion reply's gateway, so it is admitted, bound by the
+     * task's deadline and answered with the fallback reply when it fails.
+     *
+     * @param session   the caller's conversation session
+     * @param query     the user's message
+     * @param location  the user's location info (may be null)
+     * @param onPartial receives each chunk of the reply as it is generated
+     * @return the complete assistant reply
+     */
+    public String streamConversationReply(ConversationSession session, String query, Object location, Consumer<String> onPartial) {
+        String userId = session.getUserId();
+        if (!session.isHistoryLoaded()) {
+            session.loadHistory(messageRepository.findTop10ByUserIdOrderByTimestampDesc(userId));
+        }
+        List<String> chatHistory = formatChatHistory(session.getHistory());
+        String conversationSummary = conversationSummaryService.getSummary(userId);
+        List<String> reminderBlock = buildUpcomingRemindersBlock(userId);
+        List<String> memoryContext = fetchMemoryContext(userId, query);
+        String today = java.time.LocalDate.now().toString();
+        ContextBudget.Result context = fitContext(session.getCoreInformation(), chatHistory, conversationSummary, reminderBlock, memoryContext);
+        PromptTemplate.Rendered prompt = buildLLMPrompt(today, context, query, location);
+
+        return llmRouter.stream(LlmTask.COMPANION_REPLY, userId, streamingChatLanguageModel, prompt.messages(), onPartial);
+    }
+
+    /** Builds the user's last 10 messages in chronological order, one transcript line each. */
+    private List<String> buildChatHistory(String userId) {
         List<Message> messages = messageRepository.findTop10ByUserIdOrderByTimestampDesc(userId);
         messages.sort(Comparator.comparing(Message::getTimestamp));
-        StringBuilder sb = new StringBuilder();
+        return formatChatHistory(messages);
+    }
+
+    /** Formats messages (already in chronological order) as User/Assistant transcript lines. */
+    private List<String> formatChatHistory(List<Message> messages) {
+        List<String> lines = new ArrayList<>();
         for (Message m : messages) {
-            sb.append(m.isFromUser() ? "User: " : "Assistant: ")
-              .append(m.getText()).append("\n");
+            lines.add((m.isFromUser() ? "User: " : "Assistant: ") + m.getText());
         }
-        return sb.toString().trim();
+        return lines;
     }
 
-    /** Builds a block summarising the user's next 10 reminders. */
-    private String buildUpcomingRemindersBlock(String userId) {
-        List<Reminder> reminders = reminderRepository.findTop10ByUserIdAndTimestampGreaterThanOrderByTimestampAsc(userId, Instant.now());
-        if (reminders.isEmpty()) return "none";
-
-        StringBuilder sb = new StringBuilder();
+    /** Summarises the user's next 10 reminders, soonest first. */
+    private List<String> buildUpcomingRemindersBlock(String userId) {
+        Instant now = Instant.now();
+        List<Reminder> reminders = new ArrayList<>(reminderRepository.findTop10ByUserIdAndTimestampGreaterThanOrderByTimestampAsc(userId, now));
+        // Series documents only hold the first occurrence; list their upcoming occurrences instead
+        reminders.removeIf(Reminder::isRecurring);
+        reminders.addAll(reminderOccurrenceService.expandSeries(userId, now, now.plus(Duration.ofDays(7)), 10));
+        if (reminders.isEmpty()) return List.of();
+        reminders.sort(Comparator.comparing(Reminder::getTimestamp));
+        if (reminders.size() > 10) reminders = reminders.subList(0, 10);
+
+        List<String> items = new ArrayList<>();
+        Set<String> seen = new HashSet<>();
         for (Reminder r : reminders) {
+            // Skip copies stored before reminder writes were deduplicated
+            if (!seen.add(ReminderFingerprint.of(r.getTitle(), r.getTimestamp()))) continue;
+            StringBuilder sb = new StringBuilder();
             sb.append("Title: ").append(r.getTitle()).append("\n")
               .append("Description: ").append(r.getDescription()).append("\n")
               .append("Due: ").append(r.getTimestamp()).append("\n")
               .append("Tags: ").append(r.getTags() != null ? String.join(", ", r.getTags().stream().map(Enum::name).toList()) : "none").append("\n")
-              .append("Status: ").append(r.getStatus()).append("\n\n");
+              .append("Status: ").append(r.getStatus());
+            items.add(sb.toString());
         }
-        return sb.toString().trim();
+        return items;
     }
 
-    /** Fetches memory context from the memory embedding service. */
-    private String fetchMemoryContext(String userId, String query) {
+    /** Fetches the memories most related to the query from the memory embedding service, closest first. */
+    private List<String> fetchMemoryContext(String userId, String query) {
         try {
             HttpHeaders headers = new HttpHeaders();
             headers.setContentType(MediaType.APPLICATION_JSON);
@@ -169,15 +252,48 @@ public class LLMService {
             if (response.getStatusCode().is2xxSuccessful() && response.getBody() != null) {
                 Map<String, Object> responseBody = response.getBody();
                 if (responseBody != null) {
-                    Object memories = responseBody.get("related_memories");
-                    return memories != null ? memories.toString() : "none";
+                    return toMemoryItems(responseBody.get("related_memories"));
                 }
-                return "none";
+                return List.of();
             }
         } catch (Exception e) {
             System.err.println("Failed to retrieve memory context: " + e.getMessage());
         }
-        return "none";
+        return List.of();
+    }
+
+    /** Turns the recall response (a ranked list of {text, timestamp} entries, or "none") into one item per memory. */
+    private static List<String> toMemoryItems(Object memories) {
+        if (!(memories instanceof List<?> entries)) {
+            return memories == null || "none".equals(memories) ? List.of() : List.of(memories.toString());
+        }
+        List<String> items = new ArrayList<>();
+        for (Object entry : entries) {
+            if (entry instanceof Map<?, ?> memory && memory.get("text") != null) {
+                Object timestamp = memory.get("timestamp");
+                items.add(memory.get("text") + (timestamp != null && !"unknown".equals(timestamp) ? " (" + timestamp + ")" : ""));
+            } else if (entry != null) {
+                items.add(entry.toString());
+            }
+        }
+        return items;
+    }
+
+    /**
+     * Fits the context blocks into the token budget. The profile comes first,
+     * capped so its growth cannot crowd out the rest, then the newest messages,
+     * the (capped) summary of older turns, the soonest reminders and finally
+     * the closest memories.
+     */
+    private ContextBudget.Result fitContext(String coreInfo, List<String> chatHistory, String summary,
+                                            List<String> reminders, List<String> memories) {
+        return new ContextBudget(contextMaxTokens)
+                .add("coreInfo", 0, coreInfo != null ? List.of(coreInfo) : List.of(), ContextBudget.Keep.FIRST, coreInfoMaxTokens, "\n")
+                .add("history", 1, chatHistory, ContextBudget.Keep.LAST, "\n")
+                .add("summary", 2, summary != null ? List.of(summary) : List.of(), ContextBudget.Keep.FIRST, summaryMaxTokens, "\n")
+                .add("reminders", 3, reminders, ContextBudget.Keep.FIRST, "\n\n")
+                .add("memories", 4, memories, ContextBudget.Keep.FIRST, "\n")
+                .fill();
     }
 
         /** Builds a prompt to convert the user's question into a memory search query. */
@@ -203,51 +319,66 @@ public class LLMService {
     
                 Your output should be a single memory-style sentence. If nothing is relevant, return "none".
                 """.formatted(query, chatHistory, coreInfo);
-            return chatLanguageModel.chat(prompt);
+            return llmRouter.model(LlmTask.GENERAL).chat(prompt);
         }
 
-    /** Builds the final prompt sent to the LLM. */
-    private String buildLLMPrompt(String today, String coreInfo, String memoryContext, String chatHistory, String reminders, String query, Object location) {
-        String locationBlock = "none";
-        if (location != null) {
-            locationBlock = location.toString();
-        }
-        return """
-            Today is %s.
+    private static final PromptTemplate COMPANION_REPLY = PromptTemplate.of("companion-reply", """
             You are a personalised virtual assistant designed for elderly care. Your role is to respond supportively and clearly, considering the user's health, personal background, daily context, and emotional needs.
 
-            --- USER PROFILE (Long-Term Core Info) ---
-            %s
-
-            --- RECENT MEMORIES (Contextual Events) ---
-            %s
-
-            --- CHAT HISTORY (Recent Conversation) ---
-            %s
-
-            --- UPCOMING REMINDERS (Tasks to Remember, include time if needed) ---
-            %s
-
-            --- USER LOCATION (If available) ---
-            %s
-
-            --- USER QUESTION ---
-            The user said: "%s"
+            You will be given the user's profile, upcoming reminders, recent memories, a summary of the earlier conversation, the recent conversation, their location if known, today's date and finally what the user just said.
 
             IMPORTANT: You can automatically create reminders for users when they mention tasks or appointments. If someone asks you to remind them of something or mentions a future task, reassure them that you will remember it for them.
-            
+
             Respond in a way that shows:
             • Kindness and patience
             • Clear and simple language (suitable for older adults)
             • Lighthearted charm
             • No technical jargon
-            • Use the user's location to provide relevant information if necessary 
+            • Use the user's location to provide relevant information if necessary
             • Do not use emojis
             • Write in warm, engaging, natural-sounding language
             • try to Keep responses short and concise if possible (2-3 sentences generally) but if you need to go into more detail, do so.
             • Use simple, easy-to-understand words
             • Be direct and to the point
             • When users mention tasks, appointments, or ask for reminders, confirm that you'll remember it for them
-            """.formatted(today, coreInfo, memoryContext, chatHistory, reminders, locationBlock, query);
+            """, """
+            --- USER PROFILE (Long-Term Core Info) ---
+            {{coreInfo}}
+
+            --- UPCOMING REMINDERS (Tasks to Remember, include time if needed) ---
+            {{reminders}}
+
+            --- RECENT MEMORIES (Contextual Events) ---
+            {{memories}}
+
+            --- EARLIER CONVERSATION (Summary) ---
+            {{summary}}
+
+            --- CHAT HISTORY (Recent Conversation) ---
+            {{history}}
+
+            --- USER LOCATION (If available) ---
+            {{location}}
+
+            Today is {{today}}.
+
+            --- USER QUESTION ---
+            The user said: "{{query}}"
+            """);
+
+    /**
+     * Builds the final prompt sent to the LLM: the fixed instructions as the
+     * system message, then the user's context from least to most volatile.
+     */
+    private PromptTemplate.Rendered buildLLMPrompt(String today, ContextBudget.Result context, String query, Object location) {
+        return COMPANION_REPLY.render(
+                "coreInfo", context.get("coreInfo"),
+                "reminders", context.get("reminders"),
+                "memories", context.get("memories"),
+                "summary", context.get("summary"),
+                "history", context.get("history"),
+                "location", location,
+                "today", today,
+                "query", query);
     }
 }
\ No newline at end of file
@@ -0,0 +1,317 @@
+package com.example.ai_companion.service;
+
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+/**
+ * Decides when an LLM call may go out, so that background work yields to live
+ * conversation under the provider's rate limits.
+ * <p>
+ * Calls wait in one queue per {@link LlmLane}, and a lane is only served while
+ * every higher lane is empty. Within a lane, users are served by weighted fair
+ * queueing on estimated tokens: each call gets a finish tag of
+ * {@code max(lane clock, user's last tag) + tokens}, and the smallest tag goes
+ * first, so one user with a burst of long prompts cannot hold up everyone
+ * else. A call is admitted when a concurrency slot is free and the
+ * requests-per-minute and tokens-per-minute buckets can pay for it. Lower
+ * lanes may only use part of the slots and must leave part of each bucket
+ * untouched, which keeps headroom for interactive calls that arrive next.
+ * The token estimate is corrected with the real usage when the call ends.
+ */
+public class LlmAdmissionController {
+
+    /**
+     * @param maxConcurrent      calls in flight across all lanes
+     * @param requestsPerMinute  provider request quota
+     * @param tokensPerMinute    provider token quota
+     * @param nearRealTimeShare  share of the slots the near-real-time lane may use
+     * @param batchShare         share of the slots the batch lane may use
+     * @param nearRealTimeReserve share of each bucket the near-real-time lane must leave
+     * @param batchReserve       share of each bucket the batch lane must leave
+     */
+    public record Options(int maxConcurrent, int requestsPerMinute, int tokensPerMinute,
+                          double nearRealTimeShare, double batchShare,
+                          double nearRealTimeReserve, double batchReserve) {
+
+        public static Options defaults() {
+            return new Options(16, 500, 200_000, 0.75, 0.5, 0.1, 0.3);
+        }
+    }
+
+    /** A granted call. Release it exactly once when the call ends; further releases are ignored. */
+    public final class Permit {
+        private final LlmLane lane;
+        private final long estimatedTokens;
+        private boolean released;
+
+        private Permit(LlmLane lane, long estimatedTokens) {
+            this.lane = lane;
+            this.estimatedTokens = estimatedTokens;
+        }
+
+        /**
+         * @param actualTokens tokens the call really used, or null if unknown
+         */
+        public void release(Long actualTokens) {
+            lock.lock();
+            try {
+                if (released) return;
+                released = true;
+                inFlight--;
+                laneInFlight.merge(lane, -1, Integer::sum);
+                if (actualTokens != null) {
+                    refill();
+                    tokenBucket = Math.min(options.tokensPerMinute(), tokenBucket + estimatedTokens - actualTokens);
+                }
+                changed.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private static final class Waiter {
+        final LlmLane lane;
+        final long cost;
+        final double finishTag;
+        final long sequence;
+
+        Waiter(LlmLane lane, long cost, double finishTag, long sequence) {
+            this.lane = lane;
+            this.cost = cost;
+            this.finishTag = finishTag;
+            this.sequence = sequence;
+        }
+    }
+
+    private static final class LaneStats {
+        long admitted;
+        long timedOut;
+        long rejected;
+        long totalWaitMillis;
+        long maxWaitMillis;
+    }
+
+    private final Options options;
+    private final LongSupplier nanoTime;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+
+    private final Map<LlmLane, PriorityQueue<Waiter>> queues = new EnumMap<>(LlmLane.class);
+    private final Map<LlmLane, Double> laneClock = new EnumMap<>(LlmLane.class);
+    private final Map<LlmLane, Map<String, Double>> userTags = new EnumMap<>(LlmLane.class);
+    private final Map<LlmLane, Integer> laneInFlight = new EnumMap<>(LlmLane.class);
+    private final Map<LlmLane, LaneStats> stats = new EnumMap<>(LlmLane.class);
+    private int inFlight;
+    private long sequence;
+    private double requestBucket;
+    private double tokenBucket;
+    private long lastRefill;
+
+    public LlmAdmissionController(Options options) {
+        this(options, System::nanoTime);
+    }
+
+    LlmAdmissionController(Options options, LongSupplier nanoTime) {
+        this.options = options;
+        this.nanoTime = nanoTime;
+        for (LlmLane lane : LlmLane.values()) {
+            queues.put(lane, new PriorityQueue<>((a, b) -> a.finishTag != b.finishTag
+                    ? Double.compare(a.finishTag, b.finishTag) : Long.compare(a.sequence, b.sequence)));
+            laneClock.put(lane, 0.0);
+            userTags.put(lane, new HashMap<>());
+            laneInFlight.put(lane, 0);
+            stats.put(lane, new LaneStats());
+        }
+        this.requestBucket = options.requestsPerMinute();
+        this.tokenBucket = options.tokensPerMinute();
+        this.lastRefill = nanoTime.getAsLong();
+    }
+
+    /**
+     * Waits until the call may go out.
+     *
+     * @param userId          the user the call is for; null for system work
+     * @param estimatedTokens prompt plus expected output tokens
+     * @param timeoutMillis   how long to wait at most
+     * @throws TimeoutException if the call was not admitted in time
+     */
+    public Permit acquire(LlmLane lane, String userId, long estimatedTokens, long timeoutMillis)
+            throws TimeoutException, InterruptedException {
+        long start = nanoTime.getAsLong();
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        lock.lock();
+        try {
+            Waiter waiter = enqueue(lane, userId, estimatedTokens);
+            try {
+                while (true) {
+                    if (isNext(waiter) && canAdmit(lane, waiter.cost)) {
+                        return admit(waiter, start);
+                    }
+                    long remaining = deadline - nanoTime.getAsLong();
+                    if (remaining <= 0) {
+                        stats.get(lane).timedOut++;
+                        throw new TimeoutException("Not admitted to the " + lane + " lane within " + timeoutMillis + " ms");
+                    }
+                    // Wake up for releases, or when the buckets should have refilled enough
+                    changed.awaitNanos(Math.min(remaining, TimeUnit.MILLISECONDS.toNanos(refillWaitMillis(lane, waiter.cost))));
+                }
+            } finally {
+                if (queues.get(lane).remove(waiter)) {
+                    changed.signalAll();
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Admits the call only if it can go out right now, e.g. for a hedged
+     * attempt that is not worth waiting for.
+     *
+     * @return the permit, or null if the call would have to wait
+     */
+    public Permit tryAcquire(LlmLane lane, String userId, long estimatedTokens) {
+        lock.lock();
+        try {
+            if (!isIdle(lane) || !canAdmit(lane, estimatedTokens)) {
+                stats.get(lane).rejected++;
+                return null;
+            }
+            return admit(enqueue(lane, userId, estimatedTokens), nanoTime.getAsLong());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Waiter enqueue(LlmLane lane, String userId, long cost) {
+        String user = userId != null ? userId : "";
+        Map<String, Double> tags = userTags.get(lane);
+        double finishTag = Math.max(laneClock.get(lane), tags.getOrDefault(user, 0.0)) + Math.max(1, cost);
+        tags.put(user, finishTag);
+        Waiter waiter = new Waiter(lane, cost, finishTag, sequence++);
+        queues.get(lane).add(waiter);
+        return waiter;
+    }
+
+    private Permit admit(Waiter waiter, long start) {
+        LlmLane lane = waiter.lane;
+        queues.get(lane).remove(waiter);
+        double clock = Math.max(laneClock.get(lane), waiter.finishTag);
+        laneClock.put(lane, clock);
+        // Users whose tags the lane clock has passed start afresh next time
+        userTags.get(lane).values().removeIf(tag -> tag <= clock);
+        requestBucket -= 1;
+        tokenBucket -= Math.min(waiter.cost, options.tokensPerMinute());
+        inFlight++;
+        laneInFlight.merge(lane, 1, Integer::sum);
+        long waited = TimeUnit.NANOSECONDS.toMillis(nanoTime.getAsLong() - start);
+        LaneStats laneStats = stats.get(lane);
+        laneStats.admitted++;
+        laneStats.totalWaitMillis += waited;
+        laneStats.maxWaitMillis = Math.max(laneStats.maxWaitMillis, waited);
+        changed.signalAll();
+        return new Permit(lane, waiter.cost);
+    }
+
+    /** Whether the waiter heads its lane and no higher lane has calls waiting. */
+    private boolean isNext(Waiter waiter) {
+        for (LlmLane lane : LlmLane.values()) {
+            if (lane == waiter.lane) {
+                return queues.get(lane).peek() == waiter;
+            }
+            if (!queues.get(lane).isEmpty()) {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    /** Whether nothing is waiting in this lane or above it. */
+    private boolean isIdle(LlmLane lane) {
+        for (LlmLane other : LlmLane.values()) {
+            if (!queues.get(other).isEmpty()) return false;
+            if (other == lane) return true;
+        }
+        return true;
+    }
+
+    private boolean canAdmit(LlmLane lane, long cost) {
+        refill();
+        if (inFlight >= options.maxConcurrent() || laneInFlight.get(lane) >= slots(lane)) {
+            return false;
+        }
+        double reserve = reserve(lane);
+        return requestBucket - 1 >= reserve * options.requestsPerMinute()
+                && tokenBucket - Math.min(cost, options.tokensPerMinute()) >= reserve * options.tokensPerMinute();
+    }
+
+    private int slots(LlmLane lane) {
+        double share = switch (lane) {
+            case INTERACTIVE -> 1.0;
+            case NEAR_REAL_TIME -> options.nearRealTimeShare();
+            case BATCH -> options.batchShare();
+        };
+        return Math.max(1, (int) Math.ceil(options.maxConcurrent() * share));
+    }
+
+    private double reserve(LlmLane lane) {
+        return switch (lane) {
+            case INTERACTIVE -> 0.0;
+            case NEAR_REAL_TIME -> options.nearRealTimeReserve();
+            case BATCH -> options.batchReserve();
+        };
+    }
+
+    private void refill() {
+        long now = nanoTime.getAsLong();
+        double minutes = (now - lastRefill) / 60_000_000_000.0;
+        lastRefill = now;
+        requestBucket = Math.min(options.requestsPerMinute(), requestBucket + minutes * options.requestsPerMinute());
+        tokenBucket = Math.min(options.tokensPerMinute(), tokenBucket + minutes * options.tokensPerMinute());
+    }
+
+    /** Rough time until the buckets can pay for the call, bounded to keep waiters responsive. */
+    private long refillWaitMillis(LlmLane lane, long cost) {
+        double reserve = reserve(lane);
+        double tokensShort = Math.min(cost, options.tokensPerMinute()) + reserve * options.tokensPerMinute() - tokenBucket;
+        double requestsShort = 1 + reserve * options.requestsPerMinute() - requestBucket;
+        double millis = Math.max(tokensShort / options.tokensPerMinute(), requestsShort / options.requestsPerMinute()) * 60_000;
+        return Math.max(5, Math.min(250, (long) Math.ceil(millis)));
+    }
+
+    /** Per lane: admitted, timed out, rejected, waiting and in-flight calls with wait times; plus bucket levels. */
+    public Map<String, Object> getStats() {
+        lock.lock();
+        try {
+            refill();
+            Map<String, Object> result = new LinkedHashMap<>();
+            for (LlmLane lane : LlmLane.values()) {
+                LaneStats s = stats.get(lane);
+                Map<String, Object> row = new LinkedHashMap<>();
+                row.put("admitted", s.admitted);
+                row.put("timedOut", s.timedOut);
+                row.put("rejected", s.rejected);
+                row.put("waiting", queues.get(lane).size());
+                row.put("inFlight", laneInFlight.get(lane));
+                row.put("avgWaitMillis", s.admitted == 0 ? 0 : s.totalWaitMillis / s.admitted);
+                row.put("maxWaitMillis", s.maxWaitMillis);
+                result.put(lane.name(), row);
+            }
+            result.put("requestBucket", (long) requestBucket);
+            result.put("tokenBucket", (long) tokenBucket);
+            return result;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,625 @@
+package com.example.ai_companion.service;
+
+import com.example.ai_companion.exception.LlmUnavailableException;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.SystemMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.model.chat.ChatLanguageModel;
+import dev.langchain4j.model.chat.StreamingChatLanguageModel;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.request.ChatRequestParameters;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.model.chat.response.StreamingChatResponseHandler;
+import dev.langchain4j.model.output.Response;
+import dev.langchain4j.model.output.TokenUsage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Wraps the chat model of one {@link LlmTask} with a deadline, retries, a
+ * circuit breaker and a fallback reply, and keeps the task's call metrics.
+ * <p>
+ * Every call must finish within the task's timeout, otherwise the caller gets
+ * control back. Interactive tasks are hedged: if the first attempt has not
+ * answered by the task's recent 95th percentile latency, or fails, a second
+ * attempt is started and whichever answers first wins. Background tasks retry
+ * a failed attempt after a short pause instead. After a run of consecutive
+ * failures the circuit opens and calls fail at once, until a trial call
+ * succeeds after the cool-down. A failed call returns the task's fallback
+ * reply if it has one, else throws {@link LlmUnavailableException}.
+ * <p>
+ * Each attempt is first admitted by the {@link LlmAdmissionController} in the
+ * task's lane, on behalf of the user given to {@link #forUser(String)}. Hedged
+ * attempts are only sent if they can be admitted at once. Time spent waiting
+ * for admission counts towards the deadline but not towards the circuit
+ * breaker, since the provider was never asked.
+ */
+public class LlmGateway implements ChatLanguageModel {
+
+    private static final Logger log = LoggerFactory.getLogger(LlmGateway.class);
+
+    // Attempts block on HTTP, so this pool is larger than the service executors
+    private static final ExecutorService executor = Executors.newFixedThreadPool(32);
+
+    private static final int LATENCY_SAMPLES = 256;
+    private static final int MIN_SAMPLES_FOR_HEDGE = 20;
+
+    /** Gateway settings shared by all tasks. */
+    public record Options(Duration hedgeAfter, Duration minHedgeAfter, int retries, Duration retryBackoff,
+                          int failureThreshold, Duration openFor) {
+
+        public static Options defaults() {
+            return new Options(Duration.ofSeconds(4), Duration.ofMillis(500), 1, Duration.ofMillis(500),
+                    5, Duration.ofSeconds(30));
+        }
+    }
+
+    enum CircuitState { CLOSED, OPEN, HALF_OPEN }
+
+    private final LlmTask task;
+    private final ChatLanguageModel delegate;
+    private final Duration deadline;
+    private final Options options;
+    private final LlmAdmissionController admission;
+    private final int expectedOutputTokens;
+    private final Clock clock;
+
+    private final AtomicLong calls = new AtomicLong();
+    private final AtomicLong successes = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong timeouts = new AtomicLong();
+    private final AtomicLong retries = new AtomicLong();
+    private final AtomicLong hedges = new AtomicLong();
+    private final AtomicLong hedgeWins = new AtomicLong();
+    private final AtomicLong fallbacks = new AtomicLong();
+    private final AtomicLong shortCircuits = new AtomicLong();
+    private final AtomicLong notAdmitted = new AtomicLong();
+    private final AtomicLong totalMillis = new AtomicLong();
+    private final AtomicLong maxMillis = new AtomicLong();
+    private final AtomicLong inputTokens = new AtomicLong();
+    private final AtomicLong outputTokens = new AtomicLong();
+
+    // Latencies of the most recent successful calls, for percentiles and the hedge delay
+    private final long[] latencies = new long[LATENCY_SAMPLES];
+    private int latencyCount;
+
+    private CircuitState circuit = CircuitState.CLOSED;
+    private int consecutiveFailures;
+    private long openedAt;
+    private boolean trialInFlight;
+
+    public LlmGateway(LlmTask task, ChatLanguageModel delegate, Duration deadline, Options options) {
+        this(task, delegate, deadline, options, null, 0, Clock.systemUTC());
+    }
+
+    /**
+     * @param admission            admits each attempt, or null to send attempts at once
+     * @param expectedOutputTokens output tokens to budget per call on top of the prompt
+     */
+    public LlmGateway(LlmTask task, ChatLanguageModel delegate, Duration deadline, Options options,
+                      LlmAdmissionController admission, int expectedOutputTokens) {
+        this(task, delegate, deadline, options, admission, expectedOutputTokens, Clock.systemUTC());
+    }
+
+    LlmGateway(LlmTask task, ChatLanguageModel delegate, Duration deadline, Options options, Clock clock) {
+        this(task, delegate, deadline, options, null, 0, clock);
+    }
+
+    LlmGateway(LlmTask task, ChatLanguageModel delegate, Duration deadline, Options options,
+               LlmAdmissionController admission, int expectedOutputTokens, Clock clock) {
+        this.task = task;
+        this.delegate = delegate;
+        this.deadline = deadline;
+        this.options = options;
+        this.admission = admission;
+        this.expectedOutputTokens = expectedOutputTokens;
+        this.clock = clock;
+    }
+
+    /**
+     * This gateway with its calls queued on behalf of {@code userId}, so that
+     * users share the task's lane fairly. Calls made on the gateway itself
+     * count as system work.
+     */
+    public ChatLanguageModel forUser(String userId) {
+        return new UserModel(userId);
+    }
+
+    /**
+     * Streams a reply from {@code model} for {@code userId}, passing each chunk
+     * to {@code onPartial}. The stream is admitted, bound by the deadline and
+     * counted by the circuit breaker like any other call, but it is never
+     * hedged or retried. On failure it returns the task's fallback reply, or
+     * throws {@link LlmUnavailableException} if the task has none.
+     */
+    public String stream(String userId, StreamingChatLanguageModel model, List<ChatMessage> messages, Consumer<String> onPartial) {
+        // Closed before returning, so chunks arriving after the caller gave up are dropped
+        AtomicBoolean open = new AtomicBoolean(true);
+        try {
+            return execute(userId, messages, () -> streamOnce(model, messages, open, onPartial), ChatResponse::tokenUsage,
+                    this::fallbackResponse, false).aiMessage().text();
+        } finally {
+            open.set(false);
+        }
+    }
+
+    /** Runs one stream to its end, passing chunks on while {@code open} is set. */
+    private static ChatResponse streamOnce(StreamingChatLanguageModel model, List<ChatMessage> messages,
+                                           AtomicBoolean open, Consumer<String> onPartial) {
+        CompletableFuture<ChatResponse> reply = new CompletableFuture<>();
+        model.chat(messages, new StreamingChatResponseHandler() {
+            @Override
+            public void onPartialResponse(String partialResponse) {
+                if (open.get()) {
+                    onPartial.accept(partialResponse);
+                }
+            }
+
+            @Override
+            public void onCompleteResponse(ChatResponse completeResponse) {
+                reply.complete(completeResponse);
+            }
+
+            @Override
+            public void onError(Throwable error) {
+                reply.completeExceptionally(error);
+            }
+        });
+        try {
+            return reply.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while streaming", e);
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof RuntimeException cause ? cause : new IllegalStateException(e.getCause());
+        }
+    }
+
+    @Override
+    public ChatResponse chat(ChatRequest request) {
+        return forUser(null).chat(request);
+    }
+
+    @Override
+    public ChatResponse chat(List<ChatMessage> messages) {
+        return forUser(null).chat(messages);
+    }
+
+    @Override
+    public String chat(String userMessage) {
+        return forUser(null).chat(userMessage);
+    }
+
+    // Still abstract in this langchain4j version; answered through the gated chat call
+    @Override
+    @SuppressWarnings("removal")
+    public Response<AiMessage> generate(List<ChatMessage> messages) {
+        return toResponse(chat(messages));
+    }
+
+    @Override
+    public ChatRequestParameters defaultRequestParameters() {
+        return delegate.defaultRequestParameters();
+    }
+
+    private static Response<AiMessage> toResponse(ChatResponse response) {
+        return Response.from(response.aiMessage(), response.tokenUsage(), response.finishReason());
+    }
+
+    /** The gateway's calls, made for one user. */
+    private class UserModel implements ChatLanguageModel {
+        private final String userId;
+
+        UserModel(String userId) {
+            this.userId = userId;
+        }
+
+        @Override
+        public ChatResponse chat(ChatRequest request) {
+            return execute(userId, request.messages(), () -> delegate.chat(request), ChatResponse::tokenUsage, LlmGateway.this::fallbackResponse);
+        }
+
+        @Override
+        public ChatResponse chat(List<ChatMessage> messages) {
+            return execute(userId, messages, () -> delegate.chat(messages), ChatResponse::tokenUsage, LlmGateway.this::fallbackResponse);
+        }
+
+        @Override
+        public String chat(String userMessage) {
+            return chat(List.<ChatMessage>of(UserMessage.from(userMessage))).aiMessage().text();
+        }
+
+        @Override
+        @SuppressWarnings("removal")
+        public Response<AiMessage> generate(List<ChatMessage> messages) {
+            return toResponse(chat(messages));
+        }
+
+        @Override
+        public ChatRequestParameters defaultRequestParameters() {
+            return delegate.defaultRequestParameters();
+        }
+    }
+
+    /** Raised when an attempt could not be admitted before the deadline. */
+    private static class NotAdmittedException extends Exception {
+        NotAdmittedException(TimeoutException cause) {
+            super(cause.getMessage(), cause);
+        }
+    }
+
+    /** One attempt: its admission permit, released with the real usage when the call ends. */
+    private class Attempt<T> implements Callable<T> {
+        private final Supplier<T> call;
+        private final Function<T, TokenUsage> usage;
+        private final LlmAdmissionController.Permit permit;
+
+        Attempt(Supplier<T> call, Function<T, TokenUsage> usage, LlmAdmissionController.Permit permit) {
+            this.call = call;
+            this.usage = usage;
+            this.permit = permit;
+        }
+
+        @Override
+        public T call() {
+            Long used = null;
+            try {
+                T result = call.get();
+                TokenUsage tokens = result != null ? usage.apply(result) : null;
+                used = tokens != null && tokens.totalTokenCount() != null ? tokens.totalTokenCount().longValue() : null;
+                return result;
+            } finally {
+                release(used);
+            }
+        }
+
+        void release(Long used) {
+            if (permit != null) {
+                permit.release(used);
+            }
+        }
+    }
+
+    private ChatResponse fallbackResponse() {
+        return ChatResponse.builder().aiMessage(AiMessage.from(task.getFallbackReply())).build();
+    }
+
+    private <T> T execute(String userId, List<ChatMessage> messages, Supplier<T> call,
+                          Function<T, TokenUsage> usage, Supplier<T> fallback) {
+        return execute(userId, messages, call, usage, fallback, true);
+    }
+
+    /**
+     * @param repeatable whether the call may be hedged or retried; a stream
+     *                   is not, since its partial replies are already out
+     */
+    private <T> T execute(String userId, List<ChatMessage> messages, Supplier<T> call,
+                          Function<T, TokenUsage> usage, Supplier<T> fallback, boolean repeatable) {
+        calls.incrementAndGet();
+        if (!allowCall()) {
+            shortCircuits.incrementAndGet();
+            return fail(new LlmUnavailableException("Circuit open for " + task), fallback);
+        }
+        long start = clock.millis();
+        Request<T> request = new Request<>(userId, estimateTokens(messages), call, usage);
+        try {
+            T result = !repeatable ? once(request, start)
+                    : task.isInteractive() ? hedged(request, start) : withRetries(request, start);
+            long millis = clock.millis() - start;
+            recordSuccess(millis, result != null ? usage.apply(result) : null);
+            return result;
+        } catch (NotAdmittedException e) {
+            notAdmitted.incrementAndGet();
+            endTrial();
+            return fail(new LlmUnavailableException(task + " was not admitted before its deadline", e), fallback);
+        } catch (TimeoutException e) {
+            timeouts.incrementAndGet();
+            recordFailure();
+            return fail(new LlmUnavailableException(task + " missed its " + deadline.toMillis() + " ms deadline", e), fallback);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            recordFailure();
+            return fail(new LlmUnavailableException("Interrupted while calling the model for " + task, e), fallback);
+        } catch (Exception e) {
+            recordFailure();
+            return fail(new LlmUnavailableException("Model call failed for " + task + ": " + e.getMessage(), e), fallback);
+        }
+    }
+
+    private <T> T fail(LlmUnavailableException error, Supplier<T> fallback) {
+        failures.incrementAndGet();
+        if (task.getFallbackReply() != null) {
+            fallbacks.incrementAndGet();
+            log.warn("[LlmGateway] {} answered with fallback: {}", task, error.getMessage());
+            return fallback.get();
+        }
+        throw error;
+    }
+
+    private record Request<T>(String userId, long estimatedTokens, Supplier<T> call, Function<T, TokenUsage> usage) {}
+
+    /** Waits until the attempt is admitted, at most until the deadline. */
+    private <T> Attempt<T> admitted(Request<T> request, long start) throws NotAdmittedException, InterruptedException {
+        if (admission == null) {
+            return new Attempt<>(request.call(), request.usage(), null);
+        }
+        try {
+            return new Attempt<>(request.call(), request.usage(),
+                    admission.acquire(task.getLane(), request.userId(), request.estimatedTokens(), remaining(start)));
+        } catch (TimeoutException e) {
+            throw new NotAdmittedException(e);
+        }
+    }
+
+    /** Admits the attempt only if it can go out right now, else returns null. */
+    private <T> Attempt<T> admittedNow(Request<T> request) {
+        if (admission == null) {
+            return new Attempt<>(request.call(), request.usage(), null);
+        }
+        LlmAdmissionController.Permit permit = admission.tryAcquire(task.getLane(), request.userId(), request.estimatedTokens());
+        return permit != null ? new Attempt<>(request.call(), request.usage(), permit) : null;
+    }
+
+    /**
+     * Starts a second attempt when the first is slow or fails, and returns the first answer.
+     */
+    private <T> T hedged(Request<T> request, long start) throws Exception {
+        CompletionService<T> completion = new ExecutorCompletionService<>(executor);
+        List<Attempt<T>> attempts = new ArrayList<>();
+        List<Future<T>> futures = new ArrayList<>();
+        Attempt<T> first = admitted(request, start);
+        attempts.add(first);
+        futures.add(completion.submit(first));
+        Future<T> hedgeFuture = null;
+        try {
+            Future<T> done = completion.poll(Math.min(hedgeAfterMillis(), remaining(start)), TimeUnit.MILLISECONDS);
+            if (done == null && remaining(start) > 0) {
+                // A hedge is only worth sending if it does not have to queue
+                Attempt<T> hedge = admittedNow(request);
+                if (hedge != null) {
+                    hedges.incrementAndGet();
+                    attempts.add(hedge);
+                    hedgeFuture = completion.submit(hedge);
+                    futures.add(hedgeFuture);
+                }
+            }
+            int pending = futures.size();
+            Exception lastError = null;
+            while (pending > 0) {
+                if (done == null) {
+                    done = completion.poll(remaining(start), TimeUnit.MILLISECONDS);
+                    if (done == null) {
+                        throw new TimeoutException();
+                    }
+                }
+                pending--;
+                try {
+                    T result = done.get();
+                    if (done == hedgeFuture) {
+                        hedgeWins.incrementAndGet();
+                    }
+                    return result;
+                } catch (ExecutionException e) {
+                    lastError = unwrap(e);
+                    // The only attempt failed before a hedge went out; retry it in its place
+                    if (futures.size() == 1 && remaining(start) > 0) {
+                        retries.incrementAndGet();
+                        Attempt<T> retry = admitted(request, start);
+                        attempts.add(retry);
+                        futures.add(completion.submit(retry));
+                        pending++;
+                    }
+                }
+                done = null;
+            }
+            throw lastError;
+        } finally {
+            futures.forEach(future -> future.cancel(true));
+            // Attempts cancelled before they started never release their own permit
+            attempts.forEach(attempt -> attempt.release(null));
+        }
+    }
+
+    private <T> T once(Request<T> request, long start) throws Exception {
+        Attempt<T> admitted = admitted(request, start);
+        Future<T> future = executor.submit(admitted);
+        try {
+            return future.get(remaining(start), TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            throw unwrap(e);
+        } finally {
+            future.cancel(true);
+            admitted.release(null);
+        }
+    }
+
+    private <T> T withRetries(Request<T> request, long start) throws Exception {
+        Exception lastError = null;
+        for (int attempt = 0; attempt <= options.retries(); attempt++) {
+            if (attempt > 0) {
+                if (remaining(start) <= options.retryBackoff().toMillis()) break;
+                retries.incrementAndGet();
+                Thread.sleep(options.retryBackoff().toMillis());
+            }
+            Attempt<T> admitted = admitted(request, start);
+            Future<T> future = executor.submit(admitted);
+            try {
+                return future.get(remaining(start), TimeUnit.MILLISECONDS);
+            } catch (ExecutionException e) {
+                lastError = unwrap(e);
+            } finally {
+                future.cancel(true);
+                admitted.release(null);
+            }
+        }
+        throw lastError != null ? lastError : new TimeoutException();
+    }
+
+    /** Prompt tokens plus the expected output, for admission. */
+    private long estimateTokens(List<ChatMessage> messages) {
+        if (admission == null) {
+            return 0;
+        }
+        long tokens = expectedOutputTokens;
+        for (ChatMessage message : messages) {
+            String text = switch (message) {
+                case SystemMessage system -> system.text();
+                case UserMessage user -> user.hasSingleText() ? user.singleText() : user.toString();
+                case AiMessage ai -> ai.text();
+                default -> message.toString();
+            };
+            // A few tokens of per-message overhead on top of the text
+            tokens += PromptTemplate.countTokens(text) + 4;
+        }
+        return tokens;
+    }
+
+    private static Exception unwrap(ExecutionException e) {
+        return e.getCause() instanceof Exception cause ? cause : e;
+    }
+
+    private long remaining(long start) {
+        return Math.max(0, deadline.toMillis() - (clock.millis() - start));
+    }
+
+    /** The recent 95th percentile latency, or the configured delay until enough calls have been seen. */
+    long hedgeAfterMillis() {
+        synchronized (latencies) {
+            if (latencyCount < MIN_SAMPLES_FOR_HEDGE) {
+                return options.hedgeAfter().toMillis();
+            }
+        }
+        return Math.max(options.minHedgeAfter().toMillis(), percentile(95));
+    }
+
+    long percentile(int p) {
+        long[] sorted;
+        synchronized (latencies) {
+            sorted = Arrays.copyOf(latencies, Math.min(latencyCount, LATENCY_SAMPLES));
+        }
+        if (sorted.length == 0) {
+            return 0;
+        }
+        Arrays.sort(sorted);
+        return sorted[Math.min(sorted.length - 1, (int) Math.ceil(p / 100.0 * sorted.length) - 1)];
+    }
+
+    private synchronized boolean allowCall() {
+        if (circuit == CircuitState.OPEN) {
+            if (clock.millis() - openedAt < options.openFor().toMillis()) {
+                return false;
+            }
+            circuit = CircuitState.HALF_OPEN;
+            trialInFlight = false;
+        }
+        if (circuit == CircuitState.HALF_OPEN) {
+            if (trialInFlight) {
+                return false;
+            }
+            trialInFlight = true;
+        }
+        return true;
+    }
+
+    private void recordSuccess(long millis, TokenUsage usage) {
+        synchronized (this) {
+            consecutiveFailures = 0;
+            if (circuit != CircuitState.CLOSED) {
+                log.info("[LlmGateway] Circuit for {} closed", task);
+            }
+            circuit = CircuitState.CLOSED;
+            trialInFlight = false;
+        }
+        successes.incrementAndGet();
+        totalMillis.addAndGet(millis);
+        maxMillis.accumulateAndGet(millis, Math::max);
+        synchronized (latencies) {
+            latencies[latencyCount % LATENCY_SAMPLES] = millis;
+            latencyCount++;
+        }
+        if (usage != null) {
+            if (usage.inputTokenCount() != null) inputTokens.addAndGet(usage.inputTokenCount());
+            if (usage.outputTokenCount() != null) outputTokens.addAndGet(usage.outputTokenCount());
+        }
+    }
+
+    private synchronized void recordFailure() {
+        consecutiveFailures++;
+        if (circuit == CircuitState.HALF_OPEN || consecutiveFailures >= options.failureThreshold()) {
+            if (circuit != CircuitState.OPEN) {
+                log.warn("[LlmGateway] Circuit for {} opened after {} consecutive failures", task, consecutiveFailures);
+            }
+            circuit = CircuitState.OPEN;
+            openedAt = clock.millis();
+            trialInFlight = false;
+        }
+    }
+
+    /** Frees the half-open trial slot when the trial call never reached the provider. */
+    private synchronized void endTrial() {
+        if (circuit == CircuitState.HALF_OPEN) {
+            trialInFlight = false;
+        }
+    }
+
+    synchronized CircuitState getCircuitState() {
+        return circuit;
+    }
+
+    public long getInputTokens() {
+        return inputTokens.get();
+    }
+
+    public long getOutputTokens() {
+        return outputTokens.get();
+    }
+
+    /** Call counts, latency percentiles and token usage of this task. */
+    public Map<String, Object> getStats() {
+        long succeeded = successes.get();
+        Map<String, Object> row = new LinkedHashMap<>();
+        row.put("calls", calls.get());
+        row.put("successes", succeeded);
+        row.put("failures", failures.get());
+        row.put("timeouts", timeouts.get());
+        row.put("retries", retries.get());
+        row.put("hedges", hedges.get());
+        row.put("hedgeWins", hedgeWins.get());
+        row.put("fallbacks", fallbacks.get());
+        row.put("shortCircuits", shortCircuits.get());
+        row.put("notAdmitted", notAdmitted.get());
+        row.put("circuit", getCircuitState().name());
+        row.put("avgMillis", succeeded == 0 ? 0 : totalMillis.get() / succeeded);
+        row.put("p50Millis", percentile(50));
+        row.put("p95Millis", percentile(95));
+        row.put("p99Millis", percentile(99));
+        row.put("maxMillis", maxMillis.get());
+        row.put("inputTokens", inputTokens.get());
+        row.put("outputTokens", outputTokens.get());
+        return row;
+    }
+}
@@ -0,0 +1,13 @@
+package com.example.ai_companion.service;
+
+/**
+ * Admission lanes for LLM calls, highest priority first. See {@link LlmAdmissionController}.
+ */
+public enum LlmLane {
+    /** A user is waiting on the answer. */
+    INTERACTIVE,
+    /** Work whose result the user will look for shortly, e.g. a reminder they just asked for. */
+    NEAR_REAL_TIME,
+    /** Background extraction and summaries. */
+    BATCH
+}
@@ -0,0 +1,266 @@
+package com.example.ai_companion.service;
+
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.model.chat.request.ChatRequestParameters;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.store.embedding.CosineSimilarity;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+
+/**
+ * Cache for standalone LLM prompts, i.e. prompts answered without chat history.
+ * <p>
+ * Call sites opt in by passing a {@link UseCase}, which sets how long answers
+ * are kept and how many different answers are collected per prompt before
+ * they are reused in turn (so a game preview does not become the same game
+ * every time). Entries are keyed on the prompt with whitespace normalised plus
+ * the model name and temperature routed to the use case's task. Use cases whose prompts carry no personal
+ * data can also reuse the answer to a near-identical prompt, matched by
+ * embedding similarity when an {@link EmbeddingModel} is configured
+ * ({@code llm.cache.semantic.enabled=true}).
+ */
+@Component
+public class LlmResponseCache {
+
+    private static final Logger log = LoggerFactory.getLogger(LlmResponseCache.class);
+
+    public enum UseCase {
+        WELCOME(LlmTask.GENERAL, Duration.ofHours(24), 1, false),
+        GAME_PREVIEW(LlmTask.GAME_MASTER, Duration.ofHours(6), 5, false),
+        GAME_OPENING(LlmTask.GAME_MASTER, Duration.ofDays(7), 3, true);
+
+        private final LlmTask task;
+        private final Duration ttl;
+        private final int variants;
+        private final boolean semantic;
+
+        UseCase(LlmTask task, Duration ttl, int variants, boolean semantic) {
+            this.task = task;
+            this.ttl = ttl;
+            this.variants = variants;
+            this.semantic = semantic;
+        }
+
+        public LlmTask getTask() { return task; }
+        public Duration getTtl() { return ttl; }
+        public int getVariants() { return variants; }
+        public boolean isSemantic() { return semantic; }
+    }
+
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    @Autowired(required = false)
+    private LlmRouter llmRouter;
+
+    @Autowired(required = false)
+    private EmbeddingModel embeddingModel;
+
+    @Value("${llm.cache.enabled:true}")
+    private boolean enabled = true;
+
+    @Value("${llm.cache.max-entries:2000}")
+    private int maxEntries = 2000;
+
+    @Value("${llm.cache.semantic.threshold:0.95}")
+    private double similarityThreshold = 0.95;
+
+    private static class Entry {
+        final UseCase useCase;
+        final Instant expiresAt;
+        final Embedding embedding;
+        final List<String> responses = new ArrayList<>();
+        int next;
+
+        Entry(UseCase useCase, Instant expiresAt, Embedding embedding) {
+            this.useCase = useCase;
+            this.expiresAt = expiresAt;
+            this.embedding = embedding;
+        }
+
+        /** Returns the next answer in turn once all variants have been collected, else null. */
+        String take() {
+            if (responses.size() < useCase.getVariants()) {
+                return null;
+            }
+            String response = responses.get(next);
+            next = (next + 1) % responses.size();
+            return response;
+        }
+    }
+
+    private static class Stats {
+        final AtomicLong hits = new AtomicLong();
+        final AtomicLong semanticHits = new AtomicLong();
+        final AtomicLong misses = new AtomicLong();
+    }
+
+    // Least recently used entries are dropped first once maxEntries is reached
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+            return size() > maxEntries;
+        }
+    };
+
+    private final Map<UseCase, Stats> stats = new EnumMap<>(UseCase.class);
+
+    public LlmResponseCache() {
+        for (UseCase useCase : UseCase.values()) {
+            stats.put(useCase, new Stats());
+        }
+    }
+
+    /**
+     * Returns a cached answer to {@code prompt}, or calls {@code compute} and caches its answer.
+     */
+    public String getOrCompute(UseCase useCase, String prompt, Supplier<String> compute) {
+        return getOrCompute(useCase, prompt, compute, Instant.now());
+    }
+
+    String getOrCompute(UseCase useCase, String prompt, Supplier<String> compute, Instant now) {
+        if (!enabled || prompt == null) {
+            return compute.get();
+        }
+        Stats counters = stats.get(useCase);
+        String key = key(useCase, prompt);
+        synchronized (entries) {
+            Entry entry = entries.get(key);
+            if (entry != null && entry.expiresAt.isAfter(now)) {
+                String cached = entry.take();
+                if (cached != null) {
+                    counters.hits.incrementAndGet();
+                    return cached;
+                }
+            }
+        }
+
+        Embedding embedding = null;
+        if (useCase.isSemantic() && embeddingModel != null) {
+            embedding = embed(prompt);
+            String near = embedding != null ? findSimilar(useCase, embedding, now) : null;
+            if (near != null) {
+                counters.semanticHits.incrementAndGet();
+                return near;
+            }
+        }
+
+        counters.misses.incrementAndGet();
+        String response = compute.get();
+        if (response != null && !response.isBlank()) {
+            synchronized (entries) {
+                Entry entry = entries.get(key);
+                if (entry == null || !entry.expiresAt.isAfter(now)) {
+                    entry = new Entry(useCase, now.plus(useCase.getTtl()), embedding);
+                    entries.put(key, entry);
+                }
+                if (entry.responses.size() < useCase.getVariants()) {
+                    entry.responses.add(response);
+                }
+            }
+        }
+        return response;
+    }
+
+    private Embedding embed(String prompt) {
+        try {
+            return embeddingModel.embed(normalise(prompt)).content();
+        } catch (Exception e) {
+            log.warn("[LlmResponseCache] Embedding failed, skipping similarity lookup: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    private String findSimilar(UseCase useCase, Embedding embedding, Instant now) {
+        synchronized (entries) {
+            Entry best = null;
+            double bestScore = similarityThreshold;
+            for (Entry entry : entries.values()) {
+                if (entry.useCase != useCase || entry.embedding == null || !entry.expiresAt.isAfter(now)) continue;
+                double score = CosineSimilarity.between(embedding, entry.embedding);
+                if (score >= bestScore) {
+                    best = entry;
+                    bestScore = score;
+                }
+            }
+            return best != null ? best.take() : null;
+        }
+    }
+
+    /**
+     * Hit counts and hit rate per use case.
+     */
+    public Map<String, Map<String, Object>> getStats() {
+        Map<String, Map<String, Object>> result = new LinkedHashMap<>();
+        for (Map.Entry<UseCase, Stats> e : stats.entrySet()) {
+            long hits = e.getValue().hits.get();
+            long semanticHits = e.getValue().semanticHits.get();
+            long misses = e.getValue().misses.get();
+            long total = hits + semanticHits + misses;
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put("hits", hits);
+            row.put("semanticHits", semanticHits);
+            row.put("misses", misses);
+            row.put("hitRate", total == 0 ? 0.0 : (double) (hits + semanticHits) / total);
+            result.put(e.getKey().name(), row);
+        }
+        return result;
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${llm.cache.report-ms:600000}")
+    public void evictExpiredAndReport() {
+        Instant now = Instant.now();
+        synchronized (entries) {
+            Iterator<Entry> it = entries.values().iterator();
+            while (it.hasNext()) {
+                if (!it.next().expiresAt.isAfter(now)) it.remove();
+            }
+        }
+        log.info("[LlmResponseCache] {} entries, stats {}", size(), getStats());
+    }
+
+    private String key(UseCase useCase, String prompt) {
+        StringBuilder sb = new StringBuilder(useCase.name()).append('\n');
+        ChatRequestParameters parameters = llmRouter != null && llmRouter.model(useCase.getTask()) != null
+                ? llmRouter.model(useCase.getTask()).defaultRequestParameters() : null;
+        if (parameters != null) {
+            sb.append(parameters.modelName()).append('|').append(parameters.temperature());
+        }
+        sb.append('\n').append(normalise(prompt));
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(sb.toString().getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            return sb.toString();
+        }
+    }
+
+    static String normalise(String prompt) {
+        return WHITESPACE.matcher(prompt.trim()).replaceAll(" ");
+    }
+}
@@ -0,0 +1,149 @@
+package com.example.ai_companion.service;
+
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.model.chat.ChatLanguageModel;
+import dev.langchain4j.model.chat.StreamingChatLanguageModel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Hands each {@link LlmTask} the chat model configured for it, behind an
+ * {@link LlmGateway} that enforces the task's deadline and meters the calls.
+ * <p>
+ * Models are built by {@code LLMConfig} from {@code llm.tasks.<task>.model},
+ * {@code .temperature}, {@code .max-tokens} and {@code .timeout}, falling back
+ * to the task's defaults; tasks with identical settings share one model. Every
+ * call made through {@link #model(LlmTask)} is timed and its token usage
+ * priced. The per-task totals, including fallbacks and latency percentiles,
+ * are logged every {@code llm.router.report-ms}, with the admission lanes.
+ */
+public class LlmRouter {
+
+    private static final Logger log = LoggerFactory.getLogger(LlmRouter.class);
+
+    /** Model settings for one task. A null max tokens means no limit. */
+    public record Settings(String model, double temperature, Integer maxTokens, Duration timeout) {
+
+        public static Settings defaultsFor(LlmTask task) {
+            return new Settings(task.getDefaultModel(), task.getDefaultTemperature(),
+                    task.getDefaultMaxTokens(), task.getDefaultTimeout());
+        }
+    }
+
+    // USD per million input and output tokens
+    private static final Map<String, double[]> PRICES = Map.of(
+            "gpt-4o-mini", new double[] {0.15, 0.60},
+            "gpt-4o", new double[] {2.50, 10.00},
+            "gpt-4.1", new double[] {2.00, 8.00},
+            "gpt-4.1-mini", new double[] {0.40, 1.60},
+            "gpt-4.1-nano", new double[] {0.10, 0.40},
+            "gpt-3.5-turbo", new double[] {0.50, 1.50});
+
+    // Output tokens budgeted for admission when a task has no max tokens
+    private static final int DEFAULT_OUTPUT_TOKENS = 500;
+
+    private final Map<LlmTask, Settings> settings = new EnumMap<>(LlmTask.class);
+    private final Map<LlmTask, LlmGateway> gateways = new EnumMap<>(LlmTask.class);
+
+    private final LlmAdmissionController admission;
+
+    public LlmRouter(Map<LlmTask, Settings> settings, Map<LlmTask, ChatLanguageModel> models) {
+        this(settings, models, LlmGateway.Options.defaults(), null);
+    }
+
+    /**
+     * @param settings  the settings of every task; the timeout is also the deadline of each call
+     * @param models    the model built from those settings for every task
+     * @param options   retry, hedging and circuit breaker settings for the gateways
+     * @param admission admits the calls of all tasks, or null for no admission control
+     * @throws IllegalArgumentException if a task has no model
+     */
+    public LlmRouter(Map<LlmTask, Settings> settings, Map<LlmTask, ChatLanguageModel> models,
+                     LlmGateway.Options options, LlmAdmissionController admission) {
+        this.admission = admission;
+        for (LlmTask task : LlmTask.values()) {
+            if (!settings.containsKey(task) || !models.containsKey(task)) {
+                throw new IllegalArgumentException("No model configured for task " + task);
+            }
+            this.settings.put(task, settings.get(task));
+            Integer maxTokens = settings.get(task).maxTokens();
+            this.gateways.put(task, new LlmGateway(task, models.get(task), settings.get(task).timeout(), options,
+                    admission, maxTokens != null ? maxTokens : DEFAULT_OUTPUT_TOKENS));
+        }
+    }
+
+    /**
+     * The model for {@code task}, behind the task's {@link LlmGateway}; calls
+     * made through it count towards the task's report.
+     */
+    public ChatLanguageModel model(LlmTask task) {
+        return gateways.get(task);
+    }
+
+    /**
+     * Same as {@link #model(LlmTask)}, with the calls queued on behalf of
+     * {@code userId} so that users share each admission lane fairly.
+     */
+    public ChatLanguageModel model(LlmTask task, String userId) {
+        return gateways.get(task).forUser(userId);
+    }
+
+    /**
+     * Streams a reply for {@code task} from {@code model} through the task's
+     * {@link LlmGateway}, on behalf of {@code userId}.
+     */
+    public String stream(LlmTask task, String userId, StreamingChatLanguageModel model,
+                         List<ChatMessage> messages, Consumer<String> onPartial) {
+        return gateways.get(task).stream(userId, model, messages, onPartial);
+    }
+
+    public Settings settings(LlmTask task) {
+        return settings.get(task);
+    }
+
+    /**
+     * Per task: the model, the gateway's call, fallback and latency figures
+     * (see {@link LlmGateway#getStats()}), and the estimated cost. Cost is null
+     * for models without a known price.
+     */
+    public Map<String, Map<String, Object>> getReport() {
+        Map<String, Map<String, Object>> report = new LinkedHashMap<>();
+        for (LlmTask task : LlmTask.values()) {
+            LlmGateway gateway = gateways.get(task);
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put("model", settings.get(task).model());
+            row.putAll(gateway.getStats());
+            row.put("costUsd", cost(settings.get(task).model(), gateway.getInputTokens(), gateway.getOutputTokens()));
+            report.put(task.name(), row);
+        }
+        return report;
+    }
+
+    @Scheduled(fixedDelayString = "${llm.router.report-ms:600000}")
+    public void report() {
+        Map<String, Map<String, Object>> report = getReport();
+        report.values().removeIf(row -> (long) row.get("calls") == 0);
+        if (!report.isEmpty()) {
+            log.info("[LlmRouter] Per-task usage {}", report);
+        }
+        if (admission != null) {
+            log.info("[LlmRouter] Admission {}", admission.getStats());
+        }
+    }
+
+    static Double cost(String model, long inputTokens, long outputTokens) {
+        double[] price = PRICES.get(model);
+        if (price == null) {
+            return null;
+        }
+        return (inputTokens * price[0] + outputTokens * price[1]) / 1_000_000.0;
+    }
+}
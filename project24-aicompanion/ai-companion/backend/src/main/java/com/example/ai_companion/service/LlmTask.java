@@ -0,0 +1,64 @@
+package com.example.ai_companion.service;
+
+import java.time.Duration;
+
+/**
+ * The kinds of work sent to the chat model. Each task can run on its own model
+ * settings, configured under {@code llm.tasks.<property-key>}; see {@link LlmRouter}.
+ * <p>
+ * The defaults keep every task on {@code gpt-4o-mini}. Tasks the user waits
+ * for keep temperature 0.7; background extraction runs at temperature 0 with
+ * a small output limit, since it produces short structured answers.
+ * <p>
+ * Each task is admitted through an {@link LlmLane}. Interactive tasks are
+ * also hedged by {@link LlmGateway}: a slow call gets a second attempt in
+ * parallel. The companion reply has a canned fallback, so the user still
+ * gets an answer when the model is down.
+ */
+public enum LlmTask {
+    COMPANION_REPLY("gpt-4o-mini", 0.7, null, Duration.ofSeconds(30), LlmLane.INTERACTIVE,
+            "I'm sorry, I'm having a little trouble thinking right now. Could you ask me again in a moment?"),
+    GENERAL("gpt-4o-mini", 0.7, null, Duration.ofSeconds(30), LlmLane.INTERACTIVE, null),
+    GAME_MASTER("gpt-4o-mini", 0.7, null, Duration.ofSeconds(30), LlmLane.INTERACTIVE, null),
+    // Game previews generated ahead of time; nobody is waiting on them yet
+    GAME_PREVIEW("gpt-4o-mini", 0.7, 200, Duration.ofSeconds(60), LlmLane.NEAR_REAL_TIME, null),
+    REMINDER_EXTRACTION("gpt-4o-mini", 0.0, 300, Duration.ofSeconds(60), LlmLane.NEAR_REAL_TIME, null),
+    CORE_FACTS("gpt-4o-mini", 0.0, 200, Duration.ofSeconds(60), LlmLane.BATCH, null),
+    CORE_MERGE("gpt-4o-mini", 0.0, 500, Duration.ofSeconds(60), LlmLane.BATCH, null),
+    MEMORY_EXTRACTION("gpt-4o-mini", 0.0, 200, Duration.ofSeconds(60), LlmLane.BATCH, null),
+    DAILY_SUMMARY("gpt-4o-mini", 0.0, 1000, Duration.ofSeconds(120), LlmLane.BATCH, null),
+    CONVERSATION_SUMMARY("gpt-4o-mini", 0.0, 400, Duration.ofSeconds(60), LlmLane.BATCH, null),
+    GREETING("gpt-4o-mini", 0.7, 800, Duration.ofSeconds(60), LlmLane.BATCH, null);
+
+    private final String defaultModel;
+    private final double defaultTemperature;
+    private final Integer defaultMaxTokens;
+    private final Duration defaultTimeout;
+    private final LlmLane lane;
+    private final String fallbackReply;
+
+    LlmTask(String defaultModel, double defaultTemperature, Integer defaultMaxTokens, Duration defaultTimeout,
+            LlmLane lane, String fallbackReply) {
+        this.defaultModel = defaultModel;
+        this.defaultTemperature = defaultTemperature;
+        this.defaultMaxTokens = defaultMaxTokens;
+        this.defaultTimeout = defaultTimeout;
+        this.lane = lane;
+        this.fallbackReply = fallbackReply;
+    }
+
+    public String getDefaultModel() { return defaultModel; }
+    public double getDefaultTemperature() { return defaultTemperature; }
+    public Integer getDefaultMaxTokens() { return defaultMaxTokens; }
+    public Duration getDefaultTimeout() { return defaultTimeout; }
+    public LlmLane getLane() { return lane; }
+    /** Whether a user is waiting on the answer. */
+    public boolean isInteractive() { return lane == LlmLane.INTERACTIVE; }
+    /** Reply returned when the call fails, or null to throw. */
+    public String getFallbackReply() { return fallbackReply; }
+
+    /** Key under {@code llm.tasks}, e.g. {@code reminder-extraction}. */
+    public String getPropertyKey() {
+        return name().toLowerCase().replace('_', '-');
+    }
+}
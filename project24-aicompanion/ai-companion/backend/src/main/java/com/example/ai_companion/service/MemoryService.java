@@ -3,7 +3,6 @@ package com.example.ai_companion.service;
 import com.example.ai_companion.model.User;
 import com.example.ai_companion.repository.UserRepository;
 import com.example.ai_companion.utils.logger;
-import dev.langchain4j.model.chat.ChatLanguageModel;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.*;
 import org.springframework.stereotype.Service;
@@ -21,7 +20,11 @@ import java.util.Map;
 public class MemoryService {
 
     @Autowired private UserRepository userRepository;
-    @Autowired private ChatLanguageModel chatLanguageModel;
+    @Autowired private LlmRouter llmRouter;
+    @Autowired private TurnCoordinator turnCoordinator;
+
+    // Core-information merges are ordered separately from the user's chat turns
+    private static final String CORE_QUEUE = "core-info:";
 
     private final RestTemplate restTemplate = new RestTemplate();
 
@@ -41,7 +44,7 @@ public class MemoryService {
         }
 
         try {
-            extractAndStoreCoreInformation(user, userMessage, aiResponse);
+            extractAndStoreCoreInformation(userId, user, userMessage, aiResponse);
             extractAndStoreMemoryEmbedding(user.getId(), userMessage, aiResponse);
         } catch (Exception e) {
             System.err.println("Failed to store insights: " + e.getMessage());
@@ -51,23 +54,40 @@ public class MemoryService {
     /**
      * Extracts and updates the user's long-term core information based on the conversation.
      *
-     * @param user     the user entity
-     * @param question the user's input
-     * @param answer   the assistant's reply
+     * @param firebaseUid the user's Firebase UID
+     * @param user        the user entity
+     * @param question    the user's input
+     * @param answer      the assistant's reply
      */
-    private void extractAndStoreCoreInformation(User user, String question, String answer) {
-        String corePrompt = buildCorePrompt(question, answer);
-        String extractedCore = chatLanguageModel.chat(corePrompt).trim();
+    private void extractAndStoreCoreInformation(String firebaseUid, User user, String question, String answer) {
+        String extractedCore = buildCorePrompt(question, answer).call(llmRouter.model(LlmTask.CORE_FACTS, user.getId())).trim();
         logger.logToFile(user.getId(), "Extracting core information: " + extractedCore);
 
         if (!"none".equalsIgnoreCase(extractedCore)) {
+            mergeCoreInformation(firebaseUid, extractedCore);
+        }
+    }
+
+    /**
+     * Merges a new fact into the user's core information and saves it. Merges
+     * for one user run one at a time against a fresh read, so a merge that
+     * finishes second builds on the first instead of overwriting it.
+     *
+     * @return the merged core information, or null if the user no longer exists
+     */
+    private String mergeCoreInformation(String firebaseUid, String newFact) {
+        return turnCoordinator.run(CORE_QUEUE + firebaseUid, null, () -> {
+            User user = userRepository.findByFirebaseUid(firebaseUid);
+            if (user == null) {
+                return null;
+            }
             String existing = user.getCoreInformation() != null ? user.getCoreInformation() : "";
-            String mergedPrompt = buildMergePrompt(existing, extractedCore);
-            String updatedCore = chatLanguageModel.chat(mergedPrompt).trim();
+            String updatedCore = buildMergePrompt(existing, newFact).call(llmRouter.model(LlmTask.CORE_MERGE, user.getId())).trim();
 
             user.setCoreInformation(updatedCore);
             userRepository.save(user);
-        }
+            return updatedCore;
+        });
     }
 
     /**
@@ -78,8 +98,7 @@ public class MemoryService {
      * @param answer   the assistant's reply
      */
     private void extractAndStoreMemoryEmbedding(String userId, String question, String answer) {
-        String memoryPrompt = buildMemoryPrompt(question, answer);
-        String memoryResult = chatLanguageModel.chat(memoryPrompt).trim();
+        String memoryResult = buildMemoryPrompt(question, answer).call(llmRouter.model(LlmTask.MEMORY_EXTRACTION, userId)).trim();
         logger.logToFile(userId, "Extracting memory result: " + memoryResult);
 
         if (!"none".equalsIgnoreCase(memoryResult)) {
@@ -100,12 +119,8 @@ public class MemoryService {
         }
     }
 
-    /** Builds the prompt for extracting core identity facts. */
-    private String buildCorePrompt(String question, String answer) {
-        return """
-            The user said: "%s"
-            The assistant replied: "%s"
-            
+    private static final PromptTemplate CORE_FACTS = PromptTemplate.of("core-facts", """
+            You will be given one exchange between a user and their assistant.
             Extract only long-term personal facts that help define the user's identity.
             Focus on:
             - Relationships (e.g., partner, family roles)
@@ -121,29 +136,26 @@ public class MemoryService {
 
             Return a single natural-language sentence that summarises only newly discovered core facts.
             If there is nothing new or relevant, reply with "none".
-        """.formatted(question, answer);
-    }
-
-    /** Builds the prompt for merging new core info with existing identity data. */
-    private String buildMergePrompt(String existing, String newFact) {
-        return """
-            Existing core information:
-            %s
-
-            New core fact to merge:
-            %s
-
+            """, """
+            The user said: "{{question}}"
+            The assistant replied: "{{answer}}"
+            """);
+
+    private static final PromptTemplate CORE_MERGE = PromptTemplate.of("core-merge", """
+            You maintain a short profile of a user's core information.
+            You will be given the existing core information and a new core fact.
             Combine and regenerate a concise updated version of the user's core information.
             If there is conflicting information, prefer the new information.
-        """.formatted(existing, newFact);
-    }
+            """, """
+            Existing core information:
+            {{existing}}
 
-    /** Builds the prompt for extracting short-term or contextual memory. */
-    private String buildMemoryPrompt(String question, String answer) {
-        return """
-            The user said: "%s"
-            The assistant replied: "%s"
+            New core fact to merge:
+            {{newFact}}
+            """);
 
+    private static final PromptTemplate CONTEXTUAL_MEMORY = PromptTemplate.of("contextual-memory", """
+            You will be given one exchange between a user and their assistant.
             Extract any short-term or event-specific information that may be useful for future questions.
             Examples:
             - Specific events or actions (e.g., went to the doctor, studied for an exam)
@@ -156,24 +168,34 @@ public class MemoryService {
             - Anything irrelevant or already known
 
             Return a concise sentence capturing the memory, or "none" if nothing is worth storing.
-        """.formatted(question, answer);
+            """, """
+            The user said: "{{question}}"
+            The assistant replied: "{{answer}}"
+            """);
+
+    /** Builds the prompt for extracting core identity facts. */
+    private PromptTemplate.Rendered buildCorePrompt(String question, String answer) {
+        return CORE_FACTS.render("question", question, "answer", answer);
+    }
+
+    /** Builds the prompt for merging new core info with existing identity data. */
+    private PromptTemplate.Rendered buildMergePrompt(String existing, String newFact) {
+        return CORE_MERGE.render("existing", existing, "newFact", newFact);
+    }
+
+    /** Builds the prompt for extracting short-term or contextual memory. */
+    private PromptTemplate.Rendered buildMemoryPrompt(String question, String answer) {
+        return CONTEXTUAL_MEMORY.render("question", question, "answer", answer);
     }
 
     /**
      * Manually add core information to user's profile
      */
     public void addManualCoreInformation(String firebaseUid, String coreInfo) {
-        User user = userRepository.findByFirebaseUid(firebaseUid);
-        if (user == null) {
+        String updatedCore = mergeCoreInformation(firebaseUid, coreInfo);
+        if (updatedCore == null) {
             throw new RuntimeException("User not found: " + firebaseUid);
         }
-
-        String existing = user.getCoreInformation() != null ? user.getCoreInformation() : "";
-        String mergedPrompt = buildMergePrompt(existing, coreInfo);
-        String updatedCore = chatLanguageModel.chat(mergedPrompt).trim();
-
-        user.setCoreInformation(updatedCore);
-        userRepository.save(user);
         logger.logToFile(firebaseUid, "Manual core information merged and saved: " + updatedCore);
     }
 
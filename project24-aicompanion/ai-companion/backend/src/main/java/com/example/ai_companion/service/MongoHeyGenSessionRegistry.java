@@ -0,0 +1,136 @@
+package com.example.ai_companion.service;
+
+import com.example.ai_companion.model.AvatarSession;
+import com.example.ai_companion.response.HeyGenSessionResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Session registry in the {@code avatar_sessions} collection, shared by every
+ * node. Claims, removals and lease takeovers are single-document conditional
+ * writes, so two nodes never both win the same session.
+ */
+@Component
+@ConditionalOnProperty(name = "heygen.sessions.registry", havingValue = "mongo", matchIfMissing = true)
+public class MongoHeyGenSessionRegistry implements HeyGenSessionRegistry {
+
+    private static final Logger log = LoggerFactory.getLogger(MongoHeyGenSessionRegistry.class);
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Override
+    public void save(AvatarSession session) {
+        mongoTemplate.save(session);
+    }
+
+    @Override
+    public AvatarSession find(String sessionId) {
+        return sessionId != null ? mongoTemplate.findById(sessionId, AvatarSession.class) : null;
+    }
+
+    @Override
+    public AvatarSession findByUser(String userId) {
+        Query query = new Query(Criteria.where("userId").is(userId).and("pooled").is(false))
+                .with(Sort.by(Sort.Direction.DESC, "createdAt"))
+                .limit(1);
+        return mongoTemplate.findOne(query, AvatarSession.class);
+    }
+
+    @Override
+    public AvatarSession claimPooled(String configKey, String userId, String nodeId, Instant leaseUntil, Instant createdAfter) {
+        Query query = new Query(Criteria.where("pooled").is(true)
+                .and("configKey").is(configKey)
+                .and("createdAt").gt(createdAfter))
+                .with(Sort.by(Sort.Direction.ASC, "createdAt"));
+        Update update = new Update()
+                .set("pooled", false)
+                .set("userId", userId)
+                .set("ownerNode", nodeId)
+                .set("leaseUntil", leaseUntil);
+        return mongoTemplate.findAndModify(query, update, FindAndModifyOptions.options().returnNew(true), AvatarSession.class);
+    }
+
+    @Override
+    public AvatarSession oldestPooled() {
+        Query query = new Query(Criteria.where("pooled").is(true))
+                .with(Sort.by(Sort.Direction.ASC, "createdAt"))
+                .limit(1);
+        return mongoTemplate.findOne(query, AvatarSession.class);
+    }
+
+    @Override
+    public boolean remove(String sessionId) {
+        if (sessionId == null) {
+            return false;
+        }
+        return mongoTemplate.remove(new Query(Criteria.where("_id").is(sessionId)), AvatarSession.class).getDeletedCount() > 0;
+    }
+
+    @Override
+    public long count() {
+        return mongoTemplate.count(new Query(), AvatarSession.class);
+    }
+
+    @Override
+    public long countPooled(String configKey) {
+        Criteria criteria = Criteria.where("pooled").is(true);
+        if (configKey != null) {
+            criteria = criteria.and("configKey").is(configKey);
+        }
+        return mongoTemplate.count(new Query(criteria), AvatarSession.class);
+    }
+
+    @Override
+    public void touch(String sessionId, Instant lastTaskAt) {
+        Query query = new Query(Criteria.where("_id").is(sessionId)
+                .orOperator(Criteria.where("lastTaskAt").is(null), Criteria.where("lastTaskAt").lt(lastTaskAt)));
+        mongoTemplate.updateFirst(query, new Update().set("lastTaskAt", lastTaskAt), AvatarSession.class);
+    }
+
+    @Override
+    public void keptAlive(String sessionId, Instant at) {
+        mongoTemplate.updateFirst(new Query(Criteria.where("_id").is(sessionId)),
+                new Update().set("lastKeepAlive", at), AvatarSession.class);
+    }
+
+    @Override
+    public boolean markStarted(String sessionId, String userId, HeyGenSessionResponse started, Instant at) {
+        Update update = new Update()
+                .set("pooled", false)
+                .set("started", started)
+                .set("startedAt", at)
+                .set("lastKeepAlive", at);
+        if (userId != null) {
+            update.set("userId", userId);
+        }
+        return mongoTemplate.updateFirst(new Query(Criteria.where("_id").is(sessionId)), update, AvatarSession.class)
+                .getMatchedCount() > 0;
+    }
+
+    @Override
+    public List<AvatarSession> renewAndClaim(String nodeId, Instant now, Instant leaseUntil) {
+        mongoTemplate.updateMulti(new Query(Criteria.where("ownerNode").is(nodeId)),
+                new Update().set("leaseUntil", leaseUntil), AvatarSession.class);
+        Query lapsed = new Query(new Criteria().orOperator(
+                Criteria.where("leaseUntil").is(null), Criteria.where("leaseUntil").lt(now)));
+        long taken = mongoTemplate.updateMulti(lapsed,
+                new Update().set("ownerNode", nodeId).set("leaseUntil", leaseUntil), AvatarSession.class).getModifiedCount();
+        if (taken > 0) {
+            log.info("[HeyGenSessionRegistry] Node {} took over {} sessions with lapsed leases", nodeId, taken);
+        }
+        return mongoTemplate.find(new Query(Criteria.where("ownerNode").is(nodeId)), AvatarSession.class);
+    }
+}
@@ -0,0 +1,87 @@
+package com.example.ai_companion.service;
+
+import com.example.ai_companion.model.GamePuzzle;
+import com.example.ai_companion.utils.GameAnswers;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Four words, three from one group: the player names the one that does not
+ * belong. From level 2 the odd word comes from a closer group, e.g. a
+ * vegetable among fruit rather than a tool among fruit.
+ */
+@Component
+public class OddOneOutGameEngine implements GameEngine {
+
+    private record Group(String name, String family, List<String> members) {}
+
+    // Every word belongs to exactly one group: a hen among birds or an orange
+    // among fruit would leave the puzzle with two right answers.
+
+    private static final List<Group> GROUPS = List.of(
+            new Group("fruits", "food", List.of("apple", "banana", "grape", "mango", "melon", "pear", "pineapple")),
+            new Group("vegetables", "food", List.of("carrot", "potato", "onion", "cabbage", "leek", "pea", "turnip")),
+            new Group("farm animals", "animal", List.of("cow", "sheep", "pig", "goat", "donkey", "horse")),
+            new Group("wild animals", "animal", List.of("lion", "tiger", "zebra", "giraffe", "elephant", "bear")),
+            new Group("birds", "animal", List.of("robin", "sparrow", "owl", "eagle", "swan", "pigeon")),
+            new Group("colours", "description", List.of("red", "blue", "green", "yellow", "purple", "pink")),
+            new Group("garden tools", "object", List.of("spade", "rake", "hoe", "trowel", "lawnmower", "wheelbarrow")),
+            new Group("kitchen items", "object", List.of("kettle", "teapot", "saucepan", "ladle", "whisk", "colander")),
+            new Group("musical instruments", "object", List.of("piano", "violin", "trumpet", "drum", "flute", "harp")));
+
+    @Override
+    public String id() {
+        return "odd-one-out";
+    }
+
+    @Override
+    public String title() {
+        return "Odd One Out";
+    }
+
+    @Override
+    public String description() {
+        return "Four words, but one doesn't belong with the others. Can you spot which?";
+    }
+
+    @Override
+    public List<String> keywords() {
+        return List.of("odd one out", "odd-one-out", "doesn't belong", "does not belong", "which one is different");
+    }
+
+    @Override
+    public GamePuzzle newPuzzle(int level, Random random) {
+        Group group = GROUPS.get(random.nextInt(GROUPS.size()));
+        List<Group> others = GROUPS.stream()
+                .filter(g -> g != group && (level <= 1) != g.family().equals(group.family()))
+                .toList();
+        if (others.isEmpty()) {
+            others = GROUPS.stream().filter(g -> g != group).toList();
+        }
+        Group odd = others.get(random.nextInt(others.size()));
+
+        List<String> members = new ArrayList<>(group.members());
+        Collections.shuffle(members, random);
+        List<String> words = new ArrayList<>(members.subList(0, 3));
+        List<String> candidates = odd.members().stream().filter(w -> !group.members().contains(w)).toList();
+        String oddWord = candidates.get(random.nextInt(candidates.size()));
+        words.add(oddWord);
+        Collections.shuffle(words, random);
+        return new GamePuzzle("Which is the odd one out: " + String.join(", ", words) + "?",
+                oddWord, "Three of them are " + group.name() + ".", List.copyOf(words));
+    }
+
+    /** Naming the odd word is right; naming it alongside other options is a guess, not an answer. */
+    @Override
+    public boolean isCorrect(GamePuzzle puzzle, String reply) {
+        if (!GameAnswers.containsWord(reply, puzzle.getAnswer())) {
+            return false;
+        }
+        return puzzle.getOptions() == null
+                || puzzle.getOptions().stream().filter(option -> GameAnswers.containsWord(reply, option)).count() == 1;
+    }
+}
@@ -0,0 +1,204 @@
+package com.example.ai_companion.service;
+
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.SystemMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.model.chat.ChatLanguageModel;
+import dev.langchain4j.model.openai.OpenAiTokenizer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A prompt split into a static system message and a user message with
+ * {@code {{placeholders}}}.
+ * <p>
+ * The system message holds the instructions that never change between calls,
+ * and the user message puts the per-call context after them, most volatile
+ * last. Every call to a template therefore starts with the same tokens, which
+ * lets the provider's prefix cache skip re-reading them. Templates are parsed
+ * once, when the constant holding them is created, and rendering reports the
+ * token count of each section so prompt growth shows up in the logs.
+ */
+public final class PromptTemplate {
+
+    private static final Pattern PLACEHOLDER = Pattern.compile("\\{\\{(\\w+)}}");
+
+    public static final String SYSTEM_SECTION = "system";
+    public static final String INSTRUCTIONS_SECTION = "instructions";
+
+    private final String name;
+    private final String system;
+    private final int systemTokens;
+    // Alternating literal text and placeholder names; even indexes are literals
+    private final List<String> parts;
+    private final Set<String> placeholders;
+    private final int instructionTokens;
+
+    private PromptTemplate(String name, String system, List<String> parts, Set<String> placeholders) {
+        this.name = name;
+        this.system = system;
+        this.parts = parts;
+        this.placeholders = placeholders;
+        this.systemTokens = countTokens(system);
+        StringBuilder literals = new StringBuilder();
+        for (int i = 0; i < parts.size(); i += 2) {
+            literals.append(parts.get(i));
+        }
+        this.instructionTokens = countTokens(literals.toString());
+    }
+
+    /**
+     * Compiles a template.
+     *
+     * @param name   name used in logs
+     * @param system static instructions; must not contain placeholders
+     * @param user   per-call part, with {@code {{name}}} placeholders
+     * @throws IllegalArgumentException if the system part contains a placeholder
+     */
+    public static PromptTemplate of(String name, String system, String user) {
+        if (system != null && PLACEHOLDER.matcher(system).find()) {
+            throw new IllegalArgumentException("System prompt of " + name + " must be static");
+        }
+        List<String> parts = new ArrayList<>();
+        Set<String> placeholders = new LinkedHashSet<>();
+        Matcher matcher = PLACEHOLDER.matcher(user);
+        int last = 0;
+        while (matcher.find()) {
+            parts.add(user.substring(last, matcher.start()));
+            parts.add(matcher.group(1));
+            placeholders.add(matcher.group(1));
+            last = matcher.end();
+        }
+        parts.add(user.substring(last));
+        return new PromptTemplate(name, system == null ? "" : system.strip(), parts, placeholders);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Set<String> getPlaceholders() {
+        return Collections.unmodifiableSet(placeholders);
+    }
+
+    /**
+     * Fills in the placeholders. Null values render as {@code none}.
+     *
+     * @throws IllegalArgumentException if a placeholder has no value
+     */
+    public Rendered render(Map<String, ?> values) {
+        StringBuilder user = new StringBuilder();
+        Map<String, Integer> tokens = new LinkedHashMap<>();
+        tokens.put(SYSTEM_SECTION, systemTokens);
+        tokens.put(INSTRUCTIONS_SECTION, instructionTokens);
+        for (int i = 0; i < parts.size(); i++) {
+            if (i % 2 == 0) {
+                user.append(parts.get(i));
+                continue;
+            }
+            String key = parts.get(i);
+            if (!values.containsKey(key)) {
+                throw new IllegalArgumentException("No value for {{" + key + "}} in prompt " + name);
+            }
+            Object value = values.get(key);
+            String text = value == null ? "none" : value.toString();
+            user.append(text);
+            tokens.merge(key, countTokens(text), Integer::sum);
+        }
+        return new Rendered(name, system, user.toString().strip(), tokens);
+    }
+
+    /** Convenience for {@link #render(Map)} with alternating keys and values. */
+    public Rendered render(Object... keysAndValues) {
+        if (keysAndValues.length % 2 != 0) {
+            throw new IllegalArgumentException("Expected key/value pairs for prompt " + name);
+        }
+        Map<String, Object> values = new LinkedHashMap<>();
+        for (int i = 0; i < keysAndValues.length; i += 2) {
+            values.put(String.valueOf(keysAndValues[i]), keysAndValues[i + 1]);
+        }
+        return render(values);
+    }
+
+    /**
+     * A rendered prompt, ready to send as chat messages.
+     */
+    public static final class Rendered {
+        private final String name;
+        private final String system;
+        private final String user;
+        private final Map<String, Integer> tokenCounts;
+
+        private Rendered(String name, String system, String user, Map<String, Integer> tokenCounts) {
+            this.name = name;
+            this.system = system;
+            this.user = user;
+            this.tokenCounts = Collections.unmodifiableMap(tokenCounts);
+        }
+
+        public String getSystem() {
+            return system;
+        }
+
+        public String getUser() {
+            return user;
+        }
+
+        public List<ChatMessage> messages() {
+            List<ChatMessage> messages = new ArrayList<>();
+            if (!system.isEmpty()) {
+                messages.add(SystemMessage.from(system));
+            }
+            messages.add(UserMessage.from(user));
+            return messages;
+        }
+
+        /** Tokens per section: the system message, the user message's own text, then each placeholder. */
+        public Map<String, Integer> getTokenCounts() {
+            return tokenCounts;
+        }
+
+        public int getTotalTokens() {
+            return tokenCounts.values().stream().mapToInt(Integer::intValue).sum();
+        }
+
+        /** Sends the prompt and returns the reply text. */
+        public String call(ChatLanguageModel model) {
+            return model.chat(messages()).aiMessage().text();
+        }
+
+        /** Both messages as one string, for logs and cache keys. */
+        public String text() {
+            return system + "\n\n" + user;
+        }
+
+        @Override
+        public String toString() {
+            return name + " " + tokenCounts;
+        }
+    }
+
+    private static final class TokenizerHolder {
+        static final OpenAiTokenizer TOKENIZER = new OpenAiTokenizer("gpt-4o-mini");
+    }
+
+    static int countTokens(String text) {
+        if (text == null || text.isEmpty()) {
+            return 0;
+        }
+        try {
+            return TokenizerHolder.TOKENIZER.estimateTokenCountInText(text);
+        } catch (RuntimeException | LinkageError e) {
+            // Rough fallback of four characters per token
+            return (text.length() + 3) / 4;
+        }
+    }
+}
@@ -0,0 +1,239 @@
+package com.example.ai_companion.service;
+
+import java.time.DayOfWeek;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * A subset of the iCalendar RRULE format for reminder series:
+ * {@code FREQ} (DAILY, WEEKLY or MONTHLY), {@code INTERVAL}, {@code BYDAY}
+ * (weekly only), {@code COUNT} and {@code UNTIL}. For example
+ * {@code FREQ=DAILY} or {@code FREQ=WEEKLY;BYDAY=MO,TH;COUNT=10}.
+ * <p>
+ * Occurrences keep the series' local start time in its timezone, so a 9am
+ * reminder stays at 9am across daylight-saving changes. Rules jump straight
+ * to the requested window rather than walking from the series start, so
+ * expansion cost does not grow with the age of a series. The one exception
+ * is a monthly rule with {@code COUNT}, which walks from the start to count
+ * the skipped months; its cost is bounded by the count. A bare-date
+ * {@code UNTIL} runs to the end of that day in the series' timezone.
+ */
+public class RecurrenceRule {
+
+    public enum Frequency { DAILY, WEEKLY, MONTHLY }
+
+    private static final Map<String, DayOfWeek> DAYS = Map.of(
+            "MO", DayOfWeek.MONDAY, "TU", DayOfWeek.TUESDAY, "WE", DayOfWeek.WEDNESDAY,
+            "TH", DayOfWeek.THURSDAY, "FR", DayOfWeek.FRIDAY, "SA", DayOfWeek.SATURDAY, "SU", DayOfWeek.SUNDAY);
+
+    private static final DateTimeFormatter UNTIL_UTC = DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss'Z'");
+    private static final DateTimeFormatter UNTIL_DATE = DateTimeFormatter.BASIC_ISO_DATE;
+
+    // Safety net for monthly rules that keep missing, e.g. on the 31st every 2 months
+    private static final int MAX_MONTHLY_STEPS = 12 * 200;
+
+    private final Frequency frequency;
+    private final int interval;
+    private final TreeSet<DayOfWeek> byDay;
+    private final Integer count;
+    // UNTIL as a UTC date-time, or as a date in the series' timezone
+    private final Instant until;
+    private final LocalDate untilDate;
+
+    private RecurrenceRule(Frequency frequency, int interval, TreeSet<DayOfWeek> byDay, Integer count,
+                           Instant until, LocalDate untilDate) {
+        this.frequency = frequency;
+        this.interval = interval;
+        this.byDay = byDay;
+        this.count = count;
+        this.until = until;
+        this.untilDate = untilDate;
+    }
+
+    /**
+     * Parses a rule such as {@code FREQ=WEEKLY;INTERVAL=2;BYDAY=MO,WE}.
+     *
+     * @throws IllegalArgumentException if the rule is malformed or uses unsupported parts
+     */
+    public static RecurrenceRule parse(String rule) {
+        if (rule == null || rule.isBlank()) {
+            throw new IllegalArgumentException("Recurrence rule is empty");
+        }
+        String body = rule.trim();
+        if (body.toUpperCase(Locale.ROOT).startsWith("RRULE:")) {
+            body = body.substring(6);
+        }
+        Frequency frequency = null;
+        int interval = 1;
+        TreeSet<DayOfWeek> byDay = new TreeSet<>();
+        Integer count = null;
+        Instant until = null;
+        LocalDate untilDate = null;
+        for (String part : body.split(";")) {
+            if (part.isBlank()) continue;
+            String[] kv = part.split("=", 2);
+            if (kv.length != 2) {
+                throw new IllegalArgumentException("Invalid recurrence rule part: " + part);
+            }
+            String key = kv[0].trim().toUpperCase(Locale.ROOT);
+            String value = kv[1].trim().toUpperCase(Locale.ROOT);
+            try {
+                switch (key) {
+                    case "FREQ" -> frequency = Frequency.valueOf(value);
+                    case "INTERVAL" -> interval = Integer.parseInt(value);
+                    case "COUNT" -> count = Integer.parseInt(value);
+                    case "UNTIL" -> {
+                        if (value.endsWith("Z")) {
+                            until = LocalDateTime.parse(value, UNTIL_UTC).toInstant(ZoneOffset.UTC);
+                        } else {
+                            untilDate = LocalDate.parse(value, UNTIL_DATE);
+                        }
+                    }
+                    case "BYDAY" -> {
+                        for (String day : value.split(",")) {
+                            DayOfWeek dow = DAYS.get(day.trim());
+                            if (dow == null) {
+                                throw new IllegalArgumentException("Unsupported BYDAY value: " + day);
+                            }
+                            byDay.add(dow);
+                        }
+                    }
+                    default -> throw new IllegalArgumentException("Unsupported recurrence rule part: " + key);
+                }
+            } catch (NumberFormatException | DateTimeParseException e) {
+                throw new IllegalArgumentException("Invalid value for " + key + ": " + value);
+            }
+        }
+        if (frequency == null) {
+            throw new IllegalArgumentException("Recurrence rule needs FREQ");
+        }
+        if (interval < 1 || (count != null && count < 1)) {
+            throw new IllegalArgumentException("INTERVAL and COUNT must be positive");
+        }
+        if (!byDay.isEmpty() && frequency != Frequency.WEEKLY) {
+            throw new IllegalArgumentException("BYDAY is only supported with FREQ=WEEKLY");
+        }
+        return new RecurrenceRule(frequency, interval, byDay, count, until, untilDate);
+    }
+
+    /** Returns true if the rule parses. */
+    public static boolean isValid(String rule) {
+        try {
+            parse(rule);
+            return true;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Lists occurrences in {@code [from, to)}, in order, skipping any in {@code excluded}.
+     *
+     * @param start    the first occurrence of the series
+     * @param zone     the series' timezone
+     * @param limit    maximum number of occurrences to return
+     */
+    public List<Instant> occurrences(Instant start, ZoneId zone, Instant from, Instant to,
+                                     Collection<Instant> excluded, int limit) {
+        List<Instant> result = new ArrayList<>();
+        if (!from.isBefore(to) || limit <= 0) {
+            return result;
+        }
+        ZonedDateTime startLocal = start.atZone(zone);
+        LocalDate startDate = startLocal.toLocalDate();
+        LocalTime time = startLocal.toLocalTime();
+        LocalDate fromDate = from.atZone(zone).toLocalDate();
+        // A bare date includes the whole day
+        Instant end = untilDate != null ? untilDate.plusDays(1).atStartOfDay(zone).toInstant().minusSeconds(1) : until;
+
+        switch (frequency) {
+            case DAILY -> {
+                long skip = Math.max(0, ChronoUnit.DAYS.between(startDate, fromDate) / interval - 1);
+                for (long k = skip; ; k++) {
+                    if (count != null && k >= count) break;
+                    Instant occurrence = ZonedDateTime.of(startDate.plusDays(k * interval), time, zone).toInstant();
+                    if (!collect(occurrence, from, to, end, excluded, result, limit)) break;
+                }
+            }
+            case WEEKLY -> {
+                List<DayOfWeek> days = new ArrayList<>(byDay.isEmpty() ? List.of(startDate.getDayOfWeek()) : byDay);
+                LocalDate firstWeek = startDate.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+                long firstWeekCount = days.stream().filter(d -> d.compareTo(startDate.getDayOfWeek()) >= 0).count();
+                long skip = Math.max(0, ChronoUnit.WEEKS.between(firstWeek, fromDate) / interval - 1);
+                long index = skip == 0 ? 0 : firstWeekCount + (skip - 1) * days.size();
+                outer:
+                for (long w = skip; ; w++) {
+                    LocalDate weekStart = firstWeek.plusWeeks(w * interval);
+                    for (DayOfWeek day : days) {
+                        LocalDate date = weekStart.with(TemporalAdjusters.nextOrSame(day));
+                        if (date.isBefore(startDate)) continue;
+                        if (count != null && index >= count) break outer;
+                        index++;
+                        Instant occurrence = ZonedDateTime.of(date, time, zone).toInstant();
+                        if (!collect(occurrence, from, to, end, excluded, result, limit)) break outer;
+                    }
+                }
+            }
+            case MONTHLY -> {
+                // Without COUNT there is nothing to number, so start just before the window
+                long first = count != null ? 0
+                        : Math.max(0, ChronoUnit.MONTHS.between(YearMonth.from(startDate), YearMonth.from(fromDate)) / interval - 1);
+                long index = 0;
+                for (long m = first; m < first + MAX_MONTHLY_STEPS; m++) {
+                    LocalDate date = startDate.plusMonths(m * interval);
+                    // Months without the start day (e.g. the 31st) are skipped, as in RFC 5545
+                    if (date.getDayOfMonth() != startDate.getDayOfMonth()) continue;
+                    if (count != null && index >= count) break;
+                    index++;
+                    Instant occurrence = ZonedDateTime.of(date, time, zone).toInstant();
+                    if (!collect(occurrence, from, to, end, excluded, result, limit)) break;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the first occurrence strictly after {@code after} and before {@code before}, or null.
+     */
+    public Instant nextOccurrence(Instant start, ZoneId zone, Instant after, Instant before, Collection<Instant> excluded) {
+        List<Instant> next = occurrences(start, zone, after.plusMillis(1), before, excluded, 1);
+        return next.isEmpty() ? null : next.get(0);
+    }
+
+    /** Returns true if {@code instant} is an occurrence of this series. */
+    public boolean includes(Instant start, ZoneId zone, Instant instant) {
+        return !occurrences(start, zone, instant, instant.plusMillis(1), List.of(), 1).isEmpty();
+    }
+
+    /**
+     * Adds an occurrence if it falls in the window.
+     *
+     * @return false once expansion can stop
+     */
+    private boolean collect(Instant occurrence, Instant from, Instant to, Instant end, Collection<Instant> excluded,
+                            List<Instant> result, int limit) {
+        if (end != null && occurrence.isAfter(end)) return false;
+        if (!occurrence.isBefore(to)) return false;
+        if (!occurrence.isBefore(from) && (excluded == null || !excluded.contains(occurrence))) {
+            result.add(occurrence);
+        }
+        return result.size() < limit;
+    }
+}
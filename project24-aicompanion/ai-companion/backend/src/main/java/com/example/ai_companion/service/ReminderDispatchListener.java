@@ -0,0 +1,34 @@
+package com.example.ai_companion.service;
+
+import com.example.ai_companion.model.Reminder;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.mapping.event.AbstractMongoEventListener;
+import org.springframework.data.mongodb.core.mapping.event.AfterDeleteEvent;
+import org.springframework.data.mongodb.core.mapping.event.AfterSaveEvent;
+import org.springframework.stereotype.Component;
+
+/**
+ * Keeps the reminder dispatch wheel in step with reminder writes made on this
+ * node, whichever controller or service makes them.
+ */
+@Component
+public class ReminderDispatchListener extends AbstractMongoEventListener<Reminder> {
+
+    @Autowired
+    private ReminderDispatchService reminderDispatchService;
+
+    @Override
+    public void onAfterSave(AfterSaveEvent<Reminder> event) {
+        reminderDispatchService.track(event.getSource());
+    }
+
+    @Override
+    public void onAfterDelete(AfterDeleteEvent<Reminder> event) {
+        Document query = event.getSource();
+        Object id = query.get("_id");
+        if (id != null) {
+            reminderDispatchService.untrack(id.toString());
+        }
+    }
+}
@@ -0,0 +1,333 @@
+package com.example.ai_companion.service;
+
+import com.example.ai_companion.model.Reminder;
+import com.example.ai_companion.model.ReminderStatus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Stream;
+
+/**
+ * Fires reminders when they fall due.
+ * <p>
+ * Pending reminders inside a sliding horizon are held in a {@link ReminderTimerWheel}
+ * that turns once a second. The horizon is reloaded periodically from Mongo, and
+ * local creates, updates and deletes are applied straight away through
+ * {@link ReminderDispatchListener}. Before firing, a reminder is claimed with an
+ * atomic update on {@code dispatchedAt}, so when several nodes hold the same
+ * reminder only one of them delivers it.
+ * <p>
+ * A recurring series has only its next occurrence in the wheel, keyed by the
+ * occurrence id. Series are claimed by advancing {@code lastDispatchedOccurrence},
+ * after which the following occurrence is scheduled.
+ */
+@Service
+public class ReminderDispatchService {
+
+    private static final Logger log = LoggerFactory.getLogger(ReminderDispatchService.class);
+
+    public static final String USER_DESTINATION = "/queue/reminders";
+
+    private static final ExecutorService executor = Executors.newFixedThreadPool(8);
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private SimpMessagingTemplate messagingTemplate;
+
+    @Autowired
+    private HeyGenService heyGenService;
+
+    @Autowired
+    private HeyGenSessionManager heyGenSessionManager;
+
+    @Value("${reminders.dispatch.horizon-minutes:360}")
+    private long horizonMinutes = 360;
+
+    @Value("${reminders.dispatch.grace-minutes:15}")
+    private long graceMinutes = 15;
+
+    @Value("${reminders.dispatch.node-id:}")
+    private String nodeId = "";
+
+    // One-second ticks, 64 slots over 3 levels: a horizon of roughly 72 hours
+    private final ReminderTimerWheel wheel = new ReminderTimerWheel(Instant.now(), Duration.ofSeconds(1), 64, 3);
+
+    // Series id -> wheel key of its next scheduled occurrence
+    private final Map<String, String> seriesKeys = new ConcurrentHashMap<>();
+
+    /**
+     * Adds, moves or removes a reminder in the wheel to match its saved state.
+     */
+    public void track(Reminder reminder) {
+        if (reminder.getId() == null) {
+            return;
+        }
+        Instant now = Instant.now();
+        if (reminder.isRecurring()) {
+            trackSeries(reminder, now);
+            return;
+        }
+        boolean pending = reminder.getStatus() == ReminderStatus.INCOMPLETE
+                && reminder.getDispatchedAt() == null
+                && reminder.getTimestamp() != null
+                && !reminder.getTimestamp().isBefore(now.minus(Duration.ofMinutes(graceMinutes)))
+                && !reminder.getTimestamp().isAfter(now.plus(Duration.ofMinutes(horizonMinutes)));
+        synchronized (wheel) {
+            if (pending) {
+                wheel.schedule(reminder.getId(), reminder.getTimestamp());
+            } else {
+                wheel.cancel(reminder.getId());
+            }
+        }
+    }
+
+    private void trackSeries(Reminder series, Instant now) {
+        RecurrenceRule rule = ReminderOccurrenceService.ruleOf(series);
+        Instant next = null;
+        if (rule != null && series.getStatus() == ReminderStatus.INCOMPLETE) {
+            Instant after = now.minus(Duration.ofMinutes(graceMinutes)).minusMillis(1);
+            if (series.getLastDispatchedOccurrence() != null && series.getLastDispatchedOccurrence().isAfter(after)) {
+                after = series.getLastDispatchedOccurrence();
+            }
+            next = rule.nextOccurrence(series.getTimestamp(), ReminderOccurrenceService.zoneOf(series), after,
+                    now.plus(Duration.ofMinutes(horizonMinutes)).plusMillis(1), series.getRecurrenceExceptions());
+        }
+        synchronized (wheel) {
+            String previous = seriesKeys.remove(series.getId());
+            if (previous != null) {
+                wheel.cancel(previous);
+            }
+            if (next != null) {
+                String key = ReminderOccurrenceService.occurrenceId(series.getId(), next);
+                if (wheel.schedule(key, next)) {
+                    seriesKeys.put(series.getId(), key);
+                }
+            }
+        }
+    }
+
+    public void untrack(String reminderId) {
+        synchronized (wheel) {
+            wheel.cancel(reminderId);
+            String occurrenceKey = seriesKeys.remove(reminderId);
+            if (occurrenceKey != null) {
+                wheel.cancel(occurrenceKey);
+            }
+        }
+    }
+
+    public boolean isTracked(String reminderId) {
+        synchronized (wheel) {
+            return wheel.contains(reminderId);
+        }
+    }
+
+    public int getPendingCount() {
+        synchronized (wheel) {
+            return wheel.size();
+        }
+    }
+
+    @Scheduled(fixedRate = 1000)
+    public void tick() {
+        dispatchDue(Instant.now());
+    }
+
+    /**
+     * Turns the wheel to {@code now} and hands every due reminder to the dispatch pool.
+     *
+     * @return ids of the reminders that fell due
+     */
+    public List<String> dispatchDue(Instant now) {
+        List<String> due;
+        synchronized (wheel) {
+            due = wheel.advance(now);
+        }
+        for (String id : due) {
+            executor.submit(() -> fire(id, now));
+        }
+        return due;
+    }
+
+    @Scheduled(fixedDelayString = "${reminders.dispatch.refresh-ms:300000}")
+    public void refreshHorizon() {
+        loadHorizon(Instant.now());
+    }
+
+    /**
+     * Loads every unclaimed, incomplete reminder due between the grace window
+     * and the horizon into the wheel. Only the id and timestamp are read.
+     * Series documents are excluded here: their bare id is never a due
+     * reminder, only the {@code <id>@<millis>} occurrence keys are.
+     * Active series are read with just the fields their next occurrence is
+     * computed from.
+     *
+     * @return number of one-off reminders scheduled
+     */
+    public int loadHorizon(Instant now) {
+        Query query = new Query(Criteria.where("status").is(ReminderStatus.INCOMPLETE)
+                .and("dispatchedAt").is(null)
+                .and("recurrence").is(null)
+                .and("timestamp").gte(now.minus(Duration.ofMinutes(graceMinutes)))
+                .lte(now.plus(Duration.ofMinutes(horizonMinutes))));
+        query.fields().include("_id", "timestamp");
+
+        int loaded = 0;
+        try (Stream<Reminder> reminders = mongoTemplate.stream(query, Reminder.class)) {
+            for (Reminder reminder : (Iterable<Reminder>) reminders::iterator) {
+                synchronized (wheel) {
+                    if (wheel.schedule(reminder.getId(), reminder.getTimestamp())) {
+                        loaded++;
+                    }
+                }
+            }
+        } catch (Exception e) {
+            log.error("[ReminderDispatch] Failed to load reminder horizon: {}", e.getMessage());
+        }
+
+        Query seriesQuery = new Query(Criteria.where("status").is(ReminderStatus.INCOMPLETE)
+                .and("recurrence").ne(null)
+                .and("seriesId").is(null));
+        seriesQuery.fields().include("_id", "timestamp", "status", "recurrence", "recurrenceZone",
+                "recurrenceExceptions", "lastDispatchedOccurrence");
+        try (Stream<Reminder> series = mongoTemplate.stream(seriesQuery, Reminder.class)) {
+            series.forEach(this::track);
+        } catch (Exception e) {
+            log.error("[ReminderDispatch] Failed to load reminder series: {}", e.getMessage());
+        }
+        log.info("[ReminderDispatch] Horizon loaded: {} reminders, {} pending", loaded, getPendingCount());
+        return loaded;
+    }
+
+    /**
+     * Claims a due reminder and, if this node won the claim, delivers it.
+     *
+     * @return true if the reminder was claimed and delivered by this node
+     */
+    boolean fire(String reminderId, Instant now) {
+        if (ReminderOccurrenceService.isOccurrenceId(reminderId)) {
+            return fireOccurrence(reminderId, now);
+        }
+        Query query = new Query(Criteria.where("_id").is(reminderId)
+                .and("status").is(ReminderStatus.INCOMPLETE)
+                .and("dispatchedAt").is(null)
+                .and("recurrence").is(null)
+                .and("timestamp").lte(now));
+        Update update = new Update().set("dispatchedAt", now).set("dispatchedBy", resolveNodeId());
+        Reminder claimed;
+        try {
+            claimed = mongoTemplate.findAndModify(query, update, FindAndModifyOptions.options().returnNew(true), Reminder.class);
+        } catch (Exception e) {
+            log.error("[ReminderDispatch] Failed to claim reminder {}: {}", reminderId, e.getMessage());
+            return false;
+        }
+        if (claimed == null) {
+            // Claimed by another node, completed, rescheduled or deleted in the meantime
+            return false;
+        }
+        publish(claimed, claimed.getId(), claimed.getTimestamp());
+        return true;
+    }
+
+    /**
+     * Claims one occurrence of a series by moving its {@code lastDispatchedOccurrence}
+     * forward, delivers it unless the occurrence has its own document (which is
+     * then dispatched as a one-off), and schedules the next occurrence.
+     */
+    private boolean fireOccurrence(String occurrenceId, Instant now) {
+        int at = occurrenceId.lastIndexOf(ReminderOccurrenceService.OCCURRENCE_SEPARATOR);
+        String seriesId = occurrenceId.substring(0, at);
+        Instant occurrence;
+        try {
+            occurrence = Instant.ofEpochMilli(Long.parseLong(occurrenceId.substring(at + 1)));
+        } catch (NumberFormatException e) {
+            return false;
+        }
+        seriesKeys.remove(seriesId, occurrenceId);
+        if (occurrence.isAfter(now)) {
+            return false;
+        }
+
+        Query query = new Query(Criteria.where("_id").is(seriesId)
+                .and("status").is(ReminderStatus.INCOMPLETE)
+                .and("recurrenceExceptions").ne(occurrence)
+                .orOperator(Criteria.where("lastDispatchedOccurrence").is(null),
+                        Criteria.where("lastDispatchedOccurrence").lt(occurrence)));
+        Update update = new Update().set("lastDispatchedOccurrence", occurrence);
+        Reminder claimed;
+        try {
+            claimed = mongoTemplate.findAndModify(query, update, FindAndModifyOptions.options().returnNew(true), Reminder.class);
+            if (claimed == null) {
+                // Another node delivered it; follow the series from its stored state
+                Reminder series = mongoTemplate.findById(seriesId, Reminder.class);
+                if (series != null) {
+                    track(series);
+                }
+                return false;
+            }
+        } catch (Exception e) {
+            log.error("[ReminderDispatch] Failed to claim occurrence {}: {}", occurrenceId, e.getMessage());
+            return false;
+        }
+
+        boolean materialised = mongoTemplate.exists(new Query(Criteria.where("seriesId").is(seriesId)
+                .and("occurrenceStart").is(occurrence)), Reminder.class);
+        if (!materialised) {
+            publish(claimed, occurrenceId, occurrence);
+        }
+        track(claimed);
+        return !materialised;
+    }
+
+    private void publish(Reminder reminder, String reminderId, Instant timestamp) {
+        Map<String, Object> payload = new HashMap<>();
+        payload.put("type", "REMINDER_DUE");
+        payload.put("reminderId", reminderId);
+        payload.put("title", reminder.getTitle());
+        payload.put("description", reminder.getDescription());
+        payload.put("timestamp", timestamp);
+        payload.put("tags", reminder.getTags());
+
+        String userId = reminder.getUserId();
+        log.info("[ReminderDispatch] Reminder {} due for user {}", reminderId, userId);
+        messagingTemplate.convertAndSendToUser(userId, USER_DESTINATION, payload);
+        messagingTemplate.convertAndSend("/topic/reminders-" + userId, payload);
+
+        String avatarSessionId = heyGenSessionManager.getActiveSessionId(userId);
+        if (avatarSessionId != null) {
+            try {
+                heyGenService.sendTaskToHeyGen(avatarSessionId, "Just a reminder: " + reminder.getTitle() + ".", "repeat", null);
+            } catch (Exception e) {
+                log.warn("[ReminderDispatch] Failed to speak reminder {} on avatar: {}", reminderId, e.getMessage());
+            }
+        }
+    }
+
+    private String resolveNodeId() {
+        if (nodeId == null || nodeId.isEmpty()) {
+            nodeId = ManagementFactory.getRuntimeMXBean().getName();
+        }
+        return nodeId;
+    }
+}
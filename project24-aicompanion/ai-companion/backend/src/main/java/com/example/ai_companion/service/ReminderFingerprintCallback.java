@@ -0,0 +1,23 @@
+package com.example.ai_companion.service;
+
+import com.example.ai_companion.model.Reminder;
+import com.example.ai_companion.utils.ReminderFingerprint;
+import org.springframework.data.mongodb.core.mapping.event.BeforeConvertCallback;
+import org.springframework.stereotype.Component;
+
+/**
+ * Keeps {@link Reminder#getFingerprint()} in step with the title and due time
+ * on every save, including creates and edits made through the REST API.
+ * Materialised occurrences of a series carry no fingerprint, so they never
+ * collide with their series on the unique user_fingerprint index.
+ */
+@Component
+public class ReminderFingerprintCallback implements BeforeConvertCallback<Reminder> {
+
+    @Override
+    public Reminder onBeforeConvert(Reminder reminder, String collection) {
+        reminder.setFingerprint(reminder.getSeriesId() == null
+                ? ReminderFingerprint.of(reminder.getTitle(), reminder.getTimestamp()) : null);
+        return reminder;
+    }
+}
@@ -0,0 +1,83 @@
+package com.example.ai_companion.service;
+
+import org.springframework.stereotype.Component;
+
+import java.util.regex.Pattern;
+
+/**
+ * Cheap rule-based check that runs before LLM reminder extraction.
+ * <p>
+ * A message is passed on to the LLM if it asks for a reminder outright, or if
+ * it pairs a future time expression or an obligation ("need to", "have to")
+ * with something that looks like a task or event. Everything else, such as
+ * "I'm feeling fine today", is skipped. The rules are tuned for recall: a
+ * wasted LLM call is cheaper than a lost reminder. See
+ * {@code reminder-intent-samples.tsv} in the test resources for the labelled
+ * messages the rules are measured against.
+ */
+@Component
+public class ReminderIntentClassifier {
+
+    private static final int FLAGS = Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE;
+
+    private static final Pattern EXPLICIT = Pattern.compile(
+            "\\b(remind(s|ed|er|ers)?|remember to|don'?t (let me )?forget|do not forget|"
+                    + "set an? (alarm|reminder)|make sure (i|to)|note down|write down)\\b", FLAGS);
+
+    private static final Pattern OBLIGATION = Pattern.compile(
+            "\\b(needs? to|have to|has to|got to|gotta|must|should|ought to|supposed to|"
+                    + "going to|gonna|plan(ning)? to|i'?ll|i will|we'?ll|we will|due)\\b", FLAGS);
+
+    private static final String NUMBER = "(\\d+|a|an|one|two|three|four|five|six|seven|eight|nine|ten|"
+            + "eleven|twelve|fifteen|twenty|thirty|forty[- ]five|a couple of|a few)";
+
+    private static final Pattern TEMPORAL = Pattern.compile(
+            "\\b(today|tonight|tomorrow|tmrw|tmr|"
+                    + "(mon|tues|wednes|thurs|fri|satur|sun)days?|weekends?|"
+                    + "(this|next|coming) (morning|afternoon|evening|week|month|year|time)|"
+                    + "in the (morning|afternoon|evening)|"
+                    + "at (\\d{1,2}([:.]\\d{2})?|noon|midday|midnight|lunch ?time|dinner ?time|bed ?time)|"
+                    + "\\d{1,2}([:.]\\d{2})? ?(am|pm|a\\.m\\.|p\\.m\\.)|o'?clock|noon|midday|midnight|"
+                    + "in " + NUMBER + " (minutes?|mins?|hours?|hrs?|days?|weeks?|months?)|"
+                    + "every (day|morning|afternoon|evening|night|week|month|"
+                    + "(mon|tues|wednes|thurs|fri|satur|sun)day|\\d+ (hours?|days?))|"
+                    + "(january|february|march|april|may|june|july|august|september|october|november|december) \\d{1,2}|"
+                    + "\\d{1,2}(st|nd|rd|th)?( of)? (jan|feb|mar|apr|may|jun|jul|aug|sep|oct|nov|dec)[a-z]*|"
+                    + "the \\d{1,2}(st|nd|rd|th)|\\d{1,2}/\\d{1,2}(/\\d{2,4})?|"
+                    + "later (today|on|tonight)|before (bed|lunch|dinner|breakfast))\\b", FLAGS);
+
+    private static final Pattern TASK = Pattern.compile(
+            "\\b(appointments?|doctors?|dr|dentist|gp|nurse|clinic|hospital|physio\\w*|check-?ups?|"
+                    + "specialist|scan|x-?ray|blood test|eye test|optometrist|hearing|"
+                    + "pharmacy|chemist|prescriptions?|medications?|medicines?|meds|pills?|tablets?|"
+                    + "insulin|dose|injections?|vaccin\\w*|flu shot|inhaler|"
+                    + "meeting|meet|visit(s|ing)?|call|ring|phone|email|text|message|"
+                    + "pay|bills?|rent|bank|tax|insurance|"
+                    + "birthday|anniversary|party|wedding|funeral|dinner|lunch|church|mass|service|"
+                    + "class|lesson|club|bingo|bowls|choir|volunteer\\w*|"
+                    + "flight|train|bus|taxi|uber|trip|ferry|"
+                    + "pick(s|ing)? (me |him |her |them |it )?up|drop(s|ping)? (me |him |her |them |it )?off|collect|fetch|"
+                    + "buy|shopping|groceries|supermarket|market|order|book|schedule|cancel|renew|return|"
+                    + "water the|feed the|walk the|take (my|the|out|in)|put (out|the)|bring|send|post|"
+                    + "bins?|rubbish|garbage|recycling|laundry|"
+                    + "haircut|hairdresser|barber|vet|exercise|walk|swim|yoga|"
+                    + "coming (over|round|around|to)|come (over|round|around)|arriv\\w*|leav(e|ing))\\b", FLAGS);
+
+    /**
+     * Returns false only when the message clearly contains no reminder, so the
+     * LLM extraction call can be skipped.
+     */
+    public boolean mayContainReminder(String message) {
+        if (message == null || message.isBlank()) {
+            return false;
+        }
+        if (EXPLICIT.matcher(message).find()) {
+            return true;
+        }
+        boolean task = TASK.matcher(message).find();
+        if (!task) {
+            return false;
+        }
+        return TEMPORAL.matcher(message).find() || OBLIGATION.matcher(message).find();
+    }
+}
@@ -0,0 +1,276 @@
+package com.example.ai_companion.service;
+
+import com.example.ai_companion.model.Reminder;
+import com.example.ai_companion.model.ReminderStatus;
+import com.example.ai_companion.repository.ReminderRepository;
+import com.example.ai_companion.response.ReminderDayCount;
+import com.example.ai_companion.utils.logger;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.DateOperators;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.stereotype.Service;
+
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+/**
+ * Expands recurring reminder series into occurrences on demand.
+ * <p>
+ * A series is stored once, with a {@link RecurrenceRule}. Queries expand it
+ * inside their time window into virtual reminders whose id is
+ * {@code <seriesId>@<epochMillis>}. An occurrence only gets its own document
+ * when it is completed or edited; skipping one adds it to the series'
+ * exceptions. Storage therefore does not grow with the length of a schedule.
+ * <p>
+ * Calendar views read through here too: range queries filtered by status, and
+ * per-day counts aggregated in Mongo over the {@code (userId, timestamp, status)} index.
+ */
+@Service
+public class ReminderOccurrenceService {
+
+    public static final String OCCURRENCE_SEPARATOR = "@";
+
+    @Autowired
+    private ReminderRepository reminderRepository;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    public static boolean isOccurrenceId(String id) {
+        return id != null && id.contains(OCCURRENCE_SEPARATOR);
+    }
+
+    public static String occurrenceId(String seriesId, Instant occurrence) {
+        return seriesId + OCCURRENCE_SEPARATOR + occurrence.toEpochMilli();
+    }
+
+    /**
+     * Returns the user's reminders in {@code [from, to)}, one-off reminders and
+     * series occurrences together, ordered by time.
+     */
+    public List<Reminder> findInRange(String userId, Instant from, Instant to) {
+        return findInRange(userId, from, to, null);
+    }
+
+    /**
+     * Same as {@link #findInRange(String, Instant, Instant)}, keeping only
+     * reminders with the given status. Series occurrences that have not been
+     * materialised are always incomplete.
+     *
+     * @param status the status to keep, or null for all
+     */
+    public List<Reminder> findInRange(String userId, Instant from, Instant to, ReminderStatus status) {
+        List<Reminder> result = new ArrayList<>(status == null
+                ? reminderRepository.findByUserIdAndRecurrenceIsNullAndTimestampGreaterThanEqualAndTimestampLessThanOrderByTimestampAsc(userId, from, to)
+                : reminderRepository.findByUserIdAndRecurrenceIsNullAndStatusAndTimestampGreaterThanEqualAndTimestampLessThanOrderByTimestampAsc(userId, status, from, to));
+        if (status == null || status == ReminderStatus.INCOMPLETE) {
+            result.addAll(expandSeries(userId, from, to, Integer.MAX_VALUE));
+            result.sort(Comparator.comparing(Reminder::getTimestamp));
+        }
+        return result;
+    }
+
+    /**
+     * Counts the user's reminders in {@code [from, to)} per calendar day in
+     * {@code zone}. One-off reminders are grouped in Mongo, so only one row
+     * per day and status comes back; series occurrences are added from their rules.
+     *
+     * @param status the status to count, or null for all
+     * @return one entry per day that has reminders, in date order
+     */
+    public List<ReminderDayCount> countByDay(String userId, Instant from, Instant to, ZoneId zone, ReminderStatus status) {
+        Criteria criteria = Criteria.where("userId").is(userId)
+                .and("timestamp").gte(from).lt(to)
+                .and("recurrence").is(null);
+        if (status != null) {
+            criteria = criteria.and("status").is(status.name());
+        }
+        Aggregation aggregation = Aggregation.newAggregation(
+                Aggregation.match(criteria),
+                Aggregation.project("status")
+                        .and(DateOperators.DateToString.dateOf("timestamp").toString("%Y-%m-%d")
+                                .withTimezone(DateOperators.Timezone.valueOf(zone.getId())))
+                        .as("day"),
+                Aggregation.group("day", "status").count().as("count"));
+
+        Map<String, ReminderDayCount> days = new TreeMap<>();
+        for (Document row : mongoTemplate.aggregate(aggregation, Reminder.class, Document.class).getMappedResults()) {
+            Document key = row.get("_id", Document.class);
+            String rowStatus = key.getString("status");
+            addCount(days, key.getString("day"),
+                    rowStatus != null ? ReminderStatus.valueOf(rowStatus) : ReminderStatus.INCOMPLETE,
+                    ((Number) row.get("count")).longValue());
+        }
+        if (status == null || status == ReminderStatus.INCOMPLETE) {
+            for (Reminder occurrence : expandSeries(userId, from, to, Integer.MAX_VALUE)) {
+                addCount(days, occurrence.getTimestamp().atZone(zone).toLocalDate().toString(), ReminderStatus.INCOMPLETE, 1);
+            }
+        }
+        return new ArrayList<>(days.values());
+    }
+
+    private static void addCount(Map<String, ReminderDayCount> days, String day, ReminderStatus status, long count) {
+        ReminderDayCount entry = days.computeIfAbsent(day, ReminderDayCount::new);
+        entry.setTotal(entry.getTotal() + count);
+        switch (status) {
+            case INCOMPLETE -> entry.setIncomplete(entry.getIncomplete() + count);
+            case COMPLETE -> entry.setComplete(entry.getComplete() + count);
+            case MISSED -> entry.setMissed(entry.getMissed() + count);
+        }
+    }
+
+    /**
+     * Expands the user's series into virtual occurrences in {@code [from, to)}.
+     * Occurrences that have been materialised are left out; the materialised
+     * documents are ordinary reminders and are returned by one-off queries.
+     *
+     * @param limit maximum number of occurrences per series
+     */
+    public List<Reminder> expandSeries(String userId, Instant from, Instant to, int limit) {
+        List<Reminder> series = reminderRepository.findByUserIdAndRecurrenceIsNotNullAndSeriesIdIsNull(userId);
+        if (series.isEmpty()) {
+            return new ArrayList<>();
+        }
+        Map<String, Set<Instant>> materialised = reminderRepository
+                .findBySeriesIdInAndOccurrenceStartGreaterThanEqualAndOccurrenceStartLessThan(
+                        series.stream().map(Reminder::getId).toList(), from, to)
+                .stream()
+                .collect(Collectors.groupingBy(Reminder::getSeriesId,
+                        Collectors.mapping(Reminder::getOccurrenceStart, Collectors.toSet())));
+
+        List<Reminder> result = new ArrayList<>();
+        for (Reminder s : series) {
+            RecurrenceRule rule = ruleOf(s);
+            // A completed or missed series is finished and yields no more occurrences
+            if (rule == null || s.getStatus() != ReminderStatus.INCOMPLETE) continue;
+            Set<Instant> skip = new HashSet<>(materialised.getOrDefault(s.getId(), Set.of()));
+            if (s.getRecurrenceExceptions() != null) {
+                skip.addAll(s.getRecurrenceExceptions());
+            }
+            for (Instant occurrence : rule.occurrences(s.getTimestamp(), zoneOf(s), from, to, skip, limit)) {
+                result.add(toOccurrence(s, occurrence));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Gives an occurrence its own document, or returns the one it already has.
+     *
+     * @return the materialised reminder, or empty if the id is not an occurrence of an existing series
+     */
+    public Optional<Reminder> materialise(String occurrenceId) {
+        Optional<Occurrence> parsed = resolve(occurrenceId);
+        if (parsed.isEmpty()) {
+            return Optional.empty();
+        }
+        Reminder series = parsed.get().series();
+        Instant start = parsed.get().start();
+        Optional<Reminder> existing = reminderRepository.findBySeriesIdAndOccurrenceStart(series.getId(), start);
+        if (existing.isPresent()) {
+            return existing;
+        }
+        Reminder occurrence = toOccurrence(series, start);
+        occurrence.setId(null);
+        occurrence.setRecurrence(null);
+        occurrence.setRecurrenceZone(null);
+        Reminder saved = reminderRepository.save(occurrence);
+        logger.logToFile(series.getUserId(), "Materialised occurrence " + occurrenceId);
+        return Optional.of(saved);
+    }
+
+    /**
+     * Drops a single occurrence from its series.
+     *
+     * @return false if the id is not an occurrence of an existing series
+     */
+    public boolean skipOccurrence(String occurrenceId) {
+        Optional<Occurrence> parsed = resolve(occurrenceId);
+        if (parsed.isEmpty()) {
+            return false;
+        }
+        Reminder series = parsed.get().series();
+        List<Instant> exceptions = series.getRecurrenceExceptions() != null
+                ? new ArrayList<>(series.getRecurrenceExceptions()) : new ArrayList<>();
+        if (!exceptions.contains(parsed.get().start())) {
+            exceptions.add(parsed.get().start());
+            series.setRecurrenceExceptions(exceptions);
+            reminderRepository.save(series);
+        }
+        reminderRepository.findBySeriesIdAndOccurrenceStart(series.getId(), parsed.get().start())
+                .ifPresent(reminderRepository::delete);
+        return true;
+    }
+
+    /** Parses a series' rule, or returns null if it is not a valid series. */
+    public static RecurrenceRule ruleOf(Reminder series) {
+        if (series.getRecurrence() == null || series.getTimestamp() == null) {
+            return null;
+        }
+        try {
+            return RecurrenceRule.parse(series.getRecurrence());
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    public static ZoneId zoneOf(Reminder series) {
+        if (series.getRecurrenceZone() != null) {
+            try {
+                return ZoneId.of(series.getRecurrenceZone());
+            } catch (DateTimeException e) {
+                // fall through to UTC
+            }
+        }
+        return ZoneOffset.UTC;
+    }
+
+    private record Occurrence(Reminder series, Instant start) {}
+
+    private Optional<Occurrence> resolve(String occurrenceId) {
+        if (!isOccurrenceId(occurrenceId)) {
+            return Optional.empty();
+        }
+        int at = occurrenceId.lastIndexOf(OCCURRENCE_SEPARATOR);
+        Instant start;
+        try {
+            start = Instant.ofEpochMilli(Long.parseLong(occurrenceId.substring(at + 1)));
+        } catch (NumberFormatException e) {
+            return Optional.empty();
+        }
+        Optional<Reminder> series = reminderRepository.findById(occurrenceId.substring(0, at));
+        if (series.isEmpty() || !series.get().isRecurring()) {
+            return Optional.empty();
+        }
+        RecurrenceRule rule = ruleOf(series.get());
+        if (rule == null || !rule.includes(series.get().getTimestamp(), zoneOf(series.get()), start)) {
+            return Optional.empty();
+        }
+        return Optional.of(new Occurrence(series.get(), start));
+    }
+
+    private static Reminder toOccurrence(Reminder series, Instant start) {
+        Reminder occurrence = new Reminder(series.getUserId(), series.getTitle(), start,
+                series.getDescription(), series.getTags() != null ? new ArrayList<>(series.getTags()) : null);
+        occurrence.setId(occurrenceId(series.getId(), start));
+        occurrence.setRecurrence(series.getRecurrence());
+        occurrence.setRecurrenceZone(series.getRecurrenceZone());
+        occurrence.setSeriesId(series.getId());
+        occurrence.setOccurrenceStart(start);
+        return occurrence;
+    }
+}
@@ -2,17 +2,35 @@ package com.example.ai_companion.service;
 
 import com.example.ai_companion.model.Reminder;
 import com.example.ai_companion.model.ReminderTag;
+import com.example.ai_companion.model.User;
 import com.example.ai_companion.repository.ReminderRepository;
+import com.example.ai_companion.repository.UserRepository;
+import com.example.ai_companion.utils.ReminderFingerprint;
 import com.example.ai_companion.utils.logger;
-import dev.langchain4j.model.chat.ChatLanguageModel;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.stereotype.Service;
 
 import java.time.*;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 /**
@@ -22,57 +40,165 @@ import java.util.stream.Collectors;
 @Service
 public class ReminderService {
 
-    @Autowired private ChatLanguageModel chatLanguageModel;
+    @Autowired private LlmRouter llmRouter;
     @Autowired private ReminderRepository reminderRepository;
+    @Autowired private ReminderIntentClassifier reminderIntentClassifier;
+    @Autowired private TemporalExpressionParser temporalExpressionParser;
+    @Autowired private UserRepository userRepository;
+    @Autowired private MongoTemplate mongoTemplate;
+    @Autowired private ReminderDispatchService reminderDispatchService;
+
+    @Value("${reminders.default-timezone:UTC}")
+    private String defaultTimezone = "UTC";
+
+    // "Remind me to <task>", the one shape simple enough to handle without the LLM
+    private static final Pattern SIMPLE_REQUEST = Pattern.compile(
+            "^(?:please |hey |ok |okay )?(?:can you |could you |would you |will you )?(?:please )?"
+                    + "remind me (?:to|that i (?:need|have) to) (.+?)[\\s.!?,]*$",
+            Pattern.CASE_INSENSITIVE);
+
+    private static final Pattern TRAILING_CONNECTIVES = Pattern.compile(
+            "(?:\\s+(?:on|at|by|in|for|around|from|please))+$", Pattern.CASE_INSENSITIVE);
+
+    // Repeating reminders are left to the LLM, which turns them into a recurrence rule
+    private static final Pattern RECURRENCE_CUES = Pattern.compile(
+            "\\b(every|each|daily|weekly|fortnightly|monthly|weekdays|weeknights)\\b", Pattern.CASE_INSENSITIVE);
 
     /**
      * Extracts reminders from the user's message and stores them in the database.
-     * Supports reminders with or without time components.
+     * Supports reminders with or without time components. Messages that clearly
+     * contain no reminder are filtered out locally and never reach the LLM.
      *
      * @param userId      the user ID
      * @param userMessage the user's message potentially containing reminder info
+     * @return the reminders that were stored (empty if none were found)
      */
-    public void extractReminders(String userId, String userMessage) {
-        String today = LocalDate.now().toString();
-        String prompt = buildPrompt(today, userMessage);
-        String response = chatLanguageModel.chat(prompt).trim();
+    public List<Reminder> extractReminders(String userId, String userMessage) {
+        if (!reminderIntentClassifier.mayContainReminder(userMessage)) {
+            logger.logToFile(userId, "Reminder extraction skipped: no reminder cues in message");
+            return new ArrayList<>();
+        }
+
+        ZoneId zone = resolveZone(userId);
+        ZonedDateTime now = ZonedDateTime.now(zone);
+        Optional<TemporalExpressionParser.Resolution> resolved = temporalExpressionParser.parse(userMessage, now);
+
+        if (resolved.isPresent() && resolved.get().isConfident()) {
+            Reminder local = buildSimpleReminder(userId, userMessage, resolved.get(), zone);
+            if (local != null) {
+                logger.logToFile(userId, "Built reminder without LLM: " + local);
+                List<Reminder> parsed = new ArrayList<>();
+                parsed.add(local);
+                return storeReminders(userId, parsed);
+            }
+        }
+
+        PromptTemplate.Rendered prompt = buildPrompt(now, resolved.filter(TemporalExpressionParser.Resolution::isConfident).orElse(null), userMessage);
+        String response = prompt.call(llmRouter.model(LlmTask.REMINDER_EXTRACTION, userId)).trim();
         logger.logToFile(userId, "Reminder extraction response: " + response);
 
-        if (response.equalsIgnoreCase("none")) return;
+        if (response.equalsIgnoreCase("none")) return new ArrayList<>();
 
-        parseAndStoreReminders(response, userId);
+        return parseAndStoreReminders(response, userId, zone);
     }
 
     /**
-     * Builds the prompt to send to the LLM for extracting structured reminders.
+     * Builds a reminder locally for a plain "remind me to ..." request whose time
+     * was resolved with confidence. Returns null if the message has any other shape
+     * or asks for a repeating reminder.
+     */
+    private Reminder buildSimpleReminder(String userId, String message, TemporalExpressionParser.Resolution resolution, ZoneId zone) {
+        if (RECURRENCE_CUES.matcher(message).find()) {
+            return null;
+        }
+        Matcher matcher = SIMPLE_REQUEST.matcher(resolution.stripFrom(message));
+        if (!matcher.matches()) {
+            return null;
+        }
+        String task = TRAILING_CONNECTIVES.matcher(matcher.group(1).trim()).replaceAll("").trim();
+        if (task.isEmpty()) {
+            return null;
+        }
+        task = Character.toUpperCase(task.charAt(0)) + task.substring(1);
+        Instant timestamp = resolution.getDateTime().atZone(zone).toInstant();
+        return new Reminder(userId, task, timestamp, message.trim(), guessTags(task));
+    }
+
+    /**
+     * Picks tags for a locally built reminder from keywords in its title.
      */
-    private String buildPrompt(String today, String message) {
-        return """
-            Today is %s.
+    private List<ReminderTag> guessTags(String task) {
+        String lower = task.toLowerCase(Locale.ROOT);
+        if (lower.matches(".*\\b(pills?|tablets?|medication|medicine|meds|insulin|inhaler|dose)\\b.*")) {
+            return List.of(ReminderTag.MEDICATION);
+        }
+        if (lower.matches(".*\\b(doctor|dentist|gp|appointment|clinic|hospital|physio\\w*|nurse|check-?up)\\b.*")) {
+            return List.of(ReminderTag.APPOINTMENT);
+        }
+        if (lower.matches(".*\\b(pay|bills?|bank|rent|rates|insurance)\\b.*")) {
+            return List.of(ReminderTag.FINANCE);
+        }
+        if (lower.matches(".*\\b(call|ring|phone|visit|text|email|birthday|lunch|dinner|meet)\\b.*")) {
+            return List.of(ReminderTag.SOCIAL);
+        }
+        return List.of(ReminderTag.TASK);
+    }
 
-            The user said: "%s"
+    /**
+     * Returns the user's timezone, falling back to the configured default when
+     * the user has none set or it is not a valid zone id.
+     */
+    private ZoneId resolveZone(String userId) {
+        User user = userId != null ? userRepository.findByFirebaseUid(userId) : null;
+        if (user != null && user.getTimezone() != null) {
+            try {
+                return ZoneId.of(user.getTimezone());
+            } catch (DateTimeException e) {
+                logger.logToFile(userId, "Ignoring invalid timezone: " + user.getTimezone());
+            }
+        }
+        return ZoneId.of(defaultTimezone);
+    }
 
-            Your job is to extract reminders from this message. A reminder includes a task and a date/time when it should be done.
+    private static final PromptTemplate REMINDER_EXTRACTION = PromptTemplate.of("reminder-extraction", """
+            Your job is to extract reminders from the user's message. A reminder includes a task and a date/time when it should be done.
             Use today's date to resolve time expressions like "tomorrow" or "next Thursday" into specific calendar dates.
 
             Return one or more reminders in the following format (each on its own line if there are multiple):
 
             Task: <the main task title>
-            Date: <date in YYYY-MM-DD or YYYY-MM-DD HH:mm>
+            Date: <date in YYYY-MM-DD or YYYY-MM-DD HH:mm of the first time it is due>
+            Repeat: <none, or a rule if the reminder repeats, e.g. FREQ=DAILY, FREQ=WEEKLY;BYDAY=MO,TH, FREQ=MONTHLY>
             Description: <a short description of the task>
             Tags: <comma-separated list of: MEDICATION, APPOINTMENT, EVENT, TASK, PERSONAL, WORK, FINANCE, HEALTH, TRAVEL, SOCIAL, EDUCATION, LEISURE, OTHER>
 
             If there are no reminders to extract, just reply with "none".
-        """.formatted(today, message);
+            """, """
+            Today is {{today}} (the user's local time).
+            {{timeHint}}
+            The user said: "{{message}}"
+            """);
+
+    /**
+     * Builds the prompt to send to the LLM for extracting structured reminders.
+     * When the time expression was already resolved locally it is handed to the
+     * LLM as-is, so the model only extracts the task, description and tags.
+     */
+    private PromptTemplate.Rendered buildPrompt(ZonedDateTime now, TemporalExpressionParser.Resolution resolved, String message) {
+        String today = now.format(DateTimeFormatter.ofPattern("EEEE yyyy-MM-dd HH:mm", Locale.ENGLISH));
+        String timeHint = resolved == null ? "" : "The time in this message has already been worked out as %s. Use exactly this value for Date."
+                .formatted(resolved.hasTime() ? resolved.format() : resolved.getDateTime().toLocalDate().toString());
+        return REMINDER_EXTRACTION.render("today", today, "timeHint", timeHint, "message", message);
     }
 
     /**
      * Parses the LLM response line by line and saves valid reminders.
      */
-    private void parseAndStoreReminders(String response, String userId) {
+    private List<Reminder> parseAndStoreReminders(String response, String userId, ZoneId zone) {
         String[] lines = response.split("\\r?\\n");
+        List<Reminder> parsed = new ArrayList<>();
 
-        String task = null, date = null, description = "", tag = null;
+        String task = null, date = null, description = "", tag = null, repeat = null;
 
         for (String line : lines) {
             line = line.trim();
@@ -80,6 +206,8 @@ public class ReminderService {
                 task = line.substring(5).trim();
             } else if (line.toLowerCase().startsWith("date:")) {
                 date = line.substring(5).trim();
+            } else if (line.toLowerCase().startsWith("repeat:")) {
+                repeat = line.substring(7).trim().toUpperCase();
             } else if (line.toLowerCase().startsWith("description:")) {
                 description = line.substring(12).trim();
             } else if (line.toLowerCase().startsWith("tags:")) {
@@ -87,13 +215,16 @@ public class ReminderService {
             }
 
             if (task != null && date != null && tag != null) {
-                Instant timestamp = parseDateToInstant(date, userId);
+                Instant timestamp = parseDateToInstant(date, zone, userId);
                 if (timestamp != null) {
                     // Parse comma-separated tags
                     List<ReminderTag> tags = parseTags(tag);
                     Reminder reminder = new Reminder(userId, task, timestamp, description, tags);
-                    reminderRepository.save(reminder);
-                    logger.logToFile(userId, "Saved reminder: " + reminder);
+                    if (repeat != null && RecurrenceRule.isValid(repeat)) {
+                        reminder.setRecurrence(repeat);
+                        reminder.setRecurrenceZone(zone.getId());
+                    }
+                    parsed.add(reminder);
                 }
 
                 // Reset fields for next reminder
@@ -101,8 +232,100 @@ public class ReminderService {
                 date = null;
                 description = "";
                 tag = null;
+                repeat = null;
+            }
+        }
+        return storeReminders(userId, parsed);
+    }
+
+    /**
+     * Stores reminders idempotently. Reminders are keyed by their content
+     * fingerprint: repeats within the batch collapse into one, and each
+     * distinct reminder is upserted on (userId, fingerprint), so a reminder
+     * matching one the user already has updates that document instead of
+     * adding a copy, even when two requests race.
+     *
+     * @return the stored reminders, one per distinct fingerprint
+     */
+    private List<Reminder> storeReminders(String userId, List<Reminder> parsed) {
+        if (parsed.isEmpty()) {
+            return new ArrayList<>();
+        }
+        Map<String, Reminder> byFingerprint = new LinkedHashMap<>();
+        for (Reminder reminder : parsed) {
+            String fingerprint = ReminderFingerprint.of(reminder.getTitle(), reminder.getTimestamp());
+            reminder.setFingerprint(fingerprint);
+            byFingerprint.merge(fingerprint, reminder, (first, repeat) -> {
+                mergeInto(first, repeat);
+                return first;
+            });
+        }
+
+        List<Reminder> result = new ArrayList<>();
+        for (Reminder reminder : byFingerprint.values()) {
+            Reminder stored = upsert(userId, reminder);
+            if (stored == null) {
+                continue;
+            }
+            reminderDispatchService.track(stored);
+            result.add(stored);
+            logger.logToFile(userId, "Saved reminder: " + stored);
+        }
+        return result;
+    }
+
+    /**
+     * Inserts a reminder or merges it into the user's reminder with the same
+     * fingerprint in one atomic write: a non-blank description replaces the
+     * stored one, tags are added to the stored set and a stated recurrence
+     * replaces the stored rule. Backed by the unique user_fingerprint index.
+     */
+    private Reminder upsert(String userId, Reminder reminder) {
+        Query query = new Query(Criteria.where("userId").is(userId).and("fingerprint").is(reminder.getFingerprint()));
+        Update update = new Update()
+                .setOnInsert("title", reminder.getTitle())
+                .setOnInsert("timestamp", reminder.getTimestamp())
+                .setOnInsert("status", reminder.getStatus());
+        if (reminder.getDescription() != null && !reminder.getDescription().isBlank()) {
+            update.set("description", reminder.getDescription());
+        } else {
+            update.setOnInsert("description", reminder.getDescription());
+        }
+        if (reminder.getTags() != null && !reminder.getTags().isEmpty()) {
+            update.addToSet("tags").each(reminder.getTags().toArray());
+        } else {
+            update.setOnInsert("tags", reminder.getTags());
+        }
+        if (reminder.getRecurrence() != null) {
+            update.set("recurrence", reminder.getRecurrence()).set("recurrenceZone", reminder.getRecurrenceZone());
+        }
+        FindAndModifyOptions options = FindAndModifyOptions.options().upsert(true).returnNew(true);
+        try {
+            return mongoTemplate.findAndModify(query, update, options, Reminder.class);
+        } catch (DuplicateKeyException e) {
+            // Lost an insert race on the unique index; the winner's document now matches
+            return mongoTemplate.findAndModify(query, update, options, Reminder.class);
+        }
+    }
+
+    /**
+     * Copies a newer description, any new tags and a newly stated recurrence
+     * from a repeated reminder in the same batch.
+     */
+    private void mergeInto(Reminder target, Reminder repeat) {
+        if (repeat.getDescription() != null && !repeat.getDescription().isBlank()) {
+            target.updateDescription(repeat.getDescription());
+        }
+        if (repeat.getTags() != null) {
+            Set<ReminderTag> tags = new LinkedHashSet<>(target.getTags() != null ? target.getTags() : List.of());
+            if (tags.addAll(repeat.getTags())) {
+                target.updateTags(new ArrayList<>(tags));
             }
         }
+        if (repeat.getRecurrence() != null && !repeat.getRecurrence().equals(target.getRecurrence())) {
+            target.setRecurrence(repeat.getRecurrence());
+            target.setRecurrenceZone(repeat.getRecurrenceZone());
+        }
     }
 
     /**
@@ -128,9 +351,9 @@ public class ReminderService {
 
     /**
      * Parses a date string into an Instant. Handles full ISO, date + time, or just date.
-     * Defaults to 12:00 noon UTC if time is not given.
+     * Local dates and times are read in the user's timezone; noon is assumed if no time is given.
      */
-    private Instant parseDateToInstant(String date, String userId) {
+    private Instant parseDateToInstant(String date, ZoneId zone, String userId) {
         try {
             // Try full ISO-8601 datetime format
             return Instant.parse(date);
@@ -139,13 +362,13 @@ public class ReminderService {
                 // Try "yyyy-MM-dd HH:mm"
                 DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
                 LocalDateTime dateTime = LocalDateTime.parse(date, formatter);
-                return dateTime.atZone(ZoneId.of("UTC")).toInstant();
+                return dateTime.atZone(zone).toInstant();
             } catch (DateTimeParseException e2) {
                 try {
                     // Fallback: just "yyyy-MM-dd", assume noon
                     LocalDate localDate = LocalDate.parse(date);
                     LocalTime midday = LocalTime.of(12, 0);
-                    return LocalDateTime.of(localDate, midday).atZone(ZoneId.of("UTC")).toInstant();
+                    return LocalDateTime.of(localDate, midday).atZone(zone).toInstant();
                 } catch (DateTimeParseException e3) {
                     logger.logToFile(userId, "Failed to parse reminder date: " + date);
                     return null;
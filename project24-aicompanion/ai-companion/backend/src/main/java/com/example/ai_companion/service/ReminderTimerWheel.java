@@ -0,0 +1,176 @@
+package com.example.ai_companion.service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Hierarchical timer wheel keyed by reminder id.
+ * <p>
+ * Level 0 has one slot per tick; each higher level has slots that span a full
+ * rotation of the level below. An entry is placed on the lowest level whose
+ * range covers its remaining delay and is cascaded down as the wheel turns,
+ * so scheduling, rescheduling and cancelling are O(1) and advancing costs
+ * O(expired entries) per tick. Entries further out than the wheel's horizon
+ * are rejected; callers reload them once they come into range.
+ * <p>
+ * Not thread-safe; callers synchronise externally.
+ */
+public class ReminderTimerWheel {
+
+    private static final class Entry {
+        final String id;
+        final long dueTick;
+        int level;
+        int slot;
+
+        Entry(String id, long dueTick) {
+            this.id = id;
+            this.dueTick = dueTick;
+        }
+    }
+
+    private final long tickMillis;
+    private final int slotsPerLevel;
+    private final long[] levelSpan;
+    private final List<Set<Entry>[]> levels = new ArrayList<>();
+    private final Map<String, Entry> index = new HashMap<>();
+    private final List<Entry> overdue = new ArrayList<>();
+    private long currentTick;
+
+    /**
+     * @param start         time the wheel starts at
+     * @param tick          resolution of the wheel
+     * @param slotsPerLevel slots on each level
+     * @param levelCount    number of levels; the horizon is {@code tick * slotsPerLevel^levelCount}
+     */
+    @SuppressWarnings("unchecked")
+    public ReminderTimerWheel(Instant start, Duration tick, int slotsPerLevel, int levelCount) {
+        this.tickMillis = tick.toMillis();
+        this.slotsPerLevel = slotsPerLevel;
+        this.levelSpan = new long[levelCount + 1];
+        levelSpan[0] = 1;
+        for (int i = 1; i <= levelCount; i++) {
+            levelSpan[i] = levelSpan[i - 1] * slotsPerLevel;
+        }
+        for (int i = 0; i < levelCount; i++) {
+            Set<Entry>[] slots = new Set[slotsPerLevel];
+            for (int s = 0; s < slotsPerLevel; s++) {
+                slots[s] = new HashSet<>();
+            }
+            levels.add(slots);
+        }
+        this.currentTick = toTick(start);
+    }
+
+    /** Latest due time the wheel accepts right now. */
+    public Instant horizon() {
+        return Instant.ofEpochMilli((currentTick + levelSpan[levels.size()] - 1) * tickMillis);
+    }
+
+    /**
+     * Schedules (or reschedules) an id. Due times at or before the current tick
+     * are returned by the next {@link #advance}.
+     *
+     * @return false if the due time lies beyond the horizon and was not scheduled
+     */
+    public boolean schedule(String id, Instant due) {
+        long dueTick = toTick(due);
+        if (dueTick - currentTick >= levelSpan[levels.size()]) {
+            cancel(id);
+            return false;
+        }
+        cancel(id);
+        Entry entry = new Entry(id, dueTick);
+        index.put(id, entry);
+        place(entry);
+        return true;
+    }
+
+    /** Removes an id from the wheel. */
+    public boolean cancel(String id) {
+        Entry entry = index.remove(id);
+        if (entry == null) {
+            return false;
+        }
+        if (entry.level < 0) {
+            overdue.remove(entry);
+        } else {
+            levels.get(entry.level)[entry.slot].remove(entry);
+        }
+        return true;
+    }
+
+    public boolean contains(String id) {
+        return index.containsKey(id);
+    }
+
+    public int size() {
+        return index.size();
+    }
+
+    /**
+     * Turns the wheel up to {@code now} and returns the ids that fell due,
+     * in due order.
+     */
+    public List<String> advance(Instant now) {
+        List<Entry> expired = new ArrayList<>(overdue);
+        overdue.clear();
+        long target = toTick(now);
+        while (currentTick < target) {
+            currentTick++;
+            for (int level = levels.size() - 1; level >= 1; level--) {
+                if (currentTick % levelSpan[level] == 0) {
+                    cascade(level);
+                }
+            }
+            Set<Entry> slot = levels.get(0)[(int) (currentTick % slotsPerLevel)];
+            expired.addAll(slot);
+            slot.clear();
+            // Entries cascaded onto the current tick were placed in the overdue list
+            expired.addAll(overdue);
+            overdue.clear();
+        }
+        expired.sort((a, b) -> Long.compare(a.dueTick, b.dueTick));
+        List<String> ids = new ArrayList<>(expired.size());
+        for (Entry entry : expired) {
+            index.remove(entry.id);
+            ids.add(entry.id);
+        }
+        return ids;
+    }
+
+    private void cascade(int level) {
+        Set<Entry> slot = levels.get(level)[(int) ((currentTick / levelSpan[level]) % slotsPerLevel)];
+        List<Entry> moving = new ArrayList<>(slot);
+        slot.clear();
+        for (Entry entry : moving) {
+            place(entry);
+        }
+    }
+
+    private void place(Entry entry) {
+        long delta = entry.dueTick - currentTick;
+        if (delta <= 0) {
+            entry.level = -1;
+            overdue.add(entry);
+            return;
+        }
+        int level = 0;
+        while (delta >= levelSpan[level + 1]) {
+            level++;
+        }
+        entry.level = level;
+        entry.slot = (int) ((entry.dueTick / levelSpan[level]) % slotsPerLevel);
+        levels.get(level)[entry.slot].add(entry);
+    }
+
+    private long toTick(Instant time) {
+        return Math.floorDiv(time.toEpochMilli(), tickMillis);
+    }
+}
@@ -0,0 +1,71 @@
+package com.example.ai_companion.service;
+
+import com.example.ai_companion.model.GamePuzzle;
+import com.example.ai_companion.utils.GameAnswers;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Random;
+import java.util.StringJoiner;
+
+/**
+ * "What comes next?" number sequences: steady steps at level 1, doubling and
+ * tripling at level 2, and steps that grow by one at level 3.
+ */
+@Component
+public class SequenceGameEngine implements GameEngine {
+
+    private static final int SHOWN = 4;
+
+    @Override
+    public String id() {
+        return "sequence";
+    }
+
+    @Override
+    public String title() {
+        return "Number Sequences";
+    }
+
+    @Override
+    public String description() {
+        return "Spot the pattern in a row of numbers and say which number comes next.";
+    }
+
+    @Override
+    public List<String> keywords() {
+        return List.of("number sequence", "number sequences", "what comes next", "next number", "number pattern");
+    }
+
+    @Override
+    public GamePuzzle newPuzzle(int level, Random random) {
+        long[] terms = new long[SHOWN + 1];
+        String hint;
+        int kind = random.nextInt(Math.min(level, 3));
+        if (kind == 0) {
+            int step = 1 + random.nextInt(level * 4);
+            terms[0] = 1 + random.nextInt(20);
+            for (int i = 1; i < terms.length; i++) terms[i] = terms[i - 1] + step;
+            hint = "Each number is " + step + " more than the one before.";
+        } else if (kind == 1) {
+            int factor = 2 + random.nextInt(2);
+            terms[0] = 1 + random.nextInt(5);
+            for (int i = 1; i < terms.length; i++) terms[i] = terms[i - 1] * factor;
+            hint = "Each number is " + (factor == 2 ? "double" : "three times") + " the one before.";
+        } else {
+            int step = 1 + random.nextInt(3);
+            terms[0] = 1 + random.nextInt(10);
+            for (int i = 1; i < terms.length; i++) terms[i] = terms[i - 1] + step + i - 1;
+            hint = "The gap between the numbers grows by one each time.";
+        }
+        StringJoiner shown = new StringJoiner(", ");
+        for (int i = 0; i < SHOWN; i++) shown.add(String.valueOf(terms[i]));
+        return new GamePuzzle("What number comes next: " + shown + ", ...?", String.valueOf(terms[SHOWN]), hint);
+    }
+
+    @Override
+    public boolean isCorrect(GamePuzzle puzzle, String reply) {
+        Integer number = GameAnswers.number(reply);
+        return number != null && String.valueOf(number).equals(puzzle.getAnswer());
+    }
+}
@@ -0,0 +1,279 @@
+package com.example.ai_companion.service;
+
+import com.example.ai_companion.dto.HeyGenTextToSpeechRequest;
+import com.example.ai_companion.response.HeyGenAudioResponse;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Disk cache of synthesized speech for phrases the avatar says again and
+ * again: greetings, reminder confirmations, game openers and fallbacks.
+ * <p>
+ * Each phrase is stored once under {@code heygen.tts.cache.dir}, in a file
+ * named by the SHA-256 of the voice, speed, pitch and normalised text, so a
+ * repeat skips synthesis entirely. Once the files exceed
+ * {@code heygen.tts.cache.max-bytes}, the least recently used ones are
+ * deleted. Use is recorded in the file's modification time, so the order
+ * survives a restart. Concurrent requests for the same phrase share one synthesis.
+ */
+@Component
+public class SpokenPhraseCache {
+
+    private static final Logger log = LoggerFactory.getLogger(SpokenPhraseCache.class);
+
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+    private static final Pattern SPACE_BEFORE_PUNCTUATION = Pattern.compile(" ([.,!?;:])");
+    private static final String SUFFIX = ".json";
+
+    @Autowired
+    private HeyGenService heyGenService;
+
+    @Value("${heygen.tts.cache.enabled:true}")
+    private boolean enabled = true;
+
+    @Value("${heygen.tts.cache.dir:${java.io.tmpdir}/ai-companion-speech}")
+    private String directory;
+
+    @Value("${heygen.tts.cache.max-bytes:268435456}")
+    private long maxBytes = 268435456L;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    // Cached file sizes by key, least recently used first; guarded by this
+    private final LinkedHashMap<String, Long> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalBytes;
+
+    private final Map<String, CompletableFuture<HeyGenAudioResponse>> inFlight = new ConcurrentHashMap<>();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    /** Picks up phrases cached before a restart, oldest use first. */
+    @PostConstruct
+    public void load() {
+        if (!enabled) {
+            return;
+        }
+        Path dir = Paths.get(directory);
+        try {
+            Files.createDirectories(dir);
+            List<Path> files;
+            try (Stream<Path> listing = Files.list(dir)) {
+                files = listing.filter(p -> p.getFileName().toString().endsWith(SUFFIX))
+                        .sorted(Comparator.comparing(SpokenPhraseCache::lastModified))
+                        .toList();
+            }
+            List<Path> evicted;
+            synchronized (this) {
+                for (Path file : files) {
+                    long size = Files.size(file);
+                    entries.put(keyOf(file), size);
+                    totalBytes += size;
+                }
+                evicted = evictOverLimit();
+            }
+            delete(evicted);
+            log.info("[SpokenPhraseCache] Loaded {} phrases ({} bytes) from {}", files.size() - evicted.size(), totalBytes, dir);
+        } catch (IOException e) {
+            log.warn("[SpokenPhraseCache] Cannot use {}, caching disabled: {}", dir, e.getMessage());
+            enabled = false;
+        }
+    }
+
+    /**
+     * Returns the audio for the request, synthesizing it only if this phrase
+     * has not been spoken in this voice before.
+     */
+    public HeyGenAudioResponse speak(HeyGenTextToSpeechRequest req) {
+        if (!enabled) {
+            return heyGenService.synthesizeSpeech(req);
+        }
+        String key = key(req);
+        HeyGenAudioResponse cached = read(key);
+        if (cached != null) {
+            hits.incrementAndGet();
+            return forSession(cached, req);
+        }
+
+        CompletableFuture<HeyGenAudioResponse> mine = new CompletableFuture<>();
+        CompletableFuture<HeyGenAudioResponse> running = inFlight.putIfAbsent(key, mine);
+        if (running != null) {
+            coalesced.incrementAndGet();
+            try {
+                return forSession(running.join(), req);
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException cause ? cause : e;
+            }
+        }
+        misses.incrementAndGet();
+        try {
+            HeyGenAudioResponse audio = heyGenService.synthesizeSpeech(req);
+            write(key, audio);
+            mine.complete(audio);
+            return forSession(audio, req);
+        } catch (RuntimeException e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, mine);
+        }
+    }
+
+    private HeyGenAudioResponse read(String key) {
+        synchronized (this) {
+            if (entries.get(key) == null) {
+                return null;
+            }
+        }
+        Path file = file(key);
+        try {
+            HeyGenAudioResponse audio = objectMapper.readValue(file.toFile(), HeyGenAudioResponse.class);
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+            return audio;
+        } catch (IOException e) {
+            // Evicted meanwhile or unreadable: synthesize again
+            synchronized (this) {
+                Long size = entries.remove(key);
+                if (size != null) totalBytes -= size;
+            }
+            return null;
+        }
+    }
+
+    private void write(String key, HeyGenAudioResponse audio) {
+        if (audio == null || audio.getAudioData() == null || !"success".equals(audio.getStatus())) {
+            return;
+        }
+        Path file = file(key);
+        List<Path> evicted;
+        try {
+            byte[] bytes = objectMapper.writeValueAsBytes(forSession(audio, null));
+            Path tmp = Files.createTempFile(file.getParent(), key, ".tmp");
+            Files.write(tmp, bytes);
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            synchronized (this) {
+                Long previous = entries.put(key, (long) bytes.length);
+                totalBytes += bytes.length - (previous != null ? previous : 0);
+                evicted = evictOverLimit();
+            }
+        } catch (IOException e) {
+            log.warn("[SpokenPhraseCache] Failed to store phrase {}: {}", key, e.getMessage());
+            return;
+        }
+        delete(evicted);
+    }
+
+    /** Drops least recently used entries until the cache fits; the newest always stays. */
+    private List<Path> evictOverLimit() {
+        List<Path> evicted = new ArrayList<>();
+        Iterator<Map.Entry<String, Long>> it = entries.entrySet().iterator();
+        while (totalBytes > maxBytes && entries.size() - evicted.size() > 1 && it.hasNext()) {
+            Map.Entry<String, Long> eldest = it.next();
+            totalBytes -= eldest.getValue();
+            evicted.add(file(eldest.getKey()));
+            it.remove();
+        }
+        evictions.addAndGet(evicted.size());
+        return evicted;
+    }
+
+    private static void delete(List<Path> files) {
+        for (Path file : files) {
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                log.warn("[SpokenPhraseCache] Failed to delete {}: {}", file, e.getMessage());
+            }
+        }
+    }
+
+    private static HeyGenAudioResponse forSession(HeyGenAudioResponse audio, HeyGenTextToSpeechRequest req) {
+        return new HeyGenAudioResponse(req != null ? req.getSessionId() : null, audio.getAudioData(),
+                audio.getAudioFormat(), audio.getSampleRate(), audio.getStatus(), audio.getMessage());
+    }
+
+    private Path file(String key) {
+        return Paths.get(directory, key + SUFFIX);
+    }
+
+    private static String keyOf(Path file) {
+        String name = file.getFileName().toString();
+        return name.substring(0, name.length() - SUFFIX.length());
+    }
+
+    private static FileTime lastModified(Path file) {
+        try {
+            return Files.getLastModifiedTime(file);
+        } catch (IOException e) {
+            return FileTime.fromMillis(0);
+        }
+    }
+
+    static String key(HeyGenTextToSpeechRequest req) {
+        String material = req.getVoiceId() + "|" + req.getSpeed() + "|" + req.getPitch() + "\n" + normalise(req.getText());
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(material.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Folds differences that do not change how a phrase sounds: Unicode
+     * compatibility forms (full-width letters, ligatures), runs of
+     * whitespace, and spaces before punctuation.
+     */
+    static String normalise(String text) {
+        String folded = Normalizer.normalize(text == null ? "" : text, Normalizer.Form.NFKC);
+        folded = WHITESPACE.matcher(folded.trim()).replaceAll(" ");
+        return SPACE_BEFORE_PUNCTUATION.matcher(folded).replaceAll("$1");
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        long lookups = hits.get() + misses.get();
+        synchronized (this) {
+            stats.put("phrases", entries.size());
+            stats.put("bytes", totalBytes);
+        }
+        stats.put("maxBytes", maxBytes);
+        stats.put("hits", hits.get());
+        stats.put("misses", misses.get());
+        stats.put("hitRate", lookups == 0 ? 0.0 : (double) hits.get() / lookups);
+        stats.put("coalesced", coalesced.get());
+        stats.put("evictions", evictions.get());
+        return stats;
+    }
+}
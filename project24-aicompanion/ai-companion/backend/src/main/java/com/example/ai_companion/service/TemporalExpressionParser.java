@@ -0,0 +1,358 @@
+package com.example.ai_companion.service;
+
+import org.springframework.stereotype.Component;
+
+import java.time.DateTimeException;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Resolves the time expressions that show up in reminder requests, such as
+ * "tomorrow at 5pm", "next Thursday", "in two hours" or "the 14th", against
+ * the user's local date and time.
+ * <p>
+ * The parser only reports a result as confident when every part it matched is
+ * unambiguous. "at 7" with no am/pm or day part, "a few days" and numeric dates
+ * such as 3/4 are still resolved, but flagged so callers can defer to the LLM.
+ */
+@Component
+public class TemporalExpressionParser {
+
+    private static final int FLAGS = Pattern.CASE_INSENSITIVE;
+
+    private static final DateTimeFormatter FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
+
+    private static final LocalTime DEFAULT_TIME = LocalTime.NOON;
+
+    private static final Map<String, Integer> NUMBER_WORDS = Map.ofEntries(
+            Map.entry("a", 1), Map.entry("an", 1), Map.entry("one", 1), Map.entry("two", 2),
+            Map.entry("three", 3), Map.entry("four", 4), Map.entry("five", 5), Map.entry("six", 6),
+            Map.entry("seven", 7), Map.entry("eight", 8), Map.entry("nine", 9), Map.entry("ten", 10),
+            Map.entry("eleven", 11), Map.entry("twelve", 12), Map.entry("fifteen", 15),
+            Map.entry("twenty", 20), Map.entry("thirty", 30), Map.entry("forty five", 45),
+            Map.entry("forty-five", 45), Map.entry("a couple of", 2), Map.entry("a few", 3));
+
+    private static final Map<String, Integer> MONTHS = Map.ofEntries(
+            Map.entry("jan", 1), Map.entry("feb", 2), Map.entry("mar", 3), Map.entry("apr", 4),
+            Map.entry("may", 5), Map.entry("jun", 6), Map.entry("jul", 7), Map.entry("aug", 8),
+            Map.entry("sep", 9), Map.entry("oct", 10), Map.entry("nov", 11), Map.entry("dec", 12));
+
+    private static final String MONTH = "(jan(?:uary)?|feb(?:ruary)?|mar(?:ch)?|apr(?:il)?|may|june?|july?|"
+            + "aug(?:ust)?|sep(?:t(?:ember)?)?|oct(?:ober)?|nov(?:ember)?|dec(?:ember)?)";
+
+    private static final String WEEKDAY = "(monday|tuesday|wednesday|thursday|friday|saturday|sunday)";
+
+    private static final Pattern RELATIVE_HALF_HOUR = Pattern.compile("\\bin (half an hour|an hour and a half)\\b", FLAGS);
+
+    private static final Pattern RELATIVE = Pattern.compile(
+            "\\bin (\\d+|a couple of|a few|an|a|one|two|three|four|five|six|seven|eight|nine|ten|eleven|twelve|"
+                    + "fifteen|twenty|thirty|forty[- ]five) (minute|min|hour|hr|day|week)s?\\b", FLAGS);
+
+    private static final Pattern DAY_AFTER_TOMORROW = Pattern.compile("\\b(the )?day after tomorrow\\b", FLAGS);
+    private static final Pattern TOMORROW = Pattern.compile("\\b(tomorrow|tmrw|tmr)\\b", FLAGS);
+    private static final Pattern TODAY = Pattern.compile("\\b(today|tonight)\\b", FLAGS);
+    private static final Pattern WEEKDAY_REF = Pattern.compile("\\b((on|this|next|coming|this coming) )?" + WEEKDAY + "\\b", FLAGS);
+    private static final Pattern ISO_DATE = Pattern.compile("\\b(on )?(\\d{4})-(\\d{2})-(\\d{2})\\b", FLAGS);
+    private static final Pattern DAY_MONTH = Pattern.compile("\\b(on )?(the )?(\\d{1,2})(st|nd|rd|th)?( of)? " + MONTH + "\\b", FLAGS);
+    private static final Pattern MONTH_DAY = Pattern.compile("\\b(on )?" + MONTH + " (the )?(\\d{1,2})(st|nd|rd|th)?\\b", FLAGS);
+    private static final Pattern NUMERIC_DATE = Pattern.compile("\\b(on )?(\\d{1,2})/(\\d{1,2})(/(\\d{2,4}))?\\b", FLAGS);
+    private static final Pattern ORDINAL_DAY = Pattern.compile("\\b(on |by |before )?the (\\d{1,2})(st|nd|rd|th)\\b", FLAGS);
+
+    private static final Pattern CLOCK_MERIDIEM = Pattern.compile(
+            "\\b(at |by |around )?(\\d{1,2})(?:[:.](\\d{2}))? ?(am|pm|a\\.m\\.|p\\.m\\.)(?=\\W|$)", FLAGS);
+    private static final Pattern CLOCK_24H = Pattern.compile("\\b(at |by |around )?(\\d{1,2}):(\\d{2})\\b", FLAGS);
+    private static final Pattern CLOCK_BARE = Pattern.compile("\\b(at|by|around) (\\d{1,2})( o'?clock)?\\b(?![:/.]\\d)", FLAGS);
+    private static final Pattern NAMED_TIME = Pattern.compile("\\b(at )?(noon|midday|midnight)\\b", FLAGS);
+    private static final Pattern DAY_PART = Pattern.compile(
+            "\\b(in the |this |tomorrow |at )?(morning|afternoon|evening|night|lunch ?time|dinner ?time|bed ?time)\\b", FLAGS);
+
+    /**
+     * Result of resolving a message's time expression.
+     */
+    public static final class Resolution {
+        private final LocalDateTime dateTime;
+        private final boolean hasTime;
+        private final boolean confident;
+        private final List<int[]> spans;
+
+        Resolution(LocalDateTime dateTime, boolean hasTime, boolean confident, List<int[]> spans) {
+            this.dateTime = dateTime;
+            this.hasTime = hasTime;
+            this.confident = confident;
+            this.spans = spans;
+        }
+
+        /** Local date and time; noon when the message only named a day. */
+        public LocalDateTime getDateTime() {
+            return dateTime;
+        }
+
+        public boolean hasTime() {
+            return hasTime;
+        }
+
+        public boolean isConfident() {
+            return confident;
+        }
+
+        /** Local date-time in the {@code yyyy-MM-dd HH:mm} form the reminder prompt uses. */
+        public String format() {
+            return dateTime.format(FORMAT);
+        }
+
+        /** Returns the text with the matched time expressions removed. */
+        public String stripFrom(String text) {
+            List<int[]> ordered = new ArrayList<>(spans);
+            ordered.sort((a, b) -> Integer.compare(a[0], b[0]));
+            StringBuilder result = new StringBuilder();
+            int position = 0;
+            for (int[] span : ordered) {
+                // Spans can overlap, e.g. "tomorrow" and "tomorrow morning"
+                if (span[0] > position) {
+                    result.append(text, position, span[0]).append(' ');
+                }
+                position = Math.max(position, span[1]);
+            }
+            result.append(text.substring(Math.min(position, text.length())));
+            return result.toString().replaceAll("\\s+", " ").trim();
+        }
+    }
+
+    /**
+     * Resolves the time expression in {@code text} relative to {@code now}.
+     *
+     * @param text the user's message
+     * @param now  the current time in the user's timezone
+     * @return the resolution, or empty if the message has no recognisable time expression
+     */
+    public Optional<Resolution> parse(String text, ZonedDateTime now) {
+        if (text == null || text.isBlank()) {
+            return Optional.empty();
+        }
+        LocalDateTime current = now.toLocalDateTime().withSecond(0).withNano(0);
+        LocalDate today = current.toLocalDate();
+        List<int[]> spans = new ArrayList<>();
+        boolean confident = true;
+
+        // "in 20 minutes" / "in two hours" fix the full date-time on their own
+        Matcher m = RELATIVE_HALF_HOUR.matcher(text);
+        if (m.find()) {
+            spans.add(new int[]{m.start(), m.end()});
+            int minutes = m.group(1).equalsIgnoreCase("half an hour") ? 30 : 90;
+            return Optional.of(new Resolution(current.plusMinutes(minutes), true, true, spans));
+        }
+        LocalDate date = null;
+        m = RELATIVE.matcher(text);
+        if (m.find()) {
+            String amountText = m.group(1).toLowerCase(Locale.ROOT);
+            int amount = amountText.matches("\\d+") ? Integer.parseInt(amountText) : NUMBER_WORDS.get(amountText);
+            boolean vague = amountText.startsWith("a few");
+            String unit = m.group(2).toLowerCase(Locale.ROOT);
+            spans.add(new int[]{m.start(), m.end()});
+            switch (unit) {
+                case "minute", "min" -> {
+                    return Optional.of(new Resolution(current.plusMinutes(amount), true, !vague, spans));
+                }
+                case "hour", "hr" -> {
+                    return Optional.of(new Resolution(current.plusHours(amount), true, !vague, spans));
+                }
+                case "day" -> date = today.plusDays(amount);
+                default -> date = today.plusWeeks(amount);
+            }
+            confident = !vague;
+        }
+
+        // Day
+        int dayMatches = date != null ? 1 : 0;
+        if ((m = DAY_AFTER_TOMORROW.matcher(text)).find()) {
+            date = today.plusDays(2);
+            spans.add(new int[]{m.start(), m.end()});
+            dayMatches++;
+        } else if ((m = TOMORROW.matcher(text)).find()) {
+            date = today.plusDays(1);
+            spans.add(new int[]{m.start(), m.end()});
+            dayMatches++;
+        }
+        if ((m = TODAY.matcher(text)).find()) {
+            date = today;
+            spans.add(new int[]{m.start(), m.end()});
+            dayMatches++;
+        }
+        if ((m = WEEKDAY_REF.matcher(text)).find()) {
+            DayOfWeek target = DayOfWeek.valueOf(m.group(3).toUpperCase(Locale.ROOT));
+            int ahead = (target.getValue() - today.getDayOfWeek().getValue() + 7) % 7;
+            date = today.plusDays(ahead == 0 ? 7 : ahead);
+            spans.add(new int[]{m.start(), m.end()});
+            dayMatches++;
+        }
+        if ((m = ISO_DATE.matcher(text)).find()) {
+            date = safeDate(Integer.parseInt(m.group(2)), Integer.parseInt(m.group(3)), Integer.parseInt(m.group(4)));
+            spans.add(new int[]{m.start(), m.end()});
+            dayMatches++;
+        } else if ((m = DAY_MONTH.matcher(text)).find()) {
+            date = nextOccurrence(today, month(m.group(6)), Integer.parseInt(m.group(3)));
+            spans.add(new int[]{m.start(), m.end()});
+            dayMatches++;
+        } else if ((m = MONTH_DAY.matcher(text)).find()) {
+            date = nextOccurrence(today, month(m.group(2)), Integer.parseInt(m.group(4)));
+            spans.add(new int[]{m.start(), m.end()});
+            dayMatches++;
+        } else if ((m = NUMERIC_DATE.matcher(text)).find()) {
+            // Day-first, as written in New Zealand; ambiguous unless the day is above 12
+            int day = Integer.parseInt(m.group(2));
+            int month = Integer.parseInt(m.group(3));
+            if (m.group(5) != null) {
+                int year = Integer.parseInt(m.group(5));
+                date = safeDate(year < 100 ? 2000 + year : year, month, day);
+            } else {
+                date = nextOccurrence(today, month, day);
+            }
+            confident &= day > 12 || day == month;
+            spans.add(new int[]{m.start(), m.end()});
+            dayMatches++;
+        } else if ((m = ORDINAL_DAY.matcher(text)).find()) {
+            int day = Integer.parseInt(m.group(2));
+            LocalDate candidate = safeDate(today.getYear(), today.getMonthValue(), day);
+            if (candidate == null || candidate.isBefore(today)) {
+                LocalDate next = today.plusMonths(1);
+                candidate = safeDate(next.getYear(), next.getMonthValue(), day);
+            }
+            date = candidate;
+            spans.add(new int[]{m.start(), m.end()});
+            dayMatches++;
+        }
+        if (dayMatches > 1 || (dayMatches == 1 && date == null)) {
+            // Conflicting days, several reminders in one message, or a date that does not exist
+            confident = false;
+        }
+
+        // Time
+        LocalTime time = null;
+        boolean nextDayForMidnight = false;
+        if ((m = CLOCK_MERIDIEM.matcher(text)).find()) {
+            int hour = Integer.parseInt(m.group(2));
+            int minute = m.group(3) != null ? Integer.parseInt(m.group(3)) : 0;
+            boolean pm = m.group(4).toLowerCase(Locale.ROOT).startsWith("p");
+            if (hour >= 1 && hour <= 12 && minute < 60) {
+                time = LocalTime.of(pm ? (hour % 12) + 12 : hour % 12, minute);
+                spans.add(new int[]{m.start(), m.end()});
+            }
+        } else if ((m = CLOCK_24H.matcher(text)).find()) {
+            int hour = Integer.parseInt(m.group(2));
+            int minute = Integer.parseInt(m.group(3));
+            if (hour < 24 && minute < 60) {
+                Boolean pm = dayPartIsPm(text);
+                if (hour >= 1 && hour <= 11 && Boolean.TRUE.equals(pm)) {
+                    hour += 12;
+                } else if (hour >= 1 && hour <= 11 && pm == null) {
+                    confident = false;
+                }
+                time = LocalTime.of(hour, minute);
+                spans.add(new int[]{m.start(), m.end()});
+            }
+        } else if ((m = CLOCK_BARE.matcher(text)).find()) {
+            int hour = Integer.parseInt(m.group(2));
+            if (hour >= 0 && hour <= 23) {
+                Boolean pm = dayPartIsPm(text);
+                if (hour >= 1 && hour <= 11) {
+                    if (pm == null) {
+                        // "at 5" usually means the afternoon, "at 9" the morning
+                        pm = hour <= 6;
+                        confident = false;
+                    }
+                    if (pm) {
+                        hour += 12;
+                    }
+                }
+                time = LocalTime.of(hour, 0);
+                spans.add(new int[]{m.start(), m.end()});
+            }
+        } else if ((m = NAMED_TIME.matcher(text)).find()) {
+            String name = m.group(2).toLowerCase(Locale.ROOT);
+            time = name.equals("midnight") ? LocalTime.MIDNIGHT : LocalTime.NOON;
+            nextDayForMidnight = name.equals("midnight");
+            spans.add(new int[]{m.start(), m.end()});
+        }
+        if ((m = DAY_PART.matcher(text)).find()) {
+            if (time == null) {
+                time = dayPartTime(m.group(2));
+            }
+            spans.add(new int[]{m.start(), m.end()});
+            if (m.group(1) != null && m.group(1).trim().equalsIgnoreCase("tomorrow") && date == null) {
+                date = today.plusDays(1);
+            }
+        }
+        if (time == null && text.toLowerCase(Locale.ROOT).contains("tonight")) {
+            time = LocalTime.of(20, 0);
+        }
+
+        if (date == null && time == null) {
+            return Optional.empty();
+        }
+        if (date == null) {
+            // Time only: the next time the clock reads it
+            date = time.isAfter(current.toLocalTime()) ? today : today.plusDays(1);
+        } else if (nextDayForMidnight) {
+            date = date.plusDays(1);
+        }
+        LocalDateTime resolved = LocalDateTime.of(date, time != null ? time : DEFAULT_TIME);
+        if (resolved.isBefore(current)) {
+            confident = false;
+        }
+        return Optional.of(new Resolution(resolved, time != null, confident, spans));
+    }
+
+    private static Boolean dayPartIsPm(String text) {
+        Matcher m = DAY_PART.matcher(text);
+        if (m.find()) {
+            return !m.group(2).toLowerCase(Locale.ROOT).equals("morning");
+        }
+        if (text.toLowerCase(Locale.ROOT).contains("tonight")) {
+            return true;
+        }
+        return null;
+    }
+
+    private static LocalTime dayPartTime(String part) {
+        String normalised = part.toLowerCase(Locale.ROOT).replace(" ", "");
+        return switch (normalised) {
+            case "morning" -> LocalTime.of(9, 0);
+            case "afternoon" -> LocalTime.of(15, 0);
+            case "evening", "dinnertime" -> LocalTime.of(18, 0);
+            case "night" -> LocalTime.of(20, 0);
+            case "lunchtime" -> LocalTime.NOON;
+            default -> LocalTime.of(21, 0);
+        };
+    }
+
+    private static int month(String name) {
+        return MONTHS.get(name.substring(0, 3).toLowerCase(Locale.ROOT));
+    }
+
+    private static LocalDate nextOccurrence(LocalDate today, int month, int day) {
+        LocalDate candidate = safeDate(today.getYear(), month, day);
+        if (candidate != null && candidate.isBefore(today)) {
+            candidate = safeDate(today.getYear() + 1, month, day);
+        }
+        return candidate;
+    }
+
+    private static LocalDate safeDate(int year, int month, int day) {
+        try {
+            return LocalDate.of(year, month, day);
+        } catch (DateTimeException e) {
+            return null;
+        }
+    }
+}
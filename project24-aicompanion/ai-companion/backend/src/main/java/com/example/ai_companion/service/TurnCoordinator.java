@@ -0,0 +1,145 @@
+package com.example.ai_companion.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Runs each user's turns one at a time, in arrival order, and folds duplicate
+ * requests into one. A request that carries the same key as one still in
+ * flight does not run again; it gets the first request's result, or its
+ * exception. Keys that identify one request, such as a client request ID,
+ * can also have a finished result replayed for {@code turns.replay-ms}.
+ *
+ * <p>Queues are named by the caller, so independent kinds of per-user work
+ * (a chat turn, a core-information merge) can be ordered separately.
+ */
+@Service
+public class TurnCoordinator {
+
+    // How long a finished result is handed to late duplicates of a replayable key
+    @Value("${turns.replay-ms:5000}")
+    private long replayMillis = 5000;
+
+    /** A queue's lock and the number of threads holding or waiting for it. */
+    private static final class Lane {
+        final ReentrantLock lock = new ReentrantLock(true);
+        int users;
+    }
+
+    private final Map<String, Lane> lanes = new ConcurrentHashMap<>();
+    private final Map<String, CompletableFuture<Object>> requests = new ConcurrentHashMap<>();
+
+    private final AtomicLong runs = new AtomicLong();
+    private final AtomicLong waited = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+
+    /**
+     * Runs work on the queue after everything queued before it, replaying a
+     * finished result to duplicates for {@code turns.replay-ms}.
+     *
+     * @param queue      the queue name, usually the user ID
+     * @param requestKey identifies duplicates of this request, or null
+     * @param work       the work to run
+     * @return the work's result, or the result of the duplicate it was folded into
+     */
+    public <T> T run(String queue, String requestKey, Supplier<T> work) {
+        return run(queue, requestKey, true, work);
+    }
+
+    /**
+     * Runs work on the queue after everything queued before it.
+     *
+     * @param queue      the queue name, usually the user ID
+     * @param requestKey identifies duplicates of this request, or null
+     * @param replay     whether duplicates arriving after the work finished get
+     *                   its result too; false merges only requests in flight
+     * @param work       the work to run
+     * @return the work's result, or the result of the duplicate it was folded into
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T run(String queue, String requestKey, boolean replay, Supplier<T> work) {
+        if (requestKey == null) {
+            return serially(queue, work);
+        }
+        String key = queue + '\u0000' + requestKey;
+        CompletableFuture<Object> mine = new CompletableFuture<>();
+        CompletableFuture<Object> first = requests.putIfAbsent(key, mine);
+        if (first != null) {
+            coalesced.incrementAndGet();
+            try {
+                return (T) first.join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException cause ? cause : e;
+            }
+        }
+        try {
+            T result = serially(queue, work);
+            if (replay) {
+                CompletableFuture.runAsync(() -> requests.remove(key, mine),
+                        CompletableFuture.delayedExecutor(replayMillis, TimeUnit.MILLISECONDS));
+            } else {
+                requests.remove(key, mine);
+            }
+            mine.complete(result);
+            return result;
+        } catch (RuntimeException | Error e) {
+            // Failures are not replayed; a retry should get a fresh attempt
+            requests.remove(key, mine);
+            mine.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    /** Runs work on the queue after everything queued before it. */
+    public void run(String queue, Runnable work) {
+        serially(queue, () -> {
+            work.run();
+            return null;
+        });
+    }
+
+    private <T> T serially(String queue, Supplier<T> work) {
+        Lane lane = lanes.compute(queue, (k, existing) -> {
+            Lane l = existing != null ? existing : new Lane();
+            l.users++;
+            return l;
+        });
+        try {
+            // Not tryLock(): it would barge past waiting turns
+            if (lane.lock.isLocked()) {
+                waited.incrementAndGet();
+            }
+            lane.lock.lock();
+            try {
+                runs.incrementAndGet();
+                return work.get();
+            } finally {
+                lane.lock.unlock();
+            }
+        } finally {
+            lanes.compute(queue, (k, l) -> --l.users == 0 ? null : l);
+        }
+    }
+
+    /**
+     * Runs, runs that had to wait for an earlier one, duplicates folded in,
+     * and request keys still in flight or held for replay.
+     */
+    public Map<String, Object> getStats() {
+        return Map.of(
+                "runs", runs.get(),
+                "waited", waited.get(),
+                "coalesced", coalesced.get(),
+                "activeQueues", lanes.size(),
+                "trackedRequests", requests.size());
+    }
+}
@@ -0,0 +1,226 @@
+package com.example.ai_companion.service;
+
+import com.example.ai_companion.model.User;
+import com.example.ai_companion.model.UserDataPurge;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+
+/**
+ * Deletes everything stored for a user in the background: conversations,
+ * reminders, locations, summaries, greetings, games and connections, and
+ * optionally the account itself.
+ * <p>
+ * Each collection is cleared in batches of {@code users.purge.batch-size}
+ * documents. Only the ids of a batch are read, and each batch is one
+ * delete-by-id, so no collection is ever loaded whole. Progress is saved on
+ * the {@link UserDataPurge} after every batch. A purge whose node stopped
+ * mid-way is picked up again by any node once it has not moved for
+ * {@code users.purge.stall-minutes}; deleting again is harmless.
+ */
+@Service
+public class UserDataPurgeService {
+
+    private static final Logger log = LoggerFactory.getLogger(UserDataPurgeService.class);
+
+    /** A collection holding user data, and how to find a user's documents in it. */
+    record Target(String collection, Function<List<String>, Criteria> owner) {
+        static Target byField(String collection, String field) {
+            return new Target(collection, ids -> Criteria.where(field).in(ids));
+        }
+    }
+
+    // Matched on the stored field name: summaries and greetings are keyed by the user id itself
+    static final List<Target> TARGETS = List.of(
+            Target.byField("messages", "userId"),
+            Target.byField("conversation_summaries", "_id"),
+            Target.byField("daily_summaries", "userId"),
+            Target.byField("greetings", "_id"),
+            Target.byField("reminders", "userId"),
+            Target.byField("locations", "userId"),
+            Target.byField("game_messages", "userId"),
+            Target.byField("game_sessions", "userId"),
+            new Target("connections", ids -> new Criteria().orOperator(
+                    Criteria.where("caregiverId").in(ids), Criteria.where("elderlyId").in(ids))));
+
+    // Fields of other users' accounts that may point at the purged user
+    private static final List<String> USER_LINKS = List.of(
+            "caregiverIds", "elderlyUserIds", "favoriteCaregiverIds", "favoriteElderlyIds");
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Value("${users.purge.batch-size:500}")
+    private int batchSize = 500;
+
+    @Value("${users.purge.stall-minutes:5}")
+    private long stallMinutes = 5;
+
+    // One purge at a time, so a large account cannot crowd out the database
+    private static final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+    /**
+     * Starts purging a user's data, or returns the purge already under way
+     * for them. The unique index on {@code activeUserId} makes the insert
+     * fail when another purge for the user is unfinished, so two requests
+     * never start two purges.
+     */
+    public UserDataPurge start(String userId, boolean deleteAccount) {
+        UserDataPurge purge;
+        try {
+            purge = mongoTemplate.insert(new UserDataPurge(userId, deleteAccount, Instant.now()));
+        } catch (DuplicateKeyException e) {
+            UserDataPurge running = mongoTemplate.findOne(new Query(Criteria.where("activeUserId").is(userId)), UserDataPurge.class);
+            if (running != null) {
+                return running;
+            }
+            // It finished in between
+            purge = mongoTemplate.insert(new UserDataPurge(userId, deleteAccount, Instant.now()));
+        }
+        String purgeId = purge.getId();
+        executor.submit(() -> run(purgeId));
+        return purge;
+    }
+
+    public UserDataPurge get(String purgeId) {
+        return mongoTemplate.findById(purgeId, UserDataPurge.class);
+    }
+
+    /** Resumes purges that were never started or whose node stopped mid-way. */
+    @Scheduled(fixedDelayString = "${users.purge.resume-ms:60000}")
+    public void resumeStalled() {
+        Query stalled = new Query(Criteria.where("status").in(UserDataPurge.Status.PENDING, UserDataPurge.Status.RUNNING)
+                .and("updatedAt").lt(stallCutoff()))
+                .with(Sort.by(Sort.Direction.ASC, "createdAt"));
+        for (UserDataPurge purge : mongoTemplate.find(stalled, UserDataPurge.class)) {
+            log.info("[UserDataPurge] Resuming purge {} for user {}", purge.getId(), purge.getUserId());
+            executor.submit(() -> run(purge.getId()));
+        }
+    }
+
+    /**
+     * Runs a purge to the end if this node can claim it: a pending purge, or
+     * a running one that has stalled.
+     */
+    void run(String purgeId) {
+        UserDataPurge purge = claim(purgeId);
+        if (purge == null) {
+            return;
+        }
+        try {
+            List<String> ids = userIds(purge.getUserId());
+            for (Target target : TARGETS) {
+                while (deleteBatch(purgeId, target, ids) >= batchSize) {
+                    // A full batch: there may be more
+                }
+            }
+            unlink(ids);
+            if (purge.isDeleteAccount()) {
+                long deleted = mongoTemplate.remove(new Query(Criteria.where("_id").in(ids)), User.class).getDeletedCount();
+                progress(purgeId, "users", deleted);
+            }
+            finish(purgeId, UserDataPurge.Status.DONE, null);
+            log.info("[UserDataPurge] Purge {} for user {} finished", purgeId, purge.getUserId());
+        } catch (Exception e) {
+            log.error("[UserDataPurge] Purge {} for user {} failed: {}", purgeId, purge.getUserId(), e.getMessage());
+            finish(purgeId, UserDataPurge.Status.FAILED, e.getMessage());
+        }
+    }
+
+    private UserDataPurge claim(String purgeId) {
+        Instant now = Instant.now();
+        Query query = new Query(Criteria.where("_id").is(purgeId).orOperator(
+                Criteria.where("status").is(UserDataPurge.Status.PENDING),
+                Criteria.where("status").is(UserDataPurge.Status.RUNNING).and("updatedAt").lt(stallCutoff())));
+        Update update = new Update().set("status", UserDataPurge.Status.RUNNING).set("updatedAt", now);
+        return mongoTemplate.findAndModify(query, update, FindAndModifyOptions.options().returnNew(true), UserDataPurge.class);
+    }
+
+    /**
+     * The ids the user's data may be stored under: the account id and the
+     * Firebase UID, since collections differ in which they use.
+     */
+    private List<String> userIds(String userId) {
+        List<String> ids = new ArrayList<>(List.of(userId));
+        Query account = new Query(new Criteria().orOperator(
+                Criteria.where("_id").is(userId), Criteria.where("firebaseUid").is(userId)));
+        account.fields().include("_id", "firebaseUid");
+        User user = mongoTemplate.findOne(account, User.class);
+        if (user != null) {
+            for (String id : new String[] { user.getId(), user.getFirebaseUid() }) {
+                if (id != null && !ids.contains(id)) ids.add(id);
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Deletes up to one batch of the user's documents, reading only their ids.
+     *
+     * @return how many documents the batch found
+     */
+    private int deleteBatch(String purgeId, Target target, List<String> ids) {
+        Query owned = new Query(target.owner().apply(ids)).limit(batchSize);
+        owned.fields().include("_id");
+        List<Object> batch = mongoTemplate.find(owned, Document.class, target.collection()).stream()
+                .map(document -> document.get("_id"))
+                .toList();
+        long deleted = batch.isEmpty() ? 0
+                : mongoTemplate.remove(new Query(Criteria.where("_id").in(batch)), target.collection()).getDeletedCount();
+        progress(purgeId, target.collection(), deleted);
+        return batch.size();
+    }
+
+    /** Removes the user from other accounts' caregiver, elderly and favourite lists. */
+    private void unlink(List<String> ids) {
+        for (String field : USER_LINKS) {
+            mongoTemplate.updateMulti(new Query(Criteria.where(field).in(ids)),
+                    new Update().pullAll(field, ids.toArray()), User.class);
+        }
+    }
+
+    private void progress(String purgeId, String collection, long deleted) {
+        Update update = new Update()
+                .set("currentCollection", collection)
+                .set("updatedAt", Instant.now());
+        if (deleted > 0) {
+            update.inc("deleted." + collection, deleted);
+        }
+        mongoTemplate.updateFirst(new Query(Criteria.where("_id").is(purgeId)), update, UserDataPurge.class);
+    }
+
+    private void finish(String purgeId, UserDataPurge.Status status, String error) {
+        Instant now = Instant.now();
+        Update update = new Update()
+                .set("status", status)
+                .set("error", error)
+                .set("currentCollection", null)
+                .set("updatedAt", now)
+                .set("finishedAt", now)
+                .unset("activeUserId");
+        mongoTemplate.updateFirst(new Query(Criteria.where("_id").is(purgeId)), update, UserDataPurge.class);
+    }
+
+    private Instant stallCutoff() {
+        return Instant.now().minus(Duration.ofMinutes(stallMinutes));
+    }
+}
@@ -41,6 +41,9 @@ public class UserService {
         if (!StringUtils.hasText(userDTO.getAddress())) {
             throw new UserProfileValidationException("Address is required");
         }
+        if (userDTO.getTimezone() != null && !isValidTimezone(userDTO.getTimezone())) {
+            throw new UserProfileValidationException("Timezone must be an IANA zone id, e.g. Pacific/Auckland");
+        }
 
         // Update basic fields
         user.setFullName(userDTO.getFullName());
@@ -56,6 +59,9 @@ public class UserService {
         if (userDTO.getGender() != null) {
             user.setGender(userDTO.getGender());
         }
+        if (userDTO.getTimezone() != null) {
+            user.setTimezone(userDTO.getTimezone());
+        }
 
         // Mark step 1 as completed
         user.setProfileStep1Completed(true);
@@ -306,4 +312,13 @@ public class UserService {
     private boolean isValidPhone(String phone) {
         return phone != null && Pattern.matches("^[0-9+\\-() ]{7,20}$", phone);
     }
+
+    private boolean isValidTimezone(String timezone) {
+        try {
+            java.time.ZoneId.of(timezone);
+            return true;
+        } catch (java.time.DateTimeException e) {
+            return false;
+        }
+    }
 } 
\ No newline at end of file
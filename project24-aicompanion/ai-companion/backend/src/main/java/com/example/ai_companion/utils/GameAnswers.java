@@ -0,0 +1,85 @@
+package com.example.ai_companion.utils;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Utility class for reading answers out of a player's free-text reply, e.g.
+ * "I think it's 12", "twelve?" or "Is it the carrot?".
+ */
+public class GameAnswers {
+
+    private static final Pattern DIGITS = Pattern.compile("\\d+");
+
+    private static final Map<String, Integer> UNITS = Map.ofEntries(
+            Map.entry("zero", 0), Map.entry("one", 1), Map.entry("two", 2), Map.entry("three", 3),
+            Map.entry("four", 4), Map.entry("five", 5), Map.entry("six", 6), Map.entry("seven", 7),
+            Map.entry("eight", 8), Map.entry("nine", 9), Map.entry("ten", 10), Map.entry("eleven", 11),
+            Map.entry("twelve", 12), Map.entry("thirteen", 13), Map.entry("fourteen", 14), Map.entry("fifteen", 15),
+            Map.entry("sixteen", 16), Map.entry("seventeen", 17), Map.entry("eighteen", 18), Map.entry("nineteen", 19));
+
+    private static final Map<String, Integer> TENS = Map.of(
+            "twenty", 20, "thirty", 30, "forty", 40, "fifty", 50,
+            "sixty", 60, "seventy", 70, "eighty", 80, "ninety", 90);
+
+    private static final Set<String> DETERMINERS = Set.of("the", "that", "this", "which", "right", "last", "other");
+
+    /**
+     * Returns the last number in the reply, written in digits or in words up
+     * to "nine hundred and ninety-nine", or null if there is none. The last
+     * one is taken so "5 plus 3 is 8" and "7, no wait, 8" both give 8. A
+     * "one" used as a pronoun, as in "64, that's the one", is not a number.
+     */
+    public static Integer number(String reply) {
+        if (reply == null) {
+            return null;
+        }
+        Integer last = null;
+        Integer run = null;
+        String previous = null;
+        for (String word : words(reply)) {
+            if (DIGITS.matcher(word).matches()) {
+                last = parse(word);
+                run = null;
+            } else if (word.equals("one") && run == null && previous != null && DETERMINERS.contains(previous)) {
+                run = null;
+            } else if (UNITS.containsKey(word) || TENS.containsKey(word)) {
+                run = (run == null ? 0 : run) + (UNITS.containsKey(word) ? UNITS.get(word) : TENS.get(word));
+                last = run;
+            } else if (word.equals("hundred") && run != null && run > 0 && run < 10) {
+                run *= 100;
+                last = run;
+            } else if (!(word.equals("and") && run != null && run >= 100)) {
+                run = null;
+            }
+            previous = word;
+        }
+        return last;
+    }
+
+    private static Integer parse(String digits) {
+        try {
+            return Integer.parseInt(digits);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Whether the reply contains the expected word, ignoring case and
+     * punctuation, so "Carrot!" and "is it the carrot" both match "carrot".
+     */
+    public static boolean containsWord(String reply, String expected) {
+        if (reply == null || expected == null) {
+            return false;
+        }
+        String target = String.join(" ", words(expected));
+        return (" " + String.join(" ", words(reply)) + " ").contains(" " + target + " ");
+    }
+
+    private static String[] words(String text) {
+        return text.toLowerCase(Locale.ROOT).replaceAll("[^a-z0-9]+", " ").trim().split(" ");
+    }
+}
@@ -0,0 +1,48 @@
+package com.example.ai_companion.utils;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Utility class for computing reminder content fingerprints.
+ * <p>
+ * Two reminders share a fingerprint when their titles match after
+ * normalisation (case, punctuation, filler words and simple plurals are
+ * ignored) and they fall in the same hour, e.g. "Doctor's appointment" and
+ * "the doctors appointment" tomorrow at noon.
+ */
+public class ReminderFingerprint {
+
+    private static final long BUCKET_SECONDS = 3600;
+
+    private static final Set<String> FILLER_WORDS = Set.of(
+            "a", "an", "the", "my", "our", "your", "his", "her", "their", "to", "for", "about",
+            "of", "at", "on", "in", "with", "and", "please", "me", "i", "go", "s");
+
+    /**
+     * Returns the fingerprint for a title and due time, or null if either is missing.
+     */
+    public static String of(String title, Instant timestamp) {
+        if (title == null || timestamp == null) {
+            return null;
+        }
+        return normaliseTitle(title) + "@" + Math.floorDiv(timestamp.getEpochSecond(), BUCKET_SECONDS);
+    }
+
+    /**
+     * Lower-cases a title and strips punctuation, filler words and trailing plural "s".
+     * Letters and digits of any script are kept; a title with nothing left after
+     * normalisation falls back to its trimmed original text.
+     */
+    public static String normaliseTitle(String title) {
+        String normalised = Arrays.stream(title.toLowerCase(Locale.ROOT).replaceAll("[^\\p{L}\\p{N}]+", " ").trim().split(" "))
+                .filter(word -> !word.isEmpty() && !FILLER_WORDS.contains(word))
+                .map(word -> word.length() > 3 && word.endsWith("s") && !word.endsWith("ss")
+                        ? word.substring(0, word.length() - 1) : word)
+                .collect(Collectors.joining(" "));
+        return normalised.isEmpty() ? title.trim() : normalised;
+    }
+}
@@ -0,0 +1,95 @@
+package com.example.ai_companion.config;
+
+import com.example.ai_companion.model.AvatarSession;
+import com.example.ai_companion.model.Reminder;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.index.IndexDefinition;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class MongoIndexInitializerTest {
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @Mock
+    private IndexOperations indexOperations;
+
+    @InjectMocks
+    private MongoIndexInitializer mongoIndexInitializer;
+
+    @BeforeEach
+    void setUp() {
+        MongoMappingContext mappingContext = new MongoMappingContext();
+        mappingContext.setSimpleTypeHolder(new MongoCustomConversions(List.of()).getSimpleTypeHolder());
+        when(mongoTemplate.getConverter()).thenReturn(new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, mappingContext));
+        when(mongoTemplate.indexOps(any(Class.class))).thenReturn(indexOperations);
+    }
+
+    @Test
+    void ensureIndexes_ShouldBuildDeclaredReminderIndexes() {
+        // Act
+        mongoIndexInitializer.ensureIndexes();
+
+        // Assert
+        ArgumentCaptor<IndexDefinition> indexes = ArgumentCaptor.forClass(IndexDefinition.class);
+        verify(mongoTemplate).indexOps(Reminder.class);
+        verify(indexOperations, atLeast(4)).ensureIndex(indexes.capture());
+        Map<Object, Document> byName = indexes.getAllValues().stream()
+                .map(IndexDefinition::getIndexOptions)
+                .collect(Collectors.toMap(options -> options.get("name"), Function.identity(), (a, b) -> a));
+        assertTrue(byName.keySet().containsAll(List.of("status_timestamp", "user_timestamp_status", "series_occurrence", "recurrence_status_series")));
+        assertEquals(true, byName.get("user_fingerprint").get("unique"));
+        assertNotNull(byName.get("user_fingerprint").get("partialFilterExpression"));
+    }
+
+    @Test
+    void ensureIndexes_ShouldBuildAvatarSessionLeaseTtlIndex() {
+        // Act
+        mongoIndexInitializer.ensureIndexes();
+
+        // Assert
+        ArgumentCaptor<IndexDefinition> indexes = ArgumentCaptor.forClass(IndexDefinition.class);
+        verify(mongoTemplate).indexOps(AvatarSession.class);
+        verify(indexOperations, atLeastOnce()).ensureIndex(indexes.capture());
+        assertTrue(indexes.getAllValues().stream()
+                .map(IndexDefinition::getIndexOptions)
+                .anyMatch(options -> "leaseUntil".equals(options.get("name"))
+                        && ((Number) options.get("expireAfterSeconds")).longValue() == 3600));
+    }
+
+    @Test
+    void ensureIndexes_WhenIndexFails_ShouldContinueWithOthers() {
+        // Arrange
+        when(indexOperations.ensureIndex(any(IndexDefinition.class)))
+                .thenThrow(new RuntimeException("E11000 duplicate key"))
+                .thenReturn("ok");
+
+        // Act
+        mongoIndexInitializer.ensureIndexes();
+
+        // Assert
+        verify(indexOperations, atLeast(4)).ensureIndex(any(IndexDefinition.class));
+    }
+}
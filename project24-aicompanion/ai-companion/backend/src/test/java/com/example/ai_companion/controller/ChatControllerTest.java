@@ -5,16 +5,21 @@ import com.example.ai_companion.model.User;
 import com.example.ai_companion.repository.MessageRepository;
 import com.example.ai_companion.repository.UserRepository;
 import com.example.ai_companion.response.ApiResponse;
+import com.example.ai_companion.service.AvatarTaskDispatcher;
+import com.example.ai_companion.service.ConversationSummaryService;
 import com.example.ai_companion.service.GameService;
-import com.example.ai_companion.service.HeyGenService;
+import com.example.ai_companion.service.GreetingService;
 import com.example.ai_companion.service.LLMService;
+import com.example.ai_companion.service.LlmResponseCache;
 import com.example.ai_companion.service.MemoryService;
 import com.example.ai_companion.service.ReminderService;
+import com.example.ai_companion.service.TurnCoordinator;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Sort;
@@ -41,7 +46,7 @@ class ChatControllerTest {
     private MessageRepository messageRepository;
 
     @Mock
-    private HeyGenService heyGenService;
+    private AvatarTaskDispatcher avatarTaskDispatcher;
 
     @Mock
     private UserRepository userRepository;
@@ -52,6 +57,15 @@ class ChatControllerTest {
     @Mock
     private GameService gameService;
 
+    @Mock
+    private ConversationSummaryService conversationSummaryService;
+
+    @Mock
+    private GreetingService greetingService;
+
+    @Spy
+    private TurnCoordinator turnCoordinator = new TurnCoordinator();
+
     @InjectMocks
     private ChatController chatController;
 
@@ -132,20 +146,55 @@ class ChatControllerTest {
     }
 
     @Test
-    void askAvatar_WithValidInput_ShouldReturnAvatarResponse() {
+    void ask_WithSameMessageAfterAnswer_ShouldAnswerAgain() {
+        // Arrange
+        Map<String, Object> payload = new HashMap<>();
+        payload.put("message", "Yes");
+
+        when(llmService.generateAndTrack(eq(testUserId), eq("Yes"), isNull()))
+                .thenReturn("First answer", "Second answer");
+
+        // Act
+        String first = chatController.ask(testUserId, payload);
+        String second = chatController.ask(testUserId, payload);
+
+        // Assert
+        assertEquals("First answer", first);
+        assertEquals("Second answer", second);
+        verify(llmService, times(2)).generateAndTrack(eq(testUserId), eq("Yes"), isNull());
+    }
+
+    @Test
+    void ask_WithSameRequestIdAfterAnswer_ShouldReplayAnswer() {
+        // Arrange
+        Map<String, Object> payload = new HashMap<>();
+        payload.put("message", "Yes");
+        payload.put("requestId", "req-1");
+
+        when(llmService.generateAndTrack(eq(testUserId), eq("Yes"), isNull()))
+                .thenReturn("First answer", "Second answer");
+
+        // Act
+        String first = chatController.ask(testUserId, payload);
+        String retried = chatController.ask(testUserId, payload);
+
+        // Assert
+        assertEquals("First answer", first);
+        assertEquals("First answer", retried);
+        verify(llmService, times(1)).generateAndTrack(eq(testUserId), eq("Yes"), isNull());
+    }
+
+    @Test
+    void askAvatar_WithValidInput_ShouldReturnTextWithPendingAvatarTask() {
         // Arrange
         Map<String, Object> payload = new HashMap<>();
         payload.put("message", "Hello");
         payload.put("sessionId", "session123");
 
-        Map<String, Object> taskResult = new HashMap<>();
-        taskResult.put("duration_ms", 1500);
-        taskResult.put("task_id", "task123");
-
         when(llmService.generateAndTrack(eq(testUserId), eq("Hello"), isNull(), anyString()))
                 .thenReturn("AI Response");
-        when(heyGenService.sendTaskToHeyGen(eq("session123"), eq("AI Response"), eq("repeat"), anyString()))
-                .thenReturn(taskResult);
+        when(avatarTaskDispatcher.dispatch(eq(testUserId), eq("session123"), eq("AI Response"), isNull(), anyString()))
+                .thenReturn("handle123");
 
         // Act
         ResponseEntity<?> response = chatController.askAvatar(testUserId, payload);
@@ -162,8 +211,44 @@ class ChatControllerTest {
         @SuppressWarnings("unchecked")
         Map<String, Object> data = (Map<String, Object>) apiResponse.getData();
         assertEquals("AI Response", data.get("text"));
-        assertEquals(1500, data.get("duration_ms"));
-        assertEquals("task123", data.get("task_id"));
+        assertEquals("handle123", data.get("task_handle"));
+        assertEquals("pending", data.get("avatar_status"));
+    }
+
+    @Test
+    void askAvatar_WithDoubleTap_ShouldAnswerOnce() throws Exception {
+        // Arrange
+        Map<String, Object> payload = new HashMap<>();
+        payload.put("message", "Hello");
+        payload.put("sessionId", "session123");
+        java.util.concurrent.CountDownLatch release = new java.util.concurrent.CountDownLatch(1);
+        when(llmService.generateAndTrack(eq(testUserId), eq("Hello"), isNull(), anyString())).thenAnswer(invocation -> {
+            release.await(5, java.util.concurrent.TimeUnit.SECONDS);
+            return "AI Response";
+        });
+        when(avatarTaskDispatcher.dispatch(eq(testUserId), eq("session123"), eq("AI Response"), isNull(), anyString()))
+                .thenReturn("handle123");
+
+        // Act
+        java.util.concurrent.CompletableFuture<ResponseEntity<?>> first =
+                java.util.concurrent.CompletableFuture.supplyAsync(() -> chatController.askAvatar(testUserId, payload));
+        java.util.concurrent.CompletableFuture<ResponseEntity<?>> second =
+                java.util.concurrent.CompletableFuture.supplyAsync(() -> chatController.askAvatar(testUserId, payload));
+        long deadline = System.currentTimeMillis() + 5000;
+        while ((Long) turnCoordinator.getStats().get("coalesced") < 1 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        release.countDown();
+
+        // Assert
+        ApiResponse firstBody = (ApiResponse) first.get(5, java.util.concurrent.TimeUnit.SECONDS).getBody();
+        ApiResponse secondBody = (ApiResponse) second.get(5, java.util.concurrent.TimeUnit.SECONDS).getBody();
+        assertEquals(firstBody.getData(), secondBody.getData());
+        verify(llmService, times(1)).generateAndTrack(eq(testUserId), eq("Hello"), isNull(), anyString());
+        verify(avatarTaskDispatcher, times(1)).dispatch(eq(testUserId), eq("session123"), eq("AI Response"), isNull(), anyString());
+        verify(messageRepository, times(2)).save(any(Message.class));
+        verify(memoryService, timeout(1000).times(1)).extractAndStoreInsights(testUserId, "Hello", "AI Response");
+        verify(greetingService, timeout(1000).times(1)).noteActivity(testUserId);
     }
 
     @Test
@@ -172,17 +257,9 @@ class ChatControllerTest {
         Map<String, Object> payload = new HashMap<>();
         payload.put("sessionId", "session123");
         payload.put("location", "New York");
-
-        when(messageRepository.findTop10ByUserIdOrderByTimestampDesc(testUserId))
-                .thenReturn(new ArrayList<>());
-        when(userRepository.findByFirebaseUid(testUserId)).thenReturn(testUser);
-        when(llmService.generateResponse(anyString())).thenReturn("Welcome message");
-        
-        Map<String, Object> taskResult = new HashMap<>();
-        taskResult.put("duration_ms", 2000);
-        taskResult.put("task_id", "task456");
-        when(heyGenService.sendTaskToHeyGen(eq("session123"), eq("Welcome message"), eq("repeat"), anyString()))
-                .thenReturn(taskResult);
+        when(greetingService.getGreeting(eq(testUserId), anyString())).thenReturn("Welcome message");
+        when(avatarTaskDispatcher.dispatch(eq(testUserId), eq("session123"), eq("Welcome message"), isNull(), anyString()))
+                .thenReturn("handle123");
 
         // Act
         ResponseEntity<?> response = chatController.askAutoAvatar(testUserId, payload);
@@ -195,6 +272,7 @@ class ChatControllerTest {
         ApiResponse apiResponse = (ApiResponse) response.getBody();
         assertEquals("AI auto and avatar response", apiResponse.getMessage());
         verify(messageRepository).save(any(Message.class));
+        verify(greetingService, never()).noteActivity(anyString());
     }
 
     @Test
@@ -203,17 +281,9 @@ class ChatControllerTest {
         Map<String, Object> payload = new HashMap<>();
         payload.put("sessionId", "session123");
         payload.put("location", "New York");
-
-        List<Message> recentMessages = Arrays.asList(testMessage);
-        when(messageRepository.findTop10ByUserIdOrderByTimestampDesc(testUserId))
-                .thenReturn(recentMessages);
-        when(llmService.generateResponse(anyString())).thenReturn("Resume message");
-        
-        Map<String, Object> taskResult = new HashMap<>();
-        taskResult.put("duration_ms", 1800);
-        taskResult.put("task_id", "task789");
-        when(heyGenService.sendTaskToHeyGen(eq("session123"), eq("Resume message"), eq("repeat"), anyString()))
-                .thenReturn(taskResult);
+        when(greetingService.getGreeting(eq(testUserId), anyString())).thenReturn("Resume message");
+        when(avatarTaskDispatcher.dispatch(eq(testUserId), eq("session123"), eq("Resume message"), isNull(), anyString()))
+                .thenReturn("handle123");
 
         // Act
         ResponseEntity<?> response = chatController.askAutoAvatar(testUserId, payload);
@@ -234,12 +304,8 @@ class ChatControllerTest {
 
         when(gameService.processGameMessage(eq("game123"), eq(testUserId), eq("Game message")))
                 .thenReturn("Game AI Response");
-        
-        Map<String, Object> taskResult = new HashMap<>();
-        taskResult.put("duration_ms", 1200);
-        taskResult.put("task_id", "task999");
-        when(heyGenService.sendTaskToHeyGen(eq("session123"), eq("Game AI Response"), eq("repeat"), anyString()))
-                .thenReturn(taskResult);
+        when(avatarTaskDispatcher.dispatch(eq(testUserId), eq("session123"), eq("Game AI Response"), isNull(), anyString()))
+                .thenReturn("handle123");
 
         // Act
         ResponseEntity<?> response = chatController.askGameAvatar(testUserId, payload);
@@ -262,7 +328,7 @@ class ChatControllerTest {
         // Arrange
         String introText = "I am John, I like reading books";
         when(userRepository.findByFirebaseUid(testUserId)).thenReturn(testUser);
-        when(llmService.generateResponse(anyString())).thenReturn("Welcome John! I'm here to help you.");
+        when(llmService.generateResponse(anyString(), eq(LlmResponseCache.UseCase.WELCOME))).thenReturn("Welcome John! I'm here to help you.");
 
         // Act
         ResponseEntity<String> response = chatController.introduce(testUserId, introText);
@@ -414,14 +480,10 @@ class ChatControllerTest {
         payload.put("message", null);
         payload.put("sessionId", "session123");
 
-        Map<String, Object> taskResult = new HashMap<>();
-        taskResult.put("duration_ms", 1000);
-        taskResult.put("task_id", "task123");
-
         when(llmService.generateAndTrack(eq(testUserId), isNull(), isNull(), anyString()))
                 .thenReturn("AI Response");
-        when(heyGenService.sendTaskToHeyGen(eq("session123"), eq("AI Response"), eq("repeat"), anyString()))
-                .thenReturn(taskResult);
+        when(avatarTaskDispatcher.dispatch(eq(testUserId), eq("session123"), eq("AI Response"), isNull(), anyString()))
+                .thenReturn("handle123");
 
         // Act
         ResponseEntity<?> response = chatController.askAvatar(testUserId, payload);
@@ -436,17 +498,9 @@ class ChatControllerTest {
         // Arrange
         Map<String, Object> payload = new HashMap<>();
         payload.put("sessionId", "session123");
-
-        when(messageRepository.findTop10ByUserIdOrderByTimestampDesc(testUserId))
-                .thenReturn(new ArrayList<>());
-        when(userRepository.findByFirebaseUid(testUserId)).thenReturn(null);
-        when(llmService.generateResponse(anyString())).thenReturn("Welcome message");
-        
-        Map<String, Object> taskResult = new HashMap<>();
-        taskResult.put("duration_ms", 2000);
-        taskResult.put("task_id", "task456");
-        when(heyGenService.sendTaskToHeyGen(eq("session123"), anyString(), eq("repeat"), anyString()))
-                .thenReturn(taskResult);
+        when(greetingService.getGreeting(eq(testUserId), anyString())).thenReturn("Welcome message");
+        when(avatarTaskDispatcher.dispatch(eq(testUserId), eq("session123"), anyString(), isNull(), anyString()))
+                .thenReturn("handle123");
 
         // Act
         ResponseEntity<?> response = chatController.askAutoAvatar(testUserId, payload);
@@ -462,20 +516,9 @@ class ChatControllerTest {
         // Arrange
         Map<String, Object> payload = new HashMap<>();
         payload.put("sessionId", "session123");
-
-        testUser.setFullName(null);
-        testUser.setCoreInformation(null);
-
-        when(messageRepository.findTop10ByUserIdOrderByTimestampDesc(testUserId))
-                .thenReturn(new ArrayList<>());
-        when(userRepository.findByFirebaseUid(testUserId)).thenReturn(testUser);
-        when(llmService.generateResponse(anyString())).thenReturn("Welcome message");
-        
-        Map<String, Object> taskResult = new HashMap<>();
-        taskResult.put("duration_ms", 2000);
-        taskResult.put("task_id", "task456");
-        when(heyGenService.sendTaskToHeyGen(eq("session123"), anyString(), eq("repeat"), anyString()))
-                .thenReturn(taskResult);
+        when(greetingService.getGreeting(eq(testUserId), anyString())).thenReturn("Welcome message");
+        when(avatarTaskDispatcher.dispatch(eq(testUserId), eq("session123"), anyString(), isNull(), anyString()))
+                .thenReturn("handle123");
 
         // Act
         ResponseEntity<?> response = chatController.askAutoAvatar(testUserId, payload);
@@ -0,0 +1,103 @@
+package com.example.ai_companion.controller;
+
+import com.example.ai_companion.dto.ConversationTurnRequest;
+import com.example.ai_companion.model.User;
+import com.example.ai_companion.response.ConversationEvent;
+import com.example.ai_companion.service.ConversationService;
+import com.example.ai_companion.service.ConversationSession;
+import com.example.ai_companion.service.ConversationSessionRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ConversationSocketControllerTest {
+
+    @Mock
+    private ConversationService conversationService;
+
+    @Mock
+    private ConversationSessionRegistry sessionRegistry;
+
+    @InjectMocks
+    private ConversationSocketController conversationSocketController;
+
+    private User testUser;
+    private SimpMessageHeaderAccessor headerAccessor;
+    private ConversationTurnRequest request;
+
+    @BeforeEach
+    void setUp() {
+        testUser = new User();
+        testUser.setFirebaseUid("firebase123");
+
+        headerAccessor = SimpMessageHeaderAccessor.create();
+        headerAccessor.setSessionId("conn-1");
+
+        request = new ConversationTurnRequest("turn-1", "Hello", null, null);
+    }
+
+    @Test
+    void sendTurn_WithExistingSession_ShouldSubmitTurn() {
+        // Arrange
+        ConversationSession session = new ConversationSession("conn-1", testUser);
+        when(sessionRegistry.get("conn-1")).thenReturn(session);
+
+        // Act
+        conversationSocketController.sendTurn(request, headerAccessor, null);
+
+        // Assert
+        verify(conversationService).submitTurn(session, request);
+        verify(sessionRegistry, never()).open(anyString(), any());
+    }
+
+    @Test
+    void sendTurn_WithAuthenticatedPrincipalAndNoSession_ShouldOpenSession() {
+        // Arrange
+        ConversationSession session = new ConversationSession("conn-1", testUser);
+        UsernamePasswordAuthenticationToken principal =
+                new UsernamePasswordAuthenticationToken(testUser, null, List.of());
+        when(sessionRegistry.get("conn-1")).thenReturn(null);
+        when(sessionRegistry.open("conn-1", testUser)).thenReturn(session);
+
+        // Act
+        conversationSocketController.sendTurn(request, headerAccessor, principal);
+
+        // Assert
+        verify(conversationService).submitTurn(session, request);
+    }
+
+    @Test
+    void sendTurn_WithAnonymousConnection_ShouldBeRejected() {
+        // Arrange
+        when(sessionRegistry.get("conn-1")).thenReturn(null);
+
+        // Act & Assert
+        assertThrows(AccessDeniedException.class,
+                () -> conversationSocketController.sendTurn(request, headerAccessor, null));
+        verify(conversationService, never()).submitTurn(any(), any());
+    }
+
+    @Test
+    void handleException_ShouldReturnFriendlyErrorEventWithoutDetails() {
+        // Act
+        ConversationEvent event = conversationSocketController.handleException(new RuntimeException("Mongo timeout on users"));
+
+        // Assert
+        assertEquals(ConversationEvent.Type.ERROR, event.getType());
+        assertEquals(ConversationService.TURN_FAILED_TEXT, event.getText());
+        assertFalse(event.getText().contains("Mongo"));
+    }
+}
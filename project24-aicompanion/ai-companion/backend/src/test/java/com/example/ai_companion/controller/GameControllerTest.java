@@ -2,6 +2,8 @@ package com.example.ai_companion.controller;
 
 import com.example.ai_companion.model.GameMessage;
 import com.example.ai_companion.model.GameSession;
+import com.example.ai_companion.model.User;
+import com.example.ai_companion.service.GamePreviewPrefetcher;
 import com.example.ai_companion.service.GameService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -11,6 +13,8 @@ import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
 
 import java.time.Instant;
 import java.util.*;
@@ -25,6 +29,9 @@ class GameControllerTest {
     @Mock
     private GameService gameService;
 
+    @Mock
+    private GamePreviewPrefetcher gamePreviewPrefetcher;
+
     @InjectMocks
     private GameController gameController;
 
@@ -53,7 +60,7 @@ class GameControllerTest {
         preview.put("description", "Test your memory skills");
         preview.put("difficulty", "Medium");
 
-        when(gameService.generateGamePreview(testUserId)).thenReturn(preview);
+        when(gamePreviewPrefetcher.next(testUserId)).thenReturn(preview);
 
         // Act
         ResponseEntity<Map<String, String>> response = gameController.generateGamePreview(testUserId);
@@ -62,14 +69,14 @@ class GameControllerTest {
         assertNotNull(response);
         assertEquals(HttpStatus.OK, response.getStatusCode());
         assertEquals(preview, response.getBody());
-        verify(gameService).generateGamePreview(testUserId);
+        verify(gamePreviewPrefetcher).next(testUserId);
     }
 
     @Test
     void generateGamePreview_WithEmptyPreview_ShouldReturnEmptyMap() {
         // Arrange
         Map<String, String> preview = new HashMap<>();
-        when(gameService.generateGamePreview(testUserId)).thenReturn(preview);
+        when(gamePreviewPrefetcher.next(testUserId)).thenReturn(preview);
 
         // Act
         ResponseEntity<Map<String, String>> response = gameController.generateGamePreview(testUserId);
@@ -78,7 +85,7 @@ class GameControllerTest {
         assertNotNull(response);
         assertEquals(HttpStatus.OK, response.getStatusCode());
         assertTrue(response.getBody().isEmpty());
-        verify(gameService).generateGamePreview(testUserId);
+        verify(gamePreviewPrefetcher).next(testUserId);
     }
 
     @Test
@@ -159,6 +166,7 @@ class GameControllerTest {
         assertEquals(1, response.getBody().size());
         assertEquals(testGameSession, response.getBody().get(0));
         verify(gameService).getUserGameSessions(testUserId);
+        verify(gamePreviewPrefetcher).prefetch(testUserId);
     }
 
     @Test
@@ -307,6 +315,47 @@ class GameControllerTest {
         verify(gameService).deleteGameSession(testSessionId);
     }
 
+    @Test
+    void deleteUserGameSessions_ShouldDeleteCallersSessionsUnderBothIds() {
+        // Arrange
+        when(gameService.deleteUserGameSessions(testUserId)).thenReturn(4L);
+        when(gameService.deleteUserGameSessions("firebase123")).thenReturn(1L);
+
+        // Act
+        ResponseEntity<Map<String, Long>> response = gameController.deleteUserGameSessions(authenticated(), null);
+
+        // Assert
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(5L, response.getBody().get("deleted"));
+    }
+
+    @Test
+    void deleteUserGameSessions_ForAnotherUser_ShouldBeForbidden() {
+        // Act
+        ResponseEntity<Map<String, Long>> response = gameController.deleteUserGameSessions(authenticated(), "someone-else");
+
+        // Assert
+        assertEquals(HttpStatus.FORBIDDEN, response.getStatusCode());
+        verify(gameService, never()).deleteUserGameSessions(anyString());
+    }
+
+    @Test
+    void deleteUserGameSessions_WithoutPrincipal_ShouldBeUnauthorized() {
+        // Act
+        ResponseEntity<Map<String, Long>> response = gameController.deleteUserGameSessions(null, testUserId);
+
+        // Assert
+        assertEquals(HttpStatus.UNAUTHORIZED, response.getStatusCode());
+        verify(gameService, never()).deleteUserGameSessions(anyString());
+    }
+
+    private Authentication authenticated() {
+        User caller = new User();
+        caller.setId(testUserId);
+        caller.setFirebaseUid("firebase123");
+        return new UsernamePasswordAuthenticationToken(caller, null, List.of());
+    }
+
     @Test
     void generateGamePreview_WithDifferentUser_ShouldReturnPreview() {
         // Arrange
@@ -316,7 +365,7 @@ class GameControllerTest {
         preview.put("description", "Test your math skills");
         preview.put("difficulty", "Hard");
 
-        when(gameService.generateGamePreview(differentUserId)).thenReturn(preview);
+        when(gamePreviewPrefetcher.next(differentUserId)).thenReturn(preview);
 
         // Act
         ResponseEntity<Map<String, String>> response = gameController.generateGamePreview(differentUserId);
@@ -325,7 +374,7 @@ class GameControllerTest {
         assertNotNull(response);
         assertEquals(HttpStatus.OK, response.getStatusCode());
         assertEquals(preview, response.getBody());
-        verify(gameService).generateGamePreview(differentUserId);
+        verify(gamePreviewPrefetcher).next(differentUserId);
     }
 
     @Test
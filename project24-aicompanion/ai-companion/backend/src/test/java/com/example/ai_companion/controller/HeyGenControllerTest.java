@@ -5,6 +5,7 @@ import com.example.ai_companion.dto.HeyGenStartSessionRequest;
 import com.example.ai_companion.model.User;
 import com.example.ai_companion.response.HeyGenSessionResponse;
 import com.example.ai_companion.service.HeyGenService;
+import com.example.ai_companion.service.HeyGenSessionManager;
 import com.example.ai_companion.utils.ApiResponseBuilder;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -29,6 +30,9 @@ class HeyGenControllerTest {
     @Mock
     private HeyGenService heyGenService;
 
+    @Mock
+    private HeyGenSessionManager sessionManager;
+
     @Mock
     private Authentication authentication;
 
@@ -79,14 +83,15 @@ class HeyGenControllerTest {
     @Test
     void createSession_WithValidRequest_ShouldReturnSessionInfo() {
         // Arrange
-        when(heyGenService.createSession(testSessionRequest)).thenReturn(testSessionResponse);
+        when(authentication.getPrincipal()).thenReturn(testUser);
+        when(sessionManager.createSession(testUserId, testSessionRequest)).thenReturn(testSessionResponse);
 
         // Act
-        ResponseEntity<?> response = heyGenController.createSession(testSessionRequest);
+        ResponseEntity<?> response = heyGenController.createSession(authentication, testSessionRequest);
 
         // Assert
         assertEquals(HttpStatus.OK, response.getStatusCode());
-        verify(heyGenService).createSession(testSessionRequest);
+        verify(sessionManager).createSession(testUserId, testSessionRequest);
     }
 
     @Test
@@ -96,7 +101,7 @@ class HeyGenControllerTest {
 
         // Act & Assert
         assertThrows(NullPointerException.class, () -> {
-            heyGenController.createSession(null);
+            heyGenController.createSession(authentication, null);
         });
     }
 
@@ -104,14 +109,14 @@ class HeyGenControllerTest {
     void startSession_WithValidAuthentication_ShouldReturnStartInfo() {
         // Arrange
         when(authentication.getPrincipal()).thenReturn(testUser);
-        when(heyGenService.startSession(testUserId, testStartSessionRequest)).thenReturn(testSessionResponse);
+        when(sessionManager.startSession(testUserId, testStartSessionRequest)).thenReturn(testSessionResponse);
 
         // Act
         ResponseEntity<?> response = heyGenController.startSession(authentication, testStartSessionRequest);
 
         // Assert
         assertEquals(HttpStatus.OK, response.getStatusCode());
-        verify(heyGenService).startSession(testUserId, testStartSessionRequest);
+        verify(sessionManager).startSession(testUserId, testStartSessionRequest);
     }
 
     @Test
@@ -230,7 +235,7 @@ class HeyGenControllerTest {
 
         // Assert
         assertEquals(HttpStatus.OK, response.getStatusCode());
-        verify(heyGenService).stopSession("session123");
+        verify(sessionManager).stopSession("session123");
     }
 
     @Test
@@ -251,7 +256,7 @@ class HeyGenControllerTest {
 
         // Assert
         assertEquals(HttpStatus.OK, response.getStatusCode());
-        verify(heyGenService).stopSession(null);
+        verify(sessionManager).stopSession(null);
     }
 
     @Test
@@ -311,11 +316,12 @@ class HeyGenControllerTest {
     @Test
     void createSession_WithServiceException_ShouldPropagateException() {
         // Arrange
-        when(heyGenService.createSession(any())).thenThrow(new RuntimeException("Service error"));
+        when(authentication.getPrincipal()).thenReturn(testUser);
+        when(sessionManager.createSession(anyString(), any())).thenThrow(new RuntimeException("Service error"));
 
         // Act & Assert
         assertThrows(RuntimeException.class, () -> {
-            heyGenController.createSession(testSessionRequest);
+            heyGenController.createSession(authentication, testSessionRequest);
         });
     }
 
@@ -323,7 +329,7 @@ class HeyGenControllerTest {
     void startSession_WithServiceException_ShouldPropagateException() {
         // Arrange
         when(authentication.getPrincipal()).thenReturn(testUser);
-        when(heyGenService.startSession(anyString(), any())).thenThrow(new RuntimeException("Service error"));
+        when(sessionManager.startSession(anyString(), any())).thenThrow(new RuntimeException("Service error"));
 
         // Act & Assert
         assertThrows(RuntimeException.class, () -> {
@@ -4,6 +4,8 @@ import com.example.ai_companion.model.Reminder;
 import com.example.ai_companion.model.ReminderTag;
 import com.example.ai_companion.model.ReminderStatus;
 import com.example.ai_companion.repository.ReminderRepository;
+import com.example.ai_companion.response.ReminderDayCount;
+import com.example.ai_companion.service.ReminderOccurrenceService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -18,6 +20,7 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 
 import java.time.Instant;
+import java.time.ZoneId;
 import java.util.*;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -30,6 +33,9 @@ class ReminderControllerTest {
     @Mock
     private ReminderRepository reminderRepository;
 
+    @Mock
+    private ReminderOccurrenceService reminderOccurrenceService;
+
     @InjectMocks
     private ReminderController reminderController;
 
@@ -268,4 +274,101 @@ class ReminderControllerTest {
             reminderController.getReminders(testUserId, 0);
         });
     }
+
+    @Test
+    void createReminder_WithInvalidRecurrence_ShouldReturnBadRequest() {
+        // Arrange
+        testReminder.setRecurrence("FREQ=SOMETIMES");
+
+        // Act
+        ResponseEntity<Reminder> response = reminderController.createReminder(testReminder);
+
+        // Assert
+        assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+        verify(reminderRepository, never()).save(any());
+    }
+
+    @Test
+    void getOccurrences_WithStatus_ShouldReturnMatchingRemindersInWindow() {
+        // Arrange
+        Instant from = Instant.parse("2025-06-01T00:00:00Z");
+        Instant to = Instant.parse("2025-07-01T00:00:00Z");
+        when(reminderOccurrenceService.findInRange(testUserId, from, to, ReminderStatus.INCOMPLETE)).thenReturn(List.of(testReminder));
+
+        // Act
+        ResponseEntity<List<Reminder>> response = reminderController.getOccurrences(testUserId, from, to, ReminderStatus.INCOMPLETE);
+
+        // Assert
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(List.of(testReminder), response.getBody());
+    }
+
+    @Test
+    void getOccurrences_WithWindowOverAYear_ShouldReturnBadRequest() {
+        // Act
+        ResponseEntity<List<Reminder>> response = reminderController.getOccurrences(testUserId,
+                Instant.parse("2025-01-01T00:00:00Z"), Instant.parse("2026-06-01T00:00:00Z"), null);
+
+        // Assert
+        assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+        verifyNoInteractions(reminderOccurrenceService);
+    }
+
+    @Test
+    void updateReminder_WithOccurrenceId_ShouldMaterialiseAndUpdate() {
+        // Arrange
+        String occurrenceId = "series1@1749718800000";
+        Reminder updates = new Reminder(null, "Take medication with food", null, null, null);
+        when(reminderOccurrenceService.materialise(occurrenceId)).thenReturn(Optional.of(testReminder));
+        when(reminderRepository.save(testReminder)).thenReturn(testReminder);
+
+        // Act
+        ResponseEntity<Reminder> response = reminderController.updateReminder(occurrenceId, updates);
+
+        // Assert
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals("Take medication with food", testReminder.getTitle());
+        verify(reminderRepository, never()).findById(any());
+    }
+
+    @Test
+    void deleteReminder_WithOccurrenceId_ShouldSkipOccurrence() {
+        // Arrange
+        String occurrenceId = "series1@1749718800000";
+        when(reminderOccurrenceService.skipOccurrence(occurrenceId)).thenReturn(true);
+
+        // Act
+        ResponseEntity<Void> response = reminderController.deleteReminder(occurrenceId);
+
+        // Assert
+        assertEquals(HttpStatus.NO_CONTENT, response.getStatusCode());
+        verify(reminderRepository, never()).deleteById(any());
+    }
+
+    @Test
+    void getCalendar_ShouldReturnDayCountsInTimezone() {
+        // Arrange
+        Instant from = Instant.parse("2025-05-31T12:00:00Z");
+        Instant to = Instant.parse("2025-06-30T12:00:00Z");
+        List<ReminderDayCount> counts = List.of(new ReminderDayCount("2025-06-02", 2, 1, 1, 0));
+        when(reminderOccurrenceService.countByDay(testUserId, from, to, ZoneId.of("Pacific/Auckland"), null)).thenReturn(counts);
+
+        // Act
+        ResponseEntity<List<ReminderDayCount>> response = reminderController.getCalendar(testUserId, from, to, "Pacific/Auckland", null);
+
+        // Assert
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(counts, response.getBody());
+    }
+
+    @Test
+    void getCalendar_WithInvalidTimezone_ShouldReturnBadRequest() {
+        // Act
+        ResponseEntity<List<ReminderDayCount>> response = reminderController.getCalendar(testUserId,
+                Instant.parse("2025-06-01T00:00:00Z"), Instant.parse("2025-07-01T00:00:00Z"), "Mars/Olympus", null);
+
+        // Assert
+        assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+        verifyNoInteractions(reminderOccurrenceService);
+    }
 }
@@ -2,6 +2,8 @@ package com.example.ai_companion.controller;
 
 import com.example.ai_companion.dto.UserDTO;
 import com.example.ai_companion.model.User;
+import com.example.ai_companion.model.UserDataPurge;
+import com.example.ai_companion.service.UserDataPurgeService;
 import com.example.ai_companion.service.UserService;
 import com.example.ai_companion.utils.ApiResponseBuilder;
 import org.junit.jupiter.api.BeforeEach;
@@ -14,6 +16,7 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 
+import java.time.Instant;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -28,6 +31,9 @@ class UserControllerTest {
     @Mock
     private UserService userService;
 
+    @Mock
+    private UserDataPurgeService userDataPurgeService;
+
     @Mock
     private Authentication authentication;
 
@@ -251,4 +257,68 @@ class UserControllerTest {
         assertEquals(HttpStatus.OK, response.getStatusCode());
         verify(userService).getProfileFlowStatus(authentication);
     }
+
+    @Test
+    void purgeUserData_ShouldStartPurgeOfCallerAndReturnAccepted() {
+        // Arrange
+        UserDataPurge purge = new UserDataPurge("user123", true, Instant.now());
+        when(authentication.getPrincipal()).thenReturn(testUser);
+        when(userDataPurgeService.start("user123", true)).thenReturn(purge);
+
+        // Act
+        ResponseEntity<UserDataPurge> response = userController.purgeUserData(authentication, null, true);
+
+        // Assert
+        assertEquals(HttpStatus.ACCEPTED, response.getStatusCode());
+        assertSame(purge, response.getBody());
+    }
+
+    @Test
+    void purgeUserData_WithAnotherUsersId_ShouldReturnForbidden() {
+        // Arrange
+        when(authentication.getPrincipal()).thenReturn(testUser);
+
+        // Act
+        ResponseEntity<UserDataPurge> response = userController.purgeUserData(authentication, "someone-else", true);
+
+        // Assert
+        assertEquals(HttpStatus.FORBIDDEN, response.getStatusCode());
+        verifyNoInteractions(userDataPurgeService);
+    }
+
+    @Test
+    void purgeUserData_WithoutAuthenticatedUser_ShouldReturnUnauthorized() {
+        // Act
+        ResponseEntity<UserDataPurge> response = userController.purgeUserData(null, "user123", false);
+
+        // Assert
+        assertEquals(HttpStatus.UNAUTHORIZED, response.getStatusCode());
+        verifyNoInteractions(userDataPurgeService);
+    }
+
+    @Test
+    void getUserDataPurge_WithUnknownId_ShouldReturnNotFound() {
+        // Arrange
+        when(authentication.getPrincipal()).thenReturn(testUser);
+        when(userDataPurgeService.get("purge404")).thenReturn(null);
+
+        // Act
+        ResponseEntity<UserDataPurge> response = userController.getUserDataPurge(authentication, "purge404");
+
+        // Assert
+        assertEquals(HttpStatus.NOT_FOUND, response.getStatusCode());
+    }
+
+    @Test
+    void getUserDataPurge_OfAnotherUser_ShouldReturnNotFound() {
+        // Arrange
+        when(authentication.getPrincipal()).thenReturn(testUser);
+        when(userDataPurgeService.get("purge1")).thenReturn(new UserDataPurge("someone-else", false, Instant.now()));
+
+        // Act
+        ResponseEntity<UserDataPurge> response = userController.getUserDataPurge(authentication, "purge1");
+
+        // Assert
+        assertEquals(HttpStatus.NOT_FOUND, response.getStatusCode());
+    }
 }
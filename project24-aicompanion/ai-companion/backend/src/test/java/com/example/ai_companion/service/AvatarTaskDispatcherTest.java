@@ -0,0 +1,202 @@
+package com.example.ai_companion.service;
+
+import com.example.ai_companion.response.ConversationEvent;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpStatus;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.ResourceAccessException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class AvatarTaskDispatcherTest {
+
+    @Mock
+    private HeyGenService heyGenService;
+
+    @Mock
+    private SimpMessagingTemplate messagingTemplate;
+
+    @InjectMocks
+    private AvatarTaskDispatcher avatarTaskDispatcher;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(avatarTaskDispatcher, "retryBackoffMs", 0L);
+    }
+
+    private List<ConversationEvent> sentEvents(int expected) {
+        ArgumentCaptor<Object> captor = ArgumentCaptor.forClass(Object.class);
+        verify(messagingTemplate, timeout(1000).times(expected))
+                .convertAndSendToUser(eq("user123"), eq(ConversationService.USER_DESTINATION), captor.capture());
+        return captor.getAllValues().stream().map(ConversationEvent.class::cast).toList();
+    }
+
+    @Test
+    void dispatch_ShouldPushTaskIdAndDurationUnderHandle() {
+        // Arrange
+        when(heyGenService.sendTaskToHeyGen("session123", "Hello", "repeat", null))
+                .thenReturn(Map.of("task_id", "task123", "duration_ms", 1500));
+
+        // Act
+        String handle = avatarTaskDispatcher.dispatch("user123", "session123", "Hello", "turn-1", null);
+
+        // Assert
+        ConversationEvent event = sentEvents(1).get(0);
+        assertEquals(ConversationEvent.Type.AVATAR_TASK, event.getType());
+        assertEquals("turn-1", event.getTurnId());
+        assertEquals(handle, event.getData().get("task_handle"));
+        assertEquals("task123", event.getData().get("task_id"));
+        assertEquals(1500, event.getData().get("duration_ms"));
+    }
+
+    @Test
+    void dispatch_ShouldReturnBeforeHeyGenResponds() throws Exception {
+        // Arrange
+        CountDownLatch release = new CountDownLatch(1);
+        when(heyGenService.sendTaskToHeyGen(anyString(), anyString(), anyString(), any())).thenAnswer(invocation -> {
+            release.await(5, TimeUnit.SECONDS);
+            return Map.of("task_id", "task123");
+        });
+
+        // Act
+        String handle = avatarTaskDispatcher.dispatch("user123", "session123", "Hello", null, null);
+
+        // Assert
+        assertNotNull(handle);
+        verifyNoInteractions(messagingTemplate);
+        release.countDown();
+        sentEvents(1);
+    }
+
+    @Test
+    void dispatch_ForSameSession_ShouldSendOneAtATimeInOrder() throws Exception {
+        // Arrange
+        List<String> sent = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch release = new CountDownLatch(1);
+        when(heyGenService.sendTaskToHeyGen(eq("session123"), anyString(), eq("repeat"), any())).thenAnswer(invocation -> {
+            String text = invocation.getArgument(1);
+            sent.add(text);
+            if (text.equals("one")) {
+                release.await(5, TimeUnit.SECONDS);
+            }
+            return Map.of("task_id", text);
+        });
+
+        // Act
+        avatarTaskDispatcher.dispatch("user123", "session123", "one", null, null);
+        avatarTaskDispatcher.dispatch("user123", "session123", "two", null, null);
+        avatarTaskDispatcher.dispatch("user123", "session123", "three", null, null);
+        Thread.sleep(50);
+        List<String> beforeRelease = List.copyOf(sent);
+        release.countDown();
+
+        // Assert
+        assertEquals(List.of("one"), beforeRelease);
+        List<Object> taskIds = sentEvents(3).stream().map(e -> e.getData().get("task_id")).toList();
+        assertEquals(List.of("one", "two", "three"), taskIds);
+    }
+
+    @Test
+    void dispatch_ForDifferentSessions_ShouldNotWaitForEachOther() {
+        // Arrange
+        CountDownLatch release = new CountDownLatch(1);
+        when(heyGenService.sendTaskToHeyGen(eq("slow"), anyString(), anyString(), any())).thenAnswer(invocation -> {
+            release.await(5, TimeUnit.SECONDS);
+            return Map.of("task_id", "slow-task");
+        });
+        when(heyGenService.sendTaskToHeyGen(eq("fast"), anyString(), anyString(), any())).thenReturn(Map.of("task_id", "fast-task"));
+
+        // Act
+        avatarTaskDispatcher.dispatch("user123", "slow", "Hello", null, null);
+        avatarTaskDispatcher.dispatch("user123", "fast", "Hello", null, null);
+
+        // Assert
+        assertEquals("fast-task", sentEvents(1).get(0).getData().get("task_id"));
+        release.countDown();
+    }
+
+    @Test
+    void dispatch_WhenSendFailsOnce_ShouldRetry() {
+        // Arrange
+        when(heyGenService.sendTaskToHeyGen("session123", "Hello", "repeat", null))
+                .thenThrow(new ResourceAccessException("Read timed out"))
+                .thenReturn(Map.of("task_id", "task123"));
+
+        // Act
+        avatarTaskDispatcher.dispatch("user123", "session123", "Hello", null, null);
+
+        // Assert
+        assertEquals(ConversationEvent.Type.AVATAR_TASK, sentEvents(1).get(0).getType());
+        verify(heyGenService, times(2)).sendTaskToHeyGen("session123", "Hello", "repeat", null);
+        assertEquals(1L, avatarTaskDispatcher.getStats().get("retries"));
+    }
+
+    @Test
+    void dispatch_WithClientError_ShouldReportFailureWithoutRetrying() {
+        // Arrange
+        when(heyGenService.sendTaskToHeyGen("session123", "Hello", "repeat", null))
+                .thenThrow(HttpClientErrorException.create(HttpStatus.BAD_REQUEST, "Bad Request", null, null, null));
+
+        // Act
+        String handle = avatarTaskDispatcher.dispatch("user123", "session123", "Hello", null, null);
+
+        // Assert
+        ConversationEvent event = sentEvents(1).get(0);
+        assertEquals(ConversationEvent.Type.AVATAR_TASK_FAILED, event.getType());
+        assertEquals(handle, event.getData().get("task_handle"));
+        verify(heyGenService, times(1)).sendTaskToHeyGen(anyString(), anyString(), anyString(), any());
+        assertEquals(1L, avatarTaskDispatcher.getStats().get("failed"));
+    }
+
+    @Test
+    void dispatch_WhenEveryAttemptFails_ShouldGiveUpAfterMaxAttempts() {
+        // Arrange
+        when(heyGenService.sendTaskToHeyGen("session123", "Hello", "repeat", null))
+                .thenThrow(new ResourceAccessException("Connection refused"));
+
+        // Act
+        avatarTaskDispatcher.dispatch("user123", "session123", "Hello", null, null);
+
+        // Assert
+        assertEquals(ConversationEvent.Type.AVATAR_TASK_FAILED, sentEvents(1).get(0).getType());
+        verify(heyGenService, times(3)).sendTaskToHeyGen("session123", "Hello", "repeat", null);
+    }
+
+    @Test
+    void dispatch_WhenTasksFinishQuickly_ShouldLeaveNoSessionBusy() throws Exception {
+        // Arrange
+        when(heyGenService.sendTaskToHeyGen(anyString(), anyString(), eq("repeat"), isNull()))
+                .thenReturn(Map.of("task_id", "task123", "duration_ms", 1500));
+
+        // Act
+        for (int i = 0; i < 200; i++) {
+            avatarTaskDispatcher.dispatch("user123", "session" + (i % 5), "Hello", null, null);
+        }
+
+        // Assert
+        verify(heyGenService, timeout(5000).times(200)).sendTaskToHeyGen(anyString(), anyString(), eq("repeat"), isNull());
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!Integer.valueOf(0).equals(avatarTaskDispatcher.getStats().get("busySessions")) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(0, avatarTaskDispatcher.getStats().get("busySessions"));
+    }
+}
@@ -0,0 +1,121 @@
+package com.example.ai_companion.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ContextBudgetTest {
+
+    private static final List<String> HISTORY = List.of(
+            "User: I planted tomatoes in the back garden this morning",
+            "Assistant: That sounds lovely, tomatoes like plenty of sun",
+            "User: My daughter is visiting on Sunday afternoon",
+            "Assistant: How nice, will you bake something together?");
+
+    @Test
+    void fill_WithEnoughBudget_ShouldKeepEverythingInOrder() {
+        // Act
+        ContextBudget.Result result = new ContextBudget(1000)
+                .add("history", 1, HISTORY, ContextBudget.Keep.LAST, "\n")
+                .fill();
+
+        // Assert
+        assertEquals(String.join("\n", HISTORY), result.get("history"));
+        assertEquals(0, result.getDropped().get("history"));
+        assertEquals(PromptTemplate.countTokens(String.join("\n", HISTORY)), result.getTotalTokens());
+    }
+
+    @Test
+    void fill_WithKeepLast_ShouldDropOldestItemsAndKeepChronologicalOrder() {
+        // Arrange
+        int lastTwo = PromptTemplate.countTokens(HISTORY.get(2) + "\n" + HISTORY.get(3));
+
+        // Act
+        ContextBudget.Result result = new ContextBudget(lastTwo + 2)
+                .add("history", 1, HISTORY, ContextBudget.Keep.LAST, "\n")
+                .fill();
+
+        // Assert
+        assertEquals(HISTORY.get(2) + "\n" + HISTORY.get(3), result.get("history"));
+        assertEquals(2, result.getDropped().get("history"));
+        assertTrue(result.getTotalTokens() <= lastTwo + 2);
+    }
+
+    @Test
+    void fill_ShouldServeLowerPriorityBlocksFromWhatIsLeft() {
+        // Arrange
+        List<String> memories = List.of("Went to the beach with her grandson in March");
+
+        // Act
+        ContextBudget.Result result = new ContextBudget(PromptTemplate.countTokens(String.join("\n", HISTORY)))
+                .add("memories", 3, memories, ContextBudget.Keep.FIRST, "\n")
+                .add("history", 1, HISTORY, ContextBudget.Keep.LAST, "\n")
+                .fill();
+
+        // Assert
+        assertEquals(String.join("\n", HISTORY), result.get("history"));
+        assertEquals("none", result.get("memories"));
+        assertEquals(1, result.getDropped().get("memories"));
+        assertEquals(List.of("history", "memories"), List.copyOf(result.getTokens().keySet()));
+    }
+
+    @Test
+    void fill_WithBlockCap_ShouldTruncateLongItem() {
+        // Arrange
+        String profile = "Retired nurse who enjoys crosswords and walking her dog by the harbour. ".repeat(20);
+
+        // Act
+        ContextBudget.Result result = new ContextBudget(1000)
+                .add("coreInfo", 0, List.of(profile), ContextBudget.Keep.FIRST, 30, "\n")
+                .fill();
+
+        // Assert
+        String kept = result.get("coreInfo");
+        assertTrue(kept.startsWith("Retired nurse"));
+        assertTrue(kept.endsWith("..."));
+        assertTrue(PromptTemplate.countTokens(kept) <= 30);
+        assertEquals(1, result.getTruncated().get("coreInfo"));
+        assertEquals(0, result.getDropped().get("coreInfo"));
+    }
+
+    @Test
+    void fill_WithTooLittleLeftToTruncate_ShouldDropItem() {
+        // Act
+        ContextBudget.Result result = new ContextBudget(ContextBudget.MIN_TRUNCATED_TOKENS - 1)
+                .add("reminders", 2, List.of("Title: Take blood pressure tablets\nDescription: With breakfast every morning at eight, before the walk to the shops"), ContextBudget.Keep.FIRST, "\n\n")
+                .fill();
+
+        // Assert
+        assertEquals("none", result.get("reminders"));
+        assertEquals(0, result.getTotalTokens());
+    }
+
+    @Test
+    void fill_WithNoItems_ShouldRenderNone() {
+        // Act
+        ContextBudget.Result result = new ContextBudget(100)
+                .add("reminders", 2, null, ContextBudget.Keep.FIRST, "\n\n")
+                .add("memories", 3, List.of(" "), ContextBudget.Keep.FIRST, "\n")
+                .fill();
+
+        // Assert
+        assertEquals("none", result.get("reminders"));
+        assertEquals("none", result.get("memories"));
+        assertEquals("none", result.get("unknown"));
+        assertEquals(0, result.getDropped().get("memories"));
+    }
+
+    @Test
+    void truncate_ShouldCutAtWordBoundary() {
+        // Act
+        String result = ContextBudget.truncate("one two three four five six seven eight nine ten eleven twelve", 5);
+
+        // Assert
+        assertTrue(result.endsWith("..."));
+        assertFalse(result.contains("twelve"));
+        assertTrue(PromptTemplate.countTokens(result) <= 5);
+        assertTrue("one two three four five six seven eight nine ten eleven twelve".startsWith(result.substring(0, result.length() - 3)));
+    }
+}
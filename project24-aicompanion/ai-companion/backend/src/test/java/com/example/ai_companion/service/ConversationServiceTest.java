@@ -0,0 +1,234 @@
+package com.example.ai_companion.service;
+
+import com.example.ai_companion.dto.ConversationTurnRequest;
+import com.example.ai_companion.model.Reminder;
+import com.example.ai_companion.model.ReminderTag;
+import com.example.ai_companion.model.User;
+import com.example.ai_companion.repository.MessageRepository;
+import com.example.ai_companion.repository.UserRepository;
+import com.example.ai_companion.response.ConversationEvent;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ConversationServiceTest {
+
+    @Mock
+    private LLMService llmService;
+
+    @Mock
+    private AvatarTaskDispatcher avatarTaskDispatcher;
+
+    @Mock
+    private ReminderService reminderService;
+
+    @Mock
+    private MemoryService memoryService;
+
+    @Mock
+    private MessageRepository messageRepository;
+
+    @Mock
+    private UserRepository userRepository;
+
+    @Mock
+    private SimpMessagingTemplate messagingTemplate;
+
+    @Mock
+    private ConversationSummaryService conversationSummaryService;
+
+    @Mock
+    private GreetingService greetingService;
+
+    @InjectMocks
+    private ConversationService conversationService;
+
+    private ConversationSession session;
+    private String testUserId;
+
+    @BeforeEach
+    void setUp() {
+        testUserId = "firebase123";
+        User user = new User();
+        user.setFirebaseUid(testUserId);
+        user.setCoreInformation("Likes gardening");
+        session = new ConversationSession("conn-1", user);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void stubStreamedReply(String... chunks) {
+        when(llmService.streamConversationReply(eq(session), anyString(), any(), any())).thenAnswer(invocation -> {
+            Consumer<String> onPartial = invocation.getArgument(3);
+            StringBuilder full = new StringBuilder();
+            for (String chunk : chunks) {
+                onPartial.accept(chunk);
+                full.append(chunk);
+            }
+            return full.toString();
+        });
+    }
+
+    private List<ConversationEvent> sentEvents(int expected) {
+        ArgumentCaptor<Object> captor = ArgumentCaptor.forClass(Object.class);
+        verify(messagingTemplate, timeout(1000).atLeast(expected))
+                .convertAndSendToUser(eq(testUserId), eq(ConversationService.USER_DESTINATION), captor.capture());
+        return captor.getAllValues().stream().map(ConversationEvent.class::cast).toList();
+    }
+
+    @Test
+    void handleTurn_ShouldPushPartialsThenFinalReply() {
+        // Arrange
+        stubStreamedReply("Hello ", "there.", " How are you");
+        ConversationTurnRequest request = new ConversationTurnRequest("turn-1", "Hi", null, null);
+
+        // Act
+        conversationService.handleTurn(session, request);
+
+        // Assert
+        List<ConversationEvent> events = sentEvents(3);
+        assertEquals(ConversationEvent.Type.PARTIAL, events.get(0).getType());
+        assertEquals("Hello there.", events.get(0).getText());
+        assertEquals(" How are you", events.get(1).getText());
+        ConversationEvent finalEvent = events.get(2);
+        assertEquals(ConversationEvent.Type.FINAL, finalEvent.getType());
+        assertEquals("Hello there. How are you", finalEvent.getText());
+        assertEquals("turn-1", finalEvent.getTurnId());
+        verify(avatarTaskDispatcher, never()).dispatch(anyString(), anyString(), anyString(), any(), any());
+    }
+
+    @Test
+    void handleTurn_ShouldRecordTurnInSessionHistory() {
+        // Arrange
+        stubStreamedReply("Fine, thanks.");
+
+        // Act
+        conversationService.handleTurn(session, new ConversationTurnRequest("t", "How are you?", null, null));
+
+        // Assert
+        assertEquals(1, session.getTurnCount());
+        assertEquals(2, session.getHistory().size());
+        assertEquals("How are you?", session.getHistory().get(0).getText());
+        assertTrue(session.getHistory().get(0).isFromUser());
+        verify(messageRepository, timeout(1000).times(2)).save(any());
+        verify(greetingService, timeout(1000)).noteActivity(session.getUserId());
+    }
+
+    @Test
+    void handleTurn_WithAvatarSession_ShouldQueueAvatarTaskForTurn() {
+        // Arrange
+        stubStreamedReply("Good morning!");
+
+        // Act
+        conversationService.handleTurn(session, new ConversationTurnRequest("t", "Morning", "avatar-session", null));
+
+        // Assert
+        verify(avatarTaskDispatcher).dispatch(testUserId, "avatar-session", "Good morning!", "t", null);
+    }
+
+    @Test
+    void handleTurn_WithReminderInMessage_ShouldPushReminderConfirmation() {
+        // Arrange
+        stubStreamedReply("I'll remind you.");
+        Reminder reminder = new Reminder(testUserId, "Call doctor", Instant.now().plusSeconds(3600), "", List.of(ReminderTag.HEALTH));
+        when(reminderService.extractReminders(testUserId, "Remind me to call the doctor")).thenReturn(List.of(reminder));
+
+        // Act
+        conversationService.handleTurn(session, new ConversationTurnRequest("t", "Remind me to call the doctor", null, null));
+
+        // Assert
+        ConversationEvent confirmation = sentEvents(3).stream()
+                .filter(e -> e.getType() == ConversationEvent.Type.REMINDER_CONFIRMATION)
+                .findFirst().orElseThrow();
+        assertEquals(List.of(reminder), confirmation.getData().get("reminders"));
+    }
+
+    @Test
+    void handleTurn_ShouldRefreshCachedUserAfterMemoryExtraction() {
+        // Arrange
+        stubStreamedReply("Lovely.");
+        User refreshed = new User();
+        refreshed.setFirebaseUid(testUserId);
+        refreshed.setCoreInformation("Likes gardening and painting");
+        when(userRepository.findByFirebaseUid(testUserId)).thenReturn(refreshed);
+
+        // Act
+        conversationService.handleTurn(session, new ConversationTurnRequest("t", "I started painting", null, null));
+
+        // Assert
+        verify(memoryService, timeout(1000)).extractAndStoreInsights(testUserId, "I started painting", "Lovely.");
+        verify(userRepository, timeout(1000)).findByFirebaseUid(testUserId);
+        long deadline = System.currentTimeMillis() + 1000;
+        while (session.getUser() != refreshed && System.currentTimeMillis() < deadline) {
+            Thread.onSpinWait();
+        }
+        assertEquals("Likes gardening and painting", session.getCoreInformation());
+    }
+
+    @Test
+    void submitTurn_WhenReplyFails_ShouldPushErrorEvent() {
+        // Arrange
+        when(llmService.streamConversationReply(eq(session), anyString(), any(), any()))
+                .thenThrow(new RuntimeException("LLM down"));
+
+        // Act
+        conversationService.submitTurn(session, new ConversationTurnRequest("t", "Hello", null, null));
+
+        // Assert
+        ConversationEvent error = sentEvents(1).get(0);
+        assertEquals(ConversationEvent.Type.ERROR, error.getType());
+        assertEquals("t", error.getTurnId());
+    }
+
+    @Test
+    void submitTurn_WithBurstOnOneConnection_ShouldRunTurnsOneAtATimeInOrder() throws Exception {
+        // Arrange
+        List<String> started = new CopyOnWriteArrayList<>();
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        CountDownLatch releaseFirst = new CountDownLatch(1);
+        when(llmService.streamConversationReply(eq(session), anyString(), any(), any())).thenAnswer(invocation -> {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            String message = invocation.getArgument(1);
+            started.add(message);
+            if (message.equals("1")) {
+                releaseFirst.await(5, TimeUnit.SECONDS);
+            }
+            running.decrementAndGet();
+            return "Reply " + message;
+        });
+
+        // Act
+        for (String message : List.of("1", "2", "3", "4")) {
+            conversationService.submitTurn(session, new ConversationTurnRequest("t" + message, message, null, null));
+        }
+        verify(llmService, timeout(2000)).streamConversationReply(eq(session), eq("1"), any(), any());
+        // Give the queued turns a chance to start early if they could
+        Thread.sleep(100);
+        List<String> beforeRelease = List.copyOf(started);
+        releaseFirst.countDown();
+
+        // Assert
+        verify(llmService, timeout(2000).times(4)).streamConversationReply(eq(session), anyString(), any(), any());
+        assertEquals(List.of("1"), beforeRelease);
+        assertEquals(List.of("1", "2", "3", "4"), started);
+        assertEquals(1, maxRunning.get());
+    }
+}
@@ -0,0 +1,231 @@
+package com.example.ai_companion.service;
+
+import com.example.ai_companion.model.ConversationSummary;
+import com.example.ai_companion.model.Message;
+import com.example.ai_companion.repository.ConversationSummaryRepository;
+import com.example.ai_companion.repository.MessageRepository;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.model.chat.ChatLanguageModel;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Pageable;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ConversationSummaryServiceTest {
+
+    @Mock
+    private ConversationSummaryRepository conversationSummaryRepository;
+
+    @Mock
+    private MessageRepository messageRepository;
+
+    @Mock
+    private LlmRouter llmRouter;
+
+    @Mock
+    private ChatLanguageModel chatLanguageModel;
+
+    @InjectMocks
+    private ConversationSummaryService conversationSummaryService;
+
+    private final String userId = "user123";
+
+    @BeforeEach
+    void setUp() {
+        lenient().when(llmRouter.model(any(), any())).thenReturn(chatLanguageModel);
+    }
+
+    private static List<Message> messages(int count, Instant from) {
+        List<Message> messages = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Message message = new Message("user123", "Message " + i, i % 2 == 0, from.plusSeconds(i * 60L));
+            message.setId("m" + i);
+            messages.add(message);
+        }
+        return messages;
+    }
+
+    private static ChatResponse reply(String text) {
+        return ChatResponse.builder().aiMessage(AiMessage.from(text)).build();
+    }
+
+    @Test
+    void refreshInBackground_ShouldRefreshOffTheCallingThread() {
+        // Arrange
+        Thread caller = Thread.currentThread();
+        AtomicReference<Thread> ranOn = new AtomicReference<>();
+        when(conversationSummaryRepository.findById(userId)).thenAnswer(invocation -> {
+            ranOn.set(Thread.currentThread());
+            return Optional.empty();
+        });
+        when(messageRepository.countByUserIdAndTimestampGreaterThanEqualAndIdNotIn(userId, Instant.EPOCH, List.of())).thenReturn(0L);
+
+        // Act
+        conversationSummaryService.refreshInBackground(userId);
+
+        // Assert
+        verify(messageRepository, timeout(1000)).countByUserIdAndTimestampGreaterThanEqualAndIdNotIn(userId, Instant.EPOCH, List.of());
+        assertNotSame(caller, ranOn.get());
+    }
+
+    @Test
+    void refreshIfDue_WithFewOlderMessages_ShouldNotCallModel() {
+        // Arrange
+        when(conversationSummaryRepository.findById(userId)).thenReturn(Optional.empty());
+        when(messageRepository.countByUserIdAndTimestampGreaterThanEqualAndIdNotIn(userId, Instant.EPOCH, List.of())).thenReturn(15L);
+
+        // Act
+        boolean refreshed = conversationSummaryService.refreshIfDue(userId);
+
+        // Assert
+        assertFalse(refreshed);
+        verifyNoInteractions(chatLanguageModel);
+        verify(conversationSummaryRepository, never()).save(any());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void refreshIfDue_WithEnoughOlderMessages_ShouldFoldThemIntoSummary() {
+        // Arrange
+        Instant coveredUntil = Instant.parse("2025-06-01T09:00:00Z");
+        ConversationSummary existing = new ConversationSummary();
+        existing.setUserId(userId);
+        existing.setSummary("The user likes gardening.");
+        existing.setCoveredUntil(coveredUntil);
+        existing.setSummarizedMessages(20);
+        List<Message> older = messages(12, Instant.parse("2025-06-10T09:00:00Z"));
+        when(conversationSummaryRepository.findById(userId)).thenReturn(Optional.of(existing));
+        when(messageRepository.countByUserIdAndTimestampGreaterThanEqualAndIdNotIn(userId, coveredUntil, List.of())).thenReturn(22L);
+        when(messageRepository.findByUserIdAndTimestampGreaterThanEqualAndIdNotInOrderByTimestampAsc(eq(userId), eq(coveredUntil), eq(List.of()), any(Pageable.class))).thenReturn(older);
+        when(chatLanguageModel.chat(anyList())).thenReturn(reply("The user likes gardening and planted roses."));
+
+        // Act
+        boolean refreshed = conversationSummaryService.refreshIfDue(userId);
+
+        // Assert
+        assertTrue(refreshed);
+        ArgumentCaptor<Pageable> page = ArgumentCaptor.forClass(Pageable.class);
+        verify(messageRepository).findByUserIdAndTimestampGreaterThanEqualAndIdNotInOrderByTimestampAsc(eq(userId), eq(coveredUntil), eq(List.of()), page.capture());
+        assertEquals(12, page.getValue().getPageSize());
+        ArgumentCaptor<List<ChatMessage>> prompt = ArgumentCaptor.forClass(List.class);
+        verify(chatLanguageModel).chat(prompt.capture());
+        String user = ((UserMessage) prompt.getValue().get(1)).singleText();
+        assertTrue(user.contains("The user likes gardening."));
+        assertTrue(user.contains("[2025-06-10] User: Message 0"));
+        ArgumentCaptor<ConversationSummary> saved = ArgumentCaptor.forClass(ConversationSummary.class);
+        verify(conversationSummaryRepository).save(saved.capture());
+        assertEquals("The user likes gardening and planted roses.", saved.getValue().getSummary());
+        assertEquals(older.get(11).getTimestamp(), saved.getValue().getCoveredUntil());
+        assertEquals(List.of("m11"), saved.getValue().getCoveredIds());
+        assertEquals(32, saved.getValue().getSummarizedMessages());
+    }
+
+    @Test
+    void refreshIfDue_WithReplySharingBoundaryTimestamp_ShouldFoldItNextTime() {
+        // Arrange: the fold stopped between a message and its reply, saved in the same millisecond
+        Instant pairTime = Instant.parse("2025-06-10T09:00:00Z");
+        Message question = new Message(userId, "How are the roses?", true, pairTime);
+        question.setId("q1");
+        Message answer = new Message(userId, "They are blooming nicely.", false, pairTime);
+        answer.setId("a1");
+        ConversationSummary existing = new ConversationSummary();
+        existing.setUserId(userId);
+        existing.setSummary("The user likes gardening.");
+        existing.setCoveredUntil(pairTime);
+        existing.setCoveredIds(List.of("q1"));
+        List<Message> older = new ArrayList<>(List.of(answer));
+        older.addAll(messages(11, pairTime.plusSeconds(60)));
+        when(conversationSummaryRepository.findById(userId)).thenReturn(Optional.of(existing));
+        when(messageRepository.countByUserIdAndTimestampGreaterThanEqualAndIdNotIn(userId, pairTime, List.of("q1"))).thenReturn(22L);
+        when(messageRepository.findByUserIdAndTimestampGreaterThanEqualAndIdNotInOrderByTimestampAsc(eq(userId), eq(pairTime), eq(List.of("q1")), any(Pageable.class)))
+                .thenReturn(older);
+        when(chatLanguageModel.chat(anyList())).thenReturn(reply("The user's roses are blooming."));
+
+        // Act
+        boolean refreshed = conversationSummaryService.refreshIfDue(userId);
+
+        // Assert
+        assertTrue(refreshed);
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<ChatMessage>> prompt = ArgumentCaptor.forClass(List.class);
+        verify(chatLanguageModel).chat(prompt.capture());
+        assertTrue(((UserMessage) prompt.getValue().get(1)).singleText().contains("Assistant: They are blooming nicely."));
+        ArgumentCaptor<ConversationSummary> saved = ArgumentCaptor.forClass(ConversationSummary.class);
+        verify(conversationSummaryRepository).save(saved.capture());
+        assertEquals(older.get(11).getTimestamp(), saved.getValue().getCoveredUntil());
+    }
+
+    @Test
+    void refreshIfDue_WhenFoldEndsOnTiedTimestamp_ShouldRememberEveryFoldedId() {
+        // Arrange: all ten folded messages share one timestamp with one already folded
+        Instant tied = Instant.parse("2025-06-10T09:00:00Z");
+        ConversationSummary existing = new ConversationSummary();
+        existing.setUserId(userId);
+        existing.setCoveredUntil(tied);
+        existing.setCoveredIds(List.of("m0"));
+        List<Message> older = new ArrayList<>();
+        for (int i = 1; i <= 10; i++) {
+            Message message = new Message(userId, "Message " + i, i % 2 == 0, tied);
+            message.setId("m" + i);
+            older.add(message);
+        }
+        when(conversationSummaryRepository.findById(userId)).thenReturn(Optional.of(existing));
+        when(messageRepository.countByUserIdAndTimestampGreaterThanEqualAndIdNotIn(userId, tied, List.of("m0"))).thenReturn(20L);
+        when(messageRepository.findByUserIdAndTimestampGreaterThanEqualAndIdNotInOrderByTimestampAsc(eq(userId), eq(tied), eq(List.of("m0")), any(Pageable.class)))
+                .thenReturn(older);
+        when(chatLanguageModel.chat(anyList())).thenReturn(reply("Summary."));
+
+        // Act
+        conversationSummaryService.refreshIfDue(userId);
+
+        // Assert
+        ArgumentCaptor<ConversationSummary> saved = ArgumentCaptor.forClass(ConversationSummary.class);
+        verify(conversationSummaryRepository).save(saved.capture());
+        assertEquals(tied, saved.getValue().getCoveredUntil());
+        assertEquals(List.of("m0", "m1", "m2", "m3", "m4", "m5", "m6", "m7", "m8", "m9", "m10"), saved.getValue().getCoveredIds());
+    }
+
+    @Test
+    void refreshIfDue_WhenModelFails_ShouldKeepOldSummary() {
+        // Arrange
+        when(conversationSummaryRepository.findById(userId)).thenReturn(Optional.empty());
+        when(messageRepository.countByUserIdAndTimestampGreaterThanEqualAndIdNotIn(userId, Instant.EPOCH, List.of())).thenReturn(30L);
+        when(messageRepository.findByUserIdAndTimestampGreaterThanEqualAndIdNotInOrderByTimestampAsc(eq(userId), eq(Instant.EPOCH), eq(List.of()), any(Pageable.class)))
+                .thenReturn(messages(20, Instant.parse("2025-06-10T09:00:00Z")));
+        when(chatLanguageModel.chat(anyList())).thenThrow(new RuntimeException("Model unavailable"));
+
+        // Act
+        boolean refreshed = conversationSummaryService.refreshIfDue(userId);
+
+        // Assert
+        assertFalse(refreshed);
+        verify(conversationSummaryRepository, never()).save(any());
+    }
+
+    @Test
+    void getSummary_WithNoSummaryYet_ShouldReturnNull() {
+        // Arrange
+        when(conversationSummaryRepository.findById(userId)).thenReturn(Optional.empty());
+
+        // Act & Assert
+        assertNull(conversationSummaryService.getSummary(userId));
+    }
+}
@@ -1,5 +1,7 @@
 package com.example.ai_companion.service;
 
+import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.data.message.AiMessage;
 import com.example.ai_companion.model.DailySummary;
 import com.example.ai_companion.model.Message;
 import com.example.ai_companion.repository.DailySummaryRepository;
@@ -34,6 +36,9 @@ class DailySummaryServiceTest {
     @Mock
     private ChatLanguageModel chatLanguageModel;
 
+    @Mock
+    private LlmRouter llmRouter;
+
     @InjectMocks
     private DailySummaryService dailySummaryService;
 
@@ -45,6 +50,8 @@ class DailySummaryServiceTest {
 
     @BeforeEach
     void setUp() {
+        lenient().when(llmRouter.model(any())).thenReturn(chatLanguageModel);
+        lenient().when(llmRouter.model(any(), any())).thenReturn(chatLanguageModel);
         testUserId = "user123";
         testOffset = ZoneOffset.UTC;
         // Anchor all date logic to the same offset to avoid day-dependent flakiness
@@ -217,7 +224,7 @@ class DailySummaryServiceTest {
         LocalDate pastDate = LocalDate.now(testOffset).minusDays(1);
         when(dailySummaryRepository.existsByUserIdAndDate(testUserId, pastDate)).thenReturn(false);
         when(messageRepository.findByUserId(testUserId)).thenReturn(Arrays.asList(testMessage));
-        when(chatLanguageModel.chat(anyString())).thenReturn("{\"summary\":\"Test summary\",\"scores\":{\"health\":8,\"exercise\":6,\"mental\":7,\"social\":9,\"productivity\":5},\"analysis\":\"Test analysis\"}");
+        when(chatLanguageModel.chat(anyList())).thenReturn(reply("{\"summary\":\"Test summary\",\"scores\":{\"health\":8,\"exercise\":6,\"mental\":7,\"social\":9,\"productivity\":5},\"analysis\":\"Test analysis\"}"));
         when(dailySummaryRepository.save(any(DailySummary.class))).thenReturn(testDailySummary);
 
         // Act
@@ -227,7 +234,7 @@ class DailySummaryServiceTest {
         assertNotNull(result);
         verify(dailySummaryRepository).existsByUserIdAndDate(testUserId, pastDate);
         verify(messageRepository, atLeast(1)).findByUserId(testUserId);
-        verify(chatLanguageModel).chat(anyString());
+        verify(chatLanguageModel).chat(anyList());
         verify(dailySummaryRepository).save(any(DailySummary.class));
     }
 
@@ -267,7 +274,7 @@ class DailySummaryServiceTest {
         LocalDate pastDate = LocalDate.now(testOffset).minusDays(1);
         when(dailySummaryRepository.existsByUserIdAndDate(testUserId, pastDate)).thenReturn(false);
         when(messageRepository.findByUserId(testUserId)).thenReturn(Arrays.asList(testMessage));
-        when(chatLanguageModel.chat(anyString())).thenReturn("Invalid JSON response");
+        when(chatLanguageModel.chat(anyList())).thenReturn(reply("Invalid JSON response"));
         when(dailySummaryRepository.save(any(DailySummary.class))).thenReturn(testDailySummary);
 
         // Act
@@ -275,7 +282,7 @@ class DailySummaryServiceTest {
 
         // Assert
         assertNotNull(result);
-        verify(chatLanguageModel).chat(anyString());
+        verify(chatLanguageModel).chat(anyList());
         verify(dailySummaryRepository).save(any(DailySummary.class));
     }
 
@@ -285,7 +292,7 @@ class DailySummaryServiceTest {
         LocalDate pastDate = LocalDate.now(testOffset).minusDays(1);
         when(dailySummaryRepository.existsByUserIdAndDate(testUserId, pastDate)).thenReturn(false);
         when(messageRepository.findByUserId(testUserId)).thenReturn(Arrays.asList(testMessage));
-        when(chatLanguageModel.chat(anyString())).thenReturn("{\"summary\":\"Test\",\"scores\":{\"health\":\"invalid\"},\"analysis\":\"Test\"}");
+        when(chatLanguageModel.chat(anyList())).thenReturn(reply("{\"summary\":\"Test\",\"scores\":{\"health\":\"invalid\"},\"analysis\":\"Test\"}"));
         when(dailySummaryRepository.save(any(DailySummary.class))).thenReturn(testDailySummary);
 
         // Act
@@ -293,7 +300,7 @@ class DailySummaryServiceTest {
 
         // Assert
         assertNotNull(result);
-        verify(chatLanguageModel).chat(anyString());
+        verify(chatLanguageModel).chat(anyList());
         verify(dailySummaryRepository).save(any(DailySummary.class));
     }
 
@@ -314,7 +321,7 @@ class DailySummaryServiceTest {
         
         when(dailySummaryRepository.existsByUserIdAndDate(testUserId, pastDate)).thenReturn(false);
         when(messageRepository.findByUserId(testUserId)).thenReturn(Arrays.asList(testMessage));
-        when(chatLanguageModel.chat(anyString())).thenReturn(validJsonResponse);
+        when(chatLanguageModel.chat(anyList())).thenReturn(reply(validJsonResponse));
         when(dailySummaryRepository.save(any(DailySummary.class))).thenReturn(testDailySummary);
 
         // Act
@@ -322,7 +329,7 @@ class DailySummaryServiceTest {
 
         // Assert
         assertNotNull(result);
-        verify(chatLanguageModel).chat(anyString());
+        verify(chatLanguageModel).chat(anyList());
         verify(dailySummaryRepository).save(any(DailySummary.class));
     }
 
@@ -334,7 +341,7 @@ class DailySummaryServiceTest {
         
         when(dailySummaryRepository.existsByUserIdAndDate(testUserId, pastDate)).thenReturn(false);
         when(messageRepository.findByUserId(testUserId)).thenReturn(Arrays.asList(testMessage));
-        when(chatLanguageModel.chat(anyString())).thenReturn(jsonWithOutOfRangeScores);
+        when(chatLanguageModel.chat(anyList())).thenReturn(reply(jsonWithOutOfRangeScores));
         when(dailySummaryRepository.save(any(DailySummary.class))).thenReturn(testDailySummary);
 
         // Act
@@ -342,7 +349,7 @@ class DailySummaryServiceTest {
 
         // Assert
         assertNotNull(result);
-        verify(chatLanguageModel).chat(anyString());
+        verify(chatLanguageModel).chat(anyList());
         verify(dailySummaryRepository).save(any(DailySummary.class));
     }
 
@@ -354,7 +361,7 @@ class DailySummaryServiceTest {
         
         when(dailySummaryRepository.existsByUserIdAndDate(testUserId, pastDate)).thenReturn(false);
         when(messageRepository.findByUserId(testUserId)).thenReturn(Arrays.asList(testMessage));
-        when(chatLanguageModel.chat(anyString())).thenReturn(jsonWithMissingScores);
+        when(chatLanguageModel.chat(anyList())).thenReturn(reply(jsonWithMissingScores));
         when(dailySummaryRepository.save(any(DailySummary.class))).thenReturn(testDailySummary);
 
         // Act
@@ -362,7 +369,7 @@ class DailySummaryServiceTest {
 
         // Assert
         assertNotNull(result);
-        verify(chatLanguageModel).chat(anyString());
+        verify(chatLanguageModel).chat(anyList());
         verify(dailySummaryRepository).save(any(DailySummary.class));
     }
 
@@ -372,7 +379,7 @@ class DailySummaryServiceTest {
         LocalDate pastDate = LocalDate.now(testOffset).minusDays(1);
         when(dailySummaryRepository.existsByUserIdAndDate(testUserId, pastDate)).thenReturn(false);
         when(messageRepository.findByUserId(testUserId)).thenReturn(Arrays.asList(testMessage));
-        when(chatLanguageModel.chat(anyString())).thenReturn("{}");
+        when(chatLanguageModel.chat(anyList())).thenReturn(reply("{}"));
         when(dailySummaryRepository.save(any(DailySummary.class))).thenReturn(testDailySummary);
 
         // Act
@@ -380,7 +387,11 @@ class DailySummaryServiceTest {
 
         // Assert
         assertNotNull(result);
-        verify(chatLanguageModel).chat(anyString());
+        verify(chatLanguageModel).chat(anyList());
         verify(dailySummaryRepository).save(any(DailySummary.class));
     }
+
+    private static ChatResponse reply(String text) {
+        return ChatResponse.builder().aiMessage(AiMessage.from(text)).build();
+    }
 }
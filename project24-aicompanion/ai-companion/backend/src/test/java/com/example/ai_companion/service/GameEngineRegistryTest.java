@@ -0,0 +1,163 @@
+package com.example.ai_companion.service;
+
+import com.example.ai_companion.model.GamePuzzle;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GameEngineRegistryTest {
+
+    private GameEngineRegistry gameEngineRegistry;
+
+    @BeforeEach
+    void setUp() {
+        gameEngineRegistry = new GameEngineRegistry();
+        ReflectionTestUtils.setField(gameEngineRegistry, "engines", List.<GameEngine>of(
+                new SequenceGameEngine(), new ArithmeticGameEngine(), new AnagramGameEngine(), new OddOneOutGameEngine()));
+    }
+
+    @Test
+    void find_ShouldReturnEngineById() {
+        // Act & Assert
+        assertInstanceOf(OddOneOutGameEngine.class, gameEngineRegistry.find("odd-one-out"));
+        assertNull(gameEngineRegistry.find("generated"));
+        assertNull(gameEngineRegistry.find(null));
+    }
+
+    @Test
+    void match_ShouldPickEngineFromDescription() {
+        // Act & Assert
+        assertEquals("sequence", gameEngineRegistry.match("Number Navigator: Guess what comes next in number sequences").id());
+        assertEquals("anagram", gameEngineRegistry.match("Word Wizard: Unscramble jumbled words").id());
+        assertEquals("odd-one-out", gameEngineRegistry.match("Spot the Odd One Out among everyday objects").id());
+        assertNull(gameEngineRegistry.match("Visual Symphony: Create art through description"));
+    }
+
+    @Test
+    void match_ShouldIgnoreKeywordsInsideOtherWordsAndLooseDescriptions() {
+        // Act & Assert
+        assertNull(gameEngineRegistry.match("Pattern Detective: Find hidden patterns in sequences"));
+        assertNull(gameEngineRegistry.match("Time Traveller: A journey that consumes the afternoon"));
+        assertNull(gameEngineRegistry.match("Story Builder: In addition, you can add your own twists"));
+        assertNull(gameEngineRegistry.match("Memory Lane: Sort through jumbled memories"));
+        assertEquals("arithmetic", gameEngineRegistry.match("Quick Thinker: Mental maths for the morning").id());
+    }
+
+    @Test
+    void everyEngine_ShouldAcceptItsOwnAnswerAtEveryLevel() {
+        // Arrange
+        Random random = new Random(42);
+
+        for (GameEngine engine : gameEngineRegistry.all()) {
+            for (int level = 1; level <= 4; level++) {
+                for (int i = 0; i < 25; i++) {
+                    // Act
+                    GamePuzzle puzzle = engine.newPuzzle(level, random);
+
+                    // Assert
+                    String label = engine.id() + " level " + level + ": " + puzzle.getQuestion();
+                    assertTrue(engine.isCorrect(puzzle, "I think it's " + puzzle.getAnswer() + "!"), label);
+                    assertFalse(engine.isCorrect(puzzle, "no idea"), label);
+                    assertNotNull(puzzle.getHint(), label);
+                }
+            }
+        }
+    }
+
+    @Test
+    void numberEngines_ShouldAcceptAnswersWrittenInWords() {
+        // Arrange
+        GameEngine engine = gameEngineRegistry.find("arithmetic");
+        GamePuzzle puzzle = new GamePuzzle("What is 7 times 6?", "42", null);
+
+        // Act & Assert
+        assertTrue(engine.isCorrect(puzzle, "forty-two"));
+        assertTrue(engine.isCorrect(puzzle, "7 times 6 is 42"));
+        assertTrue(engine.isCorrect(puzzle, "41, no wait, 42"));
+        assertFalse(engine.isCorrect(puzzle, "forty"));
+        assertTrue(engine.isCorrect(new GamePuzzle("?", "105", null), "one hundred and five"));
+    }
+
+    @Test
+    void numberEngines_ShouldNotReadThePronounOneAsANumber() {
+        // Arrange
+        GameEngine engine = gameEngineRegistry.find("arithmetic");
+        GamePuzzle puzzle = new GamePuzzle("What is 8 times 8?", "64", null);
+
+        // Act & Assert
+        assertTrue(engine.isCorrect(puzzle, "64, that's the one"));
+        assertTrue(engine.isCorrect(puzzle, "is it 64? that one"));
+        assertTrue(engine.isCorrect(puzzle, "sixty-four, that's the one"));
+        assertTrue(engine.isCorrect(new GamePuzzle("?", "1", null), "the answer is one"));
+    }
+
+    @Test
+    void oddOneOutEngine_ShouldNeverUseAWordThatFitsTwoGroups() {
+        // Arrange
+        GameEngine engine = gameEngineRegistry.find("odd-one-out");
+        Random random = new Random(3);
+        List<String> ambiguous = List.of("hen", "duck", "orange", "plum", "cherry", "lemon", "lime", "kiwi", "shears");
+
+        for (int i = 0; i < 200; i++) {
+            // Act
+            GamePuzzle puzzle = engine.newPuzzle(1 + i % 3, random);
+
+            // Assert
+            for (String word : ambiguous) {
+                assertFalse(puzzle.getQuestion().matches(".*\\b" + word + "\\b.*"), puzzle.getQuestion());
+            }
+        }
+    }
+
+    @Test
+    void anagramEngine_ShouldNeverPickAWordWithAnotherCommonAnagram() {
+        // Arrange
+        GameEngine engine = gameEngineRegistry.find("anagram");
+        Random random = new Random(11);
+        List<String> ambiguous = List.of("lamp", "shoe", "rose", "coat", "door", "bread", "horse", "table", "garden", "orange", "lemon", "cloud");
+
+        for (int i = 0; i < 200; i++) {
+            // Act
+            GamePuzzle puzzle = engine.newPuzzle(1 + i % 3, random);
+
+            // Assert
+            assertFalse(ambiguous.contains(puzzle.getAnswer()), puzzle.getAnswer());
+        }
+    }
+
+    @Test
+    void anagramEngine_ShouldNeverShowTheAnswerUnscrambled() {
+        // Arrange
+        GameEngine engine = gameEngineRegistry.find("anagram");
+        Random random = new Random(7);
+
+        for (int i = 0; i < 50; i++) {
+            // Act
+            GamePuzzle puzzle = engine.newPuzzle(1 + i % 3, random);
+
+            // Assert
+            assertFalse(puzzle.getQuestion().toLowerCase().endsWith(" " + puzzle.getAnswer()), puzzle.getQuestion());
+        }
+    }
+
+    @Test
+    void oddOneOutEngine_ShouldRejectRepliesNamingSeveralOptions() {
+        // Arrange
+        GameEngine engine = gameEngineRegistry.find("odd-one-out");
+        GamePuzzle puzzle = engine.newPuzzle(1, new Random(5));
+        List<String> options = puzzle.getOptions();
+        String others = String.join(", ", options);
+
+        // Act & Assert
+        assertEquals(4, options.size());
+        assertTrue(engine.isCorrect(puzzle, "It's the " + puzzle.getAnswer()));
+        assertFalse(engine.isCorrect(puzzle, others + "?"));
+        assertFalse(engine.isCorrect(puzzle, options.stream().filter(o -> !o.equals(puzzle.getAnswer())).findFirst().orElseThrow()
+                + " or " + puzzle.getAnswer()));
+    }
+}
@@ -0,0 +1,185 @@
+package com.example.ai_companion.service;
+
+import com.example.ai_companion.model.User;
+import com.example.ai_companion.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class GamePreviewPrefetcherTest {
+
+    @Mock
+    private GameService gameService;
+
+    @Mock
+    private UserRepository userRepository;
+
+    @InjectMocks
+    private GamePreviewPrefetcher gamePreviewPrefetcher;
+
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        user = new User();
+        user.setId("user123");
+        user.setCoreInformation("Enjoys crosswords");
+        when(userRepository.findById("user123")).thenReturn(Optional.of(user));
+    }
+
+    private static Map<String, String> preview(String title) {
+        return Map.of("title", title, "description", "A game");
+    }
+
+    private void awaitGenerated(long count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 2000;
+        while ((Long) gamePreviewPrefetcher.getStats().get("generated") < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(count, gamePreviewPrefetcher.getStats().get("generated"));
+    }
+
+    /** Repeats {@code attempt} until the stat reads {@code expected}, for calls that only take effect once earlier work has settled. */
+    private void retryUntil(String stat, Object expected, Runnable attempt) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 2000;
+        attempt.run();
+        while (!expected.equals(gamePreviewPrefetcher.getStats().get(stat)) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+            attempt.run();
+        }
+        assertEquals(expected, gamePreviewPrefetcher.getStats().get(stat));
+    }
+
+    @Test
+    void next_WithEmptyBuffer_ShouldGenerateNowAndPrefetchMore() throws Exception {
+        // Arrange
+        when(gameService.generateGamePreview(eq("user123"), any(LlmTask.class))).thenReturn(preview("Word Chain"));
+
+        // Act
+        Map<String, String> result = gamePreviewPrefetcher.next("user123");
+
+        // Assert
+        assertEquals("Word Chain", result.get("title"));
+        awaitGenerated(2);
+        verify(gameService, times(3)).generateGamePreview(eq("user123"), any(LlmTask.class));
+        assertEquals(1L, gamePreviewPrefetcher.getStats().get("missed"));
+    }
+
+    @Test
+    void next_WithEmptyBuffer_ShouldGenerateNowInteractivelyAndRefillInBackground() throws Exception {
+        // Arrange
+        when(gameService.generateGamePreview(eq("user123"), any(LlmTask.class))).thenReturn(preview("Word Chain"));
+
+        // Act
+        gamePreviewPrefetcher.next("user123");
+
+        // Assert
+        awaitGenerated(2);
+        verify(gameService, times(1)).generateGamePreview("user123", LlmTask.GAME_MASTER);
+        verify(gameService, times(2)).generateGamePreview("user123", LlmTask.GAME_PREVIEW);
+        assertFalse(LlmTask.GAME_PREVIEW.isInteractive());
+    }
+
+    @Test
+    void next_AfterPrefetch_ShouldServeReadyPreviewAndRefill() throws Exception {
+        // Arrange
+        when(gameService.generateGamePreview(eq("user123"), any(LlmTask.class)))
+                .thenReturn(preview("Word Chain"))
+                .thenReturn(preview("Memory Lane"))
+                .thenReturn(preview("Trivia"));
+        gamePreviewPrefetcher.prefetch("user123");
+        awaitGenerated(2);
+
+        // Act
+        Map<String, String> result = gamePreviewPrefetcher.next("user123");
+
+        // Assert
+        assertNotNull(result.get("title"));
+        assertEquals(1L, gamePreviewPrefetcher.getStats().get("served"));
+        awaitGenerated(3);
+        verify(gameService, times(3)).generateGamePreview(eq("user123"), any(LlmTask.class));
+    }
+
+    @Test
+    void next_AfterCoreInformationChanged_ShouldDiscardPreviews() throws Exception {
+        // Arrange
+        when(gameService.generateGamePreview(eq("user123"), any(LlmTask.class))).thenReturn(preview("Crossword Race"));
+        gamePreviewPrefetcher.prefetch("user123");
+        awaitGenerated(2);
+        user.setCoreInformation("Enjoys crosswords; grew up in Napier");
+
+        // Act
+        gamePreviewPrefetcher.next("user123");
+
+        // Assert
+        Map<String, Object> stats = gamePreviewPrefetcher.getStats();
+        assertEquals(2L, stats.get("discarded"));
+        assertEquals(0L, stats.get("served"));
+        assertEquals(1L, stats.get("missed"));
+    }
+
+    @Test
+    void prefetch_Repeatedly_ShouldNotGenerateMoreThanBufferDepth() throws Exception {
+        // Arrange
+        CountDownLatch release = new CountDownLatch(1);
+        when(gameService.generateGamePreview(eq("user123"), any(LlmTask.class))).thenAnswer(invocation -> {
+            release.await(5, TimeUnit.SECONDS);
+            return preview("Word Chain");
+        });
+
+        // Act
+        gamePreviewPrefetcher.prefetch("user123");
+        gamePreviewPrefetcher.prefetch("user123");
+        gamePreviewPrefetcher.prefetch("user123");
+        release.countDown();
+
+        // Assert
+        awaitGenerated(2);
+        verify(gameService, times(2)).generateGamePreview(eq("user123"), any(LlmTask.class));
+    }
+
+    @Test
+    void prefetch_WhenGenerationFails_ShouldTryAgainNextTime() throws Exception {
+        // Arrange
+        ReflectionTestUtils.setField(gamePreviewPrefetcher, "depth", 1);
+        when(gameService.generateGamePreview(eq("user123"), any(LlmTask.class)))
+                .thenThrow(new RuntimeException("LLM unavailable"))
+                .thenReturn(preview("Word Chain"));
+        gamePreviewPrefetcher.prefetch("user123");
+        verify(gameService, timeout(1000).times(1)).generateGamePreview(eq("user123"), any(LlmTask.class));
+
+        // Act
+        retryUntil("generated", 1L, () -> gamePreviewPrefetcher.prefetch("user123"));
+
+        // Assert
+        verify(gameService, times(2)).generateGamePreview(eq("user123"), any(LlmTask.class));
+    }
+
+    @Test
+    void sweep_ShouldClearBuffersOfIdleUsers() throws Exception {
+        // Arrange
+        when(gameService.generateGamePreview(eq("user123"), any(LlmTask.class))).thenReturn(preview("Word Chain"));
+        gamePreviewPrefetcher.prefetch("user123");
+        awaitGenerated(2);
+        ReflectionTestUtils.setField(gamePreviewPrefetcher, "maxAgeMinutes", 0L);
+
+        // Act
+        retryUntil("users", 0, gamePreviewPrefetcher::sweep);
+
+        // Assert
+        assertEquals(0, gamePreviewPrefetcher.getStats().get("users"));
+    }
+}
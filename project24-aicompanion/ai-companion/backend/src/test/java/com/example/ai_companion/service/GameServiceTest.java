@@ -1,18 +1,36 @@
 package com.example.ai_companion.service;
 
+import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.data.message.AiMessage;
 import com.example.ai_companion.model.GameMessage;
+import com.example.ai_companion.model.GamePuzzle;
 import com.example.ai_companion.model.GameSession;
+import com.example.ai_companion.model.GameState;
 import com.example.ai_companion.model.User;
 import com.example.ai_companion.repository.GameMessageRepository;
 import com.example.ai_companion.repository.GameSessionRepository;
 import com.example.ai_companion.repository.UserRepository;
+import com.mongodb.client.result.UpdateResult;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.UserMessage;
 import dev.langchain4j.model.chat.ChatLanguageModel;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.bson.Document;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.test.util.ReflectionTestUtils;
 
 import java.time.Instant;
 import java.util.*;
@@ -27,6 +45,9 @@ class GameServiceTest {
     @Mock
     private ChatLanguageModel gemini;
 
+    @Mock
+    private LlmRouter llmRouter;
+
     @Mock
     private GameSessionRepository gameSessionRepository;
 
@@ -36,6 +57,15 @@ class GameServiceTest {
     @Mock
     private UserRepository userRepository;
 
+    @Spy
+    private LlmResponseCache llmResponseCache = new LlmResponseCache();
+
+    @Mock
+    private GameEngineRegistry gameEngineRegistry;
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
     @InjectMocks
     private GameService gameService;
 
@@ -47,6 +77,10 @@ class GameServiceTest {
 
     @BeforeEach
     void setUp() {
+        lenient().when(llmRouter.model(any())).thenReturn(gemini);
+        lenient().when(llmRouter.model(any(), any())).thenReturn(gemini);
+        lenient().when(mongoTemplate.updateFirst(any(Query.class), any(Update.class), eq(GameSession.class)))
+                .thenReturn(UpdateResult.acknowledged(1, 1L, null));
         testUserId = "user123";
         testSessionId = "session123";
 
@@ -60,6 +94,7 @@ class GameServiceTest {
         testGameSession = new GameSession(testUserId, "Memory Game", "A cognitive memory game", "generated", "Test prompt");
         testGameSession.setId(testSessionId);
         testGameSession.setLastActivityAt(Instant.now());
+        testGameSession.setState(new GameState());
 
         testGameMessage = new GameMessage(testSessionId, testUserId, "Hello", true, Instant.now());
         testGameMessage.setId("msg123");
@@ -69,7 +104,7 @@ class GameServiceTest {
     void generateGamePreview_WithValidUser_ShouldReturnPreview() {
         // Arrange
         when(userRepository.findById(testUserId)).thenReturn(Optional.of(testUser));
-        when(gemini.chat(anyString())).thenReturn("{\"title\":\"Test Game\",\"description\":\"Test Description\"}");
+        when(gemini.chat(anyList())).thenReturn(reply("{\"title\":\"Test Game\",\"description\":\"Test Description\"}"));
 
         // Act
         Map<String, String> result = gameService.generateGamePreview(testUserId);
@@ -79,14 +114,29 @@ class GameServiceTest {
         assertEquals("Test Game", result.get("title"));
         assertEquals("Test Description", result.get("description"));
         verify(userRepository).findById(testUserId);
-        verify(gemini).chat(anyString());
+        verify(gemini).chat(anyList());
+    }
+
+    @Test
+    void generateGamePreview_WithBackgroundTask_ShouldUseThatTasksModel() {
+        // Arrange
+        when(userRepository.findById(testUserId)).thenReturn(Optional.of(testUser));
+        when(gemini.chat(anyList())).thenReturn(reply("{\"title\":\"Test Game\",\"description\":\"Test Description\"}"));
+
+        // Act
+        Map<String, String> result = gameService.generateGamePreview(testUserId, LlmTask.GAME_PREVIEW);
+
+        // Assert
+        assertEquals("Test Game", result.get("title"));
+        verify(llmRouter).model(LlmTask.GAME_PREVIEW, testUserId);
+        verify(llmRouter, never()).model(LlmTask.GAME_MASTER, testUserId);
     }
 
     @Test
     void generateGamePreview_WithNullUser_ShouldReturnPreview() {
         // Arrange
         when(userRepository.findById(testUserId)).thenReturn(Optional.empty());
-        when(gemini.chat(anyString())).thenReturn("{\"title\":\"Test Game\",\"description\":\"Test Description\"}");
+        when(gemini.chat(anyList())).thenReturn(reply("{\"title\":\"Test Game\",\"description\":\"Test Description\"}"));
 
         // Act
         Map<String, String> result = gameService.generateGamePreview(testUserId);
@@ -96,7 +146,7 @@ class GameServiceTest {
         assertEquals("Test Game", result.get("title"));
         assertEquals("Test Description", result.get("description"));
         verify(userRepository).findById(testUserId);
-        verify(gemini).chat(anyString());
+        verify(gemini).chat(anyList());
     }
 
     @Test
@@ -105,7 +155,7 @@ class GameServiceTest {
         String gameType = "generated";
         String userDescription = "Test Game: Test Description";
         when(userRepository.findById(testUserId)).thenReturn(Optional.of(testUser));
-        when(gemini.chat(anyString())).thenReturn("Test initial message");
+        when(gemini.chat(anyList())).thenReturn(reply("Test initial message"));
         when(gameSessionRepository.save(any(GameSession.class))).thenReturn(testGameSession);
         when(gameMessageRepository.save(any(GameMessage.class))).thenReturn(testGameMessage);
 
@@ -115,7 +165,7 @@ class GameServiceTest {
         // Assert
         assertNotNull(result);
         verify(userRepository).findById(testUserId);
-        verify(gemini, times(1)).chat(anyString()); // Called once for initial message only (game title/description extracted from userDescription)
+        verify(gemini, times(1)).chat(anyList()); // Called once for initial message only (game title/description extracted from userDescription)
         verify(gameSessionRepository).save(any(GameSession.class));
         verify(gameMessageRepository).save(any(GameMessage.class));
     }
@@ -126,7 +176,7 @@ class GameServiceTest {
         String gameType = "custom";
         String userDescription = "Create a puzzle game";
         when(userRepository.findById(testUserId)).thenReturn(Optional.of(testUser));
-        when(gemini.chat(anyString())).thenReturn("{\"title\":\"Custom Game\",\"description\":\"Custom Description\"}");
+        when(gemini.chat(anyList())).thenReturn(reply("{\"title\":\"Custom Game\",\"description\":\"Custom Description\"}"));
         when(gameSessionRepository.save(any(GameSession.class))).thenReturn(testGameSession);
         when(gameMessageRepository.save(any(GameMessage.class))).thenReturn(testGameMessage);
 
@@ -136,7 +186,7 @@ class GameServiceTest {
         // Assert
         assertNotNull(result);
         verify(userRepository).findById(testUserId);
-        verify(gemini, times(2)).chat(anyString()); // Called twice: once for game generation, once for initial message
+        verify(gemini, times(2)).chat(anyList()); // Called twice: once for game generation, once for initial message
         verify(gameSessionRepository).save(any(GameSession.class));
         verify(gameMessageRepository).save(any(GameMessage.class));
     }
@@ -147,7 +197,7 @@ class GameServiceTest {
         String gameType = "generated";
         String userDescription = "Test Game: Test Description";
         when(userRepository.findById(testUserId)).thenReturn(Optional.empty());
-        when(gemini.chat(anyString())).thenReturn("Test initial message");
+        when(gemini.chat(anyList())).thenReturn(reply("Test initial message"));
         when(gameSessionRepository.save(any(GameSession.class))).thenReturn(testGameSession);
         when(gameMessageRepository.save(any(GameMessage.class))).thenReturn(testGameMessage);
 
@@ -157,7 +207,7 @@ class GameServiceTest {
         // Assert
         assertNotNull(result);
         verify(userRepository).findById(testUserId);
-        verify(gemini, times(1)).chat(anyString()); // Called once for initial message only (game title/description extracted from userDescription)
+        verify(gemini, times(1)).chat(anyList()); // Called once for initial message only (game title/description extracted from userDescription)
         verify(gameSessionRepository).save(any(GameSession.class));
         verify(gameMessageRepository).save(any(GameMessage.class));
     }
@@ -167,11 +217,7 @@ class GameServiceTest {
         // Arrange
         String message = "Hello";
         when(gameSessionRepository.findById(testSessionId)).thenReturn(Optional.of(testGameSession));
-        when(userRepository.findById(testUserId)).thenReturn(Optional.of(testUser));
-        when(gameMessageRepository.findTop10ByGameSessionIdOrderByTimestampDesc(testSessionId)).thenReturn(Arrays.asList(testGameMessage));
-        when(gemini.chat(anyString())).thenReturn("Test response");
-        when(gameMessageRepository.save(any(GameMessage.class))).thenReturn(testGameMessage);
-        when(gameSessionRepository.save(any(GameSession.class))).thenReturn(testGameSession);
+        when(gemini.chat(anyList())).thenReturn(reply("Test response"));
 
         // Act
         String result = gameService.processGameMessage(testSessionId, testUserId, message);
@@ -180,11 +226,16 @@ class GameServiceTest {
         assertNotNull(result);
         assertEquals("Test response", result);
         verify(gameSessionRepository).findById(testSessionId);
-        verify(userRepository).findById(testUserId);
-        verify(gameMessageRepository).findTop10ByGameSessionIdOrderByTimestampDesc(testSessionId);
-        verify(gemini).chat(anyString());
-        verify(gameMessageRepository, times(2)).save(any(GameMessage.class));
-        verify(gameSessionRepository).save(any(GameSession.class));
+        verify(userRepository, never()).findById(anyString());
+        verify(gameMessageRepository, never()).findTop10ByGameSessionIdOrderByTimestampDesc(anyString());
+        verify(gemini).chat(anyList());
+        verify(mongoTemplate).updateFirst(any(Query.class), any(Update.class), eq(GameSession.class));
+        verify(gameMessageRepository).insert(argThat((List<GameMessage> messages) -> messages.size() == 2
+                && messages.get(0).isFromUser() && messages.get(1).getText().equals("Test response")));
+        verify(gameMessageRepository, never()).save(any(GameMessage.class));
+        verify(gameSessionRepository, never()).save(any(GameSession.class));
+        assertEquals(1L, testGameSession.getState().getVersion());
+        assertEquals(List.of("User: Hello", "Assistant: Test response"), testGameSession.getState().getRecentTurns());
     }
 
     @Test
@@ -204,25 +255,34 @@ class GameServiceTest {
     }
 
     @Test
-    void processGameMessage_WithNullUser_ShouldReturnResponse() {
+    @SuppressWarnings("unchecked")
+    void processGameMessage_WithSessionWithoutState_ShouldRebuildItOldestFirst() {
         // Arrange
-        String message = "Hello";
+        testGameSession = readStored(new Document("_id", testSessionId)
+                .append("userId", testUserId)
+                .append("title", "Memory Game")
+                .append("description", "A cognitive memory game")
+                .append("gameType", "generated")
+                .append("isActive", true));
+        assertNull(testGameSession.getState());
+        GameMessage older = new GameMessage(testSessionId, testUserId, "Is it a cat?", true, Instant.now().minusSeconds(60));
+        GameMessage newer = new GameMessage(testSessionId, testUserId, "Yes, well done!", false, Instant.now());
         when(gameSessionRepository.findById(testSessionId)).thenReturn(Optional.of(testGameSession));
         when(userRepository.findById(testUserId)).thenReturn(Optional.empty());
-        when(gameMessageRepository.findTop10ByGameSessionIdOrderByTimestampDesc(testSessionId)).thenReturn(Arrays.asList(testGameMessage));
-        when(gemini.chat(anyString())).thenReturn("Test response");
-        when(gameMessageRepository.save(any(GameMessage.class))).thenReturn(testGameMessage);
-        when(gameSessionRepository.save(any(GameSession.class))).thenReturn(testGameSession);
+        when(gameMessageRepository.findTop10ByGameSessionIdOrderByTimestampDesc(testSessionId)).thenReturn(Arrays.asList(newer, older));
+        when(gemini.chat(anyList())).thenReturn(reply("Test response"));
 
         // Act
-        String result = gameService.processGameMessage(testSessionId, testUserId, message);
+        String result = gameService.processGameMessage(testSessionId, testUserId, "Hello");
 
         // Assert
-        assertNotNull(result);
         assertEquals("Test response", result);
-        verify(gameSessionRepository).findById(testSessionId);
         verify(userRepository).findById(testUserId);
-        verify(gemini).chat(anyString());
+        ArgumentCaptor<List<ChatMessage>> prompt = ArgumentCaptor.forClass(List.class);
+        verify(gemini).chat(prompt.capture());
+        String user = ((UserMessage) prompt.getValue().get(1)).singleText();
+        assertTrue(user.contains("User: Is it a cat?\nAssistant: Yes, well done!"));
+        verify(mongoTemplate).updateFirst(any(Query.class), any(Update.class), eq(GameSession.class));
     }
 
     @Test
@@ -285,22 +345,38 @@ class GameServiceTest {
     @Test
     void deleteGameSession_WithValidId_ShouldDeleteSessionAndMessages() {
         // Arrange
-        when(gameMessageRepository.findByGameSessionIdOrderByTimestampAsc(testSessionId)).thenReturn(Arrays.asList(testGameMessage));
+        when(gameMessageRepository.deleteByGameSessionId(testSessionId)).thenReturn(120L);
 
         // Act
         gameService.deleteGameSession(testSessionId);
 
         // Assert
-        verify(gameMessageRepository).findByGameSessionIdOrderByTimestampAsc(testSessionId);
-        verify(gameMessageRepository).deleteAll(Arrays.asList(testGameMessage));
+        verify(gameMessageRepository).deleteByGameSessionId(testSessionId);
+        verify(gameMessageRepository, never()).findByGameSessionIdOrderByTimestampAsc(anyString());
+        verify(gameMessageRepository, never()).deleteAll(anyList());
         verify(gameSessionRepository).deleteById(testSessionId);
     }
 
+    @Test
+    void deleteUserGameSessions_ShouldDeleteByQueryAndReturnSessionCount() {
+        // Arrange
+        when(gameMessageRepository.deleteByUserId(testUserId)).thenReturn(340L);
+        when(gameSessionRepository.deleteByUserId(testUserId)).thenReturn(12L);
+
+        // Act
+        long deleted = gameService.deleteUserGameSessions(testUserId);
+
+        // Assert
+        assertEquals(12L, deleted);
+        verify(gameMessageRepository).deleteByUserId(testUserId);
+        verify(gameSessionRepository).deleteByUserId(testUserId);
+    }
+
     @Test
     void generateGamePreview_WithInvalidJson_ShouldReturnFallback() {
         // Arrange
         when(userRepository.findById(testUserId)).thenReturn(Optional.of(testUser));
-        when(gemini.chat(anyString())).thenReturn("Invalid JSON");
+        when(gemini.chat(anyList())).thenReturn(reply("Invalid JSON"));
 
         // Act
         Map<String, String> result = gameService.generateGamePreview(testUserId);
@@ -310,7 +386,7 @@ class GameServiceTest {
         assertEquals("Cognitive Game", result.get("title"));
         assertEquals("Cognitive Game", result.get("description"));
         verify(userRepository).findById(testUserId);
-        verify(gemini).chat(anyString());
+        verify(gemini).chat(anyList());
     }
 
     @Test
@@ -319,7 +395,7 @@ class GameServiceTest {
         String gameType = "generated";
         String userDescription = "";
         when(userRepository.findById(testUserId)).thenReturn(Optional.of(testUser));
-        when(gemini.chat(anyString())).thenReturn("{\"title\":\"Generated Game\",\"description\":\"Generated Description\"}");
+        when(gemini.chat(anyList())).thenReturn(reply("{\"title\":\"Generated Game\",\"description\":\"Generated Description\"}"));
         when(gameSessionRepository.save(any(GameSession.class))).thenReturn(testGameSession);
         when(gameMessageRepository.save(any(GameMessage.class))).thenReturn(testGameMessage);
 
@@ -329,7 +405,7 @@ class GameServiceTest {
         // Assert
         assertNotNull(result);
         verify(userRepository).findById(testUserId);
-        verify(gemini, times(2)).chat(anyString()); // Called twice: once for game generation, once for initial message
+        verify(gemini, times(2)).chat(anyList()); // Called twice: once for game generation, once for initial message
         verify(gameSessionRepository).save(any(GameSession.class));
         verify(gameMessageRepository).save(any(GameMessage.class));
     }
@@ -338,12 +414,11 @@ class GameServiceTest {
     void processGameMessage_WithEmptyRecentMessages_ShouldStillProcess() {
         // Arrange
         String message = "Hello";
+        testGameSession.setState(null);
         when(gameSessionRepository.findById(testSessionId)).thenReturn(Optional.of(testGameSession));
         when(userRepository.findById(testUserId)).thenReturn(Optional.of(testUser));
         when(gameMessageRepository.findTop10ByGameSessionIdOrderByTimestampDesc(testSessionId)).thenReturn(new ArrayList<>());
-        when(gemini.chat(anyString())).thenReturn("Test response");
-        when(gameMessageRepository.save(any(GameMessage.class))).thenReturn(testGameMessage);
-        when(gameSessionRepository.save(any(GameSession.class))).thenReturn(testGameSession);
+        when(gemini.chat(anyList())).thenReturn(reply("Test response"));
 
         // Act
         String result = gameService.processGameMessage(testSessionId, testUserId, message);
@@ -353,6 +428,295 @@ class GameServiceTest {
         assertEquals("Test response", result);
         verify(gameSessionRepository).findById(testSessionId);
         verify(userRepository).findById(testUserId);
-        verify(gemini).chat(anyString());
+        verify(gemini).chat(anyList());
+    }
+
+    @Test
+    void processGameMessage_WithStateLine_ShouldUpdateStateAndHideLine() {
+        // Arrange
+        when(gameSessionRepository.findById(testSessionId)).thenReturn(Optional.of(testGameSession));
+        when(gemini.chat(anyList())).thenReturn(reply("""
+                Lovely answer! Now, which bird is known for its red breast?
+                STATE: {"score": 2, "level": 1, "puzzle": "Which bird has a red breast?", "summary": "Two birds named correctly."}
+                """));
+
+        // Act
+        String result = gameService.processGameMessage(testSessionId, testUserId, "A swan");
+
+        // Assert
+        assertEquals("Lovely answer! Now, which bird is known for its red breast?", result);
+        GameState state = testGameSession.getState();
+        assertEquals(2, state.getScore());
+        assertEquals("Which bird has a red breast?", state.getPuzzle().getQuestion());
+        assertEquals("Two birds named correctly.", state.getSummary());
+    }
+
+    @Test
+    void processGameMessage_WithUnreadableStateLine_ShouldKeepPreviousState() {
+        // Arrange
+        testGameSession.getState().setScore(3);
+        when(gameSessionRepository.findById(testSessionId)).thenReturn(Optional.of(testGameSession));
+        when(gemini.chat(anyList())).thenReturn(reply("Good try!\nSTATE: {not json}"));
+
+        // Act
+        String result = gameService.processGameMessage(testSessionId, testUserId, "A swan");
+
+        // Assert
+        assertEquals("Good try!", result);
+        assertEquals(3, testGameSession.getState().getScore());
+    }
+
+    @Test
+    void processGameMessage_WithTextAfterStateLine_ShouldStillHideLine() {
+        // Arrange
+        when(gameSessionRepository.findById(testSessionId)).thenReturn(Optional.of(testGameSession));
+        when(gemini.chat(anyList())).thenReturn(reply("""
+                Well done!
+                STATE: {"score": 1, "level": 1, "puzzle": "Name a bird that cannot fly.", "summary": "One bird named."}
+                Now, name a bird that cannot fly.
+                """));
+
+        // Act
+        String result = gameService.processGameMessage(testSessionId, testUserId, "A robin");
+
+        // Assert
+        assertEquals("Well done!\nNow, name a bird that cannot fly.", result);
+        assertFalse(result.contains("STATE"));
+        assertEquals(1, testGameSession.getState().getScore());
+        assertEquals("Name a bird that cannot fly.", testGameSession.getState().getPuzzle().getQuestion());
+    }
+
+    @Test
+    void processGameMessage_WithUnreadableStateLineMidReply_ShouldStillHideLine() {
+        // Arrange
+        when(gameSessionRepository.findById(testSessionId)).thenReturn(Optional.of(testGameSession));
+        when(gemini.chat(anyList())).thenReturn(reply("Good try!\n  STATE: {\"score\": 2,\nShall we go on?"));
+
+        // Act
+        String result = gameService.processGameMessage(testSessionId, testUserId, "A swan");
+
+        // Assert
+        assertEquals("Good try!\nShall we go on?", result);
+    }
+
+    @Test
+    void processGameMessage_WhenAnotherTurnWasWrittenFirst_ShouldPlayAgainFromNewerState() {
+        // Arrange
+        when(gameSessionRepository.findById(testSessionId)).thenReturn(Optional.of(testGameSession));
+        when(gemini.chat(anyList())).thenReturn(reply("Test response"));
+        when(mongoTemplate.updateFirst(any(Query.class), any(Update.class), eq(GameSession.class)))
+                .thenReturn(UpdateResult.acknowledged(0, 0L, null))
+                .thenReturn(UpdateResult.acknowledged(1, 1L, null));
+
+        // Act
+        String result = gameService.processGameMessage(testSessionId, testUserId, "Hello");
+
+        // Assert
+        assertEquals("Test response", result);
+        verify(gameSessionRepository, times(2)).findById(testSessionId);
+        verify(gemini, times(2)).chat(anyList());
+        verify(gameMessageRepository, times(1)).insert(anyList());
+    }
+
+    @Test
+    void processGameMessage_WhenTurnKeepsConflicting_ShouldNotStoreMessages() {
+        // Arrange
+        when(gameSessionRepository.findById(testSessionId)).thenReturn(Optional.of(testGameSession));
+        when(gemini.chat(anyList())).thenReturn(reply("Test response"));
+        when(mongoTemplate.updateFirst(any(Query.class), any(Update.class), eq(GameSession.class)))
+                .thenReturn(UpdateResult.acknowledged(0, 0L, null));
+
+        // Act
+        String result = gameService.processGameMessage(testSessionId, testUserId, "Hello");
+
+        // Assert
+        assertTrue(result.contains("say that again"));
+        verify(gameMessageRepository, never()).insert(anyList());
+    }
+
+    @Test
+    void processGameMessage_ManyTurns_ShouldKeepOnlyRecentLines() {
+        // Arrange
+        when(gameSessionRepository.findById(testSessionId)).thenReturn(Optional.of(testGameSession));
+        when(gemini.chat(anyList())).thenReturn(reply("Reply"));
+
+        // Act
+        for (int i = 1; i <= 5; i++) {
+            gameService.processGameMessage(testSessionId, testUserId, "Turn " + i);
+        }
+
+        // Assert
+        List<String> turns = testGameSession.getState().getRecentTurns();
+        assertEquals(6, turns.size());
+        assertEquals("User: Turn 3", turns.get(0));
+        assertEquals("Assistant: Reply", turns.get(5));
+        assertEquals(5L, testGameSession.getState().getVersion());
+    }
+
+    /** Reads a session document the way Spring Data does, through the persistence constructor. */
+    private static GameSession readStored(Document stored) {
+        MongoMappingContext mappingContext = new MongoMappingContext();
+        mappingContext.setSimpleTypeHolder(new MongoCustomConversions(List.of()).getSimpleTypeHolder());
+        MappingMongoConverter converter = new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, mappingContext);
+        converter.afterPropertiesSet();
+        return converter.read(GameSession.class, stored);
+    }
+
+    private GameSession arithmeticSession(String answer) {
+        GameSession session = new GameSession(testUserId, "Mental Arithmetic", "Quick sums", "arithmetic", null);
+        session.setId(testSessionId);
+        session.setState(new GameState());
+        session.getState().setEngine("arithmetic");
+        session.getState().setPuzzle(new GamePuzzle("What is 5 plus 3?", answer, "Try counting on from 5."));
+        when(gameSessionRepository.findById(testSessionId)).thenReturn(Optional.of(session));
+        when(gameEngineRegistry.find("arithmetic")).thenReturn(new ArithmeticGameEngine());
+        return session;
+    }
+
+    @Test
+    void createGameSession_WithLocalEngine_ShouldSetPuzzleWithoutModel() {
+        // Arrange
+        when(userRepository.findById(testUserId)).thenReturn(Optional.of(testUser));
+        when(gameEngineRegistry.find("arithmetic")).thenReturn(new ArithmeticGameEngine());
+        when(gameSessionRepository.save(any(GameSession.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        // Act
+        GameSession result = gameService.createGameSession(testUserId, "arithmetic", null);
+
+        // Assert
+        assertEquals("arithmetic", result.getState().getEngine());
+        assertEquals("Mental Arithmetic", result.getTitle());
+        assertNotNull(result.getState().getPuzzle().getAnswer());
+        verify(gameMessageRepository).save(argThat(m -> m.getText().contains(result.getState().getPuzzle().getQuestion())));
+        verifyNoInteractions(gemini);
+    }
+
+    @Test
+    void createGameSession_WithMatchingDescriptionAndMatchingOn_ShouldUseLocalEngine() {
+        // Arrange
+        ReflectionTestUtils.setField(gameService, "matchDescriptions", true);
+        when(userRepository.findById(testUserId)).thenReturn(Optional.of(testUser));
+        when(gameEngineRegistry.match("Word Wizard Unscramble jumbled words")).thenReturn(new AnagramGameEngine());
+        when(gameSessionRepository.save(any(GameSession.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        // Act
+        GameSession result = gameService.createGameSession(testUserId, "generated", "Word Wizard: Unscramble jumbled words");
+
+        // Assert
+        assertEquals("anagram", result.getState().getEngine());
+        assertEquals("Word Wizard", result.getTitle());
+        verifyNoInteractions(gemini);
+    }
+
+    @Test
+    void createGameSession_WithMatchingDescriptionByDefault_ShouldLeaveGameToModel() {
+        // Arrange
+        when(userRepository.findById(testUserId)).thenReturn(Optional.of(testUser));
+        when(gemini.chat(anyList())).thenReturn(reply("Let's begin!"));
+        when(gameSessionRepository.save(any(GameSession.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        // Act
+        GameSession result = gameService.createGameSession(testUserId, "generated", "Word Wizard: Unscramble jumbled words");
+
+        // Assert
+        assertNull(result.getState().getEngine());
+        verify(gameEngineRegistry, never()).match(anyString());
+    }
+
+    @Test
+    void processGameMessage_WithCorrectLocalAnswer_ShouldScoreAndSetNextPuzzle() {
+        // Arrange
+        GameSession session = arithmeticSession("8");
+
+        // Act
+        String result = gameService.processGameMessage(testSessionId, testUserId, "5 plus 3 is eight");
+
+        // Assert
+        assertEquals(1, session.getState().getScore());
+        assertTrue(result.contains("Your score is now 1."));
+        assertTrue(result.endsWith(session.getState().getPuzzle().getQuestion()));
+        assertNotEquals("What is 5 plus 3?", session.getState().getPuzzle().getQuestion());
+        verify(gameMessageRepository).insert(anyList());
+        verify(mongoTemplate).updateFirst(any(Query.class), any(Update.class), eq(GameSession.class));
+        verifyNoInteractions(gemini, userRepository);
+        verify(gameMessageRepository, never()).findTop10ByGameSessionIdOrderByTimestampDesc(anyString());
+    }
+
+    @Test
+    void processGameMessage_WithWrongLocalAnswers_ShouldHintThenReveal() {
+        // Arrange
+        GameSession session = arithmeticSession("8");
+
+        // Act
+        String first = gameService.processGameMessage(testSessionId, testUserId, "Is it 7?");
+        String second = gameService.processGameMessage(testSessionId, testUserId, "9");
+
+        // Assert
+        assertTrue(first.contains("Try counting on from 5."));
+        assertTrue(first.endsWith("What is 5 plus 3?"));
+        assertTrue(second.contains("The answer was 8."));
+        assertEquals(0, session.getState().getScore());
+        assertEquals(0, session.getState().getPuzzle().getAttempts());
+        verifyNoInteractions(gemini);
+    }
+
+    @Test
+    void processGameMessage_WhenPlayerGivesUp_ShouldRevealAnswer() {
+        // Arrange
+        arithmeticSession("8");
+
+        // Act
+        String result = gameService.processGameMessage(testSessionId, testUserId, "I don't know");
+
+        // Assert
+        assertTrue(result.startsWith("No problem at all. The answer was 8."));
+    }
+
+    @Test
+    void processGameMessage_AfterThreeCorrectAnswers_ShouldRaiseLevel() {
+        // Arrange
+        GameSession session = arithmeticSession("8");
+        session.getState().setScore(2);
+
+        // Act
+        String result = gameService.processGameMessage(testSessionId, testUserId, "8");
+
+        // Assert
+        assertEquals(2, session.getState().getLevel());
+        assertTrue(result.contains("a little harder"));
+    }
+
+    @Test
+    void processGameMessage_WithLlmFeedback_ShouldOnlyRewordVerdict() {
+        // Arrange
+        ReflectionTestUtils.setField(gameService, "llmFeedback", true);
+        GameSession session = arithmeticSession("8");
+        when(gemini.chat(anyList())).thenReturn(reply("Wonderful, that's exactly right! You now have 1 point."));
+
+        // Act
+        String result = gameService.processGameMessage(testSessionId, testUserId, "8");
+
+        // Assert
+        assertTrue(result.startsWith("Wonderful, that's exactly right!"));
+        assertTrue(result.endsWith(session.getState().getPuzzle().getQuestion()));
+        assertEquals(1, session.getState().getScore());
+    }
+
+    @Test
+    void processGameMessage_WhenLlmFeedbackFails_ShouldUseTemplate() {
+        // Arrange
+        ReflectionTestUtils.setField(gameService, "llmFeedback", true);
+        arithmeticSession("8");
+        when(gemini.chat(anyList())).thenThrow(new RuntimeException("Model unavailable"));
+
+        // Act
+        String result = gameService.processGameMessage(testSessionId, testUserId, "8");
+
+        // Assert
+        assertTrue(result.contains("Your score is now 1."));
+    }
+
+    private static ChatResponse reply(String text) {
+        return ChatResponse.builder().aiMessage(AiMessage.from(text)).build();
     }
 }
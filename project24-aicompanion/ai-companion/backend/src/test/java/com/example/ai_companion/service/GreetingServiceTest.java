@@ -0,0 +1,191 @@
+package com.example.ai_companion.service;
+
+import com.example.ai_companion.model.Greeting;
+import com.example.ai_companion.model.Message;
+import com.example.ai_companion.model.User;
+import com.example.ai_companion.repository.GreetingRepository;
+import com.example.ai_companion.repository.MessageRepository;
+import com.example.ai_companion.repository.UserRepository;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.model.chat.ChatLanguageModel;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class GreetingServiceTest {
+
+    @Mock
+    private UserRepository userRepository;
+
+    @Mock
+    private MessageRepository messageRepository;
+
+    @Mock
+    private GreetingRepository greetingRepository;
+
+    @Mock
+    private LLMService llmService;
+
+    @Mock
+    private LlmRouter llmRouter;
+
+    @Mock
+    private ChatLanguageModel chatLanguageModel;
+
+    @InjectMocks
+    private GreetingService greetingService;
+
+    private final String userId = "user123";
+    private User user;
+    private Message lastMessage;
+
+    @BeforeEach
+    void setUp() {
+        lenient().when(llmRouter.model(any(), any())).thenReturn(chatLanguageModel);
+        user = new User();
+        user.setFirebaseUid(userId);
+        user.setFullName("Mary");
+        user.setCoreInformation("Loves roses.");
+        lastMessage = new Message(userId, "I am off to the garden centre", true, Instant.now().minus(Duration.ofHours(5)));
+    }
+
+    private void givenHistory(List<Message> messages) {
+        when(messageRepository.findTop10ByUserIdOrderByTimestampDesc(userId)).thenReturn(new ArrayList<>(messages));
+        when(userRepository.findByFirebaseUid(userId)).thenReturn(user);
+    }
+
+    private Greeting prepared(Instant basis, String name, String coreInfo, Map<String, String> texts) {
+        Greeting greeting = new Greeting();
+        greeting.setUserId(userId);
+        greeting.setBasis(basis);
+        greeting.setProfileHash(Objects.hash(name, coreInfo));
+        greeting.setTexts(texts);
+        return greeting;
+    }
+
+    @Test
+    void getGreeting_WithPreparedGreetingForBucket_ShouldServeItWithoutModel() {
+        // Arrange
+        givenHistory(List.of(lastMessage));
+        when(greetingRepository.findById(userId)).thenReturn(Optional.of(
+                prepared(lastMessage.getTimestamp(), "Mary", "Loves roses.", Map.of("HOURS", "Hello Mary! How was the garden centre earlier?"))));
+
+        // Act
+        String greeting = greetingService.getGreeting(userId, null);
+
+        // Assert
+        assertEquals("Hello Mary! How was the garden centre earlier?", greeting);
+        verifyNoInteractions(llmService, chatLanguageModel);
+    }
+
+    @Test
+    void getGreeting_WhenNewerMessageArrived_ShouldGenerateOnTheSpot() {
+        // Arrange
+        givenHistory(List.of(lastMessage));
+        when(greetingRepository.findById(userId)).thenReturn(Optional.of(
+                prepared(lastMessage.getTimestamp().minusSeconds(600), "Mary", "Loves roses.", Map.of("HOURS", "Old greeting"))));
+        when(llmService.generateResponse(anyString())).thenReturn("Fresh greeting");
+
+        // Act
+        String greeting = greetingService.getGreeting(userId, null);
+
+        // Assert
+        assertEquals("Fresh greeting", greeting);
+        ArgumentCaptor<String> prompt = ArgumentCaptor.forClass(String.class);
+        verify(llmService).generateResponse(prompt.capture());
+        assertTrue(prompt.getValue().contains("The last conversation was a few hours ago."));
+        assertTrue(prompt.getValue().contains("User: I am off to the garden centre"));
+    }
+
+    @Test
+    void getGreeting_WithFirstTimeUserAndNoProfile_ShouldGreetGenerically() {
+        // Arrange
+        when(messageRepository.findTop10ByUserIdOrderByTimestampDesc(userId)).thenReturn(new ArrayList<>());
+        when(userRepository.findByFirebaseUid(userId)).thenReturn(null);
+        when(greetingRepository.findById(userId)).thenReturn(Optional.empty());
+        when(llmService.generateResponse(anyString())).thenReturn("Welcome!");
+
+        // Act
+        String greeting = greetingService.getGreeting(userId, null);
+
+        // Assert
+        assertEquals("Welcome!", greeting);
+        verify(llmService).generateResponse(contains("Greet the user by name (there)"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void prepare_ShouldStoreOneGreetingPerBucketFromSingleCall() {
+        // Arrange
+        givenHistory(List.of(lastMessage));
+        when(greetingRepository.findById(userId)).thenReturn(Optional.empty());
+        when(chatLanguageModel.chat(anyList())).thenReturn(ChatResponse.builder().aiMessage(AiMessage.from("""
+                [JUST_NOW] Welcome back, Mary! Did you find what you needed at the garden centre?
+                [HOURS] Hello Mary! How did the trip to the garden centre go earlier?
+                [YESTERDAY] Good to see you, Mary! How did yesterday's garden centre trip go?
+                [SOMETIME] Not a bucket we asked for.
+                """)).build());
+
+        // Act
+        boolean stored = greetingService.prepare(userId);
+
+        // Assert
+        assertTrue(stored);
+        ArgumentCaptor<List<ChatMessage>> prompt = ArgumentCaptor.forClass(List.class);
+        verify(chatLanguageModel).chat(prompt.capture());
+        String request = ((UserMessage) prompt.getValue().get(1)).singleText();
+        assertTrue(request.contains("[WEEKS] the last conversation was over a week ago"));
+        assertFalse(request.contains("[FIRST]"));
+        ArgumentCaptor<Greeting> saved = ArgumentCaptor.forClass(Greeting.class);
+        verify(greetingRepository).save(saved.capture());
+        assertEquals(lastMessage.getTimestamp(), saved.getValue().getBasis());
+        assertEquals(List.of("JUST_NOW", "HOURS", "YESTERDAY"), new ArrayList<>(saved.getValue().getTexts().keySet()));
+        verify(llmRouter).model(LlmTask.GREETING, userId);
+    }
+
+    @Test
+    void prepare_WhenStoredGreetingsAreCurrent_ShouldSkipModel() {
+        // Arrange
+        givenHistory(List.of(lastMessage));
+        when(greetingRepository.findById(userId)).thenReturn(Optional.of(
+                prepared(lastMessage.getTimestamp(), "Mary", "Loves roses.", Map.of("HOURS", "Hello"))));
+
+        // Act
+        boolean stored = greetingService.prepare(userId);
+
+        // Assert
+        assertFalse(stored);
+        verifyNoInteractions(chatLanguageModel);
+    }
+
+    @Test
+    void since_ShouldPickTimeBucket() {
+        // Act & Assert
+        assertEquals(GreetingService.TimeBucket.JUST_NOW, GreetingService.TimeBucket.since(Duration.ofMinutes(20)));
+        assertEquals(GreetingService.TimeBucket.HOUR, GreetingService.TimeBucket.since(Duration.ofMinutes(90)));
+        assertEquals(GreetingService.TimeBucket.HOURS, GreetingService.TimeBucket.since(Duration.ofHours(5)));
+        assertEquals(GreetingService.TimeBucket.YESTERDAY, GreetingService.TimeBucket.since(Duration.ofHours(30)));
+        assertEquals(GreetingService.TimeBucket.DAYS, GreetingService.TimeBucket.since(Duration.ofDays(4)));
+        assertEquals(GreetingService.TimeBucket.WEEKS, GreetingService.TimeBucket.since(Duration.ofDays(10)));
+    }
+}
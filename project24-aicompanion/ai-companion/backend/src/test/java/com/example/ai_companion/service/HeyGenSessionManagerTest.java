@@ -0,0 +1,412 @@
+package com.example.ai_companion.service;
+
+import com.example.ai_companion.dto.HeyGenSessionRequest;
+import com.example.ai_companion.dto.HeyGenStartSessionRequest;
+import com.example.ai_companion.model.AvatarSession;
+import com.example.ai_companion.response.HeyGenSessionResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Instant;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class HeyGenSessionManagerTest {
+
+    @Mock
+    private HeyGenService heyGenService;
+
+    @Spy
+    private HeyGenSessionRegistry registry = new InMemoryHeyGenSessionRegistry();
+
+    @InjectMocks
+    private HeyGenSessionManager sessionManager;
+
+    private HeyGenSessionRequest maryAvatar;
+    private HeyGenSessionRequest otherAvatar;
+
+    @BeforeEach
+    void setUp() {
+        // Prewarming is exercised explicitly through refill()
+        ReflectionTestUtils.setField(sessionManager, "prewarm", 0);
+        ReflectionTestUtils.setField(sessionManager, "nodeId", "node-a");
+        maryAvatar = new HeyGenSessionRequest();
+        maryAvatar.setAvatarId("avatar-mary");
+        otherAvatar = new HeyGenSessionRequest();
+        otherAvatar.setAvatarId("avatar-other");
+    }
+
+    private static HeyGenSessionResponse response(String sessionId) {
+        HeyGenSessionResponse response = new HeyGenSessionResponse();
+        response.setSessionId(sessionId);
+        return response;
+    }
+
+    private void start(String userId, String sessionId) {
+        start(sessionManager, userId, sessionId);
+    }
+
+    private void start(HeyGenSessionManager node, String userId, String sessionId) {
+        HeyGenStartSessionRequest req = new HeyGenStartSessionRequest(sessionId);
+        when(heyGenService.startSession(userId, req)).thenReturn(response(sessionId));
+        node.startSession(userId, req);
+    }
+
+    /** A second node sharing the HeyGen account and the session registry. */
+    private HeyGenSessionManager otherNode() {
+        HeyGenSessionManager node = new HeyGenSessionManager();
+        ReflectionTestUtils.setField(node, "heyGenService", heyGenService);
+        ReflectionTestUtils.setField(node, "registry", registry);
+        ReflectionTestUtils.setField(node, "prewarm", 0);
+        ReflectionTestUtils.setField(node, "nodeId", "node-b");
+        return node;
+    }
+
+    @Test
+    void createSession_ForSecondUser_ShouldLeaveFirstUsersSessionRunning() {
+        // Arrange
+        when(heyGenService.createSession(any())).thenReturn(response("s1"), response("s2"));
+        sessionManager.createSession("alice", maryAvatar);
+        start("alice", "s1");
+
+        // Act
+        HeyGenSessionResponse bobs = sessionManager.createSession("bob", maryAvatar);
+
+        // Assert
+        assertEquals("s2", bobs.getSessionId());
+        verify(heyGenService, never()).stopSession(anyString());
+        assertEquals("s1", sessionManager.getActiveSessionId("alice"));
+    }
+
+    @Test
+    void createSession_WithSameSettingsAgain_ShouldReuseUsersSession() {
+        // Arrange
+        when(heyGenService.createSession(maryAvatar)).thenReturn(response("s1"));
+        sessionManager.createSession("alice", maryAvatar);
+        start("alice", "s1");
+
+        // Act
+        HeyGenSessionResponse again = sessionManager.createSession("alice", maryAvatar);
+
+        // Assert
+        assertEquals("s1", again.getSessionId());
+        verify(heyGenService, times(1)).createSession(any());
+        Map<String, Object> stats = sessionManager.getStats();
+        assertEquals(1L, stats.get("reused"));
+        assertEquals(1L, stats.get("coldStarts"));
+        assertEquals(0.5, stats.get("reuseRate"));
+    }
+
+    @Test
+    void createSession_WithNewSettings_ShouldStopOnlyUsersPreviousSession() {
+        // Arrange
+        when(heyGenService.createSession(any())).thenReturn(response("s1"), response("s2"), response("s3"));
+        sessionManager.createSession("alice", maryAvatar);
+        start("alice", "s1");
+        sessionManager.createSession("bob", maryAvatar);
+        start("bob", "s2");
+
+        // Act
+        HeyGenSessionResponse changed = sessionManager.createSession("alice", otherAvatar);
+
+        // Assert
+        assertEquals("s3", changed.getSessionId());
+        verify(heyGenService).stopSession("s1");
+        verify(heyGenService, never()).stopSession("s2");
+        assertEquals("s2", sessionManager.getActiveSessionId("bob"));
+    }
+
+    @Test
+    void refill_ThenCreate_ShouldServePrewarmedSession() {
+        // Arrange
+        when(heyGenService.createSession(maryAvatar)).thenReturn(response("s1"), response("warm"));
+        sessionManager.createSession("alice", maryAvatar);
+        ReflectionTestUtils.setField(sessionManager, "prewarm", 1);
+        sessionManager.refill();
+        ReflectionTestUtils.setField(sessionManager, "prewarm", 0);
+
+        // Act
+        HeyGenSessionResponse bobs = sessionManager.createSession("bob", maryAvatar);
+
+        // Assert
+        assertEquals("warm", bobs.getSessionId());
+        verify(heyGenService, times(2)).createSession(maryAvatar);
+        Map<String, Object> stats = sessionManager.getStats();
+        assertEquals(1L, stats.get("prewarmedServed"));
+        assertEquals(0L, stats.get("prewarmedIdle"));
+    }
+
+    @Test
+    void refill_AtCapacity_ShouldNotPrewarm() {
+        // Arrange
+        ReflectionTestUtils.setField(sessionManager, "capacity", 1);
+        when(heyGenService.createSession(maryAvatar)).thenReturn(response("s1"));
+        sessionManager.createSession("alice", maryAvatar);
+        ReflectionTestUtils.setField(sessionManager, "prewarm", 1);
+
+        // Act
+        sessionManager.refill();
+
+        // Assert
+        verify(heyGenService, times(1)).createSession(any());
+    }
+
+    @Test
+    void createSession_AtCapacity_ShouldGiveUpPrewarmedSessionFirst() {
+        // Arrange
+        ReflectionTestUtils.setField(sessionManager, "capacity", 2);
+        when(heyGenService.createSession(any())).thenReturn(response("s1"), response("warm"), response("s2"));
+        sessionManager.createSession("alice", maryAvatar);
+        start("alice", "s1");
+        ReflectionTestUtils.setField(sessionManager, "prewarm", 1);
+        sessionManager.refill();
+        ReflectionTestUtils.setField(sessionManager, "prewarm", 0);
+
+        // Act
+        HeyGenSessionResponse bobs = sessionManager.createSession("bob", otherAvatar);
+
+        // Assert
+        assertEquals("s2", bobs.getSessionId());
+        verify(heyGenService).stopSession("warm");
+        verify(heyGenService, never()).stopSession("s1");
+    }
+
+    @Test
+    void startSession_WhenAlreadyStarted_ShouldNotStartAgain() {
+        // Arrange
+        when(heyGenService.createSession(maryAvatar)).thenReturn(response("s1"));
+        sessionManager.createSession("alice", maryAvatar);
+        start("alice", "s1");
+
+        // Act
+        HeyGenSessionResponse again = sessionManager.startSession("alice", new HeyGenStartSessionRequest("s1"));
+
+        // Assert
+        assertEquals("s1", again.getSessionId());
+        verify(heyGenService, times(1)).startSession(anyString(), any());
+    }
+
+    @Test
+    void startSession_ShouldKeepLeaseAndTaskTimeWrittenDuringStart() {
+        // Arrange
+        when(heyGenService.createSession(maryAvatar)).thenReturn(response("s1"));
+        sessionManager.createSession("alice", maryAvatar);
+        Instant lastTask = Instant.now();
+        Instant renewedLease = lastTask.plusSeconds(600);
+        HeyGenStartSessionRequest req = new HeyGenStartSessionRequest("s1");
+        when(heyGenService.startSession("alice", req)).thenAnswer(invocation -> {
+            // Another node renews the lease and sends a task while HeyGen starts the session
+            registry.renewAndClaim("node-b", renewedLease, renewedLease);
+            registry.touch("s1", lastTask);
+            return response("s1");
+        });
+
+        // Act
+        sessionManager.startSession("alice", req);
+
+        // Assert
+        AvatarSession stored = registry.find("s1");
+        assertNotNull(stored.getStarted());
+        assertEquals("node-b", stored.getOwnerNode());
+        assertEquals(renewedLease, stored.getLeaseUntil());
+        assertEquals(lastTask, stored.getLastTaskAt());
+        verify(registry, never()).save(argThat(session -> session.getStarted() != null));
+    }
+
+    @Test
+    void sweep_ShouldReapIdleSessionsAndKeepActiveOnesAlive() {
+        // Arrange
+        ReflectionTestUtils.setField(sessionManager, "idleMinutes", 0L);
+        ReflectionTestUtils.setField(sessionManager, "keepAliveSeconds", 0L);
+        when(heyGenService.createSession(any())).thenReturn(response("idle"), response("active"));
+        sessionManager.createSession("alice", maryAvatar);
+        start("alice", "idle");
+        sessionManager.createSession("bob", maryAvatar);
+        start("bob", "active");
+        when(heyGenService.getLastTaskTimes()).thenReturn(Map.of("active", Instant.now().plusSeconds(60)));
+
+        // Act
+        sessionManager.sweep();
+
+        // Assert
+        verify(heyGenService).stopSession("idle");
+        verify(heyGenService).keepSessionAlive("active");
+        verify(heyGenService, never()).keepSessionAlive("idle");
+        assertNull(sessionManager.getActiveSessionId("alice"));
+        assertEquals("active", sessionManager.getActiveSessionId("bob"));
+        Map<String, Object> stats = sessionManager.getStats();
+        assertEquals(1L, stats.get("reaped"));
+        assertEquals(1L, stats.get("keepAlives"));
+    }
+
+    @Test
+    void sweep_WhenKeepAliveFails_ShouldForgetSession() {
+        // Arrange
+        ReflectionTestUtils.setField(sessionManager, "keepAliveSeconds", 0L);
+        when(heyGenService.createSession(maryAvatar)).thenReturn(response("s1"));
+        sessionManager.createSession("alice", maryAvatar);
+        start("alice", "s1");
+        doThrow(new RuntimeException("Failed to send keep-alive: session closed")).when(heyGenService).keepSessionAlive("s1");
+
+        // Act
+        sessionManager.sweep();
+
+        // Assert
+        assertNull(sessionManager.getActiveSessionId("alice"));
+        assertEquals(1L, sessionManager.getStats().get("keepAliveFailures"));
+    }
+
+    @Test
+    void sweep_WithSessionNeverStarted_ShouldStopItAfterTtl() throws Exception {
+        // Arrange
+        ReflectionTestUtils.setField(sessionManager, "prewarmTtlSeconds", 0L);
+        when(heyGenService.createSession(maryAvatar)).thenReturn(response("s1"));
+        sessionManager.createSession("alice", maryAvatar);
+        Thread.sleep(5);
+
+        // Act
+        sessionManager.sweep();
+
+        // Assert
+        verify(heyGenService).stopSession("s1");
+        assertEquals(1L, sessionManager.getStats().get("expired"));
+        assertEquals(0L, sessionManager.getStats().get("sessions"));
+    }
+
+    @Test
+    void createSession_OnOtherNode_ShouldStopUsersSessionFromFirstNode() {
+        // Arrange
+        HeyGenSessionManager nodeB = otherNode();
+        when(heyGenService.createSession(any())).thenReturn(response("s1"), response("s2"));
+        sessionManager.createSession("alice", maryAvatar);
+        start("alice", "s1");
+
+        // Act
+        HeyGenSessionResponse changed = nodeB.createSession("alice", otherAvatar);
+        start(nodeB, "alice", "s2");
+
+        // Assert
+        assertEquals("s2", changed.getSessionId());
+        verify(heyGenService).stopSession("s1");
+        assertEquals("s2", sessionManager.getActiveSessionId("alice"));
+        assertEquals(1L, registry.count());
+    }
+
+    @Test
+    void startSession_OnOtherNode_ShouldNotStartSessionStartedOnFirstNode() {
+        // Arrange
+        HeyGenSessionManager nodeB = otherNode();
+        when(heyGenService.createSession(maryAvatar)).thenReturn(response("s1"));
+        sessionManager.createSession("alice", maryAvatar);
+        start("alice", "s1");
+
+        // Act
+        HeyGenSessionResponse again = nodeB.startSession("alice", new HeyGenStartSessionRequest("s1"));
+
+        // Assert
+        assertEquals("s1", again.getSessionId());
+        verify(heyGenService, times(1)).startSession(anyString(), any());
+        verify(heyGenService, never()).stopSession(anyString());
+    }
+
+    @Test
+    void sweep_AfterOwnerStopsRenewing_ShouldHandOverSessionToOtherNode() throws Exception {
+        // Arrange
+        HeyGenSessionManager nodeB = otherNode();
+        ReflectionTestUtils.setField(sessionManager, "leaseSeconds", 0L);
+        ReflectionTestUtils.setField(nodeB, "keepAliveSeconds", 0L);
+        when(heyGenService.createSession(maryAvatar)).thenReturn(response("s1"));
+        sessionManager.createSession("alice", maryAvatar);
+        start("alice", "s1");
+        Thread.sleep(5);
+
+        // Act
+        nodeB.sweep();
+
+        // Assert
+        verify(heyGenService).keepSessionAlive("s1");
+        assertEquals("node-b", registry.find("s1").getOwnerNode());
+        assertEquals("s1", nodeB.getActiveSessionId("alice"));
+    }
+
+    @Test
+    void sweep_WhileOwnerRenews_ShouldLeaveSessionToOwner() {
+        // Arrange
+        HeyGenSessionManager nodeB = otherNode();
+        ReflectionTestUtils.setField(nodeB, "keepAliveSeconds", 0L);
+        when(heyGenService.createSession(maryAvatar)).thenReturn(response("s1"));
+        sessionManager.createSession("alice", maryAvatar);
+        start("alice", "s1");
+
+        // Act
+        nodeB.sweep();
+
+        // Assert
+        verify(heyGenService, never()).keepSessionAlive(anyString());
+        assertEquals("node-a", registry.find("s1").getOwnerNode());
+    }
+
+    @Test
+    void sweep_WithTaskSentFromOtherNode_ShouldNotReapSession() {
+        // Arrange
+        HeyGenService otherService = mock(HeyGenService.class);
+        HeyGenSessionManager nodeB = otherNode();
+        ReflectionTestUtils.setField(nodeB, "heyGenService", otherService);
+        ReflectionTestUtils.setField(sessionManager, "idleMinutes", 0L);
+        when(heyGenService.createSession(maryAvatar)).thenReturn(response("s1"));
+        sessionManager.createSession("alice", maryAvatar);
+        start("alice", "s1");
+        when(otherService.getLastTaskTimes()).thenReturn(Map.of("s1", Instant.now().plusSeconds(60)));
+        nodeB.sweep();
+
+        // Act
+        sessionManager.sweep();
+
+        // Assert
+        verify(heyGenService, never()).stopSession("s1");
+        assertEquals("s1", sessionManager.getActiveSessionId("alice"));
+    }
+
+    @Test
+    void sweep_OnTwoNodesAfterLeaseLapses_ShouldStopIdleSessionOnce() throws Exception {
+        // Arrange
+        HeyGenSessionManager nodeB = otherNode();
+        ReflectionTestUtils.setField(sessionManager, "leaseSeconds", 0L);
+        ReflectionTestUtils.setField(sessionManager, "idleMinutes", 0L);
+        ReflectionTestUtils.setField(nodeB, "idleMinutes", 0L);
+        when(heyGenService.createSession(maryAvatar)).thenReturn(response("s1"));
+        sessionManager.createSession("alice", maryAvatar);
+        start("alice", "s1");
+        Thread.sleep(5);
+
+        // Act
+        nodeB.sweep();
+        sessionManager.sweep();
+
+        // Assert
+        verify(heyGenService, times(1)).stopSession("s1");
+        assertEquals(0L, registry.count());
+    }
+
+    @Test
+    void configKey_ShouldDistinguishVoiceSettings() {
+        // Arrange
+        HeyGenSessionRequest slower = new HeyGenSessionRequest();
+        slower.setAvatarId("avatar-mary");
+        slower.setVoice(new HeyGenSessionRequest.VoiceSettings("voice1", 0.8));
+
+        // Act & Assert
+        assertNotEquals(HeyGenSessionManager.configKey(maryAvatar), HeyGenSessionManager.configKey(slower));
+        assertEquals(HeyGenSessionManager.configKey(maryAvatar), HeyGenSessionManager.configKey(otherAvatar).replace("avatar-other", "avatar-mary"));
+    }
+}
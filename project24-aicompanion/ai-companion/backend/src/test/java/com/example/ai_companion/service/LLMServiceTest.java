@@ -8,16 +8,25 @@ import com.example.ai_companion.model.User;
 import com.example.ai_companion.repository.MessageRepository;
 import com.example.ai_companion.repository.ReminderRepository;
 import com.example.ai_companion.repository.UserRepository;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.UserMessage;
 import dev.langchain4j.model.chat.ChatLanguageModel;
+import dev.langchain4j.model.chat.StreamingChatLanguageModel;
+import dev.langchain4j.model.chat.response.ChatResponse;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
 
 import java.time.Instant;
 import java.util.*;
+import java.util.function.Consumer;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.*;
@@ -29,6 +38,12 @@ class LLMServiceTest {
     @Mock
     private ChatLanguageModel chatLanguageModel;
 
+    @Mock
+    private LlmRouter llmRouter;
+
+    @Mock
+    private StreamingChatLanguageModel streamingChatLanguageModel;
+
     @Mock
     private UserRepository userRepository;
 
@@ -44,6 +59,15 @@ class LLMServiceTest {
     @Mock
     private ReminderService reminderService;
 
+    @Mock
+    private ReminderOccurrenceService reminderOccurrenceService;
+
+    @Mock
+    private ConversationSummaryService conversationSummaryService;
+
+    @Spy
+    private LlmResponseCache llmResponseCache = new LlmResponseCache();
+
     @InjectMocks
     private LLMService llmService;
 
@@ -55,6 +79,8 @@ class LLMServiceTest {
 
     @BeforeEach
     void setUp() {
+        lenient().when(llmRouter.model(any())).thenReturn(chatLanguageModel);
+        lenient().when(llmRouter.model(any(), any())).thenReturn(chatLanguageModel);
         testUserId = "user123";
         testQuery = "Hello, how are you?";
 
@@ -82,7 +108,7 @@ class LLMServiceTest {
         when(userRepository.findByFirebaseUid(testUserId)).thenReturn(testUser);
         when(messageRepository.findTop10ByUserIdOrderByTimestampDesc(testUserId)).thenReturn(Arrays.asList(testMessage));
         when(reminderRepository.findTop10ByUserIdAndTimestampGreaterThanOrderByTimestampAsc(eq(testUserId), any(Instant.class))).thenReturn(Arrays.asList(testReminder));
-        when(chatLanguageModel.chat(anyString())).thenReturn("Test response");
+        when(chatLanguageModel.chat(anyList())).thenReturn(reply("Test response"));
 
         // Act
         String result = llmService.generateAndTrack(testUserId, testQuery, null, "test.log");
@@ -93,7 +119,7 @@ class LLMServiceTest {
         verify(userRepository).findByFirebaseUid(testUserId);
         verify(messageRepository).findTop10ByUserIdOrderByTimestampDesc(testUserId);
         verify(reminderRepository).findTop10ByUserIdAndTimestampGreaterThanOrderByTimestampAsc(eq(testUserId), any(Instant.class));
-        verify(chatLanguageModel).chat(anyString());
+        verify(chatLanguageModel).chat(anyList());
     }
 
     @Test
@@ -102,7 +128,7 @@ class LLMServiceTest {
         when(userRepository.findByFirebaseUid(testUserId)).thenReturn(null);
         when(messageRepository.findTop10ByUserIdOrderByTimestampDesc(testUserId)).thenReturn(new ArrayList<>());
         when(reminderRepository.findTop10ByUserIdAndTimestampGreaterThanOrderByTimestampAsc(eq(testUserId), any(Instant.class))).thenReturn(new ArrayList<>());
-        when(chatLanguageModel.chat(anyString())).thenReturn("Test response");
+        when(chatLanguageModel.chat(anyList())).thenReturn(reply("Test response"));
 
         // Act
         String result = llmService.generateAndTrack(testUserId, testQuery, null, "test.log");
@@ -111,7 +137,7 @@ class LLMServiceTest {
         assertNotNull(result);
         assertEquals("Test response", result);
         verify(userRepository).findByFirebaseUid(testUserId);
-        verify(chatLanguageModel).chat(anyString());
+        verify(chatLanguageModel).chat(anyList());
     }
 
     @Test
@@ -121,7 +147,7 @@ class LLMServiceTest {
         when(userRepository.findByFirebaseUid(testUserId)).thenReturn(testUser);
         when(messageRepository.findTop10ByUserIdOrderByTimestampDesc(testUserId)).thenReturn(new ArrayList<>());
         when(reminderRepository.findTop10ByUserIdAndTimestampGreaterThanOrderByTimestampAsc(eq(testUserId), any(Instant.class))).thenReturn(new ArrayList<>());
-        when(chatLanguageModel.chat(anyString())).thenReturn("Test response");
+        when(chatLanguageModel.chat(anyList())).thenReturn(reply("Test response"));
 
         // Act
         String result = llmService.generateAndTrack(testUserId, testQuery, location, "test.log");
@@ -129,7 +155,7 @@ class LLMServiceTest {
         // Assert
         assertNotNull(result);
         assertEquals("Test response", result);
-        verify(chatLanguageModel).chat(anyString());
+        verify(chatLanguageModel).chat(anyList());
     }
 
     @Test
@@ -138,7 +164,7 @@ class LLMServiceTest {
         when(userRepository.findByFirebaseUid(testUserId)).thenReturn(testUser);
         when(messageRepository.findTop10ByUserIdOrderByTimestampDesc(testUserId)).thenReturn(new ArrayList<>());
         when(reminderRepository.findTop10ByUserIdAndTimestampGreaterThanOrderByTimestampAsc(eq(testUserId), any(Instant.class))).thenReturn(new ArrayList<>());
-        when(chatLanguageModel.chat(anyString())).thenReturn("Test response");
+        when(chatLanguageModel.chat(anyList())).thenReturn(reply("Test response"));
 
         // Act
         String result = llmService.generateAndTrack(testUserId, testQuery, null, null);
@@ -154,7 +180,7 @@ class LLMServiceTest {
         when(userRepository.findByFirebaseUid(testUserId)).thenReturn(testUser);
         when(messageRepository.findTop10ByUserIdOrderByTimestampDesc(testUserId)).thenReturn(new ArrayList<>());
         when(reminderRepository.findTop10ByUserIdAndTimestampGreaterThanOrderByTimestampAsc(eq(testUserId), any(Instant.class))).thenReturn(new ArrayList<>());
-        when(chatLanguageModel.chat(anyString())).thenReturn("Test response");
+        when(chatLanguageModel.chat(anyList())).thenReturn(reply("Test response"));
 
         // Act
         String result = llmService.generateAndTrack(testUserId, testQuery, null);
@@ -186,7 +212,7 @@ class LLMServiceTest {
         when(userRepository.findByFirebaseUid(testUserId)).thenReturn(testUser);
         when(messageRepository.findTop10ByUserIdOrderByTimestampDesc(testUserId)).thenReturn(new ArrayList<>());
         when(reminderRepository.findTop10ByUserIdAndTimestampGreaterThanOrderByTimestampAsc(eq(testUserId), any(Instant.class))).thenReturn(new ArrayList<>());
-        when(chatLanguageModel.chat(anyString())).thenReturn("Test response");
+        when(chatLanguageModel.chat(anyList())).thenReturn(reply("Test response"));
 
         // Act
         String result = llmService.generateAndTrack(testUserId, testQuery, null, "test.log");
@@ -202,7 +228,7 @@ class LLMServiceTest {
         when(userRepository.findByFirebaseUid(testUserId)).thenReturn(testUser);
         when(messageRepository.findTop10ByUserIdOrderByTimestampDesc(testUserId)).thenReturn(Arrays.asList(testMessage));
         when(reminderRepository.findTop10ByUserIdAndTimestampGreaterThanOrderByTimestampAsc(eq(testUserId), any(Instant.class))).thenReturn(new ArrayList<>());
-        when(chatLanguageModel.chat(anyString())).thenReturn("Test response");
+        when(chatLanguageModel.chat(anyList())).thenReturn(reply("Test response"));
 
         // Act
         String result = llmService.generateAndTrack(testUserId, testQuery, null, "test.log");
@@ -218,7 +244,7 @@ class LLMServiceTest {
         when(userRepository.findByFirebaseUid(testUserId)).thenReturn(testUser);
         when(messageRepository.findTop10ByUserIdOrderByTimestampDesc(testUserId)).thenReturn(new ArrayList<>());
         when(reminderRepository.findTop10ByUserIdAndTimestampGreaterThanOrderByTimestampAsc(eq(testUserId), any(Instant.class))).thenReturn(Arrays.asList(testReminder));
-        when(chatLanguageModel.chat(anyString())).thenReturn("Test response");
+        when(chatLanguageModel.chat(anyList())).thenReturn(reply("Test response"));
 
         // Act
         String result = llmService.generateAndTrack(testUserId, testQuery, null, "test.log");
@@ -226,7 +252,7 @@ class LLMServiceTest {
         // Assert
         assertNotNull(result);
         assertEquals("Test response", result);
-        verify(chatLanguageModel).chat(anyString());
+        verify(chatLanguageModel).chat(anyList());
     }
 
     @Test
@@ -235,7 +261,7 @@ class LLMServiceTest {
         when(userRepository.findByFirebaseUid(testUserId)).thenReturn(testUser);
         when(messageRepository.findTop10ByUserIdOrderByTimestampDesc(testUserId)).thenReturn(new ArrayList<>());
         when(reminderRepository.findTop10ByUserIdAndTimestampGreaterThanOrderByTimestampAsc(eq(testUserId), any(Instant.class))).thenReturn(new ArrayList<>());
-        when(chatLanguageModel.chat(anyString())).thenReturn("Test response");
+        when(chatLanguageModel.chat(anyList())).thenReturn(reply("Test response"));
 
         // Act
         String result = llmService.generateAndTrack(testUserId, testQuery, null, "test.log");
@@ -243,6 +269,110 @@ class LLMServiceTest {
         // Assert
         assertNotNull(result);
         assertEquals("Test response", result);
-        verify(chatLanguageModel).chat(anyString());
+        verify(chatLanguageModel).chat(anyList());
+    }
+
+    @Test
+    void streamConversationReply_ShouldUseSessionStateAndForwardPartials() {
+        // Arrange
+        ConversationSession session = new ConversationSession("conn-1", testUser);
+        when(messageRepository.findTop10ByUserIdOrderByTimestampDesc(testUserId)).thenReturn(new ArrayList<>(List.of(testMessage)));
+        when(reminderRepository.findTop10ByUserIdAndTimestampGreaterThanOrderByTimestampAsc(eq(testUserId), any(Instant.class))).thenReturn(new ArrayList<>());
+        when(llmRouter.stream(eq(LlmTask.COMPANION_REPLY), eq(testUserId), same(streamingChatLanguageModel), anyList(), any()))
+                .thenAnswer(invocation -> {
+                    Consumer<String> onPartial = invocation.getArgument(4);
+                    onPartial.accept("Hello ");
+                    onPartial.accept("again");
+                    return "Hello again";
+                });
+        List<String> partials = new ArrayList<>();
+
+        // Act
+        String first = llmService.streamConversationReply(session, testQuery, null, partials::add);
+        String second = llmService.streamConversationReply(session, testQuery, null, partials::add);
+
+        // Assert
+        assertEquals("Hello again", first);
+        assertEquals("Hello again", second);
+        assertEquals(List.of("Hello ", "again", "Hello ", "again"), partials);
+        verify(messageRepository, times(1)).findTop10ByUserIdOrderByTimestampDesc(testUserId);
+        verify(userRepository, never()).findByFirebaseUid(anyString());
+    }
+
+    @Test
+    void generateResponse_WithUseCase_ShouldAnswerRepeatedPromptFromCache() {
+        // Arrange
+        when(chatLanguageModel.chat("Welcome prompt")).thenReturn("Welcome!");
+
+        // Act
+        String first = llmService.generateResponse("Welcome prompt", LlmResponseCache.UseCase.WELCOME);
+        String second = llmService.generateResponse("Welcome prompt", LlmResponseCache.UseCase.WELCOME);
+
+        // Assert
+        assertEquals("Welcome!", first);
+        assertEquals("Welcome!", second);
+        verify(chatLanguageModel, times(1)).chat("Welcome prompt");
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void generateAndTrack_WithHistoryOverBudget_ShouldKeepNewestMessagesAndCapCoreInfo() {
+        // Arrange
+        ReflectionTestUtils.setField(llmService, "contextMaxTokens", 120);
+        ReflectionTestUtils.setField(llmService, "coreInfoMaxTokens", 40);
+        testUser.setCoreInformation("Mary is eighty two and lives alone in Dunedin. ".repeat(30));
+        List<Message> history = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            Message m = new Message();
+            m.setUserId(testUserId);
+            m.setText("Message number " + i + " about the garden and the roses that need watering this week");
+            m.setFromUser(i % 2 == 0);
+            m.setTimestamp(Instant.now().minusSeconds(600 - i * 60L));
+            history.add(m);
+        }
+        Collections.reverse(history);
+        when(userRepository.findByFirebaseUid(testUserId)).thenReturn(testUser);
+        when(messageRepository.findTop10ByUserIdOrderByTimestampDesc(testUserId)).thenReturn(history);
+        when(reminderRepository.findTop10ByUserIdAndTimestampGreaterThanOrderByTimestampAsc(eq(testUserId), any(Instant.class))).thenReturn(new ArrayList<>());
+        when(chatLanguageModel.chat(anyList())).thenReturn(reply("Test response"));
+
+        // Act
+        llmService.generateAndTrack(testUserId, testQuery, null, "test.log");
+
+        // Assert
+        ArgumentCaptor<List<ChatMessage>> captor = ArgumentCaptor.forClass(List.class);
+        verify(chatLanguageModel).chat(captor.capture());
+        String user = ((UserMessage) captor.getValue().get(1)).singleText();
+        assertTrue(user.contains("Mary is eighty two"));
+        assertTrue(user.contains("..."));
+        assertTrue(user.contains("Message number 9"));
+        assertFalse(user.contains("Message number 0"));
+        assertTrue(user.indexOf("Message number 8") < user.indexOf("Message number 9"));
+        assertTrue(user.contains("The user said: \"" + testQuery + "\""));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void generateAndTrack_WithConversationSummary_ShouldCarrySummaryNextToRecentHistory() {
+        // Arrange
+        when(userRepository.findByFirebaseUid(testUserId)).thenReturn(testUser);
+        when(messageRepository.findTop10ByUserIdOrderByTimestampDesc(testUserId)).thenReturn(new ArrayList<>(List.of(testMessage)));
+        when(conversationSummaryService.getSummary(testUserId)).thenReturn("The user talked about their granddaughter's wedding in March.");
+        when(reminderRepository.findTop10ByUserIdAndTimestampGreaterThanOrderByTimestampAsc(eq(testUserId), any(Instant.class))).thenReturn(new ArrayList<>());
+        when(chatLanguageModel.chat(anyList())).thenReturn(reply("Test response"));
+
+        // Act
+        llmService.generateAndTrack(testUserId, testQuery, null, "test.log");
+
+        // Assert
+        ArgumentCaptor<List<ChatMessage>> captor = ArgumentCaptor.forClass(List.class);
+        verify(chatLanguageModel).chat(captor.capture());
+        String user = ((UserMessage) captor.getValue().get(1)).singleText();
+        assertTrue(user.contains("granddaughter's wedding in March"));
+        assertTrue(user.indexOf("EARLIER CONVERSATION") < user.indexOf("User: Hello"));
+    }
+
+    private static ChatResponse reply(String text) {
+        return ChatResponse.builder().aiMessage(AiMessage.from(text)).build();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,174 @@
+package com.example.ai_companion.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LlmAdmissionControllerTest {
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    private static LlmAdmissionController.Options options(int maxConcurrent, int tokensPerMinute) {
+        return new LlmAdmissionController.Options(maxConcurrent, 1000, tokensPerMinute, 0.75, 0.5, 0.1, 0.3);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static long stat(LlmAdmissionController controller, LlmLane lane, String name) {
+        return ((Number) ((Map<String, Object>) controller.getStats().get(lane.name())).get(name)).longValue();
+    }
+
+    /** Waits until the lane has the given number of queued calls. */
+    private static void awaitWaiting(LlmAdmissionController controller, LlmLane lane, int waiting) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 2000;
+        while (stat(controller, lane, "waiting") != waiting) {
+            assertTrue(System.currentTimeMillis() < deadline, "Timed out waiting for " + waiting + " queued calls in " + lane);
+            Thread.sleep(5);
+        }
+    }
+
+    /** Queues a call that records its name once admitted and then ends. */
+    private Future<?> queue(LlmAdmissionController controller, LlmLane lane, String userId, long tokens, List<String> order, String name) {
+        return executor.submit(() -> {
+            LlmAdmissionController.Permit permit = controller.acquire(lane, userId, tokens, 5000);
+            order.add(name);
+            permit.release(null);
+            return null;
+        });
+    }
+
+    @Test
+    void acquire_WhenInteractiveAndBatchWait_ShouldAdmitInteractiveFirst() throws Exception {
+        // Arrange
+        LlmAdmissionController controller = new LlmAdmissionController(options(1, 100_000));
+        List<String> order = new CopyOnWriteArrayList<>();
+        LlmAdmissionController.Permit held = controller.acquire(LlmLane.INTERACTIVE, "u1", 100, 1000);
+        Future<?> batch = queue(controller, LlmLane.BATCH, "u2", 100, order, "batch");
+        awaitWaiting(controller, LlmLane.BATCH, 1);
+        Future<?> interactive = queue(controller, LlmLane.INTERACTIVE, "u3", 100, order, "interactive");
+        awaitWaiting(controller, LlmLane.INTERACTIVE, 1);
+
+        // Act
+        held.release(null);
+        interactive.get(2, TimeUnit.SECONDS);
+        batch.get(2, TimeUnit.SECONDS);
+
+        // Assert
+        assertEquals(List.of("interactive", "batch"), order);
+    }
+
+    @Test
+    void acquire_WithOneUserBursting_ShouldServeOtherUserBetweenTheirCalls() throws Exception {
+        // Arrange
+        LlmAdmissionController controller = new LlmAdmissionController(options(1, 100_000));
+        List<String> order = new CopyOnWriteArrayList<>();
+        LlmAdmissionController.Permit held = controller.acquire(LlmLane.BATCH, "holder", 100, 1000);
+        for (int i = 1; i <= 3; i++) {
+            queue(controller, LlmLane.BATCH, "alice", 100, order, "alice" + i);
+            awaitWaiting(controller, LlmLane.BATCH, i);
+        }
+        Future<?> bob = queue(controller, LlmLane.BATCH, "bob", 100, order, "bob");
+        awaitWaiting(controller, LlmLane.BATCH, 4);
+
+        // Act
+        held.release(null);
+        bob.get(2, TimeUnit.SECONDS);
+        awaitWaiting(controller, LlmLane.BATCH, 0);
+
+        // Assert
+        assertEquals("bob", order.get(1));
+    }
+
+    @Test
+    void tryAcquire_WhenBatchSlotsAreUsed_ShouldRejectBatchButAdmitInteractive() {
+        // Arrange
+        LlmAdmissionController controller = new LlmAdmissionController(options(4, 100_000));
+        controller.tryAcquire(LlmLane.BATCH, "u1", 100);
+        controller.tryAcquire(LlmLane.BATCH, "u2", 100);
+
+        // Act
+        LlmAdmissionController.Permit batch = controller.tryAcquire(LlmLane.BATCH, "u3", 100);
+        LlmAdmissionController.Permit interactive = controller.tryAcquire(LlmLane.INTERACTIVE, "u4", 100);
+
+        // Assert
+        assertNull(batch);
+        assertNotNull(interactive);
+        assertEquals(1L, stat(controller, LlmLane.BATCH, "rejected"));
+    }
+
+    @Test
+    void tryAcquire_WhenTokenBucketNearsReserve_ShouldKeepHeadroomForInteractive() {
+        // Arrange
+        AtomicLong now = new AtomicLong();
+        LlmAdmissionController controller = new LlmAdmissionController(options(16, 1000), now::get);
+
+        // Act
+        LlmAdmissionController.Permit first = controller.tryAcquire(LlmLane.BATCH, "u1", 600);
+        LlmAdmissionController.Permit second = controller.tryAcquire(LlmLane.BATCH, "u1", 200);
+        LlmAdmissionController.Permit interactive = controller.tryAcquire(LlmLane.INTERACTIVE, "u2", 300);
+
+        // Assert
+        assertNotNull(first);
+        assertNull(second);
+        assertNotNull(interactive);
+    }
+
+    @Test
+    void acquire_WhenNotAdmittedInTime_ShouldThrowAndLeaveQueue() throws Exception {
+        // Arrange
+        LlmAdmissionController controller = new LlmAdmissionController(options(1, 100_000));
+        controller.acquire(LlmLane.INTERACTIVE, "u1", 100, 1000);
+
+        // Act & Assert
+        assertThrows(TimeoutException.class, () -> controller.acquire(LlmLane.NEAR_REAL_TIME, "u2", 100, 50));
+        assertEquals(1L, stat(controller, LlmLane.NEAR_REAL_TIME, "timedOut"));
+        assertEquals(0L, stat(controller, LlmLane.NEAR_REAL_TIME, "waiting"));
+    }
+
+    @Test
+    void release_WithActualTokens_ShouldRefundEstimateOnce() throws Exception {
+        // Arrange
+        AtomicLong now = new AtomicLong();
+        LlmAdmissionController controller = new LlmAdmissionController(options(16, 1000), now::get);
+        LlmAdmissionController.Permit permit = controller.acquire(LlmLane.INTERACTIVE, "u1", 800, 1000);
+        long afterAdmit = (Long) controller.getStats().get("tokenBucket");
+
+        // Act
+        permit.release(100L);
+        permit.release(100L);
+
+        // Assert
+        assertEquals(200L, afterAdmit);
+        assertEquals(900L, controller.getStats().get("tokenBucket"));
+        assertEquals(0L, stat(controller, LlmLane.INTERACTIVE, "inFlight"));
+    }
+
+    @Test
+    void getStats_AfterTime_ShouldRefillBuckets() {
+        // Arrange
+        AtomicLong now = new AtomicLong();
+        LlmAdmissionController controller = new LlmAdmissionController(options(16, 1000), now::get);
+        controller.tryAcquire(LlmLane.INTERACTIVE, "u1", 1000);
+
+        // Act
+        now.addAndGet(TimeUnit.SECONDS.toNanos(30));
+
+        // Assert
+        assertEquals(500L, controller.getStats().get("tokenBucket"));
+    }
+}
@@ -0,0 +1,307 @@
+package com.example.ai_companion.service;
+
+import com.example.ai_companion.exception.LlmUnavailableException;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.model.chat.ChatLanguageModel;
+import dev.langchain4j.model.chat.StreamingChatLanguageModel;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.model.chat.response.StreamingChatResponseHandler;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class LlmGatewayTest {
+
+    private static final List<ChatMessage> MESSAGES = List.of(UserMessage.from("Hello"));
+
+    private static final LlmGateway.Options OPTIONS = new LlmGateway.Options(
+            Duration.ofMillis(100), Duration.ofMillis(50), 1, Duration.ofMillis(10), 3, Duration.ofSeconds(30));
+
+    @Mock
+    private ChatLanguageModel model;
+
+    @Mock
+    private StreamingChatLanguageModel streamingModel;
+
+    /** A clock the test moves by hand, for the circuit breaker's cool-down. */
+    private static class ManualClock extends Clock {
+        final AtomicLong millis = new AtomicLong(Instant.parse("2025-06-11T10:00:00Z").toEpochMilli());
+
+        @Override public ZoneId getZone() { return ZoneOffset.UTC; }
+        @Override public Clock withZone(ZoneId zone) { return this; }
+        @Override public Instant instant() { return Instant.ofEpochMilli(millis.get()); }
+    }
+
+    private static ChatResponse reply(String text) {
+        return ChatResponse.builder().aiMessage(AiMessage.from(text)).build();
+    }
+
+    @Test
+    void chat_WithInteractiveTaskAndSlowFirstAttempt_ShouldReturnHedgedAnswer() {
+        // Arrange
+        when(model.chat(anyList())).thenAnswer(invocation -> {
+            Thread.sleep(2000);
+            return reply("slow");
+        }).thenReturn(reply("fast"));
+        LlmGateway gateway = new LlmGateway(LlmTask.GENERAL, model, Duration.ofSeconds(5), OPTIONS);
+
+        // Act
+        long start = System.currentTimeMillis();
+        String result = gateway.chat(MESSAGES).aiMessage().text();
+
+        // Assert
+        assertEquals("fast", result);
+        assertTrue(System.currentTimeMillis() - start < 1500);
+        Map<String, Object> stats = gateway.getStats();
+        assertEquals(1L, stats.get("hedges"));
+        assertEquals(1L, stats.get("hedgeWins"));
+        assertEquals(1L, stats.get("successes"));
+    }
+
+    @Test
+    void chat_WithInteractiveTaskAndFailedFirstAttempt_ShouldRetryAtOnce() {
+        // Arrange
+        when(model.chat(anyList())).thenThrow(new RuntimeException("502")).thenReturn(reply("ok"));
+        LlmGateway gateway = new LlmGateway(LlmTask.GAME_MASTER, model, Duration.ofSeconds(5), OPTIONS);
+
+        // Act
+        String result = gateway.chat(MESSAGES).aiMessage().text();
+
+        // Assert
+        assertEquals("ok", result);
+        assertEquals(1L, gateway.getStats().get("retries"));
+        verify(model, times(2)).chat(anyList());
+    }
+
+    @Test
+    void chat_WithBackgroundTask_ShouldRetryWithoutHedging() {
+        // Arrange
+        when(model.chat(anyList())).thenThrow(new RuntimeException("429")).thenReturn(reply("none"));
+        LlmGateway gateway = new LlmGateway(LlmTask.MEMORY_EXTRACTION, model, Duration.ofSeconds(5), OPTIONS);
+
+        // Act
+        String result = gateway.chat(MESSAGES).aiMessage().text();
+
+        // Assert
+        assertEquals("none", result);
+        Map<String, Object> stats = gateway.getStats();
+        assertEquals(1L, stats.get("retries"));
+        assertEquals(0L, stats.get("hedges"));
+    }
+
+    @Test
+    void chat_WhenDeadlinePasses_ShouldThrowWithoutWaitingForModel() {
+        // Arrange
+        when(model.chat(anyList())).thenAnswer(invocation -> {
+            Thread.sleep(5000);
+            return reply("too late");
+        });
+        LlmGateway gateway = new LlmGateway(LlmTask.CORE_FACTS, model, Duration.ofMillis(200), OPTIONS);
+
+        // Act
+        long start = System.currentTimeMillis();
+        assertThrows(LlmUnavailableException.class, () -> gateway.chat(MESSAGES));
+
+        // Assert
+        assertTrue(System.currentTimeMillis() - start < 2000);
+        assertEquals(1L, gateway.getStats().get("timeouts"));
+    }
+
+    @Test
+    void chat_WithCompanionReplyFailing_ShouldReturnFallbackReply() {
+        // Arrange
+        when(model.chat(anyList())).thenThrow(new RuntimeException("503"));
+        LlmGateway gateway = new LlmGateway(LlmTask.COMPANION_REPLY, model, Duration.ofSeconds(5), OPTIONS);
+
+        // Act
+        String result = gateway.chat(MESSAGES).aiMessage().text();
+
+        // Assert
+        assertEquals(LlmTask.COMPANION_REPLY.getFallbackReply(), result);
+        assertEquals(1L, gateway.getStats().get("fallbacks"));
+    }
+
+    @Test
+    void chat_AfterConsecutiveFailures_ShouldOpenCircuitThenCloseAfterTrial() {
+        // Arrange
+        ManualClock clock = new ManualClock();
+        LlmGateway.Options noRetries = new LlmGateway.Options(
+                Duration.ofMillis(100), Duration.ofMillis(50), 0, Duration.ofMillis(10), 3, Duration.ofSeconds(30));
+        LlmGateway gateway = new LlmGateway(LlmTask.REMINDER_EXTRACTION, model, Duration.ofSeconds(5), noRetries, clock);
+        when(model.chat(anyList())).thenThrow(new RuntimeException("500"));
+        for (int i = 0; i < 3; i++) {
+            assertThrows(LlmUnavailableException.class, () -> gateway.chat(MESSAGES));
+        }
+
+        // Act
+        assertThrows(LlmUnavailableException.class, () -> gateway.chat(MESSAGES));
+        LlmGateway.CircuitState whileOpen = gateway.getCircuitState();
+        clock.millis.addAndGet(Duration.ofSeconds(31).toMillis());
+        reset(model);
+        when(model.chat(anyList())).thenReturn(reply("none"));
+        String trial = gateway.chat(MESSAGES).aiMessage().text();
+
+        // Assert
+        assertEquals(LlmGateway.CircuitState.OPEN, whileOpen);
+        assertEquals(1L, gateway.getStats().get("shortCircuits"));
+        assertEquals("none", trial);
+        assertEquals(LlmGateway.CircuitState.CLOSED, gateway.getCircuitState());
+        verify(model, times(1)).chat(anyList());
+    }
+
+    @Test
+    void hedgeAfterMillis_ShouldFollowRecentLatencyOnceWarm() {
+        // Arrange
+        when(model.chat(anyList())).thenReturn(reply("ok"));
+        LlmGateway gateway = new LlmGateway(LlmTask.GENERAL, model, Duration.ofSeconds(5), OPTIONS);
+
+        // Act
+        long cold = gateway.hedgeAfterMillis();
+        for (int i = 0; i < 25; i++) {
+            gateway.chat(MESSAGES);
+        }
+
+        // Assert
+        assertEquals(100, cold);
+        assertEquals(50, gateway.hedgeAfterMillis());
+    }
+
+    @Test
+    void chat_WhenHedgeCannotBeAdmittedAtOnce_ShouldWaitForFirstAttempt() {
+        // Arrange
+        when(model.chat(anyList())).thenAnswer(invocation -> {
+            Thread.sleep(300);
+            return reply("slow");
+        });
+        LlmAdmissionController admission = new LlmAdmissionController(
+                new LlmAdmissionController.Options(1, 1000, 100_000, 0.75, 0.5, 0.1, 0.3));
+        LlmGateway gateway = new LlmGateway(LlmTask.GENERAL, model, Duration.ofSeconds(5), OPTIONS, admission, 100);
+
+        // Act
+        String result = gateway.forUser("user123").chat(MESSAGES).aiMessage().text();
+
+        // Assert
+        assertEquals("slow", result);
+        assertEquals(0L, gateway.getStats().get("hedges"));
+        verify(model, times(1)).chat(anyList());
+    }
+
+    @Test
+    void chat_WhenNotAdmittedBeforeDeadline_ShouldFailWithoutOpeningCircuit() throws Exception {
+        // Arrange
+        LlmAdmissionController admission = new LlmAdmissionController(
+                new LlmAdmissionController.Options(1, 1000, 100_000, 0.75, 0.5, 0.1, 0.3));
+        admission.acquire(LlmLane.INTERACTIVE, "someone", 100, 1000);
+        LlmGateway.Options oneFailure = new LlmGateway.Options(
+                Duration.ofMillis(100), Duration.ofMillis(50), 0, Duration.ofMillis(10), 1, Duration.ofSeconds(30));
+        LlmGateway gateway = new LlmGateway(LlmTask.CORE_FACTS, model, Duration.ofMillis(100), oneFailure, admission, 100);
+
+        // Act & Assert
+        assertThrows(LlmUnavailableException.class, () -> gateway.forUser("user123").chat(MESSAGES));
+        assertEquals(1L, gateway.getStats().get("notAdmitted"));
+        assertEquals(LlmGateway.CircuitState.CLOSED, gateway.getCircuitState());
+        verifyNoInteractions(model);
+    }
+
+    @Test
+    void stream_ShouldForwardPartialsAndCountTheCall() {
+        // Arrange
+        doAnswer(invocation -> {
+            StreamingChatResponseHandler handler = invocation.getArgument(1);
+            handler.onPartialResponse("Hello ");
+            handler.onPartialResponse("again");
+            handler.onCompleteResponse(reply("Hello again"));
+            return null;
+        }).when(streamingModel).chat(anyList(), any(StreamingChatResponseHandler.class));
+        LlmGateway gateway = new LlmGateway(LlmTask.COMPANION_REPLY, model, Duration.ofSeconds(5), OPTIONS);
+        List<String> partials = new CopyOnWriteArrayList<>();
+
+        // Act
+        String result = gateway.stream("user123", streamingModel, MESSAGES, partials::add);
+
+        // Assert
+        assertEquals("Hello again", result);
+        assertEquals(List.of("Hello ", "again"), partials);
+        assertEquals(1L, gateway.getStats().get("successes"));
+        verify(streamingModel, times(1)).chat(anyList(), any(StreamingChatResponseHandler.class));
+    }
+
+    @Test
+    void stream_WhenStreamFails_ShouldReturnFallbackWithoutRetrying() {
+        // Arrange
+        doAnswer(invocation -> {
+            StreamingChatResponseHandler handler = invocation.getArgument(1);
+            handler.onError(new RuntimeException("stream closed"));
+            return null;
+        }).when(streamingModel).chat(anyList(), any(StreamingChatResponseHandler.class));
+        LlmGateway gateway = new LlmGateway(LlmTask.COMPANION_REPLY, model, Duration.ofSeconds(5), OPTIONS);
+
+        // Act
+        String result = gateway.stream("user123", streamingModel, MESSAGES, chunk -> {});
+
+        // Assert
+        assertEquals(LlmTask.COMPANION_REPLY.getFallbackReply(), result);
+        assertEquals(1L, gateway.getStats().get("fallbacks"));
+        verify(streamingModel, times(1)).chat(anyList(), any(StreamingChatResponseHandler.class));
+    }
+
+    @Test
+    void stream_WhenStreamStalls_ShouldReturnFallbackAtDeadlineAndDropLateChunks() throws Exception {
+        // Arrange
+        AtomicReference<StreamingChatResponseHandler> stalled = new AtomicReference<>();
+        doAnswer(invocation -> {
+            stalled.set(invocation.getArgument(1));
+            return null;
+        }).when(streamingModel).chat(anyList(), any(StreamingChatResponseHandler.class));
+        LlmGateway gateway = new LlmGateway(LlmTask.COMPANION_REPLY, model, Duration.ofMillis(200), OPTIONS);
+        List<String> partials = new CopyOnWriteArrayList<>();
+
+        // Act
+        long start = System.currentTimeMillis();
+        String result = gateway.stream("user123", streamingModel, MESSAGES, partials::add);
+        stalled.get().onPartialResponse("too late");
+
+        // Assert
+        assertEquals(LlmTask.COMPANION_REPLY.getFallbackReply(), result);
+        assertTrue(System.currentTimeMillis() - start < 2000);
+        assertEquals(1L, gateway.getStats().get("timeouts"));
+        assertTrue(partials.isEmpty());
+    }
+
+    @Test
+    void stream_WhenNotAdmittedBeforeDeadline_ShouldNotOpenStream() throws Exception {
+        // Arrange
+        LlmAdmissionController admission = new LlmAdmissionController(
+                new LlmAdmissionController.Options(1, 1000, 100_000, 0.75, 0.5, 0.1, 0.3));
+        admission.acquire(LlmLane.INTERACTIVE, "someone", 100, 1000);
+        LlmGateway gateway = new LlmGateway(LlmTask.COMPANION_REPLY, model, Duration.ofMillis(100), OPTIONS, admission, 100);
+
+        // Act
+        String result = gateway.stream("user123", streamingModel, MESSAGES, chunk -> {});
+
+        // Assert
+        assertEquals(LlmTask.COMPANION_REPLY.getFallbackReply(), result);
+        assertEquals(1L, gateway.getStats().get("notAdmitted"));
+        verifyNoInteractions(streamingModel);
+    }
+}
@@ -0,0 +1,175 @@
+package com.example.ai_companion.service;
+
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.model.chat.ChatLanguageModel;
+import dev.langchain4j.model.chat.request.ChatRequestParameters;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.model.output.Response;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class LlmResponseCacheTest {
+
+    private static final Instant NOW = Instant.parse("2025-06-11T10:00:00Z");
+
+    @Mock
+    private ChatLanguageModel chatLanguageModel;
+
+    @Mock
+    private LlmRouter llmRouter;
+
+    @Mock
+    private EmbeddingModel embeddingModel;
+
+    @InjectMocks
+    private LlmResponseCache llmResponseCache;
+
+    private Supplier<String> counting(AtomicInteger calls) {
+        return () -> "answer " + calls.incrementAndGet();
+    }
+
+    @Test
+    void getOrCompute_WithRepeatedPrompt_ShouldCallModelOnce() {
+        // Arrange
+        AtomicInteger calls = new AtomicInteger();
+
+        // Act
+        String first = llmResponseCache.getOrCompute(LlmResponseCache.UseCase.WELCOME, "Welcome  Mary\n to the app", counting(calls), NOW);
+        String second = llmResponseCache.getOrCompute(LlmResponseCache.UseCase.WELCOME, "Welcome Mary to the app ", counting(calls), NOW);
+
+        // Assert
+        assertEquals("answer 1", first);
+        assertEquals("answer 1", second);
+        assertEquals(1, calls.get());
+        Map<String, Object> stats = llmResponseCache.getStats().get("WELCOME");
+        assertEquals(1L, stats.get("hits"));
+        assertEquals(1L, stats.get("misses"));
+        assertEquals(0.5, stats.get("hitRate"));
+    }
+
+    @Test
+    void getOrCompute_AfterTtl_ShouldCallModelAgain() {
+        // Arrange
+        AtomicInteger calls = new AtomicInteger();
+        llmResponseCache.getOrCompute(LlmResponseCache.UseCase.WELCOME, "prompt", counting(calls), NOW);
+
+        // Act
+        String result = llmResponseCache.getOrCompute(LlmResponseCache.UseCase.WELCOME, "prompt", counting(calls),
+                NOW.plus(LlmResponseCache.UseCase.WELCOME.getTtl()));
+
+        // Assert
+        assertEquals("answer 2", result);
+    }
+
+    @Test
+    void getOrCompute_WithDifferentModelSettings_ShouldNotShareEntries() {
+        // Arrange
+        AtomicInteger calls = new AtomicInteger();
+        when(llmRouter.model(LlmTask.GENERAL)).thenReturn(chatLanguageModel);
+        when(chatLanguageModel.defaultRequestParameters()).thenReturn(
+                ChatRequestParameters.builder().modelName("gpt-4o-mini").temperature(0.7).build(),
+                ChatRequestParameters.builder().modelName("gpt-4o-mini").temperature(0.2).build());
+
+        // Act
+        llmResponseCache.getOrCompute(LlmResponseCache.UseCase.WELCOME, "prompt", counting(calls), NOW);
+        llmResponseCache.getOrCompute(LlmResponseCache.UseCase.WELCOME, "prompt", counting(calls), NOW);
+
+        // Assert
+        assertEquals(2, calls.get());
+    }
+
+    @Test
+    void getOrCompute_WithVariants_ShouldCollectThenRotate() {
+        // Arrange
+        AtomicInteger calls = new AtomicInteger();
+        int variants = LlmResponseCache.UseCase.GAME_PREVIEW.getVariants();
+
+        // Act
+        for (int i = 0; i < variants; i++) {
+            llmResponseCache.getOrCompute(LlmResponseCache.UseCase.GAME_PREVIEW, "preview", counting(calls), NOW);
+        }
+        String reused = llmResponseCache.getOrCompute(LlmResponseCache.UseCase.GAME_PREVIEW, "preview", counting(calls), NOW);
+        String next = llmResponseCache.getOrCompute(LlmResponseCache.UseCase.GAME_PREVIEW, "preview", counting(calls), NOW);
+
+        // Assert
+        assertEquals(variants, calls.get());
+        assertEquals("answer 1", reused);
+        assertEquals("answer 2", next);
+    }
+
+    @Test
+    void getOrCompute_WithBlankAnswer_ShouldNotCacheIt() {
+        // Arrange
+        AtomicInteger calls = new AtomicInteger();
+
+        // Act
+        llmResponseCache.getOrCompute(LlmResponseCache.UseCase.WELCOME, "prompt", () -> { calls.incrementAndGet(); return ""; }, NOW);
+        llmResponseCache.getOrCompute(LlmResponseCache.UseCase.WELCOME, "prompt", () -> { calls.incrementAndGet(); return ""; }, NOW);
+
+        // Assert
+        assertEquals(2, calls.get());
+        assertEquals(0, llmResponseCache.size());
+    }
+
+    @Test
+    void getOrCompute_WithSimilarPrompt_ShouldReuseAnswerForSemanticUseCase() {
+        // Arrange
+        AtomicInteger calls = new AtomicInteger();
+        when(embeddingModel.embed(anyString()))
+                .thenReturn(Response.from(Embedding.from(List.of(1f, 0f, 0f))))
+                .thenReturn(Response.from(Embedding.from(List.of(0.99f, 0.05f, 0f))));
+        int variants = LlmResponseCache.UseCase.GAME_OPENING.getVariants();
+        for (int i = 0; i < variants; i++) {
+            llmResponseCache.getOrCompute(LlmResponseCache.UseCase.GAME_OPENING, "Start Pattern Detective", counting(calls), NOW);
+        }
+
+        // Act
+        String result = llmResponseCache.getOrCompute(LlmResponseCache.UseCase.GAME_OPENING, "Start the Pattern Detective", counting(calls), NOW);
+
+        // Assert
+        assertEquals("answer 1", result);
+        assertEquals(variants, calls.get());
+        assertEquals(1L, llmResponseCache.getStats().get("GAME_OPENING").get("semanticHits"));
+    }
+
+    @Test
+    void getOrCompute_WithPersonalUseCase_ShouldNeverMatchBySimilarity() {
+        // Arrange
+        AtomicInteger calls = new AtomicInteger();
+        llmResponseCache.getOrCompute(LlmResponseCache.UseCase.WELCOME, "Welcome Mary", counting(calls), NOW);
+
+        // Act
+        String result = llmResponseCache.getOrCompute(LlmResponseCache.UseCase.WELCOME, "Welcome Marie", counting(calls), NOW);
+
+        // Assert
+        assertEquals("answer 2", result);
+        verifyNoInteractions(embeddingModel);
+    }
+
+    @Test
+    void getOrCompute_WhenEmbeddingFails_ShouldFallBackToModel() {
+        // Arrange
+        AtomicInteger calls = new AtomicInteger();
+        when(embeddingModel.embed(anyString())).thenThrow(new RuntimeException("rate limited"));
+
+        // Act
+        String result = llmResponseCache.getOrCompute(LlmResponseCache.UseCase.GAME_OPENING, "Start", counting(calls), NOW);
+
+        // Assert
+        assertEquals("answer 1", result);
+    }
+}
@@ -0,0 +1,120 @@
+package com.example.ai_companion.service;
+
+import com.example.ai_companion.exception.LlmUnavailableException;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.model.chat.ChatLanguageModel;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.model.output.TokenUsage;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class LlmRouterTest {
+
+    @Mock
+    private ChatLanguageModel interactiveModel;
+
+    @Mock
+    private ChatLanguageModel backgroundModel;
+
+    private LlmRouter llmRouter;
+
+    @BeforeEach
+    void setUp() {
+        Map<LlmTask, LlmRouter.Settings> settings = new EnumMap<>(LlmTask.class);
+        Map<LlmTask, ChatLanguageModel> models = new EnumMap<>(LlmTask.class);
+        for (LlmTask task : LlmTask.values()) {
+            settings.put(task, LlmRouter.Settings.defaultsFor(task));
+            models.put(task, task.getDefaultTemperature() > 0 ? interactiveModel : backgroundModel);
+        }
+        settings.put(LlmTask.REMINDER_EXTRACTION, new LlmRouter.Settings("gpt-4.1-nano", 0.0, 300, Duration.ofSeconds(20)));
+        llmRouter = new LlmRouter(settings, models);
+    }
+
+    private static ChatResponse reply(String text, int input, int output) {
+        return ChatResponse.builder().aiMessage(AiMessage.from(text)).tokenUsage(new TokenUsage(input, output)).build();
+    }
+
+    @Test
+    void model_ShouldRouteEachTaskToItsModel() {
+        // Arrange
+        when(interactiveModel.chat(anyList())).thenReturn(reply("Hello Mary", 100, 20));
+        when(backgroundModel.chat(anyList())).thenReturn(reply("none", 80, 2));
+        List<ChatMessage> messages = List.of(UserMessage.from("Hi"));
+
+        // Act
+        String reply = llmRouter.model(LlmTask.COMPANION_REPLY).chat(messages).aiMessage().text();
+        String extracted = llmRouter.model(LlmTask.REMINDER_EXTRACTION).chat(messages).aiMessage().text();
+
+        // Assert
+        assertEquals("Hello Mary", reply);
+        assertEquals("none", extracted);
+        verify(interactiveModel).chat(messages);
+        verify(backgroundModel).chat(messages);
+        assertEquals("gpt-4.1-nano", llmRouter.settings(LlmTask.REMINDER_EXTRACTION).model());
+    }
+
+    @Test
+    void getReport_ShouldSumCallsTokensAndCostPerTask() {
+        // Arrange
+        when(interactiveModel.chat(anyList())).thenReturn(reply("Hello", 1_000_000, 1_000_000));
+
+        // Act
+        llmRouter.model(LlmTask.COMPANION_REPLY).chat(List.of(UserMessage.from("Hi")));
+        llmRouter.model(LlmTask.COMPANION_REPLY).chat("How are you?");
+        Map<String, Map<String, Object>> report = llmRouter.getReport();
+
+        // Assert
+        Map<String, Object> row = report.get("COMPANION_REPLY");
+        assertEquals("gpt-4o-mini", row.get("model"));
+        assertEquals(2L, row.get("calls"));
+        assertEquals(2_000_000L, row.get("inputTokens"));
+        assertEquals(2_000_000L, row.get("outputTokens"));
+        assertEquals(1.5, (Double) row.get("costUsd"), 1e-9);
+        assertEquals(0L, report.get("DAILY_SUMMARY").get("calls"));
+    }
+
+    @Test
+    void model_WhenCallFails_ShouldCountFailureAndRethrow() {
+        // Arrange
+        when(backgroundModel.chat(anyList())).thenThrow(new RuntimeException("timeout"));
+
+        // Act & Assert
+        assertThrows(LlmUnavailableException.class, () -> llmRouter.model(LlmTask.CORE_FACTS).chat(List.of(UserMessage.from("Hi"))));
+        Map<String, Object> row = llmRouter.getReport().get("CORE_FACTS");
+        assertEquals(1L, row.get("calls"));
+        assertEquals(0L, row.get("successes"));
+        assertEquals(1L, row.get("failures"));
+    }
+
+    @Test
+    void cost_WithUnknownModel_ShouldBeNull() {
+        // Act & Assert
+        assertNull(LlmRouter.cost("local-llama", 1000, 1000));
+        assertEquals(0.00075, LlmRouter.cost("gpt-4o-mini", 1000, 1000), 1e-12);
+    }
+
+    @Test
+    void constructor_WithMissingTask_ShouldThrow() {
+        // Arrange
+        Map<LlmTask, LlmRouter.Settings> settings = Map.of(LlmTask.GENERAL, LlmRouter.Settings.defaultsFor(LlmTask.GENERAL));
+        Map<LlmTask, ChatLanguageModel> models = Map.of(LlmTask.GENERAL, interactiveModel);
+
+        // Act & Assert
+        assertThrows(IllegalArgumentException.class, () -> new LlmRouter(settings, models));
+    }
+}
@@ -1,5 +1,9 @@
 package com.example.ai_companion.service;
 
+import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.UserMessage;
 import com.example.ai_companion.model.User;
 import com.example.ai_companion.repository.UserRepository;
 import dev.langchain4j.model.chat.ChatLanguageModel;
@@ -8,6 +12,7 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpStatus;
@@ -15,6 +20,10 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.test.util.ReflectionTestUtils;
 import org.springframework.web.client.RestTemplate;
 
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
@@ -28,9 +37,15 @@ class MemoryServiceTest {
     @Mock
     private ChatLanguageModel chatLanguageModel;
 
+    @Mock
+    private LlmRouter llmRouter;
+
     @Mock
     private RestTemplate restTemplate;
 
+    @Spy
+    private TurnCoordinator turnCoordinator = new TurnCoordinator();
+
     @InjectMocks
     private MemoryService memoryService;
 
@@ -42,6 +57,8 @@ class MemoryServiceTest {
 
     @BeforeEach
     void setUp() {
+        lenient().when(llmRouter.model(any())).thenReturn(chatLanguageModel);
+        lenient().when(llmRouter.model(any(), any())).thenReturn(chatLanguageModel);
         testFirebaseUid = "test-firebase-uid";
         testUserId = "test-user-id";
         testUserMessage = "I am a software engineer";
@@ -60,7 +77,7 @@ class MemoryServiceTest {
     void extractAndStoreInsights_WithValidUser_ShouldExtractAndStoreInsights() {
         // Arrange
         when(userRepository.findByFirebaseUid(testFirebaseUid)).thenReturn(testUser);
-        when(chatLanguageModel.chat(anyString())).thenReturn("New core fact about being a software engineer");
+        when(chatLanguageModel.chat(anyList())).thenReturn(reply("New core fact about being a software engineer"));
         when(restTemplate.postForEntity(anyString(), any(HttpEntity.class), eq(Void.class)))
                 .thenReturn(new ResponseEntity<>(HttpStatus.OK));
 
@@ -68,8 +85,9 @@ class MemoryServiceTest {
         memoryService.extractAndStoreInsights(testFirebaseUid, testUserMessage, testAiResponse);
 
         // Assert
-        verify(userRepository).findByFirebaseUid(testFirebaseUid);
-        verify(chatLanguageModel, atLeast(1)).chat(anyString());
+        // Looked up again for the merge, which must build on the latest core information
+        verify(userRepository, times(2)).findByFirebaseUid(testFirebaseUid);
+        verify(chatLanguageModel, atLeast(1)).chat(anyList());
         verify(userRepository).save(testUser);
         verify(restTemplate).postForEntity(eq("http://localhost:8000/remember"), any(HttpEntity.class), eq(Void.class));
     }
@@ -84,7 +102,7 @@ class MemoryServiceTest {
 
         // Assert
         verify(userRepository).findByFirebaseUid(testFirebaseUid);
-        verify(chatLanguageModel, never()).chat(anyString());
+        verify(chatLanguageModel, never()).chat(anyList());
         verify(userRepository, never()).save(any(User.class));
         verify(restTemplate, never()).postForEntity(anyString(), any(HttpEntity.class), eq(Void.class));
     }
@@ -93,7 +111,7 @@ class MemoryServiceTest {
     void extractAndStoreInsights_WithException_ShouldHandleGracefully() {
         // Arrange
         when(userRepository.findByFirebaseUid(testFirebaseUid)).thenReturn(testUser);
-        when(chatLanguageModel.chat(anyString())).thenThrow(new RuntimeException("LLM error"));
+        when(chatLanguageModel.chat(anyList())).thenThrow(new RuntimeException("LLM error"));
 
         // Act & Assert
         // Should not throw exception
@@ -102,21 +120,21 @@ class MemoryServiceTest {
         });
 
         verify(userRepository).findByFirebaseUid(testFirebaseUid);
-        verify(chatLanguageModel).chat(anyString());
+        verify(chatLanguageModel).chat(anyList());
     }
 
     @Test
     void extractAndStoreInsights_WithNoneResponse_ShouldNotUpdateCoreInformation() {
         // Arrange
         when(userRepository.findByFirebaseUid(testFirebaseUid)).thenReturn(testUser);
-        when(chatLanguageModel.chat(anyString())).thenReturn("none");
+        when(chatLanguageModel.chat(anyList())).thenReturn(reply("none"));
 
         // Act
         memoryService.extractAndStoreInsights(testFirebaseUid, testUserMessage, testAiResponse);
 
         // Assert
         verify(userRepository).findByFirebaseUid(testFirebaseUid);
-        verify(chatLanguageModel, atLeast(1)).chat(anyString());
+        verify(chatLanguageModel, atLeast(1)).chat(anyList());
         verify(userRepository, never()).save(any(User.class));
     }
 
@@ -125,14 +143,14 @@ class MemoryServiceTest {
         // Arrange
         String newCoreInfo = "I love hiking and photography";
         when(userRepository.findByFirebaseUid(testFirebaseUid)).thenReturn(testUser);
-        when(chatLanguageModel.chat(anyString())).thenReturn("Updated core information with hiking and photography");
+        when(chatLanguageModel.chat(anyList())).thenReturn(reply("Updated core information with hiking and photography"));
 
         // Act
         memoryService.addManualCoreInformation(testFirebaseUid, newCoreInfo);
 
         // Assert
         verify(userRepository).findByFirebaseUid(testFirebaseUid);
-        verify(chatLanguageModel).chat(anyString());
+        verify(chatLanguageModel).chat(anyList());
         verify(userRepository).save(testUser);
         assertEquals("Updated core information with hiking and photography", testUser.getCoreInformation());
     }
@@ -157,18 +175,45 @@ class MemoryServiceTest {
         // Arrange
         testUser.setCoreInformation(null);
         when(userRepository.findByFirebaseUid(testFirebaseUid)).thenReturn(testUser);
-        when(chatLanguageModel.chat(anyString())).thenReturn("New core information");
+        when(chatLanguageModel.chat(anyList())).thenReturn(reply("New core information"));
 
         // Act
         memoryService.addManualCoreInformation(testFirebaseUid, "New info");
 
         // Assert
         verify(userRepository).findByFirebaseUid(testFirebaseUid);
-        verify(chatLanguageModel).chat(anyString());
+        verify(chatLanguageModel).chat(anyList());
         verify(userRepository).save(testUser);
         assertEquals("New core information", testUser.getCoreInformation());
     }
 
+    @Test
+    void addManualCoreInformation_WithConcurrentMerges_ShouldKeepBothFacts() throws Exception {
+        // Arrange
+        testUser.setCoreInformation("Retired teacher.");
+        when(userRepository.findByFirebaseUid(testFirebaseUid)).thenReturn(testUser);
+        when(chatLanguageModel.chat(anyList())).thenAnswer(invocation -> {
+            List<ChatMessage> messages = invocation.getArgument(0);
+            String prompt = ((UserMessage) messages.get(1)).singleText();
+            String existing = prompt.substring(prompt.indexOf("information:\n") + 13, prompt.indexOf("\n\nNew core fact")).trim();
+            String newFact = prompt.substring(prompt.indexOf("merge:\n") + 7).trim();
+            Thread.sleep(100);
+            return reply(existing + " " + newFact);
+        });
+
+        // Act
+        CompletableFuture<Void> first = CompletableFuture.runAsync(() -> memoryService.addManualCoreInformation(testFirebaseUid, "Loves roses."));
+        CompletableFuture<Void> second = CompletableFuture.runAsync(() -> memoryService.addManualCoreInformation(testFirebaseUid, "Has a cat."));
+        CompletableFuture.allOf(first, second).get(5, TimeUnit.SECONDS);
+
+        // Assert
+        String merged = testUser.getCoreInformation();
+        assertTrue(merged.startsWith("Retired teacher."));
+        assertTrue(merged.contains("Loves roses."));
+        assertTrue(merged.contains("Has a cat."));
+        verify(userRepository, times(2)).save(testUser);
+    }
+
     @Test
     void addManualContextualMemory_WithValidInput_ShouldStoreMemory() {
         // Arrange
@@ -243,7 +288,7 @@ class MemoryServiceTest {
     void extractAndStoreInsights_WithMemoryEmbeddingException_ShouldHandleGracefully() {
         // Arrange
         when(userRepository.findByFirebaseUid(testFirebaseUid)).thenReturn(testUser);
-        when(chatLanguageModel.chat(anyString())).thenReturn("New core fact", "Memory to store");
+        when(chatLanguageModel.chat(anyList())).thenReturn(reply("New core fact"), reply("Memory to store"));
         when(restTemplate.postForEntity(anyString(), any(HttpEntity.class), eq(Void.class)))
                 .thenThrow(new RuntimeException("Network error"));
 
@@ -253,8 +298,8 @@ class MemoryServiceTest {
             memoryService.extractAndStoreInsights(testFirebaseUid, testUserMessage, testAiResponse);
         });
 
-        verify(userRepository).findByFirebaseUid(testFirebaseUid);
-        verify(chatLanguageModel, atLeast(1)).chat(anyString());
+        verify(userRepository, times(2)).findByFirebaseUid(testFirebaseUid);
+        verify(chatLanguageModel, atLeast(1)).chat(anyList());
         verify(userRepository).save(testUser);
     }
 
@@ -262,14 +307,14 @@ class MemoryServiceTest {
     void extractAndStoreInsights_WithNoneMemoryResponse_ShouldNotStoreMemory() {
         // Arrange
         when(userRepository.findByFirebaseUid(testFirebaseUid)).thenReturn(testUser);
-        when(chatLanguageModel.chat(anyString())).thenReturn("New core fact", "none");
+        when(chatLanguageModel.chat(anyList())).thenReturn(reply("New core fact"), reply("none"));
 
         // Act
         memoryService.extractAndStoreInsights(testFirebaseUid, testUserMessage, testAiResponse);
 
         // Assert
-        verify(userRepository).findByFirebaseUid(testFirebaseUid);
-        verify(chatLanguageModel, atLeast(1)).chat(anyString());
+        verify(userRepository, times(2)).findByFirebaseUid(testFirebaseUid);
+        verify(chatLanguageModel, atLeast(1)).chat(anyList());
         verify(userRepository).save(testUser);
         verify(restTemplate, never()).postForEntity(anyString(), any(HttpEntity.class), eq(Void.class));
     }
@@ -279,14 +324,14 @@ class MemoryServiceTest {
         // Arrange
         testUser.setCoreInformation("");
         when(userRepository.findByFirebaseUid(testFirebaseUid)).thenReturn(testUser);
-        when(chatLanguageModel.chat(anyString())).thenReturn("New core information");
+        when(chatLanguageModel.chat(anyList())).thenReturn(reply("New core information"));
 
         // Act
         memoryService.addManualCoreInformation(testFirebaseUid, "New info");
 
         // Assert
         verify(userRepository).findByFirebaseUid(testFirebaseUid);
-        verify(chatLanguageModel).chat(anyString());
+        verify(chatLanguageModel).chat(anyList());
         verify(userRepository).save(testUser);
         assertEquals("New core information", testUser.getCoreInformation());
     }
@@ -323,55 +368,59 @@ class MemoryServiceTest {
     void extractAndStoreInsights_WithEmptyUserMessage_ShouldProcess() {
         // Arrange
         when(userRepository.findByFirebaseUid(testFirebaseUid)).thenReturn(testUser);
-        when(chatLanguageModel.chat(anyString())).thenReturn("none", "none");
+        when(chatLanguageModel.chat(anyList())).thenReturn(reply("none"), reply("none"));
 
         // Act
         memoryService.extractAndStoreInsights(testFirebaseUid, "", testAiResponse);
 
         // Assert
         verify(userRepository).findByFirebaseUid(testFirebaseUid);
-        verify(chatLanguageModel, atLeast(1)).chat(anyString());
+        verify(chatLanguageModel, atLeast(1)).chat(anyList());
     }
 
     @Test
     void extractAndStoreInsights_WithEmptyAiResponse_ShouldProcess() {
         // Arrange
         when(userRepository.findByFirebaseUid(testFirebaseUid)).thenReturn(testUser);
-        when(chatLanguageModel.chat(anyString())).thenReturn("none", "none");
+        when(chatLanguageModel.chat(anyList())).thenReturn(reply("none"), reply("none"));
 
         // Act
         memoryService.extractAndStoreInsights(testFirebaseUid, testUserMessage, "");
 
         // Assert
         verify(userRepository).findByFirebaseUid(testFirebaseUid);
-        verify(chatLanguageModel, atLeast(1)).chat(anyString());
+        verify(chatLanguageModel, atLeast(1)).chat(anyList());
     }
 
     @Test
     void extractAndStoreInsights_WithNullUserMessage_ShouldProcess() {
         // Arrange
         when(userRepository.findByFirebaseUid(testFirebaseUid)).thenReturn(testUser);
-        when(chatLanguageModel.chat(anyString())).thenReturn("none", "none");
+        when(chatLanguageModel.chat(anyList())).thenReturn(reply("none"), reply("none"));
 
         // Act
         memoryService.extractAndStoreInsights(testFirebaseUid, null, testAiResponse);
 
         // Assert
         verify(userRepository).findByFirebaseUid(testFirebaseUid);
-        verify(chatLanguageModel, atLeast(1)).chat(anyString());
+        verify(chatLanguageModel, atLeast(1)).chat(anyList());
     }
 
     @Test
     void extractAndStoreInsights_WithNullAiResponse_ShouldProcess() {
         // Arrange
         when(userRepository.findByFirebaseUid(testFirebaseUid)).thenReturn(testUser);
-        when(chatLanguageModel.chat(anyString())).thenReturn("none", "none");
+        when(chatLanguageModel.chat(anyList())).thenReturn(reply("none"), reply("none"));
 
         // Act
         memoryService.extractAndStoreInsights(testFirebaseUid, testUserMessage, null);
 
         // Assert
         verify(userRepository).findByFirebaseUid(testFirebaseUid);
-        verify(chatLanguageModel, atLeast(1)).chat(anyString());
+        verify(chatLanguageModel, atLeast(1)).chat(anyList());
+    }
+
+    private static ChatResponse reply(String text) {
+        return ChatResponse.builder().aiMessage(AiMessage.from(text)).build();
     }
 }
@@ -0,0 +1,138 @@
+package com.example.ai_companion.service;
+
+import com.example.ai_companion.model.AvatarSession;
+import com.mongodb.client.result.DeleteResult;
+import com.mongodb.client.result.UpdateResult;
+import org.bson.Document;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class MongoHeyGenSessionRegistryTest {
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @InjectMocks
+    private MongoHeyGenSessionRegistry registry;
+
+    @Test
+    void claimPooled_ShouldAtomicallyAssignFreshPrewarmedSession() {
+        // Arrange
+        Instant now = Instant.now();
+        AvatarSession claimed = new AvatarSession("warm", "key", null, now);
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        ArgumentCaptor<FindAndModifyOptions> options = ArgumentCaptor.forClass(FindAndModifyOptions.class);
+        when(mongoTemplate.findAndModify(query.capture(), update.capture(), options.capture(), eq(AvatarSession.class)))
+                .thenReturn(claimed);
+
+        // Act
+        AvatarSession result = registry.claimPooled("key", "alice", "node-a", now.plusSeconds(90), now.minusSeconds(120));
+
+        // Assert
+        assertSame(claimed, result);
+        Document criteria = query.getValue().getQueryObject();
+        assertEquals(true, criteria.get("pooled"));
+        assertEquals("key", criteria.get("configKey"));
+        assertTrue(criteria.containsKey("createdAt"));
+        Document set = (Document) update.getValue().getUpdateObject().get("$set");
+        assertEquals(false, set.get("pooled"));
+        assertEquals("alice", set.get("userId"));
+        assertEquals("node-a", set.get("ownerNode"));
+        assertTrue(options.getValue().isReturnNew());
+    }
+
+    @Test
+    void remove_WhenAnotherNodeRemovedItFirst_ShouldReturnFalse() {
+        // Arrange
+        when(mongoTemplate.remove(any(Query.class), eq(AvatarSession.class))).thenReturn(DeleteResult.acknowledged(0));
+
+        // Act & Assert
+        assertFalse(registry.remove("s1"));
+    }
+
+    @Test
+    void remove_WhenRemoved_ShouldReturnTrue() {
+        // Arrange
+        when(mongoTemplate.remove(any(Query.class), eq(AvatarSession.class))).thenReturn(DeleteResult.acknowledged(1));
+
+        // Act & Assert
+        assertTrue(registry.remove("s1"));
+    }
+
+    @Test
+    void renewAndClaim_ShouldRenewOwnLeasesThenTakeOverLapsedOnes() {
+        // Arrange
+        Instant now = Instant.now();
+        Instant leaseUntil = now.plusSeconds(90);
+        AvatarSession owned = new AvatarSession("s1", "key", null, now);
+        ArgumentCaptor<Query> queries = ArgumentCaptor.forClass(Query.class);
+        when(mongoTemplate.updateMulti(queries.capture(), any(Update.class), eq(AvatarSession.class)))
+                .thenReturn(UpdateResult.acknowledged(1, 1L, null));
+        when(mongoTemplate.find(any(Query.class), eq(AvatarSession.class))).thenReturn(List.of(owned));
+
+        // Act
+        List<AvatarSession> result = registry.renewAndClaim("node-b", now, leaseUntil);
+
+        // Assert
+        assertEquals(List.of(owned), result);
+        List<Query> updates = queries.getAllValues();
+        assertEquals("node-b", updates.get(0).getQueryObject().get("ownerNode"));
+        assertTrue(updates.get(1).getQueryObject().containsKey("$or"));
+    }
+
+    @Test
+    void touch_ShouldOnlyMoveLastTaskTimeForward() {
+        // Arrange
+        Instant at = Instant.now();
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+
+        // Act
+        registry.touch("s1", at);
+
+        // Assert
+        verify(mongoTemplate).updateFirst(query.capture(), any(Update.class), eq(AvatarSession.class));
+        Document criteria = query.getValue().getQueryObject();
+        assertEquals("s1", criteria.get("_id"));
+        assertTrue(criteria.containsKey("$or"));
+    }
+
+    @Test
+    void markStarted_ShouldSetOnlyStartFields() {
+        // Arrange
+        Instant at = Instant.now();
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        when(mongoTemplate.updateFirst(any(Query.class), update.capture(), eq(AvatarSession.class)))
+                .thenReturn(UpdateResult.acknowledged(1, 1L, null));
+
+        // Act
+        boolean marked = registry.markStarted("s1", "alice", null, at);
+
+        // Assert
+        assertTrue(marked);
+        Document changes = update.getValue().getUpdateObject();
+        assertEquals(List.of("$set"), List.copyOf(changes.keySet()));
+        Document set = (Document) changes.get("$set");
+        assertEquals("alice", set.get("userId"));
+        assertEquals(at, set.get("startedAt"));
+        assertFalse(set.containsKey("leaseUntil"));
+        assertFalse(set.containsKey("lastTaskAt"));
+        assertFalse(set.containsKey("ownerNode"));
+    }
+}
@@ -0,0 +1,102 @@
+package com.example.ai_companion.service;
+
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.SystemMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.model.chat.ChatLanguageModel;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+class PromptTemplateTest {
+
+    private static final PromptTemplate TEMPLATE = PromptTemplate.of("test", """
+            You are a helpful assistant for elderly users.
+            Answer in two sentences.
+            """, """
+            Profile: {{profile}}
+            The user said: "{{query}}"
+            """);
+
+    @Test
+    void of_WithPlaceholderInSystemPrompt_ShouldThrow() {
+        // Act & Assert
+        assertThrows(IllegalArgumentException.class, () -> PromptTemplate.of("bad", "Today is {{today}}", "{{query}}"));
+    }
+
+    @Test
+    void render_ShouldKeepSystemPromptIdenticalAcrossCalls() {
+        // Act
+        PromptTemplate.Rendered first = TEMPLATE.render("profile", "Likes gardening", "query", "Hello");
+        PromptTemplate.Rendered second = TEMPLATE.render("profile", "Retired teacher", "query", "What is the weather?");
+
+        // Assert
+        assertEquals(first.getSystem(), second.getSystem());
+        assertEquals("Profile: Retired teacher\nThe user said: \"What is the weather?\"", second.getUser());
+        assertEquals(Set.of("profile", "query"), TEMPLATE.getPlaceholders());
+    }
+
+    @Test
+    void render_ShouldProduceSystemThenUserMessage() {
+        // Act
+        List<ChatMessage> messages = TEMPLATE.render("profile", "none", "query", "Hi").messages();
+
+        // Assert
+        assertEquals(2, messages.size());
+        assertInstanceOf(SystemMessage.class, messages.get(0));
+        assertInstanceOf(UserMessage.class, messages.get(1));
+        assertTrue(((SystemMessage) messages.get(0)).text().startsWith("You are a helpful assistant"));
+    }
+
+    @Test
+    void render_WithNullValue_ShouldRenderNone() {
+        // Act
+        PromptTemplate.Rendered rendered = TEMPLATE.render("profile", null, "query", "Hi");
+
+        // Assert
+        assertTrue(rendered.getUser().startsWith("Profile: none"));
+    }
+
+    @Test
+    void render_WithMissingValue_ShouldThrow() {
+        // Act & Assert
+        assertThrows(IllegalArgumentException.class, () -> TEMPLATE.render("profile", "x"));
+        assertThrows(IllegalArgumentException.class, () -> TEMPLATE.render("profile"));
+    }
+
+    @Test
+    void render_ShouldCountTokensPerSection() {
+        // Act
+        PromptTemplate.Rendered rendered = TEMPLATE.render("profile", "Loves crosswords and walks by the sea every morning", "query", "Hi");
+        Map<String, Integer> tokens = rendered.getTokenCounts();
+
+        // Assert
+        assertEquals(List.of(PromptTemplate.SYSTEM_SECTION, PromptTemplate.INSTRUCTIONS_SECTION, "profile", "query"),
+                List.copyOf(tokens.keySet()));
+        assertTrue(tokens.get(PromptTemplate.SYSTEM_SECTION) > 5);
+        assertTrue(tokens.get("profile") > tokens.get("query"));
+        assertEquals(tokens.values().stream().mapToInt(Integer::intValue).sum(), rendered.getTotalTokens());
+    }
+
+    @Test
+    void call_ShouldSendMessagesAndReturnReplyText() {
+        // Arrange
+        ChatLanguageModel model = mock(ChatLanguageModel.class);
+        when(model.chat(anyList())).thenReturn(ChatResponse.builder().aiMessage(AiMessage.from("Hello there")).build());
+
+        // Act
+        String result = TEMPLATE.render("profile", "none", "query", "Hi").call(model);
+
+        // Assert
+        assertEquals("Hello there", result);
+        verify(model).chat(anyList());
+    }
+}
@@ -0,0 +1,130 @@
+package com.example.ai_companion.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RecurrenceRuleTest {
+
+    private static final ZoneId ZONE = ZoneId.of("Pacific/Auckland");
+
+    private Instant at(int year, int month, int day, int hour) {
+        return ZonedDateTime.of(year, month, day, hour, 0, 0, 0, ZONE).toInstant();
+    }
+
+    @Test
+    void parse_WithInvalidRules_ShouldThrow() {
+        // Act & Assert
+        assertThrows(IllegalArgumentException.class, () -> RecurrenceRule.parse("INTERVAL=2"));
+        assertThrows(IllegalArgumentException.class, () -> RecurrenceRule.parse("FREQ=HOURLY"));
+        assertThrows(IllegalArgumentException.class, () -> RecurrenceRule.parse("FREQ=DAILY;BYDAY=MO"));
+        assertThrows(IllegalArgumentException.class, () -> RecurrenceRule.parse("FREQ=WEEKLY;BYDAY=XX"));
+        assertThrows(IllegalArgumentException.class, () -> RecurrenceRule.parse("FREQ=DAILY;INTERVAL=0"));
+        assertFalse(RecurrenceRule.isValid(null));
+        assertTrue(RecurrenceRule.isValid("RRULE:FREQ=weekly;BYDAY=MO,TH;COUNT=4"));
+    }
+
+    @Test
+    void occurrences_WithDailyRule_ShouldKeepLocalTimeAcrossDaylightSaving() {
+        // Arrange: New Zealand daylight saving ends on 2025-04-06
+        RecurrenceRule rule = RecurrenceRule.parse("FREQ=DAILY");
+
+        // Act
+        List<Instant> result = rule.occurrences(at(2025, 4, 4, 9), ZONE, at(2025, 4, 5, 0), at(2025, 4, 8, 0), List.of(), 10);
+
+        // Assert
+        assertEquals(List.of(at(2025, 4, 5, 9), at(2025, 4, 6, 9), at(2025, 4, 7, 9)), result);
+    }
+
+    @Test
+    void occurrences_WithOldSeries_ShouldJumpToWindow() {
+        // Arrange
+        RecurrenceRule rule = RecurrenceRule.parse("FREQ=DAILY;INTERVAL=2");
+
+        // Act
+        List<Instant> result = rule.occurrences(at(2000, 1, 1, 9), ZONE, at(2025, 6, 1, 0), at(2025, 6, 5, 0), List.of(), 10);
+
+        // Assert
+        assertEquals(2, result.size());
+        assertEquals(0, java.time.Duration.between(at(2000, 1, 1, 9), result.get(0)).toDays() % 2);
+    }
+
+    @Test
+    void occurrences_WithWeeklyByDay_ShouldListEachDayInOrder() {
+        // Arrange: 2025-06-09 is a Monday
+        RecurrenceRule rule = RecurrenceRule.parse("FREQ=WEEKLY;BYDAY=TH,MO");
+
+        // Act
+        List<Instant> result = rule.occurrences(at(2025, 6, 10, 18), ZONE, at(2025, 6, 9, 0), at(2025, 6, 24, 0), List.of(), 10);
+
+        // Assert
+        assertEquals(List.of(at(2025, 6, 12, 18), at(2025, 6, 16, 18), at(2025, 6, 19, 18), at(2025, 6, 23, 18)), result);
+    }
+
+    @Test
+    void occurrences_WithCountAndExclusions_ShouldStopAtCount() {
+        // Arrange
+        RecurrenceRule rule = RecurrenceRule.parse("FREQ=WEEKLY;COUNT=3");
+        Instant start = at(2025, 6, 11, 10);
+
+        // Act
+        List<Instant> result = rule.occurrences(start, ZONE, start, at(2026, 1, 1, 0), List.of(at(2025, 6, 18, 10)), 10);
+
+        // Assert
+        assertEquals(List.of(start, at(2025, 6, 25, 10)), result);
+    }
+
+    @Test
+    void occurrences_WithMonthlyOn31st_ShouldSkipShortMonths() {
+        // Arrange
+        RecurrenceRule rule = RecurrenceRule.parse("FREQ=MONTHLY;UNTIL=20250801");
+
+        // Act
+        List<Instant> result = rule.occurrences(at(2025, 1, 31, 8), ZONE, at(2025, 1, 1, 0), at(2026, 1, 1, 0), List.of(), 10);
+
+        // Assert
+        assertEquals(List.of(at(2025, 1, 31, 8), at(2025, 3, 31, 8), at(2025, 5, 31, 8), at(2025, 7, 31, 8)), result);
+    }
+
+    @Test
+    void occurrences_WithOldMonthlySeries_ShouldJumpToWindow() {
+        // Arrange
+        RecurrenceRule rule = RecurrenceRule.parse("FREQ=MONTHLY");
+
+        // Act
+        List<Instant> result = rule.occurrences(at(1900, 1, 31, 8), ZONE, at(2025, 6, 1, 0), at(2025, 11, 1, 0), List.of(), 10);
+
+        // Assert
+        assertEquals(List.of(at(2025, 7, 31, 8), at(2025, 8, 31, 8), at(2025, 10, 31, 8)), result);
+    }
+
+    @Test
+    void occurrences_WithBareDateUntil_ShouldEndAtEndOfDayInSeriesZone() {
+        // Arrange
+        RecurrenceRule rule = RecurrenceRule.parse("FREQ=DAILY;UNTIL=20250801");
+
+        // Act
+        List<Instant> result = rule.occurrences(at(2025, 7, 30, 9), ZONE, at(2025, 7, 30, 0), at(2025, 8, 10, 0), List.of(), 10);
+
+        // Assert
+        assertEquals(List.of(at(2025, 7, 30, 9), at(2025, 7, 31, 9), at(2025, 8, 1, 9)), result);
+    }
+
+    @Test
+    void nextOccurrence_ShouldReturnFirstOccurrenceAfterInstant() {
+        // Arrange
+        RecurrenceRule rule = RecurrenceRule.parse("FREQ=DAILY");
+        Instant start = at(2025, 6, 1, 9);
+
+        // Act & Assert
+        assertEquals(at(2025, 6, 12, 9), rule.nextOccurrence(start, ZONE, at(2025, 6, 11, 9), at(2025, 7, 1, 0), List.of()));
+        assertNull(rule.nextOccurrence(start, ZONE, at(2025, 6, 11, 9), at(2025, 6, 12, 8), List.of()));
+        assertTrue(rule.includes(start, ZONE, at(2025, 6, 20, 9)));
+        assertFalse(rule.includes(start, ZONE, at(2025, 6, 20, 10)));
+    }
+}
@@ -0,0 +1,313 @@
+package com.example.ai_companion.service;
+
+import com.example.ai_companion.model.Reminder;
+import com.example.ai_companion.model.ReminderStatus;
+import com.example.ai_companion.model.ReminderTag;
+import org.bson.Document;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ReminderDispatchServiceTest {
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @Mock
+    private SimpMessagingTemplate messagingTemplate;
+
+    @Mock
+    private HeyGenService heyGenService;
+
+    @Mock
+    private HeyGenSessionManager heyGenSessionManager;
+
+    @InjectMocks
+    private ReminderDispatchService reminderDispatchService;
+
+    private Reminder reminder(String id, Instant timestamp) {
+        Reminder reminder = new Reminder("user123", "Take medication", timestamp, "Blue pills", List.of(ReminderTag.MEDICATION));
+        reminder.setId(id);
+        return reminder;
+    }
+
+    @Test
+    void track_WithPendingReminder_ShouldScheduleIt() {
+        // Act
+        reminderDispatchService.track(reminder("r1", Instant.now().plusSeconds(600)));
+
+        // Assert
+        assertTrue(reminderDispatchService.isTracked("r1"));
+        assertEquals(1, reminderDispatchService.getPendingCount());
+    }
+
+    @Test
+    void track_WhenReminderCompleted_ShouldUnscheduleIt() {
+        // Arrange
+        Reminder reminder = reminder("r1", Instant.now().plusSeconds(600));
+        reminderDispatchService.track(reminder);
+
+        // Act
+        reminder.updateStatus(ReminderStatus.COMPLETE);
+        reminderDispatchService.track(reminder);
+
+        // Assert
+        assertFalse(reminderDispatchService.isTracked("r1"));
+    }
+
+    @Test
+    void track_WithReminderBeyondHorizon_ShouldNotScheduleIt() {
+        // Act
+        reminderDispatchService.track(reminder("r1", Instant.now().plusSeconds(7 * 24 * 3600)));
+
+        // Assert
+        assertFalse(reminderDispatchService.isTracked("r1"));
+    }
+
+    @Test
+    void untrack_ShouldRemoveReminder() {
+        // Arrange
+        reminderDispatchService.track(reminder("r1", Instant.now().plusSeconds(600)));
+
+        // Act
+        reminderDispatchService.untrack("r1");
+
+        // Assert
+        assertFalse(reminderDispatchService.isTracked("r1"));
+    }
+
+    @Test
+    void loadHorizon_ShouldScheduleStreamedReminders() {
+        // Arrange
+        Instant now = Instant.now();
+        when(mongoTemplate.stream(any(Query.class), eq(Reminder.class)))
+                .thenReturn(Stream.of(reminder("r1", now.plusSeconds(60)), reminder("r2", now.plusSeconds(3600))))
+                .thenReturn(Stream.empty());
+
+        // Act
+        int loaded = reminderDispatchService.loadHorizon(now);
+
+        // Assert
+        assertEquals(2, loaded);
+        assertTrue(reminderDispatchService.isTracked("r1"));
+        assertTrue(reminderDispatchService.isTracked("r2"));
+    }
+
+    @Test
+    void dispatchDue_ShouldClaimAndPublishDueReminder() {
+        // Arrange
+        Instant now = Instant.now();
+        Reminder due = reminder("r1", now.minusSeconds(1));
+        reminderDispatchService.track(due);
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class), eq(Reminder.class)))
+                .thenReturn(due);
+        when(heyGenSessionManager.getActiveSessionId("user123")).thenReturn("avatar-session");
+
+        // Act
+        List<String> fired = reminderDispatchService.dispatchDue(now);
+
+        // Assert
+        assertEquals(List.of("r1"), fired);
+        ArgumentCaptor<Object> payload = ArgumentCaptor.forClass(Object.class);
+        verify(messagingTemplate, timeout(1000)).convertAndSendToUser(eq("user123"), eq(ReminderDispatchService.USER_DESTINATION), payload.capture());
+        verify(messagingTemplate, timeout(1000)).convertAndSend(eq("/topic/reminders-user123"), any(Object.class));
+        verify(heyGenService, timeout(1000)).sendTaskToHeyGen("avatar-session", "Just a reminder: Take medication.", "repeat", null);
+        Map<?, ?> body = (Map<?, ?>) payload.getValue();
+        assertEquals("REMINDER_DUE", body.get("type"));
+        assertEquals("r1", body.get("reminderId"));
+        assertFalse(reminderDispatchService.isTracked("r1"));
+    }
+
+    @Test
+    void fire_WhenClaimedByAnotherNode_ShouldNotPublish() {
+        // Arrange
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class), eq(Reminder.class)))
+                .thenReturn(null);
+
+        // Act
+        boolean delivered = reminderDispatchService.fire("r1", Instant.now());
+
+        // Assert
+        assertFalse(delivered);
+        verifyNoInteractions(messagingTemplate, heyGenService);
+    }
+
+    @Test
+    void fire_ShouldClaimOnlyUnclaimedIncompleteReminder() {
+        // Arrange
+        Instant now = Instant.now();
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        when(mongoTemplate.findAndModify(query.capture(), any(Update.class), any(FindAndModifyOptions.class), eq(Reminder.class)))
+                .thenReturn(null);
+
+        // Act
+        reminderDispatchService.fire("r1", now);
+
+        // Assert
+        Document criteria = query.getValue().getQueryObject();
+        assertEquals("r1", criteria.get("_id"));
+        assertEquals(ReminderStatus.INCOMPLETE, criteria.get("status"));
+        assertTrue(criteria.containsKey("dispatchedAt"));
+        assertNull(criteria.get("dispatchedAt"));
+    }
+
+    @Test
+    void fire_WhenAvatarFails_ShouldStillPublish() {
+        // Arrange
+        Reminder due = reminder("r1", Instant.now());
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class), eq(Reminder.class)))
+                .thenReturn(due);
+        when(heyGenSessionManager.getActiveSessionId("user123")).thenReturn("avatar-session");
+        when(heyGenService.sendTaskToHeyGen(anyString(), anyString(), anyString(), isNull()))
+                .thenThrow(new RuntimeException("HeyGen down"));
+
+        // Act
+        boolean delivered = reminderDispatchService.fire("r1", Instant.now());
+
+        // Assert
+        assertTrue(delivered);
+        verify(messagingTemplate).convertAndSendToUser(eq("user123"), eq(ReminderDispatchService.USER_DESTINATION), any(Object.class));
+    }
+
+    private Reminder series(String id, Instant start, String rule) {
+        Reminder series = reminder(id, start);
+        series.setRecurrence(rule);
+        series.setRecurrenceZone("UTC");
+        return series;
+    }
+
+    @Test
+    void track_WithSeries_ShouldScheduleOnlyNextOccurrence() {
+        // Arrange
+        Instant start = Instant.now().minusSeconds(24 * 3600 - 600);
+
+        // Act
+        reminderDispatchService.track(series("s1", start, "FREQ=DAILY"));
+
+        // Assert
+        assertTrue(reminderDispatchService.isTracked(ReminderOccurrenceService.occurrenceId("s1", start.plusSeconds(24 * 3600))));
+        assertEquals(1, reminderDispatchService.getPendingCount());
+    }
+
+    @Test
+    void loadHorizon_WithSeriesStartingInsideHorizon_ShouldScheduleOnlyOccurrenceKey() {
+        // Arrange
+        Instant now = Instant.now();
+        Instant start = now.plusSeconds(600);
+        ArgumentCaptor<Query> queries = ArgumentCaptor.forClass(Query.class);
+        when(mongoTemplate.stream(queries.capture(), eq(Reminder.class)))
+                .thenReturn(Stream.empty())
+                .thenReturn(Stream.of(series("s1", start, "FREQ=DAILY")));
+
+        // Act
+        int loaded = reminderDispatchService.loadHorizon(now);
+
+        // Assert
+        assertEquals(0, loaded);
+        Document oneOffCriteria = queries.getAllValues().get(0).getQueryObject();
+        assertTrue(oneOffCriteria.containsKey("recurrence"));
+        assertNull(oneOffCriteria.get("recurrence"));
+        Document seriesFields = queries.getAllValues().get(1).getFieldsObject();
+        assertTrue(seriesFields.containsKey("recurrence"));
+        assertFalse(seriesFields.containsKey("title"));
+        assertFalse(reminderDispatchService.isTracked("s1"));
+        assertTrue(reminderDispatchService.isTracked(ReminderOccurrenceService.occurrenceId("s1", start)));
+        assertEquals(1, reminderDispatchService.getPendingCount());
+    }
+
+    @Test
+    void fire_WithBareSeriesId_ShouldNotClaimSeriesAsOneOff() {
+        // Arrange
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        when(mongoTemplate.findAndModify(query.capture(), any(Update.class), any(FindAndModifyOptions.class), eq(Reminder.class)))
+                .thenReturn(null);
+
+        // Act
+        boolean delivered = reminderDispatchService.fire("s1", Instant.now());
+
+        // Assert
+        assertFalse(delivered);
+        Document criteria = query.getValue().getQueryObject();
+        assertTrue(criteria.containsKey("recurrence"));
+        assertNull(criteria.get("recurrence"));
+        verifyNoInteractions(messagingTemplate);
+    }
+
+    @Test
+    void untrack_WithSeries_ShouldRemoveScheduledOccurrence() {
+        // Arrange
+        reminderDispatchService.track(series("s1", Instant.now().plusSeconds(600), "FREQ=DAILY"));
+
+        // Act
+        reminderDispatchService.untrack("s1");
+
+        // Assert
+        assertEquals(0, reminderDispatchService.getPendingCount());
+    }
+
+    @Test
+    void fire_WithOccurrence_ShouldClaimSeriesAndScheduleNextOccurrence() {
+        // Arrange
+        ReflectionTestUtils.setField(reminderDispatchService, "horizonMinutes", 2 * 24 * 60L);
+        Instant now = Instant.now();
+        Instant occurrence = now.minusSeconds(1);
+        Reminder claimed = series("s1", occurrence, "FREQ=DAILY");
+        claimed.setLastDispatchedOccurrence(occurrence);
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        when(mongoTemplate.findAndModify(query.capture(), any(Update.class), any(FindAndModifyOptions.class), eq(Reminder.class)))
+                .thenReturn(claimed);
+        when(mongoTemplate.exists(any(Query.class), eq(Reminder.class))).thenReturn(false);
+        String occurrenceId = ReminderOccurrenceService.occurrenceId("s1", occurrence);
+
+        // Act
+        boolean fired = reminderDispatchService.fire(occurrenceId, now);
+
+        // Assert
+        assertTrue(fired);
+        assertEquals("s1", query.getValue().getQueryObject().get("_id"));
+        ArgumentCaptor<Object> payload = ArgumentCaptor.forClass(Object.class);
+        verify(messagingTemplate).convertAndSendToUser(eq("user123"), eq(ReminderDispatchService.USER_DESTINATION), payload.capture());
+        assertEquals(occurrenceId, ((Map<?, ?>) payload.getValue()).get("reminderId"));
+        assertTrue(reminderDispatchService.isTracked(ReminderOccurrenceService.occurrenceId("s1", occurrence.plusSeconds(24 * 3600))));
+    }
+
+    @Test
+    void fire_WithMaterialisedOccurrence_ShouldNotPublishFromSeries() {
+        // Arrange
+        ReflectionTestUtils.setField(reminderDispatchService, "horizonMinutes", 2 * 24 * 60L);
+        Instant now = Instant.now();
+        Instant occurrence = now.minusSeconds(1);
+        Reminder claimed = series("s1", occurrence, "FREQ=DAILY");
+        claimed.setLastDispatchedOccurrence(occurrence);
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class), eq(Reminder.class)))
+                .thenReturn(claimed);
+        when(mongoTemplate.exists(any(Query.class), eq(Reminder.class))).thenReturn(true);
+
+        // Act
+        boolean fired = reminderDispatchService.fire(ReminderOccurrenceService.occurrenceId("s1", occurrence), now);
+
+        // Assert
+        assertFalse(fired);
+        verifyNoInteractions(messagingTemplate);
+        assertEquals(1, reminderDispatchService.getPendingCount());
+    }
+}
@@ -0,0 +1,82 @@
+package com.example.ai_companion.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReminderIntentClassifierTest {
+
+    private final ReminderIntentClassifier classifier = new ReminderIntentClassifier();
+
+    private record Sample(boolean reminder, String message) {}
+
+    private List<Sample> loadSamples() throws Exception {
+        List<Sample> samples = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                getClass().getResourceAsStream("/reminder-intent-samples.tsv"), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank() || line.startsWith("#")) continue;
+                String[] parts = line.split("\t", 2);
+                samples.add(new Sample("1".equals(parts[0]), parts[1]));
+            }
+        }
+        return samples;
+    }
+
+    @Test
+    void mayContainReminder_OnLabelledSamples_ShouldMeetPrecisionAndRecallTargets() throws Exception {
+        // Arrange
+        List<Sample> samples = loadSamples();
+        int truePositives = 0, falsePositives = 0, falseNegatives = 0;
+        List<String> missed = new ArrayList<>();
+
+        // Act
+        for (Sample sample : samples) {
+            boolean predicted = classifier.mayContainReminder(sample.message());
+            if (predicted && sample.reminder()) truePositives++;
+            else if (predicted) falsePositives++;
+            else if (sample.reminder()) {
+                falseNegatives++;
+                missed.add(sample.message());
+            }
+        }
+
+        // Assert - recall matters most: a skipped reminder is lost for good
+        double recall = (double) truePositives / (truePositives + falseNegatives);
+        double precision = (double) truePositives / (truePositives + falsePositives);
+        assertTrue(recall >= 0.95, "Recall " + recall + ", missed: " + missed);
+        assertTrue(precision >= 0.85, "Precision " + precision);
+    }
+
+    @Test
+    void mayContainReminder_WithExplicitRequest_ShouldReturnTrue() {
+        assertTrue(classifier.mayContainReminder("Remind me to buy milk"));
+        assertTrue(classifier.mayContainReminder("don't forget the bins"));
+    }
+
+    @Test
+    void mayContainReminder_WithTaskAndTime_ShouldReturnTrue() {
+        assertTrue(classifier.mayContainReminder("Dentist at 3pm on Friday"));
+        assertTrue(classifier.mayContainReminder("I'll call Mary in 20 minutes"));
+    }
+
+    @Test
+    void mayContainReminder_WithTimeButNoTask_ShouldReturnFalse() {
+        assertFalse(classifier.mayContainReminder("I'm feeling fine today"));
+        assertFalse(classifier.mayContainReminder("It might rain tomorrow"));
+    }
+
+    @Test
+    void mayContainReminder_WithEmptyOrNullMessage_ShouldReturnFalse() {
+        assertFalse(classifier.mayContainReminder(""));
+        assertFalse(classifier.mayContainReminder("   "));
+        assertFalse(classifier.mayContainReminder(null));
+    }
+}
@@ -0,0 +1,213 @@
+package com.example.ai_companion.service;
+
+import com.example.ai_companion.model.Reminder;
+import com.example.ai_companion.model.ReminderStatus;
+import com.example.ai_companion.model.ReminderTag;
+import com.example.ai_companion.repository.ReminderRepository;
+import com.example.ai_companion.response.ReminderDayCount;
+import org.bson.Document;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationResults;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ReminderOccurrenceServiceTest {
+
+    private static final Instant START = Instant.parse("2025-06-01T09:00:00Z");
+    private static final long DAY = 24 * 3600;
+
+    @Mock
+    private ReminderRepository reminderRepository;
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @InjectMocks
+    private ReminderOccurrenceService reminderOccurrenceService;
+
+    private Reminder series() {
+        Reminder series = new Reminder("user123", "Take medication", START, "Morning pills", List.of(ReminderTag.MEDICATION));
+        series.setId("s1");
+        series.setRecurrence("FREQ=DAILY");
+        series.setRecurrenceZone("UTC");
+        return series;
+    }
+
+    @Test
+    void findInRange_ShouldMergeOneOffsAndOccurrencesInOrder() {
+        // Arrange
+        Instant from = START.plusSeconds(10 * DAY - 3600);
+        Instant to = from.plusSeconds(2 * DAY);
+        Reminder oneOff = new Reminder("user123", "Dentist", START.plusSeconds(10 * DAY + 3600), "Checkup", List.of(ReminderTag.APPOINTMENT));
+        when(reminderRepository.findByUserIdAndRecurrenceIsNullAndTimestampGreaterThanEqualAndTimestampLessThanOrderByTimestampAsc("user123", from, to))
+                .thenReturn(List.of(oneOff));
+        when(reminderRepository.findByUserIdAndRecurrenceIsNotNullAndSeriesIdIsNull("user123")).thenReturn(List.of(series()));
+        when(reminderRepository.findBySeriesIdInAndOccurrenceStartGreaterThanEqualAndOccurrenceStartLessThan(List.of("s1"), from, to))
+                .thenReturn(List.of());
+
+        // Act
+        List<Reminder> result = reminderOccurrenceService.findInRange("user123", from, to);
+
+        // Assert
+        assertEquals(3, result.size());
+        assertEquals("s1@" + START.plusSeconds(10 * DAY).toEpochMilli(), result.get(0).getId());
+        assertEquals(oneOff, result.get(1));
+        assertEquals(START.plusSeconds(11 * DAY), result.get(2).getTimestamp());
+        assertEquals("s1", result.get(2).getSeriesId());
+    }
+
+    @Test
+    void expandSeries_ShouldLeaveOutExceptionsAndMaterialisedOccurrences() {
+        // Arrange
+        Reminder series = series();
+        series.setRecurrenceExceptions(List.of(START.plusSeconds(DAY)));
+        Reminder materialised = new Reminder("user123", "Take medication", START.plusSeconds(2 * DAY + 600), "Moved", null);
+        materialised.setSeriesId("s1");
+        materialised.setOccurrenceStart(START.plusSeconds(2 * DAY));
+        Instant to = START.plusSeconds(4 * DAY);
+        when(reminderRepository.findByUserIdAndRecurrenceIsNotNullAndSeriesIdIsNull("user123")).thenReturn(List.of(series));
+        when(reminderRepository.findBySeriesIdInAndOccurrenceStartGreaterThanEqualAndOccurrenceStartLessThan(List.of("s1"), START, to))
+                .thenReturn(List.of(materialised));
+
+        // Act
+        List<Reminder> result = reminderOccurrenceService.expandSeries("user123", START, to, 10);
+
+        // Assert
+        assertEquals(List.of(START, START.plusSeconds(3 * DAY)), result.stream().map(Reminder::getTimestamp).toList());
+    }
+
+    @Test
+    void materialise_ShouldSaveOccurrenceAsOwnDocument() {
+        // Arrange
+        Instant occurrence = START.plusSeconds(5 * DAY);
+        when(reminderRepository.findById("s1")).thenReturn(Optional.of(series()));
+        when(reminderRepository.findBySeriesIdAndOccurrenceStart("s1", occurrence)).thenReturn(Optional.empty());
+        when(reminderRepository.save(any(Reminder.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        // Act
+        Optional<Reminder> result = reminderOccurrenceService.materialise(ReminderOccurrenceService.occurrenceId("s1", occurrence));
+
+        // Assert
+        assertTrue(result.isPresent());
+        assertNull(result.get().getId());
+        assertNull(result.get().getRecurrence());
+        assertEquals("s1", result.get().getSeriesId());
+        assertEquals(occurrence, result.get().getTimestamp());
+        assertFalse(result.get().isRecurring());
+    }
+
+    @Test
+    void materialise_WithInstantOffSchedule_ShouldReturnEmpty() {
+        // Arrange
+        when(reminderRepository.findById("s1")).thenReturn(Optional.of(series()));
+
+        // Act
+        Optional<Reminder> result = reminderOccurrenceService.materialise(
+                ReminderOccurrenceService.occurrenceId("s1", START.plusSeconds(DAY + 60)));
+
+        // Assert
+        assertTrue(result.isEmpty());
+        verify(reminderRepository, never()).save(any());
+    }
+
+    @Test
+    void skipOccurrence_ShouldAddExceptionAndDeleteMaterialisedCopy() {
+        // Arrange
+        Instant occurrence = START.plusSeconds(3 * DAY);
+        Reminder materialised = new Reminder("user123", "Take medication", occurrence, "Moved", null);
+        when(reminderRepository.findById("s1")).thenReturn(Optional.of(series()));
+        when(reminderRepository.findBySeriesIdAndOccurrenceStart("s1", occurrence)).thenReturn(Optional.of(materialised));
+        ArgumentCaptor<Reminder> saved = ArgumentCaptor.forClass(Reminder.class);
+
+        // Act
+        boolean skipped = reminderOccurrenceService.skipOccurrence(ReminderOccurrenceService.occurrenceId("s1", occurrence));
+
+        // Assert
+        assertTrue(skipped);
+        verify(reminderRepository).save(saved.capture());
+        assertEquals(List.of(occurrence), saved.getValue().getRecurrenceExceptions());
+        verify(reminderRepository).delete(materialised);
+    }
+
+    @Test
+    void skipOccurrence_WithMalformedId_ShouldReturnFalse() {
+        // Act & Assert
+        assertFalse(reminderOccurrenceService.skipOccurrence("s1@tomorrow"));
+        assertFalse(reminderOccurrenceService.skipOccurrence("plain-id"));
+        verifyNoInteractions(reminderRepository);
+    }
+
+    @Test
+    void findInRange_WithCompleteStatus_ShouldNotExpandSeries() {
+        // Arrange
+        Instant to = START.plusSeconds(7 * DAY);
+        Reminder done = new Reminder("user123", "Dentist", START.plusSeconds(DAY), "Checkup", null);
+        done.updateStatus(ReminderStatus.COMPLETE);
+        when(reminderRepository.findByUserIdAndRecurrenceIsNullAndStatusAndTimestampGreaterThanEqualAndTimestampLessThanOrderByTimestampAsc(
+                "user123", ReminderStatus.COMPLETE, START, to)).thenReturn(List.of(done));
+
+        // Act
+        List<Reminder> result = reminderOccurrenceService.findInRange("user123", START, to, ReminderStatus.COMPLETE);
+
+        // Assert
+        assertEquals(List.of(done), result);
+        verify(reminderRepository, never()).findByUserIdAndRecurrenceIsNotNullAndSeriesIdIsNull(any());
+    }
+
+    @Test
+    void countByDay_ShouldMergeAggregatedRowsWithSeriesOccurrences() {
+        // Arrange
+        Instant to = START.plusSeconds(3 * DAY);
+        AggregationResults<Document> rows = new AggregationResults<>(List.of(
+                new Document("_id", new Document("day", "2025-06-02").append("status", "COMPLETE")).append("count", 2),
+                new Document("_id", new Document("day", "2025-06-02").append("status", "INCOMPLETE")).append("count", 1),
+                new Document("_id", new Document("day", "2025-06-05").append("status", "MISSED")).append("count", 1)),
+                new Document());
+        when(mongoTemplate.aggregate(any(Aggregation.class), eq(Reminder.class), eq(Document.class))).thenReturn(rows);
+        when(reminderRepository.findByUserIdAndRecurrenceIsNotNullAndSeriesIdIsNull("user123")).thenReturn(List.of(series()));
+        when(reminderRepository.findBySeriesIdInAndOccurrenceStartGreaterThanEqualAndOccurrenceStartLessThan(List.of("s1"), START, to))
+                .thenReturn(List.of());
+
+        // Act
+        List<ReminderDayCount> result = reminderOccurrenceService.countByDay("user123", START, to, ZoneId.of("UTC"), null);
+
+        // Assert
+        assertEquals(List.of(
+                new ReminderDayCount("2025-06-01", 1, 1, 0, 0),
+                new ReminderDayCount("2025-06-02", 4, 2, 2, 0),
+                new ReminderDayCount("2025-06-03", 1, 1, 0, 0),
+                new ReminderDayCount("2025-06-05", 1, 0, 0, 1)), result);
+    }
+
+    @Test
+    void countByDay_ShouldGroupByDayInRequestedTimezone() {
+        // Arrange
+        ArgumentCaptor<Aggregation> aggregation = ArgumentCaptor.forClass(Aggregation.class);
+        when(mongoTemplate.aggregate(aggregation.capture(), eq(Reminder.class), eq(Document.class)))
+                .thenReturn(new AggregationResults<>(List.of(), new Document()));
+
+        // Act
+        reminderOccurrenceService.countByDay("user123", START, START.plusSeconds(DAY), ZoneId.of("Pacific/Auckland"), ReminderStatus.MISSED);
+
+        // Assert
+        String pipeline = aggregation.getValue().toString();
+        assertTrue(pipeline.contains("Pacific/Auckland"));
+        assertTrue(pipeline.contains("MISSED"));
+        verifyNoInteractions(reminderRepository);
+    }
+}
@@ -1,15 +1,38 @@
 package com.example.ai_companion.service;
 
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.SystemMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.data.message.AiMessage;
 import com.example.ai_companion.model.Reminder;
+import com.example.ai_companion.model.ReminderTag;
+import com.example.ai_companion.model.User;
 import com.example.ai_companion.repository.ReminderRepository;
+import com.example.ai_companion.repository.UserRepository;
+import com.example.ai_companion.utils.ReminderFingerprint;
 import dev.langchain4j.model.chat.ChatLanguageModel;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
-
+import org.bson.Document;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
 
@@ -19,9 +42,27 @@ class ReminderServiceTest {
     @Mock
     private ChatLanguageModel chatLanguageModel;
 
+    @Mock
+    private LlmRouter llmRouter;
+
     @Mock
     private ReminderRepository reminderRepository;
 
+    @Mock
+    private UserRepository userRepository;
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @Mock
+    private ReminderDispatchService reminderDispatchService;
+
+    @Spy
+    private ReminderIntentClassifier reminderIntentClassifier = new ReminderIntentClassifier();
+
+    @Spy
+    private TemporalExpressionParser temporalExpressionParser = new TemporalExpressionParser();
+
     @InjectMocks
     private ReminderService reminderService;
 
@@ -30,6 +71,8 @@ class ReminderServiceTest {
 
     @BeforeEach
     void setUp() {
+        lenient().when(llmRouter.model(any())).thenReturn(chatLanguageModel);
+        lenient().when(llmRouter.model(any(), any())).thenReturn(chatLanguageModel);
         testUserId = "test-user-id";
         testUserMessage = "I need to take my medication at 9 AM tomorrow";
     }
@@ -43,54 +86,54 @@ class ReminderServiceTest {
             Description: Take morning medication
             Tags: MEDICATION, HEALTH
             """;
-        when(chatLanguageModel.chat(anyString())).thenReturn(llmResponse);
-        when(reminderRepository.save(any(Reminder.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(chatLanguageModel.chat(anyList())).thenReturn(reply(llmResponse));
+        stubUpsert();
 
         // Act
         reminderService.extractReminders(testUserId, testUserMessage);
 
         // Assert
-        verify(chatLanguageModel).chat(anyString());
-        verify(reminderRepository).save(any(Reminder.class));
+        verify(chatLanguageModel).chat(anyList());
+        verifyUpserts(1);
     }
 
     @Test
     void extractReminders_WithNoneResponse_ShouldNotStoreReminders() {
         // Arrange
-        when(chatLanguageModel.chat(anyString())).thenReturn("none");
+        when(chatLanguageModel.chat(anyList())).thenReturn(reply("none"));
 
         // Act
         reminderService.extractReminders(testUserId, testUserMessage);
 
         // Assert
-        verify(chatLanguageModel).chat(anyString());
-        verify(reminderRepository, never()).save(any(Reminder.class));
+        verify(chatLanguageModel).chat(anyList());
+        verifyUpserts(0);
     }
 
     @Test
     void extractReminders_WithEmptyResponse_ShouldNotStoreReminders() {
         // Arrange
-        when(chatLanguageModel.chat(anyString())).thenReturn("");
+        when(chatLanguageModel.chat(anyList())).thenReturn(reply(""));
 
         // Act
         reminderService.extractReminders(testUserId, testUserMessage);
 
         // Assert
-        verify(chatLanguageModel).chat(anyString());
-        verify(reminderRepository, never()).save(any(Reminder.class));
+        verify(chatLanguageModel).chat(anyList());
+        verifyUpserts(0);
     }
 
     @Test
     void extractReminders_WithWhitespaceResponse_ShouldNotStoreReminders() {
         // Arrange
-        when(chatLanguageModel.chat(anyString())).thenReturn("   ");
+        when(chatLanguageModel.chat(anyList())).thenReturn(reply("   "));
 
         // Act
         reminderService.extractReminders(testUserId, testUserMessage);
 
         // Assert
-        verify(chatLanguageModel).chat(anyString());
-        verify(reminderRepository, never()).save(any(Reminder.class));
+        verify(chatLanguageModel).chat(anyList());
+        verifyUpserts(0);
     }
 
     @Test
@@ -107,15 +150,14 @@ class ReminderServiceTest {
             Description: Annual checkup
             Tags: APPOINTMENT, HEALTH
             """;
-        when(chatLanguageModel.chat(anyString())).thenReturn(llmResponse);
-        when(reminderRepository.save(any(Reminder.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(chatLanguageModel.chat(anyList())).thenReturn(reply(llmResponse));
 
         // Act
         reminderService.extractReminders(testUserId, testUserMessage);
 
         // Assert
-        verify(chatLanguageModel).chat(anyString());
-        verify(reminderRepository, times(2)).save(any(Reminder.class));
+        verify(chatLanguageModel).chat(anyList());
+        verifyUpserts(2);
     }
 
     @Test
@@ -126,14 +168,14 @@ class ReminderServiceTest {
             Date: 2024-01-15 09:00
             Description: Take morning medication
             """;
-        when(chatLanguageModel.chat(anyString())).thenReturn(llmResponse);
+        when(chatLanguageModel.chat(anyList())).thenReturn(reply(llmResponse));
 
         // Act
         reminderService.extractReminders(testUserId, testUserMessage);
 
         // Assert
-        verify(chatLanguageModel).chat(anyString());
-        verify(reminderRepository, never()).save(any(Reminder.class));
+        verify(chatLanguageModel).chat(anyList());
+        verifyUpserts(0);
     }
 
     @Test
@@ -145,14 +187,14 @@ class ReminderServiceTest {
             Description: Take morning medication
             Tags: MEDICATION
             """;
-        when(chatLanguageModel.chat(anyString())).thenReturn(llmResponse);
+        when(chatLanguageModel.chat(anyList())).thenReturn(reply(llmResponse));
 
         // Act
         reminderService.extractReminders(testUserId, testUserMessage);
 
         // Assert
-        verify(chatLanguageModel).chat(anyString());
-        verify(reminderRepository, never()).save(any(Reminder.class));
+        verify(chatLanguageModel).chat(anyList());
+        verifyUpserts(0);
     }
 
     @Test
@@ -164,15 +206,15 @@ class ReminderServiceTest {
             Description: Take morning medication
             Tags: MEDICATION
             """;
-        when(chatLanguageModel.chat(anyString())).thenReturn(llmResponse);
-        when(reminderRepository.save(any(Reminder.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(chatLanguageModel.chat(anyList())).thenReturn(reply(llmResponse));
+        stubUpsert();
 
         // Act
         reminderService.extractReminders(testUserId, testUserMessage);
 
         // Assert
-        verify(chatLanguageModel).chat(anyString());
-        verify(reminderRepository).save(any(Reminder.class));
+        verify(chatLanguageModel).chat(anyList());
+        verifyUpserts(1);
     }
 
     @Test
@@ -184,15 +226,15 @@ class ReminderServiceTest {
             Description: Take morning medication
             Tags: MEDICATION
             """;
-        when(chatLanguageModel.chat(anyString())).thenReturn(llmResponse);
-        when(reminderRepository.save(any(Reminder.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(chatLanguageModel.chat(anyList())).thenReturn(reply(llmResponse));
+        stubUpsert();
 
         // Act
         reminderService.extractReminders(testUserId, testUserMessage);
 
         // Assert
-        verify(chatLanguageModel).chat(anyString());
-        verify(reminderRepository).save(any(Reminder.class));
+        verify(chatLanguageModel).chat(anyList());
+        verifyUpserts(1);
     }
 
     @Test
@@ -204,15 +246,15 @@ class ReminderServiceTest {
             Description: Take morning medication
             Tags: MEDICATION
             """;
-        when(chatLanguageModel.chat(anyString())).thenReturn(llmResponse);
-        when(reminderRepository.save(any(Reminder.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(chatLanguageModel.chat(anyList())).thenReturn(reply(llmResponse));
+        stubUpsert();
 
         // Act
         reminderService.extractReminders(testUserId, testUserMessage);
 
         // Assert
-        verify(chatLanguageModel).chat(anyString());
-        verify(reminderRepository).save(any(Reminder.class));
+        verify(chatLanguageModel).chat(anyList());
+        verifyUpserts(1);
     }
 
     @Test
@@ -224,15 +266,15 @@ class ReminderServiceTest {
             Description: Take morning medication
             Tags: MEDICATION, HEALTH
             """;
-        when(chatLanguageModel.chat(anyString())).thenReturn(llmResponse);
-        when(reminderRepository.save(any(Reminder.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(chatLanguageModel.chat(anyList())).thenReturn(reply(llmResponse));
+        stubUpsert();
 
         // Act
         reminderService.extractReminders(testUserId, testUserMessage);
 
         // Assert
-        verify(chatLanguageModel).chat(anyString());
-        verify(reminderRepository).save(any(Reminder.class));
+        verify(chatLanguageModel).chat(anyList());
+        verifyUpserts(1);
     }
 
     @Test
@@ -244,15 +286,15 @@ class ReminderServiceTest {
             Description: Take morning medication
             Tags: INVALID_TAG, MEDICATION
             """;
-        when(chatLanguageModel.chat(anyString())).thenReturn(llmResponse);
-        when(reminderRepository.save(any(Reminder.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(chatLanguageModel.chat(anyList())).thenReturn(reply(llmResponse));
+        stubUpsert();
 
         // Act
         reminderService.extractReminders(testUserId, testUserMessage);
 
         // Assert
-        verify(chatLanguageModel).chat(anyString());
-        verify(reminderRepository).save(any(Reminder.class));
+        verify(chatLanguageModel).chat(anyList());
+        verifyUpserts(1);
     }
 
     @Test
@@ -264,15 +306,15 @@ class ReminderServiceTest {
             Description: Take morning medication
             Tags: 
             """;
-        when(chatLanguageModel.chat(anyString())).thenReturn(llmResponse);
-        when(reminderRepository.save(any(Reminder.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(chatLanguageModel.chat(anyList())).thenReturn(reply(llmResponse));
+        stubUpsert();
 
         // Act
         reminderService.extractReminders(testUserId, testUserMessage);
 
         // Assert
-        verify(chatLanguageModel).chat(anyString());
-        verify(reminderRepository).save(any(Reminder.class));
+        verify(chatLanguageModel).chat(anyList());
+        verifyUpserts(1);
     }
 
     @Test
@@ -284,67 +326,72 @@ class ReminderServiceTest {
             Description: Take morning medication
             Tags: null
             """;
-        when(chatLanguageModel.chat(anyString())).thenReturn(llmResponse);
-        when(reminderRepository.save(any(Reminder.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(chatLanguageModel.chat(anyList())).thenReturn(reply(llmResponse));
+        stubUpsert();
 
         // Act
         reminderService.extractReminders(testUserId, testUserMessage);
 
         // Assert
-        verify(chatLanguageModel).chat(anyString());
-        verify(reminderRepository).save(any(Reminder.class));
+        verify(chatLanguageModel).chat(anyList());
+        verifyUpserts(1);
     }
 
     @Test
-    void extractReminders_WithEmptyUserMessage_ShouldStillCallLLM() {
-        // Arrange
-        when(chatLanguageModel.chat(anyString())).thenReturn("none");
-
+    void extractReminders_WithEmptyUserMessage_ShouldSkipLLM() {
         // Act
         reminderService.extractReminders(testUserId, "");
 
         // Assert
-        verify(chatLanguageModel).chat(anyString());
-        verify(reminderRepository, never()).save(any(Reminder.class));
+        verify(chatLanguageModel, never()).chat(anyList());
+        verifyUpserts(0);
     }
 
     @Test
-    void extractReminders_WithNullUserMessage_ShouldStillCallLLM() {
-        // Arrange
-        when(chatLanguageModel.chat(anyString())).thenReturn("none");
-
+    void extractReminders_WithNullUserMessage_ShouldSkipLLM() {
         // Act
         reminderService.extractReminders(testUserId, null);
 
         // Assert
-        verify(chatLanguageModel).chat(anyString());
-        verify(reminderRepository, never()).save(any(Reminder.class));
+        verify(chatLanguageModel, never()).chat(anyList());
+        verifyUpserts(0);
+    }
+
+    @Test
+    void extractReminders_WithSmallTalkMessage_ShouldSkipLLM() {
+        // Act
+        List<Reminder> result = reminderService.extractReminders(testUserId, "I'm feeling fine today");
+
+        // Assert
+        assertTrue(result.isEmpty());
+        verify(chatLanguageModel, never()).chat(anyList());
+        verifyUpserts(0);
     }
 
     @Test
     void extractReminders_WithEmptyUserId_ShouldStillCallLLM() {
         // Arrange
-        when(chatLanguageModel.chat(anyString())).thenReturn("none");
+        when(chatLanguageModel.chat(anyList())).thenReturn(reply("none"));
 
         // Act
         reminderService.extractReminders("", testUserMessage);
 
         // Assert
-        verify(chatLanguageModel).chat(anyString());
-        verify(reminderRepository, never()).save(any(Reminder.class));
+        verify(chatLanguageModel).chat(anyList());
+        verifyUpserts(0);
     }
 
     @Test
     void extractReminders_WithNullUserId_ShouldStillCallLLM() {
         // Arrange
-        when(chatLanguageModel.chat(anyString())).thenReturn("none");
+        when(chatLanguageModel.chat(anyList())).thenReturn(reply("none"));
 
         // Act
         reminderService.extractReminders(null, testUserMessage);
 
         // Assert
-        verify(chatLanguageModel).chat(anyString());
-        verify(reminderRepository, never()).save(any(Reminder.class));
+        verify(chatLanguageModel).chat(anyList());
+        verifyUpserts(0);
     }
 
     @Test
@@ -356,15 +403,15 @@ class ReminderServiceTest {
             Description: Take morning medication
             Tags: medication, health, appointment
             """;
-        when(chatLanguageModel.chat(anyString())).thenReturn(llmResponse);
-        when(reminderRepository.save(any(Reminder.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(chatLanguageModel.chat(anyList())).thenReturn(reply(llmResponse));
+        stubUpsert();
 
         // Act
         reminderService.extractReminders(testUserId, testUserMessage);
 
         // Assert
-        verify(chatLanguageModel).chat(anyString());
-        verify(reminderRepository).save(any(Reminder.class));
+        verify(chatLanguageModel).chat(anyList());
+        verifyUpserts(1);
     }
 
     @Test
@@ -376,15 +423,15 @@ class ReminderServiceTest {
             Description: Take morning medication
             Tags: MEDICATION , HEALTH , APPOINTMENT
             """;
-        when(chatLanguageModel.chat(anyString())).thenReturn(llmResponse);
-        when(reminderRepository.save(any(Reminder.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(chatLanguageModel.chat(anyList())).thenReturn(reply(llmResponse));
+        stubUpsert();
 
         // Act
         reminderService.extractReminders(testUserId, testUserMessage);
 
         // Assert
-        verify(chatLanguageModel).chat(anyString());
-        verify(reminderRepository).save(any(Reminder.class));
+        verify(chatLanguageModel).chat(anyList());
+        verifyUpserts(1);
     }
 
     @Test
@@ -396,15 +443,15 @@ class ReminderServiceTest {
             Description: Take morning medication
             Tags: MEDICATION
             """;
-        when(chatLanguageModel.chat(anyString())).thenReturn(llmResponse);
-        when(reminderRepository.save(any(Reminder.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(chatLanguageModel.chat(anyList())).thenReturn(reply(llmResponse));
+        stubUpsert();
 
         // Act
         reminderService.extractReminders(testUserId, testUserMessage);
 
         // Assert
-        verify(chatLanguageModel).chat(anyString());
-        verify(reminderRepository).save(any(Reminder.class));
+        verify(chatLanguageModel).chat(anyList());
+        verifyUpserts(1);
     }
 
     @Test
@@ -416,14 +463,14 @@ class ReminderServiceTest {
             Description: Take morning medication
             Tags: MEDICATION
             """;
-        when(chatLanguageModel.chat(anyString())).thenReturn(llmResponse);
+        when(chatLanguageModel.chat(anyList())).thenReturn(reply(llmResponse));
 
         // Act
         reminderService.extractReminders(testUserId, testUserMessage);
 
         // Assert
-        verify(chatLanguageModel).chat(anyString());
-        verify(reminderRepository, never()).save(any(Reminder.class));
+        verify(chatLanguageModel).chat(anyList());
+        verifyUpserts(0);
     }
 
     @Test
@@ -435,15 +482,15 @@ class ReminderServiceTest {
             Description: Take morning medication
             Tags: MEDICATION, APPOINTMENT, EVENT, TASK, PERSONAL, WORK, FINANCE, HEALTH, TRAVEL, SOCIAL, EDUCATION, LEISURE, OTHER
             """;
-        when(chatLanguageModel.chat(anyString())).thenReturn(llmResponse);
-        when(reminderRepository.save(any(Reminder.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(chatLanguageModel.chat(anyList())).thenReturn(reply(llmResponse));
+        stubUpsert();
 
         // Act
         reminderService.extractReminders(testUserId, testUserMessage);
 
         // Assert
-        verify(chatLanguageModel).chat(anyString());
-        verify(reminderRepository).save(any(Reminder.class));
+        verify(chatLanguageModel).chat(anyList());
+        verifyUpserts(1);
     }
 
     @Test
@@ -461,14 +508,270 @@ class ReminderServiceTest {
             Description: Doctor appointment
             Tags: APPOINTMENT, HEALTH
             """;
-        when(chatLanguageModel.chat(anyString())).thenReturn(llmResponse);
-        when(reminderRepository.save(any(Reminder.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(chatLanguageModel.chat(anyList())).thenReturn(reply(llmResponse));
 
         // Act
         reminderService.extractReminders(testUserId, complexMessage);
 
         // Assert
-        verify(chatLanguageModel).chat(anyString());
-        verify(reminderRepository, times(2)).save(any(Reminder.class));
+        verify(chatLanguageModel).chat(anyList());
+        verifyUpserts(2);
+    }
+
+    @Test
+    void extractReminders_WithSimpleRemindMeRequest_ShouldSaveWithoutLLM() {
+        // Arrange
+        User user = new User();
+        user.setTimezone("Pacific/Auckland");
+        when(userRepository.findByFirebaseUid(testUserId)).thenReturn(user);
+        ZoneId zone = ZoneId.of("Pacific/Auckland");
+        Instant expected = ZonedDateTime.now(zone).toLocalDate().plusDays(1).atTime(17, 0).atZone(zone).toInstant();
+        stubUpsert();
+
+        // Act
+        List<Reminder> result = reminderService.extractReminders(testUserId, "Remind me to call Lucy tomorrow at 5pm");
+
+        // Assert
+        verify(chatLanguageModel, never()).chat(anyList());
+        assertEquals(1, result.size());
+        Reminder reminder = result.get(0);
+        assertEquals("Call Lucy", reminder.getTitle());
+        assertEquals(expected, reminder.getTimestamp());
+        assertEquals(List.of(ReminderTag.SOCIAL), reminder.getTags());
+        verify(reminderDispatchService).track(reminder);
+    }
+
+    @Test
+    void extractReminders_WithAmbiguousTime_ShouldFallBackToLLM() {
+        // Arrange
+        when(chatLanguageModel.chat(anyList())).thenReturn(reply("none"));
+
+        // Act
+        reminderService.extractReminders(testUserId, "Remind me to have dinner with Jim at 6");
+
+        // Assert
+        verify(chatLanguageModel).chat(anyList());
+    }
+
+    @Test
+    void extractReminders_WithResolvedTime_ShouldPassItToLLM() {
+        // Arrange
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<ChatMessage>> prompt = ArgumentCaptor.forClass(List.class);
+        when(chatLanguageModel.chat(prompt.capture())).thenReturn(reply("none"));
+
+        // Act
+        reminderService.extractReminders(testUserId, testUserMessage);
+
+        // Assert
+        String expectedDate = ZonedDateTime.now(ZoneId.of("UTC")).toLocalDate().plusDays(1) + " 09:00";
+        assertInstanceOf(SystemMessage.class, prompt.getValue().get(0));
+        assertTrue(((UserMessage) prompt.getValue().get(1)).singleText().contains("already been worked out as " + expectedDate));
+    }
+
+    @Test
+    void extractReminders_WithUserTimezone_ShouldReadLLMDateInThatZone() {
+        // Arrange
+        User user = new User();
+        user.setTimezone("Pacific/Auckland");
+        when(userRepository.findByFirebaseUid(testUserId)).thenReturn(user);
+        when(chatLanguageModel.chat(anyList())).thenReturn(reply("""
+            Task: Take medication
+            Date: 2030-01-15 09:00
+            Description: Morning pills
+            Tags: MEDICATION
+            """));
+        stubUpsert();
+
+        // Act
+        List<Reminder> result = reminderService.extractReminders(testUserId, testUserMessage);
+
+        // Assert
+        assertEquals(Instant.parse("2030-01-14T20:00:00Z"), result.get(0).getTimestamp());
+    }
+
+    @Test
+    void extractReminders_WithRepeatedReminderInResponse_ShouldStoreItOnce() {
+        // Arrange
+        when(chatLanguageModel.chat(anyList())).thenReturn(reply("""
+            Task: Doctor appointment
+            Date: 2030-01-16 14:30
+            Description: Annual checkup
+            Tags: APPOINTMENT
+
+            Task: doctor's appointment
+            Date: 2030-01-16 14:00
+            Description: Annual checkup
+            Tags: HEALTH
+            """));
+        stubUpsert();
+
+        // Act
+        List<Reminder> result = reminderService.extractReminders(testUserId, testUserMessage);
+
+        // Assert
+        assertEquals(1, result.size());
+        assertEquals(List.of(ReminderTag.APPOINTMENT, ReminderTag.HEALTH), result.get(0).getTags());
+        verifyUpserts(1);
+    }
+
+    @Test
+    void extractReminders_WithNonLatinTitles_ShouldKeepThemApart() {
+        // Arrange
+        when(chatLanguageModel.chat(anyList())).thenReturn(reply("""
+            Task: Κλήση γιατρού
+            Date: 2030-01-16 14:00
+            Description: Annual checkup
+            Tags: APPOINTMENT
+
+            Task: 吃药
+            Date: 2030-01-16 14:00
+            Description: Morning pills
+            Tags: MEDICATION
+            """));
+        stubUpsert();
+
+        // Act
+        List<Reminder> result = reminderService.extractReminders(testUserId, testUserMessage);
+
+        // Assert
+        assertEquals(2, result.size());
+        assertEquals(ReminderFingerprint.of("κλήση γιατρού", result.get(0).getTimestamp()), result.get(0).getFingerprint());
+        assertNotEquals(result.get(0).getFingerprint(), result.get(1).getFingerprint());
+        verifyUpserts(2);
+    }
+
+    @Test
+    void extractReminders_WhenReminderRepeated_ShouldUpsertOnUserAndFingerprint() {
+        // Arrange
+        Reminder stored = new Reminder(testUserId, "Take medication", Instant.parse("2030-01-15T09:00:00Z"), "Take morning medication", List.of(ReminderTag.MEDICATION));
+        stored.setId("existing");
+        stored.setFingerprint(ReminderFingerprint.of(stored.getTitle(), stored.getTimestamp()));
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        ArgumentCaptor<FindAndModifyOptions> options = ArgumentCaptor.forClass(FindAndModifyOptions.class);
+        when(mongoTemplate.findAndModify(query.capture(), any(Update.class), options.capture(), eq(Reminder.class))).thenReturn(stored);
+        when(chatLanguageModel.chat(anyList())).thenReturn(reply("""
+            Task: Take my medications
+            Date: 2030-01-15 09:00
+            Description: Take morning medication
+            Tags: MEDICATION
+            """));
+
+        // Act
+        List<Reminder> result = reminderService.extractReminders(testUserId, testUserMessage);
+
+        // Assert
+        assertEquals(List.of(stored), result);
+        assertEquals(testUserId, query.getValue().getQueryObject().get("userId"));
+        assertEquals(stored.getFingerprint(), query.getValue().getQueryObject().get("fingerprint"));
+        assertTrue(options.getValue().isUpsert());
+        verify(reminderRepository, never()).save(any(Reminder.class));
+    }
+
+    @Test
+    void extractReminders_WhenStoredReminderGainsTag_ShouldAddTagWithoutReplacingTitle() {
+        // Arrange
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        when(mongoTemplate.findAndModify(any(Query.class), update.capture(), any(FindAndModifyOptions.class), eq(Reminder.class))).thenReturn(null);
+        when(chatLanguageModel.chat(anyList())).thenReturn(reply("""
+            Task: Take medication
+            Date: 2030-01-15 09:00
+            Description: Take morning medication
+            Tags: MEDICATION, HEALTH
+            """));
+
+        // Act
+        reminderService.extractReminders(testUserId, testUserMessage);
+
+        // Assert
+        Document changes = update.getValue().getUpdateObject();
+        assertEquals("Take medication", changes.get("$setOnInsert", Document.class).get("title"));
+        assertEquals("Take morning medication", changes.get("$set", Document.class).get("description"));
+        assertTrue(changes.get("$addToSet", Document.class).containsKey("tags"));
+    }
+
+    @Test
+    void extractReminders_WithRepeatRule_ShouldStoreSeries() {
+        // Arrange
+        when(chatLanguageModel.chat(anyList())).thenReturn(reply("""
+            Task: Take medication
+            Date: 2030-01-15 09:00
+            Repeat: FREQ=DAILY
+            Description: Morning pills
+            Tags: MEDICATION
+            """));
+        stubUpsert();
+
+        // Act
+        List<Reminder> result = reminderService.extractReminders(testUserId, testUserMessage);
+
+        // Assert
+        assertEquals("FREQ=DAILY", result.get(0).getRecurrence());
+        assertEquals("UTC", result.get(0).getRecurrenceZone());
+        assertTrue(result.get(0).isRecurring());
+    }
+
+    @Test
+    void extractReminders_WithRepeatNone_ShouldStoreOneOffReminder() {
+        // Arrange
+        when(chatLanguageModel.chat(anyList())).thenReturn(reply("""
+            Task: Take medication
+            Date: 2030-01-15 09:00
+            Repeat: none
+            Description: Morning pills
+            Tags: MEDICATION
+            """));
+        stubUpsert();
+
+        // Act
+        List<Reminder> result = reminderService.extractReminders(testUserId, testUserMessage);
+
+        // Assert
+        assertNull(result.get(0).getRecurrence());
+    }
+
+    @Test
+    void extractReminders_WithRecurringRemindMeRequest_ShouldUseLLM() {
+        // Arrange
+        when(chatLanguageModel.chat(anyList())).thenReturn(reply("none"));
+
+        // Act
+        reminderService.extractReminders(testUserId, "Remind me to take my pills every day at 9am");
+
+        // Assert
+        verify(chatLanguageModel).chat(anyList());
+    }
+
+    private void stubUpsert() {
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class), eq(Reminder.class)))
+                .thenAnswer(invocation -> upserted(invocation.getArgument(0), invocation.getArgument(1)));
+    }
+
+    private void verifyUpserts(int count) {
+        verify(mongoTemplate, times(count)).findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class), eq(Reminder.class));
+    }
+
+    /**
+     * Builds the document an upsert would insert into an empty collection.
+     */
+    @SuppressWarnings("unchecked")
+    private static Reminder upserted(Query query, Update update) {
+        Document fields = new Document(query.getQueryObject());
+        fields.putAll(update.getUpdateObject().get("$setOnInsert", new Document()));
+        fields.putAll(update.getUpdateObject().get("$set", new Document()));
+        Object added = update.getUpdateObject().get("$addToSet", new Document()).get("tags");
+        List<ReminderTag> tags = added instanceof Update.Modifier each
+                ? Arrays.stream((Object[]) each.getValue()).map(ReminderTag.class::cast).toList()
+                : (List<ReminderTag>) fields.get("tags");
+        Reminder reminder = new Reminder(fields.getString("userId"), fields.getString("title"),
+                (Instant) fields.get("timestamp"), fields.getString("description"), tags);
+        reminder.setFingerprint(fields.getString("fingerprint"));
+        reminder.setRecurrence(fields.getString("recurrence"));
+        reminder.setRecurrenceZone(fields.getString("recurrenceZone"));
+        return reminder;
+    }
+
+    private static ChatResponse reply(String text) {
+        return ChatResponse.builder().aiMessage(AiMessage.from(text)).build();
     }
 }
@@ -0,0 +1,146 @@
+package com.example.ai_companion.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReminderTimerWheelTest {
+
+    private Instant start;
+    private ReminderTimerWheel wheel;
+
+    @BeforeEach
+    void setUp() {
+        start = Instant.parse("2025-01-01T00:00:00Z");
+        wheel = new ReminderTimerWheel(start, Duration.ofSeconds(1), 8, 3);
+    }
+
+    @Test
+    void advance_ShouldReturnOnlyEntriesThatAreDue() {
+        // Arrange
+        wheel.schedule("a", start.plusSeconds(3));
+        wheel.schedule("b", start.plusSeconds(10));
+
+        // Act
+        List<String> first = wheel.advance(start.plusSeconds(5));
+        List<String> second = wheel.advance(start.plusSeconds(9));
+        List<String> third = wheel.advance(start.plusSeconds(10));
+
+        // Assert
+        assertEquals(List.of("a"), first);
+        assertTrue(second.isEmpty());
+        assertEquals(List.of("b"), third);
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void advance_ShouldCascadeEntriesFromHigherLevels() {
+        // Arrange - with 8 slots per level both entries start on the top level
+        wheel.schedule("later", start.plusSeconds(300));
+        wheel.schedule("soon", start.plusSeconds(100));
+
+        // Act
+        List<String> fired = new ArrayList<>();
+        for (int s = 1; s <= 300; s++) {
+            List<String> due = wheel.advance(start.plusSeconds(s));
+            if (!due.isEmpty()) {
+                fired.add(s + ":" + String.join(",", due));
+            }
+        }
+
+        // Assert
+        assertEquals(List.of("100:soon", "300:later"), fired);
+    }
+
+    @Test
+    void advance_AfterLongPause_ShouldReturnEntriesInDueOrder() {
+        // Arrange
+        wheel.schedule("c", start.plusSeconds(400));
+        wheel.schedule("a", start.plusSeconds(2));
+        wheel.schedule("b", start.plusSeconds(70));
+
+        // Act
+        List<String> due = wheel.advance(start.plusSeconds(500));
+
+        // Assert
+        assertEquals(List.of("a", "b", "c"), due);
+    }
+
+    @Test
+    void schedule_WithPastDueTime_ShouldFireOnNextAdvance() {
+        // Arrange
+        wheel.schedule("late", start.minusSeconds(30));
+
+        // Act
+        List<String> due = wheel.advance(start);
+
+        // Assert
+        assertEquals(List.of("late"), due);
+    }
+
+    @Test
+    void schedule_BeyondHorizon_ShouldBeRejected() {
+        // Act
+        boolean scheduled = wheel.schedule("far", start.plusSeconds(512));
+
+        // Assert
+        assertFalse(scheduled);
+        assertFalse(wheel.contains("far"));
+        assertEquals(start.plusSeconds(511), wheel.horizon());
+    }
+
+    @Test
+    void schedule_SameIdTwice_ShouldReplaceEarlierEntry() {
+        // Arrange
+        wheel.schedule("a", start.plusSeconds(5));
+
+        // Act
+        wheel.schedule("a", start.plusSeconds(50));
+
+        // Assert
+        assertEquals(1, wheel.size());
+        assertTrue(wheel.advance(start.plusSeconds(10)).isEmpty());
+        assertEquals(List.of("a"), wheel.advance(start.plusSeconds(50)));
+    }
+
+    @Test
+    void cancel_ShouldRemoveEntry() {
+        // Arrange
+        wheel.schedule("a", start.plusSeconds(5));
+
+        // Act
+        boolean cancelled = wheel.cancel("a");
+
+        // Assert
+        assertTrue(cancelled);
+        assertFalse(wheel.cancel("a"));
+        assertTrue(wheel.advance(start.plusSeconds(10)).isEmpty());
+    }
+
+    @Test
+    void schedule_TensOfThousandsOfEntries_ShouldFireEachExactlyOnce() {
+        // Arrange
+        ReminderTimerWheel large = new ReminderTimerWheel(start, Duration.ofSeconds(1), 64, 3);
+        int count = 50_000;
+        for (int i = 0; i < count; i++) {
+            large.schedule("r" + i, start.plusSeconds(1 + (i * 7L) % 20_000));
+        }
+
+        // Act
+        int fired = 0;
+        for (int s = 1; s <= 20_000; s += 60) {
+            fired += large.advance(start.plusSeconds(s)).size();
+        }
+        fired += large.advance(start.plusSeconds(20_000)).size();
+
+        // Assert
+        assertEquals(count, fired);
+        assertEquals(0, large.size());
+    }
+}
@@ -0,0 +1,153 @@
+package com.example.ai_companion.service;
+
+import com.example.ai_companion.dto.HeyGenTextToSpeechRequest;
+import com.example.ai_companion.response.HeyGenAudioResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class SpokenPhraseCacheTest {
+
+    @Mock
+    private HeyGenService heyGenService;
+
+    @InjectMocks
+    private SpokenPhraseCache spokenPhraseCache;
+
+    @TempDir
+    Path cacheDir;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(spokenPhraseCache, "directory", cacheDir.toString());
+        spokenPhraseCache.load();
+    }
+
+    private static HeyGenTextToSpeechRequest request(String sessionId, String voiceId, String text) {
+        return new HeyGenTextToSpeechRequest(sessionId, text, voiceId, 1.0, 1.0);
+    }
+
+    private static HeyGenAudioResponse audio(String data) {
+        return new HeyGenAudioResponse(null, data, "mp3", 24000, "success", null);
+    }
+
+    @Test
+    void speak_SamePhraseTwice_ShouldSynthesizeOnce() {
+        // Arrange
+        when(heyGenService.synthesizeSpeech(any())).thenReturn(audio("QUJD"));
+        spokenPhraseCache.speak(request("s1", "voice1", "Good morning, Mary!"));
+
+        // Act
+        HeyGenAudioResponse again = spokenPhraseCache.speak(request("s2", "voice1", "Good morning, Mary!"));
+
+        // Assert
+        assertEquals("QUJD", again.getAudioData());
+        assertEquals("s2", again.getSessionId());
+        assertEquals(24000, again.getSampleRate());
+        verify(heyGenService, times(1)).synthesizeSpeech(any());
+        assertEquals(1L, spokenPhraseCache.getStats().get("hits"));
+    }
+
+    @Test
+    void speak_WithNearIdenticalText_ShouldReuseAudio() {
+        // Arrange
+        when(heyGenService.synthesizeSpeech(any())).thenReturn(audio("QUJD"));
+        spokenPhraseCache.speak(request("s1", "voice1", "Good morning, Mary!"));
+
+        // Act
+        spokenPhraseCache.speak(request("s1", "voice1", "  Good morning ,\n Mary !"));
+
+        // Assert
+        verify(heyGenService, times(1)).synthesizeSpeech(any());
+    }
+
+    @Test
+    void speak_WithDifferentVoice_ShouldSynthesizeAgain() {
+        // Arrange
+        when(heyGenService.synthesizeSpeech(any())).thenReturn(audio("QUJD"), audio("REVG"));
+        spokenPhraseCache.speak(request("s1", "voice1", "Good morning, Mary!"));
+
+        // Act
+        HeyGenAudioResponse other = spokenPhraseCache.speak(request("s1", "voice2", "Good morning, Mary!"));
+
+        // Assert
+        assertEquals("REVG", other.getAudioData());
+        verify(heyGenService, times(2)).synthesizeSpeech(any());
+    }
+
+    @Test
+    void speak_AfterRestart_ShouldServeFromDisk() {
+        // Arrange
+        when(heyGenService.synthesizeSpeech(any())).thenReturn(audio("QUJD"));
+        spokenPhraseCache.speak(request("s1", "voice1", "Time for your tablets."));
+        SpokenPhraseCache restarted = new SpokenPhraseCache();
+        ReflectionTestUtils.setField(restarted, "heyGenService", heyGenService);
+        ReflectionTestUtils.setField(restarted, "directory", cacheDir.toString());
+        restarted.load();
+
+        // Act
+        HeyGenAudioResponse cached = restarted.speak(request("s1", "voice1", "Time for your tablets."));
+
+        // Assert
+        assertEquals("QUJD", cached.getAudioData());
+        verify(heyGenService, times(1)).synthesizeSpeech(any());
+        assertEquals(1, restarted.getStats().get("phrases"));
+    }
+
+    @Test
+    void speak_OverSizeLimit_ShouldEvictLeastRecentlyUsedPhrase() {
+        // Arrange
+        when(heyGenService.synthesizeSpeech(any())).thenReturn(audio("QUJD"));
+        spokenPhraseCache.speak(request("s1", "voice1", "one"));
+        long entryBytes = (Long) spokenPhraseCache.getStats().get("bytes");
+        ReflectionTestUtils.setField(spokenPhraseCache, "maxBytes", entryBytes * 2);
+        spokenPhraseCache.speak(request("s1", "voice1", "two"));
+        spokenPhraseCache.speak(request("s1", "voice1", "one"));
+
+        // Act
+        spokenPhraseCache.speak(request("s1", "voice1", "three"));
+        spokenPhraseCache.speak(request("s1", "voice1", "one"));
+        spokenPhraseCache.speak(request("s1", "voice1", "two"));
+
+        // Assert
+        verify(heyGenService, times(1)).synthesizeSpeech(argThat(r -> r.getText().equals("one")));
+        verify(heyGenService, times(2)).synthesizeSpeech(argThat(r -> r.getText().equals("two")));
+        assertTrue((Long) spokenPhraseCache.getStats().get("evictions") >= 1);
+        assertTrue((Long) spokenPhraseCache.getStats().get("bytes") <= entryBytes * 2);
+    }
+
+    @Test
+    void speak_WhenSynthesisFails_ShouldNotCacheAnything() {
+        // Arrange
+        when(heyGenService.synthesizeSpeech(any()))
+                .thenThrow(new RuntimeException("Text-to-speech failed"))
+                .thenReturn(audio("QUJD"));
+
+        // Act
+        assertThrows(RuntimeException.class, () -> spokenPhraseCache.speak(request("s1", "voice1", "Hello")));
+        HeyGenAudioResponse retried = spokenPhraseCache.speak(request("s1", "voice1", "Hello"));
+
+        // Assert
+        assertEquals("QUJD", retried.getAudioData());
+        verify(heyGenService, times(2)).synthesizeSpeech(any());
+    }
+
+    @Test
+    void normalise_ShouldFoldWhitespaceAndCompatibilityForms() {
+        // Act & Assert
+        assertEquals("Hello, Mary!", SpokenPhraseCache.normalise("  Hello ,\tＭａｒｙ ! "));
+        assertEquals(SpokenPhraseCache.key(request("a", "v", "Hi  there")), SpokenPhraseCache.key(request("b", "v", "Hi there")));
+    }
+}
@@ -0,0 +1,136 @@
+package com.example.ai_companion.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TemporalExpressionParserTest {
+
+    private final TemporalExpressionParser parser = new TemporalExpressionParser();
+
+    // Wednesday 11 June 2025, 10:00 in Auckland
+    private ZonedDateTime now;
+
+    @BeforeEach
+    void setUp() {
+        now = ZonedDateTime.of(2025, 6, 11, 10, 0, 0, 0, ZoneId.of("Pacific/Auckland"));
+    }
+
+    private TemporalExpressionParser.Resolution parse(String text) {
+        return parser.parse(text, now).orElseThrow();
+    }
+
+    @Test
+    void parse_TomorrowWithMeridiemTime_ShouldResolveConfidently() {
+        TemporalExpressionParser.Resolution result = parse("Remind me to call Lucy tomorrow at 5pm");
+
+        assertEquals(LocalDateTime.of(2025, 6, 12, 17, 0), result.getDateTime());
+        assertTrue(result.hasTime());
+        assertTrue(result.isConfident());
+        assertEquals("Remind me to call Lucy", result.stripFrom("Remind me to call Lucy tomorrow at 5pm"));
+    }
+
+    @Test
+    void parse_RelativeHours_ShouldAddToCurrentTime() {
+        TemporalExpressionParser.Resolution result = parse("check the oven in two hours");
+
+        assertEquals(LocalDateTime.of(2025, 6, 11, 12, 0), result.getDateTime());
+        assertTrue(result.isConfident());
+    }
+
+    @Test
+    void parse_HalfAnHour_ShouldAddThirtyMinutes() {
+        assertEquals(LocalDateTime.of(2025, 6, 11, 10, 30), parse("in half an hour").getDateTime());
+    }
+
+    @Test
+    void parse_NextWeekday_ShouldResolveToComingWeekday() {
+        TemporalExpressionParser.Resolution result = parse("I have the dentist next Thursday at 10:30 am");
+
+        assertEquals(LocalDateTime.of(2025, 6, 12, 10, 30), result.getDateTime());
+        assertTrue(result.isConfident());
+    }
+
+    @Test
+    void parse_SameWeekday_ShouldResolveToNextWeek() {
+        assertEquals(LocalDateTime.of(2025, 6, 18, 15, 0), parse("on Wednesday afternoon").getDateTime());
+    }
+
+    @Test
+    void parse_DayOnly_ShouldDefaultToNoonWithoutTime() {
+        TemporalExpressionParser.Resolution result = parse("pay the rates on Friday");
+
+        assertEquals(LocalDateTime.of(2025, 6, 13, 12, 0), result.getDateTime());
+        assertFalse(result.hasTime());
+        assertTrue(result.isConfident());
+    }
+
+    @Test
+    void parse_TimeAlreadyPassedToday_ShouldRollToTomorrow() {
+        assertEquals(LocalDateTime.of(2025, 6, 12, 9, 0), parse("take my pills at 9am").getDateTime());
+    }
+
+    @Test
+    void parse_AbsoluteDates_ShouldResolveInCurrentOrNextYear() {
+        assertEquals(LocalDateTime.of(2025, 7, 3, 12, 0), parse("on 3rd of July").getDateTime());
+        assertEquals(LocalDateTime.of(2026, 3, 3, 12, 0), parse("March 3").getDateTime());
+        assertEquals(LocalDateTime.of(2025, 6, 14, 12, 0), parse("by the 14th").getDateTime());
+        assertEquals(LocalDateTime.of(2025, 8, 1, 9, 15), parse("2025-08-01 at 9:15 am").getDateTime());
+    }
+
+    @Test
+    void parse_TonightWithoutTime_ShouldDefaultToEvening() {
+        TemporalExpressionParser.Resolution result = parse("bins out tonight");
+
+        assertEquals(LocalDateTime.of(2025, 6, 11, 20, 0), result.getDateTime());
+        assertTrue(result.hasTime());
+    }
+
+    @Test
+    void parse_TomorrowMorning_ShouldUseMorningDefault() {
+        TemporalExpressionParser.Resolution result = parse("ring the bank tomorrow morning");
+
+        assertEquals(LocalDateTime.of(2025, 6, 12, 9, 0), result.getDateTime());
+        assertEquals("ring the bank", result.stripFrom("ring the bank tomorrow morning"));
+    }
+
+    @Test
+    void parse_BareHourWithoutDayPart_ShouldNotBeConfident() {
+        TemporalExpressionParser.Resolution result = parse("dinner with Jim at 6");
+
+        assertEquals(LocalDateTime.of(2025, 6, 11, 18, 0), result.getDateTime());
+        assertFalse(result.isConfident());
+    }
+
+    @Test
+    void parse_BareHourWithDayPart_ShouldBeConfident() {
+        TemporalExpressionParser.Resolution result = parse("walk at 7 in the morning");
+
+        assertEquals(LocalDateTime.of(2025, 6, 12, 7, 0), result.getDateTime());
+        assertTrue(result.isConfident());
+    }
+
+    @Test
+    void parse_AmbiguousNumericDate_ShouldNotBeConfident() {
+        assertFalse(parse("on 3/4").isConfident());
+        TemporalExpressionParser.Resolution unambiguous = parse("on 20/6");
+        assertTrue(unambiguous.isConfident());
+        assertEquals(LocalDateTime.of(2025, 6, 20, 12, 0), unambiguous.getDateTime());
+    }
+
+    @Test
+    void parse_TwoDifferentDays_ShouldNotBeConfident() {
+        assertFalse(parse("doctor tomorrow and dentist on Friday").isConfident());
+    }
+
+    @Test
+    void parse_WithoutTimeExpression_ShouldReturnEmpty() {
+        assertTrue(parser.parse("I'm feeling fine", now).isEmpty());
+        assertTrue(parser.parse(null, now).isEmpty());
+    }
+}
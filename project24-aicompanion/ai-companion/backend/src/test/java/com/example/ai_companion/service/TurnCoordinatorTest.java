@@ -0,0 +1,211 @@
+package com.example.ai_companion.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TurnCoordinatorTest {
+
+    private TurnCoordinator turnCoordinator;
+
+    @BeforeEach
+    void setUp() {
+        turnCoordinator = new TurnCoordinator();
+    }
+
+    /** Waits until the coordinator has seen {@code count} of the given stat. */
+    private void awaitStat(String stat, long count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while ((Long) turnCoordinator.getStats().get(stat) < count) {
+            assertTrue(System.currentTimeMillis() < deadline, "Timed out waiting for " + stat);
+            Thread.sleep(5);
+        }
+    }
+
+    @Test
+    void run_WithTwoTurnsForSameUser_ShouldRunThemInOrder() throws Exception {
+        // Arrange
+        CountDownLatch firstStarted = new CountDownLatch(1);
+        CountDownLatch releaseFirst = new CountDownLatch(1);
+        List<String> events = new CopyOnWriteArrayList<>();
+
+        // Act
+        CompletableFuture<String> first = CompletableFuture.supplyAsync(() -> turnCoordinator.run("user1", null, () -> {
+            events.add("first started");
+            firstStarted.countDown();
+            await(releaseFirst);
+            events.add("first finished");
+            return "one";
+        }));
+        assertTrue(firstStarted.await(5, TimeUnit.SECONDS));
+        CompletableFuture<String> second = CompletableFuture.supplyAsync(() -> turnCoordinator.run("user1", null, () -> {
+            events.add("second started");
+            return "two";
+        }));
+        awaitStat("waited", 1);
+        releaseFirst.countDown();
+
+        // Assert
+        assertEquals("one", first.get(5, TimeUnit.SECONDS));
+        assertEquals("two", second.get(5, TimeUnit.SECONDS));
+        assertEquals(List.of("first started", "first finished", "second started"), events);
+        assertEquals(0, turnCoordinator.getStats().get("activeQueues"));
+    }
+
+    @Test
+    void run_WithDifferentUsers_ShouldNotWaitForEachOther() throws Exception {
+        // Arrange
+        CountDownLatch releaseFirst = new CountDownLatch(1);
+        CompletableFuture<String> first = CompletableFuture.supplyAsync(() -> turnCoordinator.run("user1", null, () -> {
+            await(releaseFirst);
+            return "one";
+        }));
+
+        // Act
+        String other = turnCoordinator.run("user2", null, () -> "two");
+
+        // Assert
+        assertEquals("two", other);
+        assertFalse(first.isDone());
+        releaseFirst.countDown();
+        assertEquals("one", first.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void run_WithDuplicateInFlight_ShouldShareOneResult() throws Exception {
+        // Arrange
+        AtomicInteger calls = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<String> first = CompletableFuture.supplyAsync(() -> turnCoordinator.run("user1", "hello", () -> {
+            calls.incrementAndGet();
+            started.countDown();
+            await(release);
+            return "reply " + calls.get();
+        }));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        // Act
+        CompletableFuture<String> duplicate = CompletableFuture.supplyAsync(() -> turnCoordinator.run("user1", "hello", () -> {
+            calls.incrementAndGet();
+            return "should not run";
+        }));
+        awaitStat("coalesced", 1);
+        release.countDown();
+
+        // Assert
+        assertEquals("reply 1", first.get(5, TimeUnit.SECONDS));
+        assertEquals("reply 1", duplicate.get(5, TimeUnit.SECONDS));
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    void run_WithDuplicateWithinReplayWindow_ShouldReturnFinishedResult() {
+        // Arrange
+        AtomicInteger calls = new AtomicInteger();
+        turnCoordinator.run("user1", "hello", () -> "reply " + calls.incrementAndGet());
+
+        // Act
+        String resent = turnCoordinator.run("user1", "hello", () -> "reply " + calls.incrementAndGet());
+        String otherUser = turnCoordinator.run("user2", "hello", () -> "reply " + calls.incrementAndGet());
+
+        // Assert
+        assertEquals("reply 1", resent);
+        assertEquals("reply 2", otherUser);
+    }
+
+    @Test
+    void run_WithoutReplay_ShouldRunAgainOnceFinished() {
+        // Arrange
+        AtomicInteger calls = new AtomicInteger();
+        turnCoordinator.run("user1", "message:yes", false, () -> "reply " + calls.incrementAndGet());
+
+        // Act
+        String again = turnCoordinator.run("user1", "message:yes", false, () -> "reply " + calls.incrementAndGet());
+
+        // Assert
+        assertEquals("reply 2", again);
+        assertEquals(0L, turnCoordinator.getStats().get("coalesced"));
+    }
+
+    @Test
+    void run_WithoutReplay_ShouldStillShareResultWhileInFlight() throws Exception {
+        // Arrange
+        AtomicInteger calls = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<String> first = CompletableFuture.supplyAsync(() -> turnCoordinator.run("user1", "message:yes", false, () -> {
+            calls.incrementAndGet();
+            started.countDown();
+            await(release);
+            return "reply " + calls.get();
+        }));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        // Act
+        CompletableFuture<String> duplicate = CompletableFuture.supplyAsync(() -> turnCoordinator.run("user1", "message:yes", false, () -> {
+            calls.incrementAndGet();
+            return "should not run";
+        }));
+        awaitStat("coalesced", 1);
+        release.countDown();
+
+        // Assert
+        assertEquals("reply 1", first.get(5, TimeUnit.SECONDS));
+        assertEquals("reply 1", duplicate.get(5, TimeUnit.SECONDS));
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    void run_AfterReplayWindow_ShouldRunAgain() throws Exception {
+        // Arrange
+        ReflectionTestUtils.setField(turnCoordinator, "replayMillis", 50L);
+        AtomicInteger calls = new AtomicInteger();
+        turnCoordinator.run("user1", "hello", () -> "reply " + calls.incrementAndGet());
+        long deadline = System.currentTimeMillis() + 5000;
+        while ((Integer) turnCoordinator.getStats().get("trackedRequests") > 0) {
+            assertTrue(System.currentTimeMillis() < deadline, "Timed out waiting for the replay window to close");
+            Thread.sleep(5);
+        }
+
+        // Act
+        String again = turnCoordinator.run("user1", "hello", () -> "reply " + calls.incrementAndGet());
+
+        // Assert
+        assertEquals("reply 2", again);
+    }
+
+    @Test
+    void run_WhenWorkFails_ShouldNotReplayFailure() {
+        // Arrange
+        AtomicInteger calls = new AtomicInteger();
+
+        // Act
+        RuntimeException failure = assertThrows(RuntimeException.class, () -> turnCoordinator.run("user1", "hello", () -> {
+            calls.incrementAndGet();
+            throw new RuntimeException("Model unavailable");
+        }));
+        String retried = turnCoordinator.run("user1", "hello", () -> "reply " + calls.incrementAndGet());
+
+        // Assert
+        assertEquals("Model unavailable", failure.getMessage());
+        assertEquals("reply 2", retried);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
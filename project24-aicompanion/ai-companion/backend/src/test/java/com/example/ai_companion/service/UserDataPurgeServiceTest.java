@@ -0,0 +1,289 @@
+package com.example.ai_companion.service;
+
+import com.example.ai_companion.model.Connection;
+import com.example.ai_companion.model.ConversationSummary;
+import com.example.ai_companion.model.DailySummary;
+import com.example.ai_companion.model.GameMessage;
+import com.example.ai_companion.model.GameSession;
+import com.example.ai_companion.model.Greeting;
+import com.example.ai_companion.model.Location;
+import com.example.ai_companion.model.Message;
+import com.example.ai_companion.model.Reminder;
+import com.example.ai_companion.model.User;
+import com.example.ai_companion.model.UserDataPurge;
+import com.mongodb.client.result.DeleteResult;
+import com.mongodb.client.result.UpdateResult;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mapping.PropertyHandler;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentEntity;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentProperty;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class UserDataPurgeServiceTest {
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @InjectMocks
+    private UserDataPurgeService userDataPurgeService;
+
+    private UserDataPurge purge;
+
+    // Ids found per collection, one list per batch
+    private final Map<String, Deque<List<Document>>> batches = new HashMap<>();
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(userDataPurgeService, "batchSize", 2);
+        purge = new UserDataPurge("user123", false, Instant.now());
+        purge.setId("purge1");
+        purge.setStatus(UserDataPurge.Status.RUNNING);
+    }
+
+    private static List<Document> ids(String... ids) {
+        return Arrays.stream(ids).map(id -> new Document("_id", id)).toList();
+    }
+
+    private void stubStorage() {
+        User user = new User();
+        user.setId("user123");
+        user.setFirebaseUid("firebase123");
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class), eq(UserDataPurge.class)))
+                .thenReturn(purge);
+        when(mongoTemplate.findOne(any(Query.class), eq(User.class))).thenReturn(user);
+        when(mongoTemplate.find(any(Query.class), eq(Document.class), anyString())).thenAnswer(invocation -> {
+            Deque<List<Document>> queued = batches.get(invocation.<String>getArgument(2));
+            return queued == null || queued.isEmpty() ? List.of() : queued.poll();
+        });
+        lenient().when(mongoTemplate.remove(any(Query.class), anyString())).thenAnswer(invocation -> {
+            Query query = invocation.getArgument(0);
+            return DeleteResult.acknowledged(((List<?>) query.getQueryObject().get("_id", Document.class).get("$in")).size());
+        });
+        when(mongoTemplate.updateFirst(any(Query.class), any(Update.class), eq(UserDataPurge.class)))
+                .thenReturn(UpdateResult.acknowledged(1, 1L, null));
+    }
+
+    private Update finalUpdate() {
+        ArgumentCaptor<Update> updates = ArgumentCaptor.forClass(Update.class);
+        verify(mongoTemplate, atLeastOnce()).updateFirst(any(Query.class), updates.capture(), eq(UserDataPurge.class));
+        return updates.getValue();
+    }
+
+    @Test
+    void run_ShouldDeleteInBatchesUntilCollectionIsEmpty() {
+        // Arrange
+        stubStorage();
+        batches.put("messages", new ArrayDeque<>(List.of(ids("m1", "m2"), ids("m3"))));
+        batches.put("reminders", new ArrayDeque<>(List.of(ids("r1"))));
+
+        // Act
+        userDataPurgeService.run("purge1");
+
+        // Assert
+        verify(mongoTemplate, times(2)).find(any(Query.class), eq(Document.class), eq("messages"));
+        verify(mongoTemplate, times(2)).remove(any(Query.class), eq("messages"));
+        verify(mongoTemplate, times(1)).remove(any(Query.class), eq("reminders"));
+        verify(mongoTemplate, never()).remove(any(Query.class), eq("locations"));
+        ArgumentCaptor<Update> updates = ArgumentCaptor.forClass(Update.class);
+        verify(mongoTemplate, atLeastOnce()).updateFirst(any(Query.class), updates.capture(), eq(UserDataPurge.class));
+        long messagesDeleted = updates.getAllValues().stream()
+                .map(u -> u.getUpdateObject().get("$inc", Document.class))
+                .filter(inc -> inc != null && inc.containsKey("deleted.messages"))
+                .mapToLong(inc -> ((Number) inc.get("deleted.messages")).longValue())
+                .sum();
+        assertEquals(3L, messagesDeleted);
+        assertEquals(UserDataPurge.Status.DONE, finalUpdate().getUpdateObject().get("$set", Document.class).get("status"));
+        assertTrue(finalUpdate().getUpdateObject().get("$unset", Document.class).containsKey("activeUserId"));
+    }
+
+    @Test
+    void run_ShouldMatchBothAccountIdAndFirebaseUid() {
+        // Arrange
+        stubStorage();
+
+        // Act
+        userDataPurgeService.run("purge1");
+
+        // Assert
+        ArgumentCaptor<Query> queries = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate).find(queries.capture(), eq(Document.class), eq("messages"));
+        Document owner = queries.getValue().getQueryObject().get("userId", Document.class);
+        assertEquals(List.of("user123", "firebase123"), owner.get("$in"));
+        assertEquals(2, queries.getValue().getLimit());
+    }
+
+    @Test
+    void run_WithDeleteAccount_ShouldUnlinkAndRemoveUser() {
+        // Arrange
+        purge.setDeleteAccount(true);
+        stubStorage();
+        when(mongoTemplate.remove(any(Query.class), eq(User.class))).thenReturn(DeleteResult.acknowledged(1));
+
+        // Act
+        userDataPurgeService.run("purge1");
+
+        // Assert
+        verify(mongoTemplate, times(4)).updateMulti(any(Query.class), any(Update.class), eq(User.class));
+        verify(mongoTemplate).remove(any(Query.class), eq(User.class));
+        assertEquals(UserDataPurge.Status.DONE, finalUpdate().getUpdateObject().get("$set", Document.class).get("status"));
+    }
+
+    @Test
+    void run_WithoutDeleteAccount_ShouldKeepUser() {
+        // Arrange
+        stubStorage();
+
+        // Act
+        userDataPurgeService.run("purge1");
+
+        // Assert
+        verify(mongoTemplate, never()).remove(any(Query.class), eq(User.class));
+    }
+
+    @Test
+    void run_WhenClaimedElsewhere_ShouldDeleteNothing() {
+        // Arrange
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class), eq(UserDataPurge.class)))
+                .thenReturn(null);
+
+        // Act
+        userDataPurgeService.run("purge1");
+
+        // Assert
+        verify(mongoTemplate, never()).find(any(Query.class), eq(Document.class), anyString());
+        verify(mongoTemplate, never()).remove(any(Query.class), anyString());
+    }
+
+    @Test
+    void run_WhenDeleteFails_ShouldMarkPurgeFailed() {
+        // Arrange
+        stubStorage();
+        batches.put("messages", new ArrayDeque<>(List.of(ids("m1"))));
+        when(mongoTemplate.remove(any(Query.class), eq("messages"))).thenThrow(new RuntimeException("Connection reset"));
+
+        // Act
+        userDataPurgeService.run("purge1");
+
+        // Assert
+        Document set = finalUpdate().getUpdateObject().get("$set", Document.class);
+        assertEquals(UserDataPurge.Status.FAILED, set.get("status"));
+        assertEquals("Connection reset", set.get("error"));
+    }
+
+    @Test
+    void start_WithPurgeUnderWay_ShouldReturnIt() {
+        // Arrange
+        when(mongoTemplate.insert(any(UserDataPurge.class))).thenThrow(new DuplicateKeyException("E11000 activeUserId"));
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        when(mongoTemplate.findOne(query.capture(), eq(UserDataPurge.class))).thenReturn(purge);
+
+        // Act
+        UserDataPurge result = userDataPurgeService.start("user123", false);
+
+        // Assert
+        assertSame(purge, result);
+        assertEquals("user123", query.getValue().getQueryObject().get("activeUserId"));
+        verify(mongoTemplate, times(1)).insert(any(UserDataPurge.class));
+        verify(mongoTemplate, never()).findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class), eq(UserDataPurge.class));
+    }
+
+    @Test
+    void start_ShouldRecordPurgeAndRunItInBackground() {
+        // Arrange
+        when(mongoTemplate.insert(any(UserDataPurge.class))).thenAnswer(invocation -> {
+            UserDataPurge inserted = invocation.getArgument(0);
+            inserted.setId("purge2");
+            return inserted;
+        });
+
+        // Act
+        UserDataPurge result = userDataPurgeService.start("user123", true);
+
+        // Assert
+        assertEquals(UserDataPurge.Status.PENDING, result.getStatus());
+        assertTrue(result.isDeleteAccount());
+        assertEquals("user123", result.getActiveUserId());
+        verify(mongoTemplate, timeout(1000)).findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class), eq(UserDataPurge.class));
+    }
+
+    @Test
+    void resumeStalled_ShouldRunStalledPurges() {
+        // Arrange
+        when(mongoTemplate.find(any(Query.class), eq(UserDataPurge.class))).thenReturn(List.of(purge));
+
+        // Act
+        userDataPurgeService.resumeStalled();
+
+        // Assert
+        verify(mongoTemplate, timeout(1000)).findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class), eq(UserDataPurge.class));
+    }
+
+    @Test
+    void targets_ShouldMatchOnFieldsTheirDocumentsAreStoredUnder() {
+        // Arrange
+        MongoMappingContext mappingContext = new MongoMappingContext();
+        mappingContext.setSimpleTypeHolder(new MongoCustomConversions(List.of()).getSimpleTypeHolder());
+        Map<String, MongoPersistentEntity<?>> entities = Stream.of(Message.class, ConversationSummary.class, DailySummary.class,
+                        Greeting.class, Reminder.class, Location.class, GameMessage.class, GameSession.class, Connection.class)
+                .map(mappingContext::getRequiredPersistentEntity)
+                .collect(Collectors.toMap(MongoPersistentEntity::getCollection, entity -> entity));
+
+        for (UserDataPurgeService.Target target : UserDataPurgeService.TARGETS) {
+            // Act
+            Document criteria = target.owner().apply(List.of("user123")).getCriteriaObject();
+
+            // Assert
+            MongoPersistentEntity<?> entity = entities.get(target.collection());
+            assertNotNull(entity, target.collection());
+            Set<String> storedFields = new HashSet<>();
+            entity.doWithProperties((PropertyHandler<MongoPersistentProperty>) property -> storedFields.add(property.getFieldName()));
+            for (String field : fields(criteria)) {
+                assertTrue(storedFields.contains(field), target.collection() + "." + field);
+            }
+        }
+    }
+
+    private static List<String> fields(Document criteria) {
+        List<String> fields = new ArrayList<>();
+        criteria.forEach((key, value) -> {
+            if (key.equals("$or")) {
+                ((List<?>) value).forEach(branch -> fields.addAll(fields((Document) branch)));
+            } else {
+                fields.add(key);
+            }
+        });
+        return fields;
+    }
+}
@@ -0,0 +1,354 @@
+package com.example.ai_companion.utils;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Local stand-in for the OpenAI chat completions endpoint, so the chat
+ * pipeline can be load- and latency-tested offline. Point
+ * {@code OpenAiChatModel} / {@code OpenAiStreamingChatModel} at
+ * {@link #baseUrl()} (or run the app with {@code llm.base-url} set to it).
+ * <p>
+ * Replies come from prompts scripted with {@link #reply(String, String)},
+ * matched against the text of all messages (so a script can pick out a task
+ * by its system prompt), or from {@link #defaultReply}.
+ * The default is {@code "none"}, which the extraction prompts treat as
+ * "nothing found". Each response waits for a time to first token drawn from
+ * {@link #latency(Latency)}, then produces tokens at
+ * {@link #tokensPerSecond(double)}; streamed responses are sent as SSE chunks,
+ * one per word. Errors can be injected at random with
+ * {@link #errorRate(double, int)} or queued with {@link #failNext(int)}.
+ * <p>
+ * Run {@link #main(String[])} for a standalone server:
+ * {@code port medianMillis p99Millis tokensPerSecond errorRate}.
+ */
+public class FakeOpenAiServer implements AutoCloseable {
+
+    /** Time to first token, in milliseconds. */
+    @FunctionalInterface
+    public interface Latency {
+        long nextMillis(Random random);
+
+        static Latency fixed(long millis) {
+            return random -> millis;
+        }
+
+        static Latency uniform(long minMillis, long maxMillis) {
+            return random -> minMillis + (long) (random.nextDouble() * (maxMillis - minMillis));
+        }
+
+        /** Long-tailed latency like a real provider: log-normal with the given median and 99th percentile. */
+        static Latency logNormal(long medianMillis, long p99Millis) {
+            double sigma = Math.log((double) p99Millis / medianMillis) / 2.326;
+            return random -> Math.round(medianMillis * Math.exp(sigma * random.nextGaussian()));
+        }
+    }
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final MockWebServer server = new MockWebServer();
+    private final Map<String, String> scripted = new LinkedHashMap<>();
+    private final Queue<Integer> queuedFailures = new ConcurrentLinkedQueue<>();
+    private final Queue<String> prompts = new ConcurrentLinkedQueue<>();
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+    private final AtomicLong ids = new AtomicLong();
+
+    private volatile Random random = new Random(42);
+    private volatile Latency latency = Latency.fixed(0);
+    private volatile double tokensPerSecond;
+    private volatile double errorRate;
+    private volatile int errorStatus = 500;
+    private volatile Function<String, String> defaultReply = prompt -> "none";
+
+    public FakeOpenAiServer() {
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                return respond(request);
+            }
+        });
+    }
+
+    public FakeOpenAiServer latency(Latency latency) {
+        this.latency = latency;
+        return this;
+    }
+
+    /** Output rate after the first token; 0 (the default) sends the whole reply at once. */
+    public FakeOpenAiServer tokensPerSecond(double tokensPerSecond) {
+        this.tokensPerSecond = tokensPerSecond;
+        return this;
+    }
+
+    /** Fails the given share of requests with {@code status}, e.g. 429 or 503. */
+    public FakeOpenAiServer errorRate(double errorRate, int status) {
+        this.errorRate = errorRate;
+        this.errorStatus = status;
+        return this;
+    }
+
+    /** Fails the next request with {@code status}, before any random errors. */
+    public FakeOpenAiServer failNext(int status) {
+        queuedFailures.add(status);
+        return this;
+    }
+
+    /** Answers {@code reply} when any message contains {@code text} (ignoring case); first match wins. */
+    public FakeOpenAiServer reply(String text, String reply) {
+        synchronized (scripted) {
+            scripted.put(text.toLowerCase(Locale.ROOT), reply);
+        }
+        return this;
+    }
+
+    /** Reply for prompts no script matches, given the last user message. */
+    public FakeOpenAiServer defaultReply(Function<String, String> defaultReply) {
+        this.defaultReply = defaultReply;
+        return this;
+    }
+
+    /** Seed for latency and error injection, for repeatable runs. */
+    public FakeOpenAiServer seed(long seed) {
+        this.random = new Random(seed);
+        return this;
+    }
+
+    public FakeOpenAiServer start() throws IOException {
+        return start(0);
+    }
+
+    public FakeOpenAiServer start(int port) throws IOException {
+        server.start(port);
+        return this;
+    }
+
+    /** Base URL for the OpenAI client, ending in {@code /v1/}. */
+    public String baseUrl() {
+        return server.url("/v1/").toString();
+    }
+
+    public long getRequestCount() {
+        return requests.get();
+    }
+
+    public long getErrorCount() {
+        return errors.get();
+    }
+
+    /** The last user message of every chat request received, in order. */
+    public List<String> getPrompts() {
+        return new ArrayList<>(prompts);
+    }
+
+    @Override
+    public void close() throws IOException {
+        server.shutdown();
+    }
+
+    private MockResponse respond(RecordedRequest request) {
+        String path = request.getPath();
+        if (!"POST".equals(request.getMethod()) || path == null || !path.endsWith("/chat/completions")) {
+            return error(404, "invalid_request_error", "Unknown endpoint " + request.getMethod() + " " + path);
+        }
+        requests.incrementAndGet();
+        JsonNode body;
+        try {
+            body = MAPPER.readTree(request.getBody().readUtf8());
+        } catch (IOException e) {
+            return error(400, "invalid_request_error", "Malformed JSON: " + e.getMessage());
+        }
+
+        String prompt = lastUserMessage(body.path("messages"));
+        prompts.add(prompt);
+        long firstTokenMillis;
+        boolean fail;
+        synchronized (this) {
+            firstTokenMillis = Math.max(0, latency.nextMillis(random));
+            fail = random.nextDouble() < errorRate;
+        }
+        Integer queued = queuedFailures.poll();
+        if (queued != null || fail) {
+            int status = queued != null ? queued : errorStatus;
+            return error(status, status == 429 ? "rate_limit_error" : "server_error", "Injected failure")
+                    .setHeadersDelay(firstTokenMillis, TimeUnit.MILLISECONDS);
+        }
+
+        String reply = replyFor(allText(body.path("messages")), prompt);
+        List<String> tokens = tokenize(reply);
+        int promptTokens = estimateTokens(body.path("messages").toString());
+        String model = body.path("model").asText("gpt-4o-mini");
+        String id = "chatcmpl-fake-" + ids.incrementAndGet();
+        return body.path("stream").asBoolean(false)
+                ? streamed(id, model, tokens, promptTokens, firstTokenMillis)
+                : complete(id, model, reply, tokens.size(), promptTokens, firstTokenMillis);
+    }
+
+    private MockResponse complete(String id, String model, String reply, int completionTokens, int promptTokens, long firstTokenMillis) {
+        ObjectNode json = MAPPER.createObjectNode()
+                .put("id", id)
+                .put("object", "chat.completion")
+                .put("created", System.currentTimeMillis() / 1000)
+                .put("model", model);
+        ObjectNode choice = json.putArray("choices").addObject().put("index", 0).put("finish_reason", "stop");
+        choice.putObject("message").put("role", "assistant").put("content", reply);
+        json.set("usage", usage(promptTokens, completionTokens));
+        long generationMillis = tokensPerSecond > 0 ? Math.round(completionTokens * 1000 / tokensPerSecond) : 0;
+        return new MockResponse()
+                .setHeader("Content-Type", "application/json")
+                .setBody(json.toString())
+                .setHeadersDelay(firstTokenMillis + generationMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private MockResponse streamed(String id, String model, List<String> tokens, int promptTokens, long firstTokenMillis) {
+        StringBuilder events = new StringBuilder();
+        ObjectNode first = chunk(id, model);
+        ((ObjectNode) first.withArray("choices").get(0)).putObject("delta").put("role", "assistant").put("content", "");
+        events.append("data: ").append(first).append("\n\n");
+        for (String token : tokens) {
+            ObjectNode chunk = chunk(id, model);
+            ((ObjectNode) chunk.withArray("choices").get(0)).putObject("delta").put("content", token);
+            events.append("data: ").append(chunk).append("\n\n");
+        }
+        ObjectNode last = chunk(id, model);
+        ((ObjectNode) last.withArray("choices").get(0)).put("finish_reason", "stop").putObject("delta");
+        last.set("usage", usage(promptTokens, tokens.size()));
+        events.append("data: ").append(last).append("\n\n");
+        events.append("data: [DONE]\n\n");
+
+        MockResponse response = new MockResponse()
+                .setHeader("Content-Type", "text/event-stream")
+                .setBody(events.toString())
+                .setHeadersDelay(firstTokenMillis, TimeUnit.MILLISECONDS);
+        if (tokensPerSecond > 0 && !tokens.isEmpty()) {
+            // Pace the body so that, on average, one chunk arrives per token interval
+            long bytesPerToken = Math.max(1, events.length() / (tokens.size() + 3));
+            response.throttleBody(bytesPerToken, Math.max(1, Math.round(1000 / tokensPerSecond)), TimeUnit.MILLISECONDS);
+        }
+        return response;
+    }
+
+    private static ObjectNode chunk(String id, String model) {
+        ObjectNode json = MAPPER.createObjectNode()
+                .put("id", id)
+                .put("object", "chat.completion.chunk")
+                .put("created", System.currentTimeMillis() / 1000)
+                .put("model", model);
+        ObjectNode choice = json.putArray("choices").addObject().put("index", 0);
+        choice.putNull("finish_reason");
+        return json;
+    }
+
+    private static ObjectNode usage(int promptTokens, int completionTokens) {
+        return MAPPER.createObjectNode()
+                .put("prompt_tokens", promptTokens)
+                .put("completion_tokens", completionTokens)
+                .put("total_tokens", promptTokens + completionTokens);
+    }
+
+    private MockResponse error(int status, String type, String message) {
+        errors.incrementAndGet();
+        ObjectNode json = MAPPER.createObjectNode();
+        json.putObject("error").put("message", message).put("type", type).putNull("code");
+        MockResponse response = new MockResponse()
+                .setResponseCode(status)
+                .setHeader("Content-Type", "application/json")
+                .setBody(json.toString());
+        return status == 429 ? response.setHeader("Retry-After", "1") : response;
+    }
+
+    private String replyFor(String conversation, String prompt) {
+        String lower = conversation.toLowerCase(Locale.ROOT);
+        synchronized (scripted) {
+            for (Map.Entry<String, String> script : scripted.entrySet()) {
+                if (lower.contains(script.getKey())) {
+                    return script.getValue();
+                }
+            }
+        }
+        return defaultReply.apply(prompt);
+    }
+
+    /** Text of the last user message. */
+    private static String lastUserMessage(JsonNode messages) {
+        String text = "";
+        if (messages instanceof ArrayNode array) {
+            for (JsonNode message : array) {
+                if ("user".equals(message.path("role").asText())) {
+                    text = contentOf(message);
+                }
+            }
+        }
+        return text;
+    }
+
+    private static String allText(JsonNode messages) {
+        StringBuilder text = new StringBuilder();
+        messages.forEach(message -> text.append(contentOf(message)).append('\n'));
+        return text.toString();
+    }
+
+    /** Content may be a string or a list of parts. */
+    private static String contentOf(JsonNode message) {
+        JsonNode content = message.path("content");
+        if (content.isArray()) {
+            StringBuilder parts = new StringBuilder();
+            content.forEach(part -> parts.append(part.path("text").asText("")));
+            return parts.toString();
+        }
+        return content.asText("");
+    }
+
+    /** Words with their trailing whitespace, so the chunks join back into the reply. */
+    private static List<String> tokenize(String reply) {
+        List<String> tokens = new ArrayList<>();
+        for (String token : reply.split("(?<=\\s)(?=\\S)")) {
+            if (!token.isEmpty()) tokens.add(token);
+        }
+        return tokens;
+    }
+
+    /** Roughly four characters per token, close enough for usage accounting. */
+    private static int estimateTokens(String text) {
+        return Math.max(1, (text.length() + 3) / 4);
+    }
+
+    public static void main(String[] args) throws Exception {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 8089;
+        long median = args.length > 1 ? Long.parseLong(args[1]) : 800;
+        long p99 = args.length > 2 ? Long.parseLong(args[2]) : 4000;
+        double tokensPerSecond = args.length > 3 ? Double.parseDouble(args[3]) : 60;
+        double errorRate = args.length > 4 ? Double.parseDouble(args[4]) : 0.01;
+        FakeOpenAiServer server = new FakeOpenAiServer()
+                .latency(Latency.logNormal(median, p99))
+                .tokensPerSecond(tokensPerSecond)
+                .errorRate(errorRate, 503)
+                .defaultReply(prompt -> "That sounds lovely. Tell me a little more about it.")
+                .reply("Extract only long-term personal facts", "none")
+                .reply("Extract any short-term or event-specific information", "none")
+                .reply("extract reminders from the user's message", "none")
+                .start(port);
+        System.out.println("Fake OpenAI endpoint at " + server.baseUrl() + " (set llm.base-url to this)");
+        new CountDownLatch(1).await();
+    }
+}
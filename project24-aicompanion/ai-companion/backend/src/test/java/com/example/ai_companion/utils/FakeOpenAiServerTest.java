@@ -0,0 +1,184 @@
+package com.example.ai_companion.utils;
+
+import com.example.ai_companion.model.User;
+import com.example.ai_companion.repository.UserRepository;
+import com.example.ai_companion.service.LlmRouter;
+import com.example.ai_companion.service.LlmTask;
+import com.example.ai_companion.service.MemoryService;
+import com.example.ai_companion.service.TurnCoordinator;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.model.chat.ChatLanguageModel;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.model.chat.response.StreamingChatResponseHandler;
+import dev.langchain4j.model.openai.OpenAiChatModel;
+import dev.langchain4j.model.openai.OpenAiStreamingChatModel;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class FakeOpenAiServerTest {
+
+    private FakeOpenAiServer server;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        server = new FakeOpenAiServer().start();
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        server.close();
+    }
+
+    private ChatLanguageModel chatModel() {
+        return OpenAiChatModel.builder()
+                .baseUrl(server.baseUrl())
+                .apiKey("test")
+                .modelName("gpt-4o-mini")
+                .maxRetries(0)
+                .timeout(Duration.ofSeconds(10))
+                .build();
+    }
+
+    @Test
+    void chat_WithScriptedPrompt_ShouldReturnReplyAndUsage() {
+        // Arrange
+        server.reply("weather", "It is sunny in Dunedin today.");
+
+        // Act
+        ChatResponse response = chatModel().chat(List.of(UserMessage.from("What is the weather like?")));
+
+        // Assert
+        assertEquals("It is sunny in Dunedin today.", response.aiMessage().text());
+        assertEquals(6, response.tokenUsage().outputTokenCount());
+        assertTrue(response.tokenUsage().inputTokenCount() > 0);
+        assertEquals(List.of("What is the weather like?"), server.getPrompts());
+    }
+
+    @Test
+    void chat_WithStreaming_ShouldSendOneChunkPerWord() throws Exception {
+        // Arrange
+        server.defaultReply(prompt -> "Hello Mary, how are you today?").tokensPerSecond(200);
+        OpenAiStreamingChatModel model = OpenAiStreamingChatModel.builder()
+                .baseUrl(server.baseUrl())
+                .apiKey("test")
+                .modelName("gpt-4o-mini")
+                .timeout(Duration.ofSeconds(10))
+                .build();
+        List<String> partials = new CopyOnWriteArrayList<>();
+        CompletableFuture<ChatResponse> done = new CompletableFuture<>();
+
+        // Act
+        model.chat(List.of(UserMessage.from("Hi")), new StreamingChatResponseHandler() {
+            @Override public void onPartialResponse(String partialResponse) { partials.add(partialResponse); }
+            @Override public void onCompleteResponse(ChatResponse completeResponse) { done.complete(completeResponse); }
+            @Override public void onError(Throwable error) { done.completeExceptionally(error); }
+        });
+        ChatResponse response = done.get(10, TimeUnit.SECONDS);
+
+        // Assert
+        assertEquals("Hello Mary, how are you today?", response.aiMessage().text());
+        assertEquals(6, partials.size());
+        assertEquals("Hello Mary, how are you today?", String.join("", partials));
+    }
+
+    @Test
+    void chat_WithFixedLatencyAndTokenRate_ShouldDelayResponse() {
+        // Arrange
+        server.latency(FakeOpenAiServer.Latency.fixed(200)).tokensPerSecond(20).defaultReply(prompt -> "one two three four");
+
+        // Act
+        long start = System.currentTimeMillis();
+        chatModel().chat("Hi");
+
+        // Assert
+        // 200 ms to the first token, then four tokens at 50 ms each
+        assertTrue(System.currentTimeMillis() - start >= 400);
+    }
+
+    @Test
+    void chat_WithInjectedErrors_ShouldFailWithStatus() {
+        // Arrange
+        server.failNext(429).errorRate(1.0, 503);
+        ChatLanguageModel model = chatModel();
+
+        // Act
+        RuntimeException rateLimited = assertThrows(RuntimeException.class, () -> model.chat("Hi"));
+        RuntimeException unavailable = assertThrows(RuntimeException.class, () -> model.chat("Hi"));
+
+        // Assert
+        assertTrue(rateLimited.getMessage().contains("rate_limit_error"));
+        assertTrue(unavailable.getMessage().contains("server_error"));
+        assertEquals(2, server.getErrorCount());
+    }
+
+    @Test
+    void logNormal_ShouldCentreOnMedianWithLongTail() {
+        // Arrange
+        FakeOpenAiServer.Latency latency = FakeOpenAiServer.Latency.logNormal(800, 4000);
+        java.util.Random random = new java.util.Random(7);
+        List<Long> samples = new ArrayList<>();
+
+        // Act
+        for (int i = 0; i < 10_000; i++) {
+            samples.add(latency.nextMillis(random));
+        }
+        samples.sort(null);
+
+        // Assert
+        assertEquals(800, samples.get(5_000), 40);
+        assertEquals(4000, samples.get(9_900), 400);
+    }
+
+    @Test
+    void memoryService_AgainstStub_ShouldRunExtractionEndToEnd() {
+        // Arrange
+        server.latency(FakeOpenAiServer.Latency.uniform(20, 60))
+                .reply("Extract only long-term personal facts", "The user is a retired teacher.")
+                .reply("maintain a short profile", "Retired teacher who loves roses.")
+                .reply("short-term or event-specific", "none");
+        ChatLanguageModel model = chatModel();
+        Map<LlmTask, LlmRouter.Settings> settings = new EnumMap<>(LlmTask.class);
+        Map<LlmTask, ChatLanguageModel> models = new EnumMap<>(LlmTask.class);
+        for (LlmTask task : LlmTask.values()) {
+            settings.put(task, LlmRouter.Settings.defaultsFor(task));
+            models.put(task, model);
+        }
+        LlmRouter router = new LlmRouter(settings, models);
+        UserRepository userRepository = mock(UserRepository.class);
+        User user = new User();
+        user.setId("user-id");
+        user.setFirebaseUid("firebase-uid");
+        user.setCoreInformation("Loves roses.");
+        when(userRepository.findByFirebaseUid("firebase-uid")).thenReturn(user);
+        MemoryService memoryService = new MemoryService();
+        ReflectionTestUtils.setField(memoryService, "userRepository", userRepository);
+        ReflectionTestUtils.setField(memoryService, "llmRouter", router);
+        ReflectionTestUtils.setField(memoryService, "turnCoordinator", new TurnCoordinator());
+
+        // Act
+        memoryService.extractAndStoreInsights("firebase-uid", "I used to teach at the primary school", "How lovely!");
+
+        // Assert
+        assertEquals("Retired teacher who loves roses.", user.getCoreInformation());
+        verify(userRepository).save(any(User.class));
+        assertEquals(3, server.getRequestCount());
+        Map<String, Object> coreFacts = router.getReport().get("CORE_FACTS");
+        assertEquals(1L, coreFacts.get("successes"));
+        assertTrue((Long) coreFacts.get("inputTokens") > 0);
+    }
+}